@@ -41,6 +41,9 @@ dependencies {
     compile(kotlinStdlib())
     compile(project(":compiler:frontend"))
     compile(project(":compiler:cli"))
+    compile(project(":compiler:fir:lightTree"))
+    compile(project(":kotlin-build-common"))
+    compile(project(":kotlin-reflect"))
     compile(intellijCoreDep()) { includeJars("intellij-core") }
     compile(jpsStandalone()) { includeJars("jps-model") }
     Platform[192].orHigher {
@@ -76,6 +79,16 @@ benchmark {
             //include("InferenceBaselineCallsBenchmark")
         }
 
+        register("parsing") {
+            warmups = 10
+            iterations = 10
+            iterationTime = 1
+            iterationTimeUnit = "sec"
+            param("size", 1000)
+            include("LexerBenchmark")
+            include("ParserBenchmark")
+        }
+
         register("ni") {
             warmups = 10
             iterations = 10
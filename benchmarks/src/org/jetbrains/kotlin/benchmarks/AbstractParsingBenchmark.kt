@@ -0,0 +1,215 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import com.intellij.openapi.util.Disposer
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.openjdk.jmh.annotations.*
+import java.lang.management.ManagementFactory
+
+/**
+ * Base for benchmarks of the lexer and the parsers on generated corpora of Kotlin sources.
+ *
+ * Besides the number of operations, the benchmarks report the throughput in megabytes of source text per second (`megabytes`),
+ * and the memory allocated per thousand lines of source text (`allocatedKbPerKloc`).
+ */
+@State(Scope.Benchmark)
+abstract class AbstractParsingBenchmark {
+    @Param("declarations", "nestedExpressions", "stringTemplates", "kdoc")
+    private var corpus: String = ""
+
+    @Param("1000")
+    private var size: Int = 0
+
+    protected lateinit var files: List<String>
+        private set
+
+    private var megabytes = 0.0
+    private var kloc = 0.0
+
+    private val disposable = Disposer.newDisposable()
+    protected lateinit var env: KotlinCoreEnvironment
+        private set
+
+    @Setup(Level.Trial)
+    fun setUp() {
+        // the parsers need an application, even though they don't need a project
+        env = KotlinCoreEnvironment.createForTests(disposable, newConfiguration(false), EnvironmentConfigFiles.JVM_CONFIG_FILES)
+        files = ParsingCorpus.generate(corpus, size)
+        megabytes = files.sumByDouble { it.length.toDouble() } / (1024 * 1024)
+        kloc = files.sumByDouble { text -> text.count { it == '\n' } + 1.0 } / 1000
+    }
+
+    @TearDown(Level.Trial)
+    fun tearDown() {
+        Disposer.dispose(disposable)
+    }
+
+    /**
+     * Runs [body] on every file of the corpus and updates [counters].
+     */
+    protected fun forEachFile(counters: ParsingCounters, allocations: AllocationCounters, body: (String) -> Unit) {
+        val startAllocated = allocatedBytes()
+        for (file in files) {
+            body(file)
+        }
+        allocations.add(allocatedBytes() - startAllocated, kloc)
+        counters.megabytes += megabytes
+    }
+
+    private fun allocatedBytes(): Long =
+        (threadBean as? com.sun.management.ThreadMXBean)?.getThreadAllocatedBytes(Thread.currentThread().id) ?: 0
+
+    private val threadBean = ManagementFactory.getThreadMXBean()
+}
+
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+open class ParsingCounters {
+    // Reported per second in the throughput mode
+    @JvmField
+    var megabytes: Double = 0.0
+
+    @Setup(Level.Iteration)
+    fun reset() {
+        megabytes = 0.0
+    }
+}
+
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+open class AllocationCounters {
+    private var allocatedBytes = 0L
+    private var kloc = 0.0
+
+    @JvmField
+    var allocatedKbPerKloc: Double = 0.0
+
+    fun add(allocated: Long, linesInThousands: Double) {
+        allocatedBytes += allocated
+        kloc += linesInThousands
+        allocatedKbPerKloc = allocatedBytes / 1024.0 / kloc
+    }
+
+    @Setup(Level.Iteration)
+    fun reset() {
+        allocatedBytes = 0
+        kloc = 0.0
+        allocatedKbPerKloc = 0.0
+    }
+}
+
+/**
+ * Generates Kotlin sources stressing different parts of the lexer and the parsers. [size] is the number of top-level declarations
+ * in a corpus, which is split into files of at most [DECLARATIONS_PER_FILE] declarations.
+ */
+object ParsingCorpus {
+    private const val DECLARATIONS_PER_FILE = 500
+    private const val NESTING_DEPTH = 40
+
+    fun generate(corpus: String, size: Int): List<String> {
+        val declaration: (Int) -> String = when (corpus) {
+            "declarations" -> ::declarations
+            "nestedExpressions" -> ::nestedExpressions
+            "stringTemplates" -> ::stringTemplates
+            "kdoc" -> ::kdoc
+            else -> error("Unknown corpus: $corpus")
+        }
+
+        return (0 until size).chunked(DECLARATIONS_PER_FILE).mapIndexed { index, declarations ->
+            buildString {
+                appendln("package corpus.file$index")
+                appendln()
+                appendln("import kotlin.collections.*")
+                appendln()
+                for (i in declarations) {
+                    appendln(declaration(i))
+                }
+            }
+        }
+    }
+
+    private fun declarations(i: Int) = """
+        |@Suppress("UNUSED")
+        |data class Item$i<T : Comparable<T>>(val id: Int, var name: String?, private val values: List<T> = emptyList()) : Base$i() {
+        |    val size: Int get() = values.size
+        |
+        |    override fun compute(x: Int, y: Double = 0.5): Map<String, List<Int>> {
+        |        val result = mutableMapOf<String, List<Int>>()
+        |        for (k in 0 until x step 2) {
+        |            result["key${'$'}k"] = (0..k).filter { it % 3 == 0 }.map { it * 2 }
+        |        }
+        |        return when {
+        |            x > 10 && y < 1.0 -> result
+        |            name == null -> emptyMap()
+        |            else -> result.filterKeys { key -> key.length > 3 }
+        |        }
+        |    }
+        |
+        |    companion object {
+        |        const val ID = $i
+        |        fun <R> create(block: Item$i<Int>.() -> R): R = Item$i<Int>(ID, null).block()
+        |    }
+        |}
+        |
+        |abstract class Base$i {
+        |    abstract fun compute(x: Int, y: Double = 0.5): Map<String, List<Int>>
+        |    open suspend fun load(vararg ids: Int): Result<Unit>? = try { null } catch (e: Exception) { throw e } finally { }
+        |}
+        |""".trimMargin()
+
+    private fun nestedExpressions(i: Int) = buildString {
+        append("fun nested$i(a: Int, b: Int): Int {\n")
+        append("    val arithmetic = ")
+        for (depth in 0 until NESTING_DEPTH) append("(a + b * ")
+        append("1")
+        repeat(NESTING_DEPTH) { append(")") }
+        append("\n    val lambdas = ")
+        for (depth in 0 until NESTING_DEPTH / 4) append("run { listOf(a, b).map { x$depth -> x$depth + ")
+        append("0")
+        repeat(NESTING_DEPTH / 4) { append(" }.sum() }") }
+        append("\n    val chain = listOf(a, b)")
+        repeat(NESTING_DEPTH) { append(".map { it + $it }?.filter { it > $it }!!") }
+        append(".size\n")
+        append("    return if (a > b) if (b > 0) arithmetic else lambdas else if (a < 0) chain else arithmetic + lambdas + chain\n")
+        append("}\n")
+    }
+
+    private fun stringTemplates(i: Int) = buildString {
+        append("fun template$i(name: String, items: List<Int>, flag: Boolean): String {\n")
+        append("    val simple = \"")
+        repeat(20) { append("item $it of \$name is \${items.getOrNull($it) ?: 0} and \${if (flag) \"yes\" else \"no\"}; ") }
+        append("\"\n")
+        append("    val raw = \"\"\"\n")
+        repeat(20) { append("        |line $it: \$name \${items.joinToString { \"<\$it>\" }} \\n \\t \\\$ \${'$'}\n") }
+        append("    \"\"\".trimMargin()\n")
+        append("    return simple + raw + \"\\u0041\\\"escaped\\\"\" + '\\n'\n")
+        append("}\n")
+    }
+
+    private fun kdoc(i: Int) = """
+        |/**
+        | * Computes the value number $i of the [Sequence] of [Int]s described by [first] and [step].
+        | *
+        | * Unlike [kotlin.sequences.generateSequence], the computation is *eager*, and the result is **cached**:
+        | * ```
+        | * val value = kdoc$i(1, 2)
+        | * check(value == kdoc$i(1, 2))
+        | * ```
+        | * See also [Wikipedia](https://en.wikipedia.org/wiki/Arithmetic_progression).
+        | *
+        | * @param first the first element of the sequence, must be non-negative.
+        | * @param step the difference between two consecutive elements.
+        | * @return the element number $i.
+        | * @throws IllegalArgumentException if [first] is negative.
+        | * @sample samples.kdoc$i
+        | * @see kotlin.ranges.IntProgression
+        | * @since 1.4
+        | */
+        |fun kdoc$i(first: Int, step: Int): Int = first + $i * step
+        |""".trimMargin()
+}
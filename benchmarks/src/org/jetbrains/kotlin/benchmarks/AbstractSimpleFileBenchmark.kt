@@ -71,7 +71,7 @@ private val LANGUAGE_FEATURE_SETTINGS =
                 specificFeatures = mapOf(LanguageFeature.NewInference to LanguageFeature.State.ENABLED)
         )
 
-private fun newConfiguration(useNewInference: Boolean): CompilerConfiguration {
+internal fun newConfiguration(useNewInference: Boolean): CompilerConfiguration {
     val configuration = CompilerConfiguration()
     configuration.put(CommonConfigurationKeys.MODULE_NAME, "benchmark")
     configuration.put(CLIConfigurationKeys.INTELLIJ_PLUGIN_ROOT, "../compiler/cli/cli-common/resources")
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.lang.reflect.Method
+import java.util.concurrent.TimeUnit
+import kotlin.reflect.KFunction
+import kotlin.reflect.KParameter
+import kotlin.reflect.KProperty1
+import kotlin.reflect.full.memberFunctions
+import kotlin.reflect.full.primaryConstructor
+import kotlin.reflect.jvm.javaGetter
+
+/**
+ * Calls of members through kotlin-reflect, as done by serialization and dependency injection libraries, compared with plain
+ * Java reflection calls of the same members.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class KCallableBenchmark {
+    data class Person(val name: String, val age: Int = 42, val email: String? = null) {
+        fun greet(greeting: String, times: Int): String = greeting + name + times
+    }
+
+    private val person = Person("John", 33)
+
+    private val nameProperty: KProperty1<Person, *> = Person::name
+    private val greetFunction: KFunction<*> = Person::class.memberFunctions.single { it.name == "greet" }
+    private val constructor: KFunction<Person> = Person::class.primaryConstructor!!
+    private val nameGetter: Method = Person::name.javaGetter!!
+
+    private lateinit var allArguments: Map<KParameter, Any?>
+    private lateinit var requiredArguments: Map<KParameter, Any?>
+
+    @Setup
+    fun setUp() {
+        val (name, age, email) = constructor.parameters
+        allArguments = mapOf(name to "John", age to 33, email to "john@example.com")
+        requiredArguments = mapOf(name to "John")
+    }
+
+    @Benchmark
+    fun javaMethodInvoke(bh: Blackhole) {
+        bh.consume(nameGetter.invoke(person))
+    }
+
+    @Benchmark
+    fun propertyGet(bh: Blackhole) {
+        bh.consume(nameProperty.get(person))
+    }
+
+    @Benchmark
+    fun functionCall(bh: Blackhole) {
+        bh.consume(greetFunction.call(person, "Hello, ", 3))
+    }
+
+    @Benchmark
+    fun constructorCallByAllArguments(bh: Blackhole) {
+        bh.consume(constructor.callBy(allArguments))
+    }
+
+    @Benchmark
+    fun constructorCallByDefaultArguments(bh: Blackhole) {
+        bh.consume(constructor.callBy(requiredArguments))
+    }
+}
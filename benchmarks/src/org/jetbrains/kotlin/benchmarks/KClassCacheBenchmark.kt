@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.lang.ref.WeakReference
+import java.util.concurrent.TimeUnit
+import kotlin.reflect.KClass
+import kotlin.reflect.jvm.internal.pcollections.HashPMap
+
+/**
+ * Compares the cache of `KClass` instances in kotlin-reflect with the persistent map it used to be, on several threads
+ * looking up the same classes, as e.g. serialization libraries do on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+open class KClassCacheBenchmark {
+    private val classes: List<Class<*>> = listOf(
+        String::class.java, Int::class.javaObjectType, List::class.java, ArrayList::class.java, HashMap::class.java,
+        Pair::class.java, Triple::class.java, IntRange::class.java, Regex::class.java, StringBuilder::class.java,
+        KClassCacheBenchmark::class.java, AbstractParsingBenchmark::class.java, ParsingCorpus::class.java,
+        Thread::class.java, Number::class.java, Enum::class.java
+    )
+
+    @Benchmark
+    fun kClassCache(bh: Blackhole) {
+        for (jClass in classes) {
+            bh.consume(jClass.kotlin)
+        }
+    }
+
+    @Benchmark
+    fun legacyPersistentMapCache(bh: Blackhole) {
+        for (jClass in classes) {
+            bh.consume(LegacyKClassCache.getOrCreate(jClass))
+        }
+    }
+
+    @Setup(Level.Iteration)
+    fun clearLegacyCache() {
+        LegacyKClassCache.clear()
+    }
+}
+
+/**
+ * The implementation of the cache before it was made concurrent, which doesn't synchronize writes and may lose entries,
+ * simplified to one class loader per class name.
+ */
+private object LegacyKClassCache {
+    private var cache = HashPMap.empty<String, WeakReference<KClass<*>>>()
+
+    fun getOrCreate(jClass: Class<*>): KClass<*> {
+        val name = jClass.name
+        val kClass = cache[name]?.get()
+        if (kClass?.java == jClass) {
+            return kClass
+        }
+
+        // The instance from the new cache is used as a value, so that only the lookups are measured
+        val newKClass = jClass.kotlin
+        cache = cache.plus(name, WeakReference(newKClass))
+        return newKClass
+    }
+
+    fun clear() {
+        cache = HashPMap.empty()
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+
+/**
+ * The first reflective access to classes of an application, e.g. by a serialization library on startup. Each invocation loads
+ * the classes with a new class loader, so that kotlin-reflect can't reuse anything computed for them before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class KClassStartupBenchmark {
+    private val classNames = listOf(
+        StartupSamples.User::class.java, StartupSamples.Address::class.java, StartupSamples.Order::class.java,
+        StartupSamples.Shape::class.java, StartupSamples.Shape.Circle::class.java, StartupSamples.Shape.Square::class.java,
+        StartupSamples.Registry::class.java, StartupSamples.Registry.Companion::class.java
+    ).map { it.name }
+
+    private fun loadClasses(): List<Class<*>> {
+        val loader = IsolatingClassLoader(StartupSamples::class.java.name, javaClass.classLoader)
+        return classNames.map { loader.loadClass(it) }
+    }
+
+    @Benchmark
+    fun classFlags(bh: Blackhole) {
+        for (jClass in loadClasses()) {
+            val kClass = jClass.kotlin
+            bh.consume(kClass.isData)
+            bh.consume(kClass.isSealed)
+            bh.consume(kClass.isCompanion)
+            bh.consume(kClass.visibility)
+        }
+    }
+
+    @Benchmark
+    fun classDescriptors(bh: Blackhole) {
+        for (jClass in loadClasses()) {
+            bh.consume(jClass.kotlin.typeParameters)
+        }
+    }
+
+    @Benchmark
+    fun constructorParameters(bh: Blackhole) {
+        for (jClass in loadClasses()) {
+            for (constructor in jClass.kotlin.constructors) {
+                for (parameter in constructor.parameters) {
+                    bh.consume(parameter.name)
+                    bh.consume(parameter.isOptional)
+                    bh.consume(parameter.type.isMarkedNullable)
+                }
+            }
+        }
+    }
+
+    /**
+     * Defines classes nested in [prefix] anew, and delegates loading of all other classes to [parent].
+     */
+    private class IsolatingClassLoader(private val prefix: String, parent: ClassLoader) : ClassLoader(parent) {
+        override fun loadClass(name: String, resolve: Boolean): Class<*> {
+            if (!name.startsWith(prefix)) return super.loadClass(name, resolve)
+
+            synchronized(getClassLoadingLock(name)) {
+                findLoadedClass(name)?.let { return it }
+                val bytes = parent.getResourceAsStream(name.replace('.', '/') + ".class")?.use { it.readBytes() }
+                    ?: throw ClassNotFoundException(name)
+                return defineClass(name, bytes, 0, bytes.size)
+            }
+        }
+    }
+}
+
+object StartupSamples {
+    data class User(val id: Long, val name: String, val email: String?, val address: Address?, val tags: List<String> = emptyList())
+
+    data class Address(val street: String, val city: String, val zip: String? = null)
+
+    data class Order(val id: Long, val user: User, val items: Map<String, Int>, val comment: String? = null)
+
+    sealed class Shape {
+        data class Circle(val radius: Double) : Shape()
+        data class Square(val side: Double) : Shape()
+    }
+
+    class Registry private constructor(val name: String) {
+        companion object {
+            fun create(name: String): Registry = Registry(name)
+        }
+    }
+}
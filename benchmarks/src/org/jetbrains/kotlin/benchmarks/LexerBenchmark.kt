@@ -0,0 +1,30 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import org.jetbrains.kotlin.lexer.KotlinLexer
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class LexerBenchmark : AbstractParsingBenchmark() {
+    @Benchmark
+    fun lexer(bh: Blackhole, counters: ParsingCounters, allocations: AllocationCounters) {
+        val lexer = KotlinLexer()
+        forEachFile(counters, allocations) { text ->
+            lexer.start(text)
+            var tokens = 0
+            while (lexer.tokenType != null) {
+                tokens++
+                lexer.advance()
+            }
+            bh.consume(tokens)
+        }
+    }
+}
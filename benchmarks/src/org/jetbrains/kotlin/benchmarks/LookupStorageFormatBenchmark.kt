@@ -0,0 +1,80 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import com.intellij.openapi.util.io.FileUtil
+import org.jetbrains.kotlin.incremental.storage.*
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.io.File
+import java.util.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares the storage of lookups as sets of ints (the format of `LookupMap`) with sorted arrays of deltas (`LookupPostingsMap`):
+ * writing all lookups of a module, and reading them back after the storage is reopened.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+open class LookupStorageFormatBenchmark {
+    @Param("10000")
+    private var lookups: Int = 0
+
+    @Param("20")
+    private var filesPerLookup: Int = 0
+
+    private lateinit var keys: List<LookupSymbolKey>
+    private lateinit var fileIds: List<IntArray>
+    private lateinit var workingDir: File
+
+    @Setup
+    fun setUp() {
+        val random = Random(42)
+        keys = (0 until lookups).map { LookupSymbolKey("name$it", "scope${it % 100}") }
+        fileIds = keys.map {
+            IntArray(filesPerLookup) { random.nextInt(lookups / 10) }.distinct().sorted().toIntArray()
+        }
+        workingDir = FileUtil.createTempDirectory("lookupStorageBenchmark", null)
+    }
+
+    @TearDown
+    fun tearDown() {
+        FileUtil.delete(workingDir)
+    }
+
+    @Benchmark
+    fun intCollections(bh: Blackhole) {
+        val file = File(workingDir, "lookups.tab")
+        writeAndRead({ CachingLazyStorage(file, LookupSymbolKeyDescriptor, IntCollectionExternalizer) }, { it.toSet() }, bh)
+    }
+
+    @Benchmark
+    fun sortedIntArrays(bh: Blackhole) {
+        val file = File(workingDir, "lookup-postings.tab")
+        writeAndRead({ CachingLazyStorage(file, LookupSymbolKeyDescriptor, SortedIntArrayExternalizer) }, { it }, bh)
+    }
+
+    private fun <V> writeAndRead(createStorage: () -> LazyStorage<LookupSymbolKey, V>, toValue: (IntArray) -> V, bh: Blackhole) {
+        val storage = createStorage()
+        try {
+            for (i in keys.indices) {
+                storage[keys[i]] = toValue(fileIds[i])
+            }
+        } finally {
+            storage.close()
+        }
+
+        val reopened = createStorage()
+        try {
+            for (key in reopened.keys) {
+                bh.consume(reopened[key])
+            }
+        } finally {
+            reopened.clean()
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.benchmarks
+
+import com.intellij.lang.ASTNode
+import com.intellij.lang.LighterASTNode
+import com.intellij.lang.LighterLazyParseableNode
+import com.intellij.openapi.util.Ref
+import com.intellij.util.diff.FlyweightCapableTreeStructure
+import org.jetbrains.kotlin.KtNodeTypes
+import org.jetbrains.kotlin.fir.lightTree.LightTree2Fir
+import org.jetbrains.kotlin.fir.scopes.KotlinScopeProvider
+import org.jetbrains.kotlin.psi.KtPsiFactory
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import java.util.concurrent.TimeUnit
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+open class ParserBenchmark : AbstractParsingBenchmark() {
+    private val lightTree2Fir = LightTree2Fir(scopeProvider = KotlinScopeProvider(), stubMode = false)
+
+    @Benchmark
+    fun psi(bh: Blackhole, counters: ParsingCounters, allocations: AllocationCounters) {
+        val factory = KtPsiFactory(env.project, markGenerated = false)
+        forEachFile(counters, allocations) { text ->
+            // The tree is built lazily, and blocks and lambdas are parsed only when their children are requested
+            bh.consume(countNodes(factory.createFile("corpus.kt", text).node))
+        }
+    }
+
+    @Benchmark
+    fun lightTree(bh: Blackhole, counters: ParsingCounters, allocations: AllocationCounters) {
+        forEachFile(counters, allocations) { text ->
+            bh.consume(countNodes(lightTree2Fir.buildLightTree(text)))
+        }
+    }
+
+    @Benchmark
+    fun lightTreeToRawFir(bh: Blackhole, counters: ParsingCounters, allocations: AllocationCounters) {
+        forEachFile(counters, allocations) { text ->
+            bh.consume(lightTree2Fir.buildFirFile(text, "corpus.kt"))
+        }
+    }
+
+    private fun countNodes(node: ASTNode): Int {
+        var count = 1
+        var child = node.firstChildNode
+        while (child != null) {
+            count += countNodes(child)
+            child = child.treeNext
+        }
+        return count
+    }
+
+    // Blocks and lambdas are left unparsed in the light tree, so they are parsed separately, as the raw FIR builder does
+    private fun countNodes(tree: FlyweightCapableTreeStructure<LighterASTNode>, node: LighterASTNode): Int {
+        if (node is LighterLazyParseableNode) {
+            when (node.tokenType) {
+                KtNodeTypes.BLOCK -> return countNodes(LightTree2Fir.buildLightTreeBlockExpression(node.toString()))
+                KtNodeTypes.LAMBDA_EXPRESSION -> return countNodes(LightTree2Fir.buildLightTreeLambdaExpression(node.toString()))
+            }
+        }
+
+        val childrenRef = Ref<Array<LighterASTNode?>>()
+        val childrenCount = tree.getChildren(node, childrenRef)
+        val children = childrenRef.get()
+        var count = 1
+        for (i in 0 until childrenCount) {
+            count += countNodes(tree, children[i]!!)
+        }
+        tree.disposeChildren(children, childrenCount)
+        return count
+    }
+
+    private fun countNodes(tree: FlyweightCapableTreeStructure<LighterASTNode>): Int = countNodes(tree, tree.root)
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental
+
+import java.io.*
+
+/**
+ * Lists the directories containing the class files of a jar, see [IncrementalModuleInfo.jarToClassListFile].
+ *
+ * Multi-module IC only needs the directories to find the modules which produced the jar, so the file stores each directory once,
+ * and the size of the file doesn't grow with the number of classes.
+ *
+ * The file used to be a text of class file paths separated by [File.pathSeparator], which is still read. A binary file starts with
+ * a zero byte, which never starts a path.
+ */
+object ClassListFile {
+    private const val MAGIC = 0x004B434C // "\u0000KCL"
+    private const val VERSION = 1
+
+    fun write(file: File, classFiles: Iterable<File>) {
+        val directories = classFiles.mapNotNullTo(sortedSetOf()) { it.absoluteFile.parentFile?.path }
+
+        file.parentFile?.mkdirs()
+        DataOutputStream(file.outputStream().buffered()).use { output ->
+            output.writeInt(MAGIC)
+            output.writeInt(VERSION)
+            output.writeInt(directories.size)
+            for (directory in directories) {
+                output.writeUTF(directory)
+            }
+        }
+    }
+
+    /**
+     * @return existing directories containing the class files listed in [file]
+     */
+    @Throws(IOException::class)
+    fun readClassDirectories(file: File): Set<File> {
+        val directories = DataInputStream(file.inputStream().buffered()).use { input ->
+            input.mark(4)
+            if (input.read() != 0) {
+                input.reset()
+                return readLegacyClassDirectories(input)
+            }
+            input.reset()
+
+            if (input.readInt() != MAGIC) throw IOException("Not a class list file: $file")
+            val version = input.readInt()
+            if (version != VERSION) throw IOException("Unsupported version $version of class list file $file")
+
+            val size = input.readInt()
+            (0 until size).mapTo(LinkedHashSet(size)) { File(input.readUTF()) }
+        }
+        return directories.filterTo(LinkedHashSet()) { it.isDirectory }
+    }
+
+    private fun readLegacyClassDirectories(input: InputStream): Set<File> =
+        input.reader().readText().split(File.pathSeparator)
+            .map(::File)
+            .filter { it.exists() }
+            .mapNotNullTo(LinkedHashSet()) { it.parentFile }
+}
@@ -42,7 +42,7 @@ open class LookupStorage(
     private val countersFile = "counters".storageFile
     private val idToFile = registerMap(IdToFileMap("id-to-file".storageFile, pathConverter))
     private val fileToId = registerMap(FileToIdMap("file-to-id".storageFile, pathConverter))
-    private val lookupMap = registerMap(LookupMap("lookups".storageFile))
+    private val lookupMap = registerMap(LookupPostingsMap("lookup-postings".storageFile))
 
     @Volatile
     private var size: Int = 0
@@ -61,6 +61,11 @@ open class LookupStorage(
             throw IOException("Could not read $countersFile", e)
         }
 
+        // Lookups used to be stored as uncompressed sets of ids, see LookupMap
+        val legacyLookupsFile = "lookups".storageFile
+        if (legacyLookupsFile.exists()) {
+            lookupMap.migrateFrom(legacyLookupsFile)
+        }
     }
 
     @Synchronized
@@ -81,9 +86,8 @@ open class LookupStorage(
         for (lookupSymbol in lookups.keySet().sorted()) {
             val key = LookupSymbolKey(lookupSymbol.name, lookupSymbol.scope)
             val paths = lookups[lookupSymbol]!!
-            val fileIds = paths.mapTo(TreeSet()) { pathToId[it]!! }
-            fileIds.addAll(lookupMap[key] ?: emptySet())
-            lookupMap[key] = fileIds
+            val fileIds = paths.mapTo(TreeSet()) { pathToId[it]!! }.toIntArray()
+            lookupMap[key] = lookupMap[key]?.let { mergeSorted(it, fileIds) } ?: fileIds
         }
     }
 
@@ -146,7 +150,7 @@ open class LookupStorage(
 
     private fun doRemoveGarbage() {
         for (hash in lookupMap.keys) {
-            lookupMap[hash] = lookupMap[hash]!!.filter { it in idToFile }.toSet()
+            lookupMap[hash] = lookupMap[hash]!!.filter { it in idToFile }.toIntArray()
         }
 
         val oldFileToId = fileToId.toMap()
@@ -162,13 +166,13 @@ open class LookupStorage(
         }
 
         for (lookup in lookupMap.keys) {
-            val fileIds = lookupMap[lookup]!!.mapNotNull { oldIdToNewId[it] }.toSet()
+            val fileIds = lookupMap[lookup]!!.mapNotNull { oldIdToNewId[it] }
 
             if (fileIds.isEmpty()) {
                 lookupMap.remove(lookup)
             }
             else {
-                lookupMap[lookup] = fileIds
+                lookupMap[lookup] = fileIds.sorted().toIntArray()
             }
         }
     }
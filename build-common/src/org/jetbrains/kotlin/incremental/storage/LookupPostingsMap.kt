@@ -0,0 +1,49 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import java.io.File
+
+/**
+ * Maps lookup symbols to sorted arrays of ids of the files which contain the lookups.
+ *
+ * Unlike [LookupMap], the ids are stored as deltas of variable length and are read without boxing.
+ */
+internal class LookupPostingsMap(storage: File) :
+    BasicMap<LookupSymbolKey, IntArray>(storage, LookupSymbolKeyDescriptor, SortedIntArrayExternalizer) {
+
+    override fun dumpKey(key: LookupSymbolKey): String = key.toString()
+
+    override fun dumpValue(value: IntArray): String = value.contentToString()
+
+    operator fun get(key: LookupSymbolKey): IntArray? = storage[key]
+
+    operator fun set(key: LookupSymbolKey, fileIds: IntArray) {
+        storage[key] = fileIds
+    }
+
+    fun remove(key: LookupSymbolKey) {
+        storage.remove(key)
+    }
+
+    val keys: Collection<LookupSymbolKey>
+        get() = storage.keys
+
+    /**
+     * Moves all lookups from a storage file of [LookupMap] into this map and deletes that file.
+     */
+    fun migrateFrom(legacyStorage: File) {
+        val legacyMap = LookupMap(legacyStorage)
+        try {
+            for (key in legacyMap.keys) {
+                val fileIds = legacyMap[key] ?: continue
+                this[key] = fileIds.toSortedSet().toIntArray()
+            }
+        } finally {
+            legacyMap.clean()
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.jetbrains.kotlin.incremental.storage
 
 import com.intellij.openapi.util.io.FileUtil
 import com.intellij.util.io.DataExternalizer
+import com.intellij.util.io.DataInputOutputUtil
 import com.intellij.util.io.EnumeratorStringDescriptor
 import com.intellij.util.io.IOUtil
 import com.intellij.util.io.KeyDescriptor
@@ -200,3 +201,66 @@ open class CollectionExternalizer<T>(
 object StringCollectionExternalizer : CollectionExternalizer<String>(EnumeratorStringDescriptor(), { HashSet() })
 
 object IntCollectionExternalizer : CollectionExternalizer<Int>(IntExternalizer, { HashSet() })
+
+/**
+ * Stores sorted arrays of distinct non-negative ints as variable-length deltas, so that close values take one or two bytes each.
+ *
+ * Every saved array is a separate chunk, so values extended with `append` are read as the union of their chunks.
+ */
+object SortedIntArrayExternalizer : DataExternalizer<IntArray> {
+    override fun save(output: DataOutput, value: IntArray) {
+        DataInputOutputUtil.writeINT(output, value.size)
+        var previous = 0
+        for (element in value) {
+            DataInputOutputUtil.writeINT(output, element - previous)
+            previous = element
+        }
+    }
+
+    override fun read(input: DataInput): IntArray {
+        val stream = input as DataInputStream
+        var result = readChunk(stream)
+
+        while (stream.available() > 0) {
+            result = mergeSorted(result, readChunk(stream))
+        }
+
+        return result
+    }
+
+    private fun readChunk(input: DataInput): IntArray {
+        val result = IntArray(DataInputOutputUtil.readINT(input))
+        var previous = 0
+        for (i in result.indices) {
+            previous += DataInputOutputUtil.readINT(input)
+            result[i] = previous
+        }
+        return result
+    }
+}
+
+/**
+ * Merges two sorted arrays of distinct ints into a sorted array of distinct ints.
+ */
+fun mergeSorted(first: IntArray, second: IntArray): IntArray {
+    if (first.isEmpty()) return second
+    if (second.isEmpty()) return first
+
+    val result = IntArray(first.size + second.size)
+    var i = 0
+    var j = 0
+    var size = 0
+    while (i < first.size || j < second.size) {
+        val next = when {
+            j == second.size || (i < first.size && first[i] < second[j]) -> first[i++]
+            i == first.size || second[j] < first[i] -> second[j++]
+            else -> {
+                j++
+                first[i++]
+            }
+        }
+        result[size++] = next
+    }
+
+    return if (size == result.size) result else result.copyOf(size)
+}
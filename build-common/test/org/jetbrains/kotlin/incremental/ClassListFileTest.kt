@@ -0,0 +1,40 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental
+
+import org.jetbrains.kotlin.TestWithWorkingDir
+import org.junit.Test
+import java.io.File
+
+class ClassListFileTest : TestWithWorkingDir() {
+    @Test
+    fun testDirectoriesAreStoredOnce() {
+        val foo = workingDir.resolve("classes/foo").apply { mkdirs() }
+        val bar = workingDir.resolve("classes/bar").apply { mkdirs() }
+        val classFiles = listOf(foo.resolve("A.class"), foo.resolve("B.class"), bar.resolve("C.class"))
+        classFiles.forEach { it.writeText("") }
+
+        val classListFile = workingDir.resolve("classes.bin")
+        ClassListFile.write(classListFile, classFiles)
+
+        assertEquals(setOf(bar, foo), ClassListFile.readClassDirectories(classListFile))
+
+        bar.deleteRecursively()
+        assertEquals(setOf(foo), ClassListFile.readClassDirectories(classListFile))
+    }
+
+    @Test
+    fun testLegacyFormat() {
+        val foo = workingDir.resolve("classes/foo").apply { mkdirs() }
+        val existing = foo.resolve("A.class").apply { writeText("") }
+        val removed = workingDir.resolve("classes/bar/B.class")
+
+        val classListFile = workingDir.resolve("classes.txt")
+        classListFile.writeText(listOf(existing, removed).joinToString(File.pathSeparator) { it.absolutePath })
+
+        assertEquals(setOf(foo), ClassListFile.readClassDirectories(classListFile))
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.incremental.storage
+
+import org.jetbrains.kotlin.TestWithWorkingDir
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertFalse
+import org.junit.Test
+
+class LookupPostingsMapTest : TestWithWorkingDir() {
+    @Test
+    fun testReopen() {
+        val storageFile = workingDir.resolve("lookup-postings.tab")
+        val key = LookupSymbolKey("foo", "bar")
+        val fileIds = intArrayOf(0, 1, 190, 191, 192, 100_000, Int.MAX_VALUE)
+
+        LookupPostingsMap(storageFile).apply {
+            this[key] = fileIds
+            close()
+        }
+
+        assertArrayEquals(fileIds, LookupPostingsMap(storageFile)[key])
+    }
+
+    @Test
+    fun testMigration() {
+        val legacyFile = workingDir.resolve("lookups.tab")
+        val first = LookupSymbolKey("foo", "bar")
+        val second = LookupSymbolKey("baz", "bar")
+
+        LookupMap(legacyFile).apply {
+            this[first] = setOf(3, 1, 2)
+            this[second] = setOf(42)
+            close()
+        }
+
+        val map = LookupPostingsMap(workingDir.resolve("lookup-postings.tab"))
+        map.migrateFrom(legacyFile)
+
+        assertArrayEquals(intArrayOf(1, 2, 3), map[first])
+        assertArrayEquals(intArrayOf(42), map[second])
+        assertFalse(legacyFile.exists())
+    }
+
+    @Test
+    fun testMergeSorted() {
+        assertArrayEquals(intArrayOf(1, 2, 3, 5, 8), mergeSorted(intArrayOf(1, 3, 5), intArrayOf(2, 3, 8)))
+        assertArrayEquals(intArrayOf(1, 2), mergeSorted(intArrayOf(), intArrayOf(1, 2)))
+        assertArrayEquals(intArrayOf(1, 2), mergeSorted(intArrayOf(1, 2), intArrayOf(1, 2)))
+    }
+}
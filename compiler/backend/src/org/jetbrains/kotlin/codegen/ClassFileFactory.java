@@ -117,6 +117,7 @@ public class ClassFileFactory implements OutputFileCollection {
     public void done() {
         if (!isDone) {
             isDone = true;
+            state.flushPendingMethods();
             writeModuleMappings();
         }
     }
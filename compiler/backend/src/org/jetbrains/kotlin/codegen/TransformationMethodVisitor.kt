@@ -58,18 +58,36 @@ abstract class TransformationMethodVisitor(
     }
 
     override fun visitEnd() {
+        completeMethodNode()
+        transform()
+        emit()
+    }
+
+    /**
+     * Finishes recording of the method into [methodNode]. After that, [transform] may be called on another thread
+     * as long as [performTransformations] doesn't touch any shared state, and then [emit] writes the result to the delegate.
+     */
+    protected fun completeMethodNode() {
         // force mv to calculate maxStack/maxLocals in case it didn't yet done
         if (methodNode.maxLocals <= 0 || methodNode.maxStack <= 0) {
             mv.visitMaxs(-1, -1)
         }
 
         super.visitEnd()
+    }
 
+    fun transform() {
         try {
             if (shouldBeTransformed(methodNode)) {
                 performTransformations(methodNode)
             }
+        } catch (t: Throwable) {
+            throw CompilationException("Couldn't transform method node:\n" + methodNode.nodeText, t, null)
+        }
+    }
 
+    fun emit() {
+        try {
             methodNode.accept(EndIgnoringMethodVisitorDecorator(Opcodes.API_VERSION, delegate))
 
 
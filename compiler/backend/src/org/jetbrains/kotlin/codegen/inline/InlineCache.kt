@@ -18,13 +18,55 @@ package org.jetbrains.kotlin.codegen.inline
 
 import com.intellij.util.containers.SLRUMap
 import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.org.objectweb.asm.Type
 import org.jetbrains.org.objectweb.asm.commons.Method
+import java.io.File
 
 data class MethodId(val ownerInternalName: String, val method: Method)
 
-class InlineCache {
+class InlineCache(persistentStorageDirectory: File? = null) {
     val classBytes: SLRUMap<ClassId, ByteArray> = SLRUMap(30, 20)
     val methodNodeById: SLRUMap<MethodId, SMAPAndMethodNode> = SLRUMap(60, 50)
+
+    private val classHashes: SLRUMap<ClassId, String> = SLRUMap(30, 20)
+    private val persistentStorage = persistentStorageDirectory?.let(::PersistentInlineCacheStorage)
+
+    /**
+     * Returns the body of [method] from the compiled class [classId], looking it up in [SharedInlineCache] and in the persistent storage
+     * first. [postProcess] is applied to the body once after it's read from a class file, it must only depend on the class file.
+     *
+     * The result is shared with other compilations and must not be modified.
+     */
+    fun getOrCreateMethodNode(
+        classId: ClassId,
+        classType: Type,
+        bytes: ByteArray,
+        method: Method,
+        postProcess: (SMAPAndMethodNode) -> Unit
+    ): SMAPAndMethodNode? {
+        val classHash = classHashes.getOrPut(classId) { SharedInlineCache.contentHash(bytes) }
+        val key = SharedInlineCache.Key(classHash, classType.internalName, method.name, method.descriptor)
+
+        SharedInlineCache.get(key)?.let {
+            inlineCacheHitCounter.increment()
+            return it
+        }
+
+        val stored = persistentStorage?.load(key)?.let { getMethodNode(it, method.name, method.descriptor, classType) }
+        val result = if (stored != null) {
+            inlineCacheDiskHitCounter.increment()
+            stored
+        } else {
+            inlineCacheMissCounter.time { getMethodNode(bytes, method.name, method.descriptor, classType) } ?: return null
+        }
+        postProcess(result)
+
+        SharedInlineCache.put(key, result)
+        if (stored == null) {
+            persistentStorage?.store(key, bytes)
+        }
+        return result
+    }
 }
 
 inline fun <K, V : Any> SLRUMap<K, V>.getOrPut(key: K, defaultValue: () -> V): V {
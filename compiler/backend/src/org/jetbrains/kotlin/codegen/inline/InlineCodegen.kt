@@ -576,7 +576,8 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
                 result ?: throw IllegalStateException("Couldn't obtain compiled function body for $functionDescriptor")
             }
 
-            return resultInCache.copyWithNewNode(cloneMethodNode(resultInCache.node))
+            // Nodes from the shared inline cache may be cloned by other compilations at the same time, and cloning resets their labels
+            return resultInCache.copyWithNewNode(synchronized(resultInCache.node) { cloneMethodNode(resultInCache.node) })
         }
 
         private fun createDefaultFakeSMAP() = SMAPParser.parseOrCreateDefault(null, null, "fake", -1, -1)
@@ -629,16 +630,15 @@ abstract class InlineCodegen<out T : BaseExpressionCodegen>(
                     ?: throw IllegalStateException("Couldn't find declaration file for $containerId")
             }
 
-            val methodNode =
-                getMethodNode(bytes, asmMethod.name, asmMethod.descriptor, AsmUtil.asmTypeByClassId(containerId)) ?: return null
-
-            // KLUDGE: Inline suspend function built with compiler version less than 1.1.4/1.2-M1 did not contain proper
-            // before/after suspension point marks, so we detect those functions here and insert the corresponding marks
-            if (isLegacySuspendInlineFunction(callableDescriptor)) {
-                insertLegacySuspendInlineMarks(methodNode.node)
+            return state.inlineCache.getOrCreateMethodNode(
+                containerId, AsmUtil.asmTypeByClassId(containerId), bytes, asmMethod
+            ) { methodNode ->
+                // KLUDGE: Inline suspend function built with compiler version less than 1.1.4/1.2-M1 did not contain proper
+                // before/after suspension point marks, so we detect those functions here and insert the corresponding marks
+                if (isLegacySuspendInlineFunction(callableDescriptor)) {
+                    insertLegacySuspendInlineMarks(methodNode.node)
+                }
             }
-
-            return methodNode
         }
 
         private fun isBuiltInArrayIntrinsic(callableDescriptor: CallableMemberDescriptor): Boolean {
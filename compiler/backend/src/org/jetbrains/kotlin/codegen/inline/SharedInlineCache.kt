@@ -0,0 +1,201 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.inline
+
+import org.jetbrains.kotlin.util.PerformanceCounter
+import org.jetbrains.org.objectweb.asm.*
+import java.io.File
+import java.io.IOException
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.nio.file.attribute.FileTime
+import java.security.MessageDigest
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+/**
+ * Bodies of inline functions read from compiled classes, shared by all compilations in this process, e.g. in the daemon.
+ *
+ * Entries are keyed by the content hash of the class file they were read from, so a changed library never yields a stale body.
+ * Cached nodes are templates which are never given out: callers copy them, see [InlineCache.getOrCreateMethodNode].
+ * The cache is bounded by the total number of instructions in the cached nodes, the least recently used entries are dropped first.
+ */
+object SharedInlineCache {
+    private const val MAX_INSTRUCTIONS = 300_000
+
+    data class Key(val classHash: String, val classInternalName: String, val methodName: String, val methodDescriptor: String)
+
+    private val nodes = LinkedHashMap<Key, SMAPAndMethodNode>(256, 0.75f, true)
+    private var instructions = 0
+
+    @Synchronized
+    fun get(key: Key): SMAPAndMethodNode? = nodes[key]
+
+    @Synchronized
+    fun put(key: Key, node: SMAPAndMethodNode) {
+        nodes.put(key, node)?.let { instructions -= it.node.instructions.size() }
+        instructions += node.node.instructions.size()
+
+        val iterator = nodes.values.iterator()
+        while (instructions > MAX_INSTRUCTIONS && iterator.hasNext()) {
+            instructions -= iterator.next().node.instructions.size()
+            iterator.remove()
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        nodes.clear()
+        instructions = 0
+    }
+
+    fun contentHash(bytes: ByteArray): String =
+        MessageDigest.getInstance("MD5").digest(bytes).joinToString("") { String.format("%02x", it) }
+}
+
+/**
+ * Stores bodies of inline functions as class files which contain only the inline function and the source information of the
+ * original class, so that reading them gives the same [SMAPAndMethodNode] as reading the original class, but is much cheaper.
+ *
+ * The storage is best effort: an entry which can't be written or read is just parsed from the original class again.
+ * Once the entries take more than [maxSize] bytes, the least recently used ones are deleted. Other compilations may use the same
+ * directory, so the size is only an estimate between evictions, and an entry may be deleted while another compilation uses it.
+ *
+ * Scanning the directory for its size and evicting entries run on [maintenanceExecutor], off the code generator's thread.
+ * The last use of an entry is its modification time, taken from [clock].
+ */
+class PersistentInlineCacheStorage(
+    private val directory: File,
+    private val maxSize: Long = DEFAULT_MAX_SIZE,
+    private val maintenanceExecutor: Executor = MAINTENANCE_EXECUTOR,
+    private val clock: () -> Long = System::currentTimeMillis
+) {
+    // Total size of the entries in bytes, or -1 until the directory is scanned after the first store
+    private var size = -1L
+    // Size of the entries stored since maintenance was scheduled, which it may not have seen
+    private var storedSize = 0L
+    private var maintenanceScheduled = false
+
+    fun load(key: SharedInlineCache.Key): ByteArray? =
+        try {
+            val file = fileFor(key)
+            if (file.isFile) {
+                file.readBytes().also { touch(file) }
+            } else null
+        } catch (e: IOException) {
+            null
+        }
+
+    fun store(key: SharedInlineCache.Key, classBytes: ByteArray) {
+        val file = fileFor(key)
+        if (file.exists()) return
+
+        var temporary: File? = null
+        try {
+            file.parentFile.mkdirs()
+            // Other compilations may use the same directory, so the entry is written to a temporary file first
+            temporary = File.createTempFile(file.name, ".tmp", file.parentFile)
+            val methodBytes = extractMethod(classBytes, key.methodName, key.methodDescriptor)
+            temporary.writeBytes(methodBytes)
+            touch(temporary)
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE)
+            onStored(methodBytes.size.toLong())
+        } catch (e: IOException) {
+            temporary?.delete()
+        }
+    }
+
+    private fun touch(file: File) {
+        Files.setLastModifiedTime(file.toPath(), FileTime.fromMillis(clock()))
+    }
+
+    @Synchronized
+    private fun onStored(entrySize: Long) {
+        storedSize += entrySize
+        if (maintenanceScheduled || size >= 0 && size + storedSize <= maxSize) return
+
+        maintenanceScheduled = true
+        maintenanceExecutor.execute(::maintain)
+    }
+
+    private fun maintain() {
+        val knownSize = synchronized(this) {
+            val known = if (size >= 0) size + storedSize else null
+            storedSize = 0
+            known
+        }
+        // Scan and evict without holding the lock, so that stores don't wait for the directory
+        val newSize = try {
+            val currentSize = knownSize ?: entries().map { it.length() }.sum()
+            if (currentSize > maxSize) evict() else currentSize
+        } catch (e: IOException) {
+            knownSize ?: 0L
+        }
+        synchronized(this) {
+            size = newSize
+            maintenanceScheduled = false
+        }
+    }
+
+    private fun evict(): Long {
+        // Evict to a quarter below the bound, so that the directory isn't scanned on every store once it's full
+        val targetSize = maxSize / 4 * 3
+        val entries = entries().map { it to Files.getLastModifiedTime(it.toPath()).toMillis() }.sortedBy { it.second }
+
+        var remaining = entries.map { it.first.length() }.sum()
+        for ((entry, _) in entries) {
+            if (remaining <= targetSize) break
+
+            val length = entry.length()
+            if (entry.delete()) {
+                remaining -= length
+                // Only succeeds once the directory of the class is empty
+                entry.parentFile.delete()
+            }
+        }
+        return remaining
+    }
+
+    private fun entries(): List<File> =
+        directory.listFiles().orEmpty().flatMap { classDirectory ->
+            classDirectory.listFiles { file -> file.name.endsWith(".class") }.orEmpty().asList()
+        }
+
+    private fun fileFor(key: SharedInlineCache.Key): File {
+        val methodHash = SharedInlineCache.contentHash("${key.classInternalName}.${key.methodName}${key.methodDescriptor}".toByteArray())
+        return File(File(directory, key.classHash), "$methodHash.class")
+    }
+
+    private fun extractMethod(classBytes: ByteArray, methodName: String, methodDescriptor: String): ByteArray {
+        val writer = ClassWriter(0)
+        ClassReader(classBytes).accept(object : ClassVisitor(Opcodes.API_VERSION, writer) {
+            override fun visitAnnotation(descriptor: String, visible: Boolean): AnnotationVisitor? = null
+
+            override fun visitField(access: Int, name: String, descriptor: String, signature: String?, value: Any?): FieldVisitor? =
+                null
+
+            override fun visitMethod(
+                access: Int, name: String, descriptor: String, signature: String?, exceptions: Array<out String>?
+            ): MethodVisitor? =
+                if (name == methodName && descriptor == methodDescriptor)
+                    super.visitMethod(access, name, descriptor, signature, exceptions)
+                else null
+        }, ClassReader.SKIP_FRAMES)
+        return writer.toByteArray()
+    }
+
+    companion object {
+        const val DEFAULT_MAX_SIZE = 64L * 1024 * 1024
+
+        private val MAINTENANCE_EXECUTOR: Executor = Executors.newSingleThreadExecutor { r ->
+            Thread(r, "Kotlin inline cache maintenance").apply { isDaemon = true }
+        }
+    }
+}
+
+internal val inlineCacheHitCounter = PerformanceCounter.create("Inline function body from the shared inline cache")
+internal val inlineCacheDiskHitCounter = PerformanceCounter.create("Inline function body from the persistent inline cache")
+internal val inlineCacheMissCounter = PerformanceCounter.create("Inline function body read from a compiled class")
@@ -16,6 +16,7 @@
 
 package org.jetbrains.kotlin.codegen.optimization;
 
+import kotlin.Unit;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.codegen.ClassBuilder;
@@ -27,10 +28,21 @@ import org.jetbrains.org.objectweb.asm.MethodVisitor;
 public class OptimizationClassBuilder extends DelegatingClassBuilder {
     private final ClassBuilder delegate;
     private final GenerationState generationState;
+    @Nullable
+    private final ParallelMethodTransformations parallelTransformations;
 
     public OptimizationClassBuilder(@NotNull ClassBuilder delegate, @NotNull GenerationState generationState) {
+        this(delegate, generationState, null);
+    }
+
+    public OptimizationClassBuilder(
+            @NotNull ClassBuilder delegate,
+            @NotNull GenerationState generationState,
+            @Nullable ParallelMethodTransformations parallelTransformations
+    ) {
         this.delegate = delegate;
         this.generationState = generationState;
+        this.parallelTransformations = parallelTransformations;
     }
 
     @NotNull
@@ -51,7 +63,29 @@ public class OptimizationClassBuilder extends DelegatingClassBuilder {
     ) {
         return new OptimizationMethodVisitor(
                 super.newMethod(origin, access, name, desc, signature, exceptions),
-                generationState, access, name, desc, signature, exceptions
+                generationState, access, name, desc, signature, exceptions, this, parallelTransformations
         );
     }
+
+    @Override
+    public void done() {
+        if (parallelTransformations != null) {
+            parallelTransformations.classDone(this, () -> {
+                super.done();
+                return Unit.INSTANCE;
+            });
+        }
+        else {
+            super.done();
+        }
+    }
+
+    /**
+     * Writes methods whose optimization has been postponed, see {@link ParallelMethodTransformations}.
+     */
+    public void flushPendingMethods() {
+        if (parallelTransformations != null) {
+            parallelTransformations.flush(this);
+        }
+    }
 }
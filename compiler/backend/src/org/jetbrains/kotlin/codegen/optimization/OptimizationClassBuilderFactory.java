@@ -17,6 +17,8 @@
 package org.jetbrains.kotlin.codegen.optimization;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.codegen.ClassBuilder;
 import org.jetbrains.kotlin.codegen.ClassBuilderFactory;
 import org.jetbrains.kotlin.codegen.DelegatingClassBuilderFactory;
 import org.jetbrains.kotlin.codegen.state.GenerationState;
@@ -24,15 +26,50 @@ import org.jetbrains.kotlin.resolve.jvm.diagnostics.JvmDeclarationOrigin;
 
 public class OptimizationClassBuilderFactory extends DelegatingClassBuilderFactory {
     private final GenerationState generationState;
+    @Nullable
+    private final ParallelMethodTransformations parallelTransformations;
 
     public OptimizationClassBuilderFactory(ClassBuilderFactory delegate, @NotNull GenerationState generationState) {
         super(delegate);
         this.generationState = generationState;
+
+        int threads = generationState.getBackendThreads();
+        this.parallelTransformations = threads > 1 ? new ParallelMethodTransformations(threads) : null;
     }
 
     @NotNull
     @Override
     public OptimizationClassBuilder newClassBuilder(@NotNull JvmDeclarationOrigin origin) {
-        return new OptimizationClassBuilder(getDelegate().newClassBuilder(origin), generationState);
+        return new OptimizationClassBuilder(getDelegate().newClassBuilder(origin), generationState, parallelTransformations);
+    }
+
+    /**
+     * Writes all methods whose optimization has been postponed and stops the optimizing threads. Must be called when code generation
+     * is finished.
+     */
+    public void flushPendingMethods() {
+        if (parallelTransformations != null) {
+            parallelTransformations.finish();
+        }
+    }
+
+    @Override
+    public byte[] asBytes(ClassBuilder builder) {
+        ((OptimizationClassBuilder) builder).flushPendingMethods();
+        return super.asBytes(builder);
+    }
+
+    @Override
+    public String asText(ClassBuilder builder) {
+        ((OptimizationClassBuilder) builder).flushPendingMethods();
+        return super.asText(builder);
+    }
+
+    @Override
+    public void close() {
+        if (parallelTransformations != null) {
+            parallelTransformations.dispose();
+        }
+        super.close();
     }
 }
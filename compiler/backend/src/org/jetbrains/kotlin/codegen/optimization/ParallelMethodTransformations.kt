@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization
+
+import org.jetbrains.kotlin.codegen.ClassBuilder
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Runs optimizations of generated methods on a pool of threads.
+ *
+ * Code generation itself stays single-threaded: methods are collected in batches of [batchSize], then the batch is optimized in
+ * parallel while the code generator waits, and the results are written to the class files on the code generator's thread in the
+ * order the methods were generated. So the output doesn't depend on the number of threads or on scheduling.
+ *
+ * Writing a method to its class happens later than in the sequential mode, so `done()` of a class builder with pending methods
+ * is postponed until the methods are written.
+ *
+ * The threads are started with the first batch and stopped by [finish] at the end of code generation, so they don't outlive
+ * the compilation even if its generation state is never destroyed.
+ */
+class ParallelMethodTransformations(private val threads: Int, private val batchSize: Int = DEFAULT_BATCH_SIZE) {
+    private var executor: ExecutorService? = null
+
+    private val pendingMethods = LinkedHashMap<ClassBuilder, MutableList<OptimizationMethodVisitor>>()
+    private val pendingDone = HashMap<ClassBuilder, () -> Unit>()
+    private var pendingCount = 0
+
+    fun add(classBuilder: ClassBuilder, method: OptimizationMethodVisitor) {
+        pendingMethods.getOrPut(classBuilder) { ArrayList() }.add(method)
+        if (++pendingCount >= batchSize) {
+            flush()
+        }
+    }
+
+    fun classDone(classBuilder: ClassBuilder, done: () -> Unit) {
+        if (classBuilder in pendingMethods) {
+            pendingDone[classBuilder] = done
+        } else {
+            done()
+        }
+    }
+
+    /**
+     * Writes pending methods of [classBuilder] without waiting for the rest of the batch, e.g. when its bytes are needed right away.
+     */
+    fun flush(classBuilder: ClassBuilder) {
+        val methods = pendingMethods.remove(classBuilder) ?: return
+        pendingCount -= methods.size
+        for (method in methods) {
+            method.transform()
+        }
+        emit(classBuilder, methods)
+    }
+
+    fun flush() {
+        if (pendingMethods.isEmpty()) return
+
+        val batch = LinkedHashMap(pendingMethods)
+        pendingMethods.clear()
+        pendingCount = 0
+
+        val executor = executor ?: Executors.newFixedThreadPool(threads, WorkerThreadFactory()).also { executor = it }
+        val futures = batch.values.flatMap { methods ->
+            methods.map { method -> executor.submit { method.transform() } }
+        }
+        for (future in futures) {
+            try {
+                future.get()
+            } catch (e: ExecutionException) {
+                futures.forEach { it.cancel(false) }
+                throw e.cause ?: e
+            }
+        }
+
+        for ((classBuilder, methods) in batch) {
+            emit(classBuilder, methods)
+        }
+    }
+
+    private fun emit(classBuilder: ClassBuilder, methods: List<OptimizationMethodVisitor>) {
+        for (method in methods) {
+            method.emit()
+        }
+        pendingDone.remove(classBuilder)?.invoke()
+    }
+
+    /**
+     * Writes all pending methods and stops the threads.
+     */
+    fun finish() {
+        try {
+            flush()
+        } finally {
+            dispose()
+        }
+    }
+
+    fun dispose() {
+        executor?.shutdownNow()
+        executor = null
+    }
+
+    private class WorkerThreadFactory : ThreadFactory {
+        private val counter = AtomicInteger()
+
+        override fun newThread(r: Runnable): Thread =
+            Thread(r, "Kotlin codegen optimizer ${counter.incrementAndGet()}").apply { isDaemon = true }
+    }
+
+    companion object {
+        const val DEFAULT_BATCH_SIZE = 256
+    }
+}
@@ -118,9 +118,12 @@ fun getUnboxedType(boxedType: Type, state: GenerationState): Type {
 }
 
 fun unboxedTypeOfInlineClass(boxedType: Type, state: GenerationState): Type? {
-    val descriptor =
-        state.jvmBackendClassResolver.resolveToClassDescriptors(boxedType).singleOrNull()?.takeIf { it.isInline } ?: return null
-    return state.mapInlineClass(descriptor)
+    // Method optimizations may run on several threads at once (see GenerationState.backendThreads), and type mappers are not thread-safe
+    synchronized(state) {
+        val descriptor =
+            state.jvmBackendClassResolver.resolveToClassDescriptors(boxedType).singleOrNull()?.takeIf { it.isInline } ?: return null
+        return state.mapInlineClass(descriptor)
+    }
 }
 
 private fun isInlineClassValue(boxedType: Type): Boolean {
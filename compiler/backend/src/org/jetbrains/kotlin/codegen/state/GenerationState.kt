@@ -145,7 +145,7 @@ class GenerationState private constructor(
         }
     }
 
-    val inlineCache: InlineCache = InlineCache()
+    val inlineCache: InlineCache = InlineCache(configuration.get(JVMConfigurationKeys.INLINE_CACHE_DIRECTORY))
 
     val incrementalCacheForThisTarget: IncrementalCache?
     val packagesWithObsoleteParts: Set<FqName>
@@ -266,6 +266,9 @@ class GenerationState private constructor(
 
     val disableOptimization = configuration.get(JVMConfigurationKeys.DISABLE_OPTIMIZATION, false)
 
+    val backendThreads = configuration.get(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, 1)
+    private var optimizationClassBuilderFactory: OptimizationClassBuilderFactory? = null
+
     val metadataVersion =
         configuration.get(CommonConfigurationKeys.METADATA_VERSION)
             ?: if (languageVersionSettings.languageVersion >= LanguageVersion.LATEST_STABLE) JvmMetadataVersion.INSTANCE
@@ -282,7 +285,7 @@ class GenerationState private constructor(
             .wrapWith(
                 {
                     if (classBuilderMode.generateBodies)
-                        OptimizationClassBuilderFactory(it, this)
+                        OptimizationClassBuilderFactory(it, this).also { factory -> optimizationClassBuilderFactory = factory }
                     else
                         it
                 },
@@ -323,6 +326,13 @@ class GenerationState private constructor(
         onIndependentPartCompilationEnd(this)
     }
 
+    /**
+     * Writes methods whose optimization has been postponed to be run in parallel, see [backendThreads], and stops the threads.
+     */
+    fun flushPendingMethods() {
+        optimizationClassBuilderFactory?.flushPendingMethods()
+    }
+
     private fun markUsed() {
         if (used) throw IllegalStateException("${GenerationState::class.java} cannot be used more than once")
 
@@ -296,6 +296,13 @@ abstract class CommonCompilerArguments : CommonToolArguments() {
     )
     var profilePhases: Boolean by FreezableVar(false)
 
+    @Argument(
+        value = "-Xprofile-phases-report",
+        valueDescription = "<path>",
+        description = "Write wall time, CPU time and allocated memory of each backend phase to the given file, in CSV format if the file name ends with .csv and in JSON otherwise"
+    )
+    var profilePhasesReport: String? by NullableStringFreezableVar(null)
+
     @Argument(
         value = "-Xcheck-phase-conditions",
         description = "Check pre- and postconditions on phases"
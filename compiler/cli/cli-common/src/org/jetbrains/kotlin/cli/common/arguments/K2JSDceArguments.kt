@@ -28,12 +28,26 @@ class K2JSDceArguments : CommonToolArguments() {
     )
     var declarationsToKeep: Array<String>? by FreezableVar(null)
 
+    @Argument(
+            value = "-Xcache-dir",
+            valueDescription = "<path>",
+            description = "Directory to keep the analysis of every module in, to analyze only modules affected by changes"
+    )
+    var cacheDirectory: String? by NullableStringFreezableVar(null)
+
     @Argument(
             value = "-Xprint-reachability-info",
             description = "Print declarations marked as reachable"
     )
     var printReachabilityInfo: Boolean by FreezableVar(false)
 
+    @Argument(
+            value = "-Xthreads",
+            valueDescription = "<N>",
+            description = "Parse input files and write the results in N parallel threads. The output doesn't depend on N"
+    )
+    var threads: String? by NullableStringFreezableVar(null)
+
     @Argument(
             value = "-dev-mode",
             description = "Development mode: don't strip out any code, just copy dependencies"
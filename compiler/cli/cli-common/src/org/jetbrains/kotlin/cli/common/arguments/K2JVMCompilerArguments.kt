@@ -167,6 +167,26 @@ class K2JVMCompilerArguments : CommonCompilerArguments() {
     )
     var buildFile: String? by NullableStringFreezableVar(null)
 
+    @Argument(
+        value = "-Xbackend-threads",
+        valueDescription = "<N>",
+        description = "Optimize generated methods in N parallel threads. The output doesn't depend on N when N > 1"
+    )
+    var backendThreads: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xinline-cache-dir",
+        valueDescription = "<path>",
+        description = "Directory to store bodies of inline functions from libraries between compilations"
+    )
+    var inlineCacheDirectory: String? by NullableStringFreezableVar(null)
+
+    @Argument(
+        value = "-Xper-value-storage-locking",
+        description = "Lock each lazy value of the front-end separately instead of using one lock for all of them"
+    )
+    var perValueStorageLocking: Boolean by FreezableVar(false)
+
     @Argument(value = "-Xmultifile-parts-inherit", description = "Compile multifile classes as a hierarchy of parts and facade")
     var inheritMultifileParts: Boolean by FreezableVar(false)
 
@@ -196,6 +196,8 @@ class K2JsIrCompiler : CLICompiler<K2JSCompilerArguments>() {
             } catch (e: JsIrCompilationError) {
                 return COMPILATION_ERROR
             }
+
+            writePhaseProfileReport(phaseConfig, arguments, messageCollector)
         }
 
         if (arguments.irProduceJs) {
@@ -214,26 +216,33 @@ class K2JsIrCompiler : CLICompiler<K2JSCompilerArguments>() {
                 MainModule.SourceFiles(sourcesFiles)
             }
 
+            val writeDceJs = arguments.irDce && !arguments.irDceDriven
             val compiledModule = try {
-                compile(
-                    projectJs,
-                    mainModule,
-                    AnalyzerWithCompilerReport(config.configuration),
-                    config.configuration,
-                    phaseConfig,
-                    allDependencies = resolvedLibraries,
-                    friendDependencies = friendDependencies,
-                    mainArguments = mainCallArguments,
-                    generateFullJs = !arguments.irDce,
-                    generateDceJs = arguments.irDce,
-                    dceDriven = arguments.irDceDriven
-                )
+                // The code is written to the file as it is generated
+                outputFile.bufferedWriter().use { output ->
+                    compile(
+                        projectJs,
+                        mainModule,
+                        AnalyzerWithCompilerReport(config.configuration),
+                        config.configuration,
+                        phaseConfig,
+                        allDependencies = resolvedLibraries,
+                        friendDependencies = friendDependencies,
+                        mainArguments = mainCallArguments,
+                        generateFullJs = !arguments.irDce,
+                        generateDceJs = arguments.irDce,
+                        dceDriven = arguments.irDceDriven,
+                        fullJsOutput = output.takeUnless { writeDceJs },
+                        dceJsOutput = output.takeIf { writeDceJs }
+                    )
+                }
             } catch (e: JsIrCompilationError) {
+                outputFile.delete()
                 return COMPILATION_ERROR
             }
 
-            val jsCode = if (arguments.irDce && !arguments.irDceDriven) compiledModule.dceJsCode!! else compiledModule.jsCode!!
-            outputFile.writeText(jsCode)
+            writePhaseProfileReport(phaseConfig, arguments, messageCollector)
+
             if (arguments.generateDts) {
                 val dtsFile = outputFile.withReplacedExtensionOrNull(outputFile.extension, "d.ts")!!
                 dtsFile.writeText(compiledModule.tsDefinitions ?: error("No ts definitions"))
@@ -76,8 +76,21 @@ class K2JSDce : CLITool<K2JSDceArguments>() {
             messageCollector.report(severity, message)
         }
 
-        val dceResult = DeadCodeElimination.run(files, includedDeclarations, logConsumer)
+        val threads = arguments.threads?.let { value ->
+            value.toIntOrNull()?.takeIf { it >= 1 } ?: run {
+                messageCollector.report(CompilerMessageSeverity.ERROR, "Number of threads should be a positive integer, got: $value")
+                return ExitCode.COMPILATION_ERROR
+            }
+        } ?: 1
+
+        // Reachability info is only known for the modules which are analyzed again
+        val cache = arguments.cacheDirectory
+            ?.takeUnless { arguments.printReachabilityInfo }
+            ?.let { DceRunCache(File(it, "dce-cache.txt")) }
+
+        val dceResult = DeadCodeElimination.run(files, includedDeclarations, logConsumer, threads, cache)
         if (dceResult.status == DeadCodeEliminationStatus.FAILED) return ExitCode.COMPILATION_ERROR
+        if (dceResult.status == DeadCodeEliminationStatus.UP_TO_DATE) return ExitCode.OK
         val nodes = dceResult.reachableNodes.filterTo(mutableSetOf()) { it.reachable }
 
         val reachabilitySeverity = if (arguments.printReachabilityInfo) CompilerMessageSeverity.INFO else CompilerMessageSeverity.LOGGING
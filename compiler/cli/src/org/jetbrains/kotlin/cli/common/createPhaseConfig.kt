@@ -8,10 +8,13 @@ package org.jetbrains.kotlin.cli.common
 import org.jetbrains.kotlin.backend.common.phaser.AnyNamedPhase
 import org.jetbrains.kotlin.backend.common.phaser.CompilerPhase
 import org.jetbrains.kotlin.backend.common.phaser.PhaseConfig
+import org.jetbrains.kotlin.backend.common.phaser.PhaseProfiler
 import org.jetbrains.kotlin.backend.common.phaser.toPhaseMap
 import org.jetbrains.kotlin.cli.common.arguments.CommonCompilerArguments
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector
+import java.io.File
+import java.io.IOException
 
 fun createPhaseConfig(
     compoundPhase: CompilerPhase<*, *, *>,
@@ -40,6 +43,7 @@ fun createPhaseConfig(
     val namesOfElementsExcludedFromDumping = arguments.namesExcludedFromDumping?.toSet() ?: emptySet()
 
     val needProfiling = arguments.profilePhases
+    val profiler = if (needProfiling || arguments.profilePhasesReport != null) PhaseProfiler() else null
     val checkConditions = arguments.checkPhaseConditions
     val checkStickyConditions = arguments.checkStickyPhaseConditions
 
@@ -57,7 +61,8 @@ fun createPhaseConfig(
         namesOfElementsExcludedFromDumping,
         needProfiling,
         checkConditions,
-        checkStickyConditions
+        checkStickyConditions,
+        profiler
     ).also {
         if (arguments.listPhases) {
             it.list()
@@ -65,6 +70,16 @@ fun createPhaseConfig(
     }
 }
 
+fun writePhaseProfileReport(phaseConfig: PhaseConfig, arguments: CommonCompilerArguments, messageCollector: MessageCollector) {
+    val path = arguments.profilePhasesReport ?: return
+    val profiler = phaseConfig.profiler ?: return
+    try {
+        profiler.writeReport(File(path))
+    } catch (e: IOException) {
+        messageCollector.report(CompilerMessageSeverity.ERROR, "Could not write phase profile report to $path: ${e.message}")
+    }
+}
+
 private fun computeEnabled(
     phases: MutableMap<String, AnyNamedPhase>,
     namesOfDisabled: Array<String>?,
@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.cli.common.output
 import com.intellij.openapi.util.io.FileUtil
 import org.jetbrains.kotlin.backend.common.output.OutputFile
 import org.jetbrains.kotlin.backend.common.output.OutputFileCollection
+import org.jetbrains.kotlin.backend.common.output.StreamingOutputFile
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity
 import org.jetbrains.kotlin.cli.common.messages.MessageCollector
 import org.jetbrains.kotlin.cli.common.messages.OutputMessageUtil
@@ -29,7 +30,12 @@ fun OutputFileCollection.writeAll(outputDir: File, report: ((file: OutputFile, s
         val sources = file.sourceFiles
         val output = File(outputDir, file.relativePath)
         report?.invoke(file, sources, output)
-        FileUtil.writeToFile(output, file.asByteArray())
+        if (file is StreamingOutputFile) {
+            FileUtil.createParentDirs(output)
+            output.outputStream().buffered().use(file::writeTo)
+        } else {
+            FileUtil.writeToFile(output, file.asByteArray())
+        }
     }
 }
 
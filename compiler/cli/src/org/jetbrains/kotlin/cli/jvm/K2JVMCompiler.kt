@@ -60,7 +60,8 @@ class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
     ): ExitCode {
         val messageCollector = configuration.getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY)
 
-        configuration.put(CLIConfigurationKeys.PHASE_CONFIG, createPhaseConfig(jvmPhases, arguments, messageCollector))
+        val phaseConfig = createPhaseConfig(jvmPhases, arguments, messageCollector)
+        configuration.put(CLIConfigurationKeys.PHASE_CONFIG, phaseConfig)
 
         if (!configuration.configureJdkHome(arguments)) return COMPILATION_ERROR
 
@@ -162,6 +163,7 @@ class K2JVMCompiler : CLICompiler<K2JVMCompilerArguments>() {
             }
 
             KotlinToJVMBytecodeCompiler.compileModules(environment, buildFile, moduleChunk.modules)
+            writePhaseProfileReport(phaseConfig, arguments, messageCollector)
             return OK
         } catch (e: CompilationException) {
             messageCollector.report(
@@ -20,54 +20,35 @@ import com.intellij.ide.highlighter.JavaClassFileType
 import com.intellij.ide.highlighter.JavaFileType
 import com.intellij.openapi.vfs.VfsUtilCore
 import com.intellij.openapi.vfs.VirtualFile
-import com.intellij.util.containers.IntArrayList
-import gnu.trove.THashMap
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.FqName
-import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
 
 // speeds up finding files/classes in classpath/java source roots
-// NOT THREADSAFE, needs to be adapted/removed if we want compiler to be multithreaded
-// the main idea of this class is for each package to store roots which contains it to avoid excessive file system traversal
+// the main idea of this class is for each package to store roots which contain it to avoid excessive file system traversal
+// packages of all roots are collected on the first request (on several threads if there are many roots), after that the index is
+// immutable, so it can be used from several threads without locking
 class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
     //these fields are computed based on _roots passed to constructor which are filled in later
     private val roots: List<JavaRoot> by lazy { _roots.toList() }
 
-    private val maxIndex: Int
-        get() = roots.size
+    // directories corresponding to a package in the roots which contain it, in the order of the roots
+    private class PackageDirectories(val roots: Array<JavaRoot>, val directories: Array<VirtualFile>)
 
-    // each "Cache" object corresponds to a package
-    private class Cache {
-        private val innerPackageCaches = HashMap<String, Cache>()
-
-        operator fun get(name: String) = innerPackageCaches.getOrPut(name, ::Cache)
-
-        // indices of roots that are known to contain this package
-        // if this list contains [1, 3, 5] then roots with indices 1, 3 and 5 are known to contain this package, 2 and 4 are known not to (no information about roots 6 or higher)
-        // if this list contains maxIndex that means that all roots containing this package are known
-        val rootIndices = IntArrayList(2)
-    }
-
-    // root "Cache" object corresponds to DefaultPackage which exists in every root. Roots with non-default fqname are also listed here but
-    // they will be ignored on requests with invalid fqname prefix.
-    private val rootCache: Cache by lazy {
-        Cache().apply {
-            roots.indices.forEach(rootIndices::add)
-            rootIndices.add(maxIndex)
-            rootIndices.trimToSize()
-        }
-    }
+    private val packages: Map<String, PackageDirectories> by lazy { collectPackages() }
 
     // holds the request and the result last time we searched for class
     // helps improve several scenarios, LazyJavaResolverContext.findClassInJava being the most important
+    // the pair is replaced as a whole, so that a thread never sees a request together with the result of another one
+    @Volatile
     private var lastClassSearch: Pair<FindClassRequest, SearchResult>? = null
 
     override val indexedRoots by lazy { roots.asSequence() }
 
-    private val packageCache: Array<out MutableMap<String, VirtualFile?>> by lazy {
-        Array(roots.size) { THashMap<String, VirtualFile?>() }
-    }
-
     override fun traverseDirectoriesInPackage(
         packageFqName: FqName,
         acceptedRootTypes: Set<JavaRoot.RootType>,
@@ -85,11 +66,12 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         findClassGivenDirectory: (VirtualFile, JavaRoot.RootType) -> T?
     ): T? {
         // make a decision based on information saved from last class search
-        if (lastClassSearch?.first?.classId != classId) {
+        val lastClassSearch = lastClassSearch
+        if (lastClassSearch == null || lastClassSearch.first.classId != classId) {
             return search(FindClassRequest(classId, acceptedRootTypes), findClassGivenDirectory)
         }
 
-        val (cachedRequest, cachedResult) = lastClassSearch!!
+        val (cachedRequest, cachedResult) = lastClassSearch
         return when (cachedResult) {
             is SearchResult.NotFound -> {
                 val limitedRootTypes = acceptedRootTypes - cachedRequest.acceptedRootTypes
@@ -110,34 +92,22 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
     }
 
     private fun <T : Any> search(request: SearchRequest, handler: (VirtualFile, JavaRoot.RootType) -> T?): T? {
-        // a list of package sub names, ["org", "jb", "kotlin"]
-        val packagesPath = request.packageFqName.pathSegments().map { it.identifier }
-        // a list of caches corresponding to packages, [default, "org", "org.jb", "org.jb.kotlin"]
-        val caches = cachesPath(packagesPath)
-
-        var processedRootsUpTo = -1
-        // traverse caches starting from last, which contains most specific information
-
-        // NOTE: indices manipulation instead of using caches.reversed() is here for performance reasons
-        for (cacheIndex in caches.lastIndex downTo 0) {
-            val cacheRootIndices = caches[cacheIndex].rootIndices
-            for (i in 0..cacheRootIndices.size() - 1) {
-                val rootIndex = cacheRootIndices[i]
-                if (rootIndex <= processedRootsUpTo) continue // roots with those indices have been processed by now
-
-                val directoryInRoot = travelPath(rootIndex, request.packageFqName, packagesPath, cacheIndex, caches) ?: continue
-                val root = roots[rootIndex]
-                if (root.type in request.acceptedRootTypes) {
-                    val result = handler(directoryInRoot, root.type)
-                    if (result != null) {
-                        if (request is FindClassRequest) {
-                            lastClassSearch = Pair(request, SearchResult.Found(directoryInRoot, root))
-                        }
-                        return result
+        val packageDirectories = packages[request.packageFqName.asString()]
+        if (packageDirectories != null) {
+            // NOTE: indices manipulation instead of zipping the arrays is here for performance reasons
+            for (i in packageDirectories.roots.indices) {
+                val root = packageDirectories.roots[i]
+                if (root.type !in request.acceptedRootTypes) continue
+
+                val directoryInRoot = packageDirectories.directories[i]
+                val result = handler(directoryInRoot, root.type)
+                if (result != null) {
+                    if (request is FindClassRequest) {
+                        lastClassSearch = Pair(request, SearchResult.Found(directoryInRoot, root))
                     }
+                    return result
                 }
             }
-            processedRootsUpTo = if (cacheRootIndices.isEmpty) processedRootsUpTo else cacheRootIndices.get(cacheRootIndices.size() - 1)
         }
 
         if (request is FindClassRequest) {
@@ -146,84 +116,95 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
         return null
     }
 
-    // try to find a target directory corresponding to package represented by packagesPath in a given root represented by index
-    // possibly filling "Cache" objects with new information
-    private fun travelPath(
-        rootIndex: Int,
-        packageFqName: FqName,
-        packagesPath: List<String>,
-        fillCachesAfter: Int,
-        cachesPath: List<Cache>
-    ): VirtualFile? {
-        if (rootIndex >= maxIndex) {
-            for (i in (fillCachesAfter + 1)..(cachesPath.size - 1)) {
-                // we all know roots that contain this package by now
-                cachesPath[i].rootIndices.add(maxIndex)
-                cachesPath[i].rootIndices.trimToSize()
+    private fun collectPackages(): Map<String, PackageDirectories> {
+        val packagesInRoots =
+            if (roots.size < PARALLEL_COLLECTION_THRESHOLD) roots.map { collectPackages(it) }
+            else collectPackagesInParallel()
+
+        val rootsByPackage = HashMap<String, MutableList<JavaRoot>>()
+        val directoriesByPackage = HashMap<String, MutableList<VirtualFile>>()
+        for ((rootIndex, packagesInRoot) in packagesInRoots.withIndex()) {
+            for ((packageFqName, directory) in packagesInRoot) {
+                rootsByPackage.getOrPut(packageFqName) { ArrayList(2) }.add(roots[rootIndex])
+                directoriesByPackage.getOrPut(packageFqName) { ArrayList(2) }.add(directory)
             }
-            return null
         }
 
-        return packageCache[rootIndex].getOrPut(packageFqName.asString()) {
-            doTravelPath(rootIndex, packagesPath, fillCachesAfter, cachesPath)
+        val result = HashMap<String, PackageDirectories>(rootsByPackage.size * 4 / 3 + 1)
+        for ((packageFqName, packageRoots) in rootsByPackage) {
+            result[packageFqName] =
+                PackageDirectories(packageRoots.toTypedArray(), directoriesByPackage.getValue(packageFqName).toTypedArray())
         }
+        return result
     }
 
-    private fun doTravelPath(rootIndex: Int, packagesPath: List<String>, fillCachesAfter: Int, cachesPath: List<Cache>): VirtualFile? {
-        val pathRoot = roots[rootIndex]
-        val prefixPathSegments = pathRoot.prefixFqName?.pathSegments()
-
-        var currentFile = pathRoot.file
-
-        for (pathIndex in packagesPath.indices) {
-            val subPackageName = packagesPath[pathIndex]
-            if (prefixPathSegments != null && pathIndex < prefixPathSegments.size) {
-                // Traverse prefix first instead of traversing real directories
-                if (prefixPathSegments[pathIndex].identifier != subPackageName) {
-                    return null
+    private fun collectPackagesInParallel(): List<Map<String, VirtualFile>> {
+        val threads = minOf(roots.size, Runtime.getRuntime().availableProcessors())
+        val executor = Executors.newFixedThreadPool(threads, IndexerThreadFactory())
+        try {
+            val futures = roots.map { root -> executor.submit(Callable { collectPackages(root) }) }
+            return futures.map { future ->
+                try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    futures.forEach { it.cancel(false) }
+                    throw e.cause ?: e
                 }
-            } else {
-                currentFile = currentFile.findChildPackage(subPackageName, pathRoot.type) ?: return null
             }
+        } finally {
+            executor.shutdown()
+        }
+    }
 
-            val correspondingCacheIndex = pathIndex + 1
-            if (correspondingCacheIndex > fillCachesAfter) {
-                // subPackageName exists in this root
-                cachesPath[correspondingCacheIndex].rootIndices.add(rootIndex)
-            }
+    // package names mapped to the corresponding directories of the root
+    private fun collectPackages(root: JavaRoot): Map<String, VirtualFile> {
+        val result = HashMap<String, VirtualFile>()
+
+        // default package exists in every root, packages of the prefix all correspond to the root itself
+        var rootPackageFqName = FqName.ROOT
+        result[rootPackageFqName.asString()] = root.file
+        for (segment in root.prefixFqName?.pathSegments().orEmpty()) {
+            rootPackageFqName = rootPackageFqName.child(segment)
+            result[rootPackageFqName.asString()] = root.file
         }
 
-        return currentFile
+        collectSubPackages(root.file, rootPackageFqName.asString(), root.type, result)
+        return result
     }
 
-    private fun VirtualFile.findChildPackage(subPackageName: String, rootType: JavaRoot.RootType): VirtualFile? {
-        val childDirectory = findChild(subPackageName) ?: return null
+    private fun collectSubPackages(
+        directory: VirtualFile,
+        packageFqName: String,
+        rootType: JavaRoot.RootType,
+        result: MutableMap<String, VirtualFile>
+    ) {
+        for (child in directory.children) {
+            // a directory with a dot in its name can't be found by a segment of a package name
+            if (!child.isDirectory || '.' in child.name || directory.isHiddenByClass(child, rootType)) continue
 
+            val childPackageFqName = if (packageFqName.isEmpty()) child.name else "$packageFqName.${child.name}"
+            result[childPackageFqName] = child
+            collectSubPackages(child, childPackageFqName, rootType, result)
+        }
+    }
+
+    // If in addition to a directory "foo" there's a class file "foo.class" AND there are no classes anywhere in the directory "foo",
+    // then we ignore the directory and let the resolution choose the class "foo" instead.
+    private fun VirtualFile.isHiddenByClass(childDirectory: VirtualFile, rootType: JavaRoot.RootType): Boolean {
         val fileExtension = when (rootType) {
             JavaRoot.RootType.BINARY -> JavaClassFileType.INSTANCE.defaultExtension
             JavaRoot.RootType.SOURCE -> JavaFileType.INSTANCE.defaultExtension
         }
 
-        // If in addition to a directory "foo" there's a class file "foo.class" AND there are no classes anywhere in the directory "foo",
-        // then we ignore the directory and let the resolution choose the class "foo" instead.
-        if (findChild("$subPackageName.$fileExtension")?.isDirectory == false) {
-            if (VfsUtilCore.processFilesRecursively(childDirectory) { file -> file.extension != fileExtension }) {
-                return null
-            }
-        }
-
-        return childDirectory
+        return findChild("${childDirectory.name}.$fileExtension")?.isDirectory == false &&
+                VfsUtilCore.processFilesRecursively(childDirectory) { file -> file.extension != fileExtension }
     }
 
-    private fun cachesPath(path: List<String>): List<Cache> {
-        val caches = ArrayList<Cache>(path.size + 1)
-        caches.add(rootCache)
-        var currentCache = rootCache
-        for (subPackageName in path) {
-            currentCache = currentCache[subPackageName]
-            caches.add(currentCache)
-        }
-        return caches
+    private class IndexerThreadFactory : ThreadFactory {
+        private val counter = AtomicInteger()
+
+        override fun newThread(r: Runnable): Thread =
+            Thread(r, "Kotlin classpath indexer ${counter.incrementAndGet()}").apply { isDaemon = true }
     }
 
     private data class FindClassRequest(val classId: ClassId, override val acceptedRootTypes: Set<JavaRoot.RootType>) : SearchRequest {
@@ -246,4 +227,9 @@ class JvmDependenciesIndexImpl(_roots: List<JavaRoot>) : JvmDependenciesIndex {
 
         object NotFound : SearchResult()
     }
+
+    companion object {
+        // collecting packages of a few roots isn't worth starting threads
+        private const val PARALLEL_COLLECTION_THRESHOLD = 16
+    }
 }
@@ -152,6 +152,19 @@ fun CompilerConfiguration.configureAdvancedJvmOptions(arguments: K2JVMCompilerAr
         arguments.noExceptionOnExplicitEqualsForBoxedNull
     )
     put(JVMConfigurationKeys.DISABLE_OPTIMIZATION, arguments.noOptimize)
+
+    arguments.backendThreads?.let { value ->
+        val threads = value.toIntOrNull()
+        if (threads == null || threads < 1) {
+            getNotNull(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY).report(
+                ERROR, "Number of backend threads should be a positive integer, got: $value"
+            )
+        } else {
+            put(JVMConfigurationKeys.PARALLEL_BACKEND_THREADS, threads)
+        }
+    }
+    arguments.inlineCacheDirectory?.let { put(JVMConfigurationKeys.INLINE_CACHE_DIRECTORY, File(it)) }
+    put(CommonConfigurationKeys.PER_VALUE_STORAGE_LOCKING, arguments.perValueStorageLocking)
     put(JVMConfigurationKeys.EMIT_JVM_TYPE_ANNOTATIONS, arguments.emitJvmTypeAnnotations)
     put(JVMConfigurationKeys.NO_OPTIMIZED_CALLABLE_REFERENCES, arguments.noOptimizedCallableReferences)
 
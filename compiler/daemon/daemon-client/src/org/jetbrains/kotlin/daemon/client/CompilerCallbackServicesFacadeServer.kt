@@ -130,6 +130,14 @@ open class CompilerCallbackServicesFacadeServer(
         incrementalResultsConsumer!!.processPackagePart(File(sourceFilePath), packagePartMetadata, binaryAst, inlineData)
     }
 
+    override fun incrementalResultsConsumer_processPackageParts(packageParts: Collection<CompiledPackagePart>) {
+        val incrementalResultsConsumer = incrementalResultsConsumer!!
+
+        for (it in packageParts) {
+            incrementalResultsConsumer.processPackagePart(File(it.filePath), it.metadata, it.binaryAst, it.inlineData)
+        }
+    }
+
     override fun incrementalResultsConsumer_processInlineFunctions(functions: Collection<JsInlineFunctionHash>) {
         incrementalResultsConsumer!!.processInlineFunctions(functions)
     }
@@ -138,6 +146,14 @@ open class CompilerCallbackServicesFacadeServer(
         incrementalResultsConsumer!!.processPackageMetadata(packageName, metadata)
     }
 
+    override fun incrementalResultsConsumer_processPackagesMetadata(packagesMetadata: Collection<PackageMetadata>) {
+        val incrementalResultsConsumer = incrementalResultsConsumer!!
+
+        for (it in packagesMetadata) {
+            incrementalResultsConsumer.processPackageMetadata(it.packageName, it.metadata)
+        }
+    }
+
     override fun incrementalDataProvider_getHeaderMetadata(): ByteArray = incrementalDataProvider!!.headerMetadata
 
     override fun incrementalDataProvider_getMetadataVersion(): IntArray = incrementalDataProvider!!.metadataVersion
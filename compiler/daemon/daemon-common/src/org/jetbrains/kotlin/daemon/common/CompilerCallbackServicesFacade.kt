@@ -109,12 +109,18 @@ interface CompilerCallbackServicesFacade : Remote {
     @Throws(RemoteException::class)
     fun incrementalResultsConsumer_processPackagePart(sourceFilePath: String, packagePartMetadata: ByteArray, binaryAst: ByteArray, inlineData: ByteArray)
 
+    @Throws(RemoteException::class)
+    fun incrementalResultsConsumer_processPackageParts(packageParts: Collection<CompiledPackagePart>)
+
     @Throws(RemoteException::class)
     fun incrementalResultsConsumer_processInlineFunctions(functions: Collection<JsInlineFunctionHash>)
 
     @Throws(RemoteException::class)
     fun incrementalResultsConsumer_processPackageMetadata(packageName: String, metadata: ByteArray)
 
+    @Throws(RemoteException::class)
+    fun incrementalResultsConsumer_processPackagesMetadata(packagesMetadata: Collection<PackageMetadata>)
+
     // ---------------------------------------------------
     // IncrementalDataProvider (js)
     @Throws(RemoteException::class)
@@ -48,6 +48,9 @@ val COMPILE_DAEMON_DEFAULT_SHUTDOWN_DELAY_MS: Long = 1000L // 1 sec
 val COMPILE_DAEMON_MEMORY_THRESHOLD_INFINITE: Long = 0L
 val COMPILE_DAEMON_FORCE_SHUTDOWN_DEFAULT_TIMEOUT_MS: Long = 10000L // 10 secs
 val COMPILE_DAEMON_TIMEOUT_INFINITE_MS: Long = 0L
+val COMPILE_DAEMON_DEFAULT_CALLBACK_BATCH_SIZE: Int = 10000
+val COMPILE_DAEMON_DEFAULT_CALLBACK_BATCH_LATENCY_MS: Long = 1000L // 1 sec
+val COMPILE_DAEMON_PARALLEL_COMPILATIONS_BY_PROCESSORS: Int = 0
 val COMPILE_DAEMON_IS_READY_MESSAGE = "Kotlin compile daemon is ready"
 
 val COMPILE_DAEMON_CUSTOM_RUN_FILES_PATH_FOR_TESTS: String = "kotlin.daemon.custom.run.files.path.for.tests"
@@ -209,7 +212,12 @@ data class DaemonOptions(
         var shutdownDelayMilliseconds: Long = COMPILE_DAEMON_DEFAULT_SHUTDOWN_DELAY_MS,
         var forceShutdownTimeoutMilliseconds: Long = COMPILE_DAEMON_FORCE_SHUTDOWN_DEFAULT_TIMEOUT_MS,
         var verbose: Boolean = false,
-        var reportPerf: Boolean = false
+        var reportPerf: Boolean = false,
+        // lookups buffered by the daemon before they are sent back to the client in one remote call, and how long the oldest of them may wait
+        var callbackBatchSize: Int = COMPILE_DAEMON_DEFAULT_CALLBACK_BATCH_SIZE,
+        var callbackBatchLatencyMilliseconds: Long = COMPILE_DAEMON_DEFAULT_CALLBACK_BATCH_LATENCY_MS,
+        // the number of available processors by default
+        var maxParallelCompilations: Int = COMPILE_DAEMON_PARALLEL_COMPILATIONS_BY_PROCESSORS
 ) : OptionsGroup {
 
     override val mappers: List<PropMapper<*, *, *>>
@@ -221,7 +229,10 @@ data class DaemonOptions(
                        PropMapper(this, DaemonOptions::shutdownDelayMilliseconds, fromString = String::toLong, skipIf = { it == COMPILE_DAEMON_DEFAULT_SHUTDOWN_DELAY_MS }, mergeDelimiter = "="),
                        PropMapper(this, DaemonOptions::forceShutdownTimeoutMilliseconds, fromString = String::toLong, skipIf = { it == COMPILE_DAEMON_FORCE_SHUTDOWN_DEFAULT_TIMEOUT_MS }, mergeDelimiter = "="),
                        BoolPropMapper(this, DaemonOptions::verbose),
-                       BoolPropMapper(this, DaemonOptions::reportPerf))
+                       BoolPropMapper(this, DaemonOptions::reportPerf),
+                       PropMapper(this, DaemonOptions::callbackBatchSize, fromString = String::toInt, skipIf = { it == COMPILE_DAEMON_DEFAULT_CALLBACK_BATCH_SIZE }, mergeDelimiter = "="),
+                       PropMapper(this, DaemonOptions::callbackBatchLatencyMilliseconds, fromString = String::toLong, skipIf = { it == COMPILE_DAEMON_DEFAULT_CALLBACK_BATCH_LATENCY_MS }, mergeDelimiter = "="),
+                       PropMapper(this, DaemonOptions::maxParallelCompilations, fromString = String::toInt, skipIf = { it == COMPILE_DAEMON_PARALLEL_COMPILATIONS_BY_PROCESSORS }, mergeDelimiter = "="))
 }
 
 // TODO: consider implementing generic approach to it or may be replace getters with ones returning default if necessary
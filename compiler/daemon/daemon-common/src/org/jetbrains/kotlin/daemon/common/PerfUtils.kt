@@ -16,8 +16,12 @@
 
 package org.jetbrains.kotlin.daemon.common
 
+import java.io.ObjectOutputStream
+import java.io.OutputStream
+import java.io.Serializable
 import java.lang.management.ManagementFactory
 import java.lang.management.ThreadMXBean
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.atomic.AtomicLong
 
 interface PerfCounters {
@@ -26,8 +30,10 @@ interface PerfCounters {
     val threadTime: Long
     val threadUserTime: Long
     val memory: Long
+    val bytes: Long get() = 0
 
     fun addMeasurement(time: Long = 0, thread: Long = 0, threadUser: Long = 0, memory: Long = 0)
+    fun addBytes(bytes: Long) {}
 }
 
 interface Profiler {
@@ -36,6 +42,28 @@ interface Profiler {
 
     fun beginMeasure(obj: Any?) : List<Long> = listOf()
     fun endMeasure(obj: Any?, startState: List<Long>) {}
+
+    // bytes sent in remote calls, if known
+    fun addBytes(obj: Any?, bytes: Long) {}
+}
+
+/**
+ * Size of [value] serialized as in a remote call, without the protocol overhead
+ */
+fun serializedSize(value: Serializable): Long {
+    val counter = object : OutputStream() {
+        var count = 0L
+
+        override fun write(b: Int) {
+            count++
+        }
+
+        override fun write(b: ByteArray, off: Int, len: Int) {
+            count += len
+        }
+    }
+    ObjectOutputStream(counter).use { it.writeObject(value) }
+    return counter.count
 }
 
 inline fun<R> Profiler.withMeasure(obj: Any?, body: () -> R): R {
@@ -52,12 +80,14 @@ open class SimplePerfCounters : PerfCounters {
     private val _threadTime: AtomicLong = AtomicLong(0L)
     private val _threadUserTime: AtomicLong = AtomicLong(0L)
     private val _memory: AtomicLong = AtomicLong(0L)
+    private val _bytes: AtomicLong = AtomicLong(0L)
 
     override val count: Long get() = _count.get()
     override val time: Long get() = _time.get()
     override val threadTime: Long get() = _threadTime.get()
     override val threadUserTime: Long get() = _threadUserTime.get()
     override val memory: Long get() = _memory.get()
+    override val bytes: Long get() = _bytes.get()
 
     override fun addMeasurement(time: Long, thread: Long, threadUser: Long, memory: Long) {
         _count.incrementAndGet()
@@ -66,6 +96,10 @@ open class SimplePerfCounters : PerfCounters {
         _threadUserTime.addAndGet(threadUser)
         _memory.addAndGet(memory)
     }
+
+    override fun addBytes(bytes: Long) {
+        _bytes.addAndGet(bytes)
+    }
 }
 
 
@@ -74,6 +108,11 @@ class SimplePerfCountersWithTotal(val totalRef: PerfCounters) : SimplePerfCounte
         super.addMeasurement(time, thread, threadUser, memory)
         totalRef.addMeasurement(time, thread, threadUser, memory)
     }
+
+    override fun addBytes(bytes: Long) {
+        super.addBytes(bytes)
+        totalRef.addBytes(bytes)
+    }
 }
 
 
@@ -161,6 +200,10 @@ abstract class TotalProfiler : Profiler {
 
     override fun getCounters(): Map<Any?, PerfCounters> = mapOf()
     override fun getTotalCounters(): PerfCounters = total
+
+    override fun addBytes(obj: Any?, bytes: Long) {
+        total.addBytes(bytes)
+    }
 }
 
 
@@ -192,14 +235,19 @@ class WallAndThreadAndMemoryTotalProfiler(val withGC: Boolean) : TotalProfiler()
 
 class WallAndThreadByClassProfiler() : TotalProfiler() {
 
-    val counters = hashMapOf<Any?, SimplePerfCountersWithTotal>()
+    // remote calls may be made from several compiler threads
+    val counters = ConcurrentHashMap<Any?, SimplePerfCountersWithTotal>()
 
     override fun getCounters(): Map<Any?, PerfCounters> = counters
 
     @Suppress("OVERRIDE_BY_INLINE")
     override inline fun beginMeasure(obj: Any?) =
-        beginMeasureWallAndThreadTimes(counters.getOrPut(obj?.javaClass?.name, { SimplePerfCountersWithTotal(total) }), threadMXBean)
+        beginMeasureWallAndThreadTimes(counters.getOrPut(obj?.javaClass?.name ?: "", { SimplePerfCountersWithTotal(total) }), threadMXBean)
     @Suppress("OVERRIDE_BY_INLINE")
     override inline fun endMeasure(obj: Any?, startState: List<Long>) =
-        endMeasureWallAndThreadTimes(counters.getOrPut(obj?.javaClass?.name, { SimplePerfCountersWithTotal(total) }), threadMXBean, startState)
+        endMeasureWallAndThreadTimes(counters.getOrPut(obj?.javaClass?.name ?: "", { SimplePerfCountersWithTotal(total) }), threadMXBean, startState)
+
+    override fun addBytes(obj: Any?, bytes: Long) {
+        counters.getOrPut(obj?.javaClass?.name ?: "", { SimplePerfCountersWithTotal(total) }).addBytes(bytes)
+    }
 }
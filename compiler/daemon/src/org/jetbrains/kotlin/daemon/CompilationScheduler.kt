@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import org.jetbrains.kotlin.daemon.common.PerfCounters
+import org.jetbrains.kotlin.daemon.common.SimplePerfCounters
+import java.util.*
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+
+/**
+ * Limits compilations running in the daemon at the same time by their number and by their estimated memory.
+ *
+ * Compilations start in the order they are requested: while the first waiting compilation doesn't fit, the ones after it wait too,
+ * so that large modules are not starved by a stream of small ones. A compilation which needs more memory than the whole budget
+ * runs when nothing else is running.
+ */
+class CompilationScheduler(private val maxParallelCompilations: Int, private val memoryBudgetMb: Long) {
+    private val lock = ReentrantLock()
+    private val changed = lock.newCondition()
+    private val waiting = ArrayDeque<Any>()
+    private var running = 0
+    private var usedMemoryMb = 0L
+
+    /** Time spent by compilations waiting to start. */
+    val queueWait: PerfCounters = SimplePerfCounters()
+
+    /** Time spent by compilations running. */
+    val runTime: PerfCounters = SimplePerfCounters()
+
+    val runningCount: Int get() = lock.withLock { running }
+    val waitingCount: Int get() = lock.withLock { waiting.size }
+
+    /**
+     * Runs [body] once the compilation fits into the limits, passing it the time it has waited in nanoseconds.
+     */
+    fun <R> schedule(estimatedMemoryMb: Long, body: (queueWaitNanos: Long) -> R): R {
+        val startWaiting = System.nanoTime()
+        val memoryMb = acquire(estimatedMemoryMb)
+        val startRunning = System.nanoTime()
+        queueWait.addMeasurement(time = startRunning - startWaiting)
+        try {
+            return body(startRunning - startWaiting)
+        } finally {
+            runTime.addMeasurement(time = System.nanoTime() - startRunning)
+            release(memoryMb)
+        }
+    }
+
+    private fun acquire(estimatedMemoryMb: Long): Long = lock.withLock {
+        val memoryMb = minOf(estimatedMemoryMb, memoryBudgetMb)
+        val ticket = Any()
+        waiting.addLast(ticket)
+        while (waiting.peekFirst() !== ticket || running >= maxParallelCompilations || usedMemoryMb + memoryMb > memoryBudgetMb) {
+            // compilations are not cancelled by interrupting their threads, so there's no need to give up waiting
+            changed.awaitUninterruptibly()
+        }
+        waiting.removeFirst()
+        running++
+        usedMemoryMb += memoryMb
+        // the next compilation in the queue may fit as well
+        changed.signalAll()
+        memoryMb
+    }
+
+    private fun release(memoryMb: Long) = lock.withLock {
+        running--
+        usedMemoryMb -= memoryMb
+        changed.signalAll()
+    }
+
+    companion object {
+        private const val BASE_COMPILATION_MEMORY_MB = 64L
+        private const val MEMORY_PER_SOURCE_FILE_MB = 1L
+
+        /**
+         * A rough estimate of the memory needed to compile the given sources: a fixed part for the compiler environment and
+         * the dependencies, and a part proportional to the number of source files. Directories count as one file.
+         */
+        fun estimateMemoryMb(sources: Collection<String>): Long =
+            BASE_COMPILATION_MEMORY_MB + MEMORY_PER_SOURCE_FILE_MB * sources.size
+    }
+}
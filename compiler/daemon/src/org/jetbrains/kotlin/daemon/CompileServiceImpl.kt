@@ -54,7 +54,6 @@ import org.jetbrains.kotlin.incremental.parsing.classesFqNames
 import org.jetbrains.kotlin.load.kotlin.incremental.components.IncrementalCompilationComponents
 import org.jetbrains.kotlin.modules.Module
 import org.jetbrains.kotlin.progress.CompilationCanceledStatus
-import java.io.BufferedOutputStream
 import java.io.ByteArrayOutputStream
 import java.io.File
 import java.io.PrintStream
@@ -72,7 +71,7 @@ import kotlin.concurrent.read
 import kotlin.concurrent.schedule
 import kotlin.concurrent.write
 
-const val REMOTE_STREAM_BUFFER_SIZE = 4096
+const val REMOTE_STREAM_BUFFER_SIZE = 65536
 
 fun nowSeconds() = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime())
 
@@ -127,6 +126,12 @@ abstract class CompileServiceImplBase(
 
     protected val compilationsCounter = AtomicInteger(0)
 
+    protected val compilationScheduler = CompilationScheduler(
+        daemonOptions.maxParallelCompilations.takeIf { it > 0 } ?: Runtime.getRuntime().availableProcessors(),
+        // leaving some memory for the daemon itself and for caches shared by compilations
+        Runtime.getRuntime().maxMemory() / (1024 * 1024) * 3 / 4
+    )
+
     protected val classpathWatcher = LazyClasspathWatcher(compilerId.compilerClasspath)
 
     enum class Aliveness {
@@ -309,6 +314,7 @@ abstract class CompileServiceImplBase(
         val k2PlatformArgs = compiler.createArguments()
         parseCommandLineArguments(compilerArguments.asList(), k2PlatformArgs)
         val argumentParseError = validateArguments(k2PlatformArgs.errors)
+        val estimatedMemoryMb = CompilationScheduler.estimateMemoryMb(sourcesOf(k2PlatformArgs))
 
         if (argumentParseError != null) {
             messageCollector.report(CompilerMessageSeverity.ERROR, argumentParseError)
@@ -317,14 +323,14 @@ abstract class CompileServiceImplBase(
             CompilerMode.JPS_COMPILER -> {
                 servicesFacade as JpsServicesFacadeT
                 withIC(enabled = servicesFacade.hasIncrementalCaches()) {
-                    doCompile(sessionId, daemonReporter, tracer = null) { eventManger, profiler ->
+                    doCompile(sessionId, daemonReporter, estimatedMemoryMb, tracer = null) { eventManger, profiler ->
                         val services = createServices(servicesFacade, eventManger, profiler)
                         compiler.exec(messageCollector, services, k2PlatformArgs)
                     }
                 }
             }
             CompilerMode.NON_INCREMENTAL_COMPILER -> {
-                doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
+                doCompile(sessionId, daemonReporter, estimatedMemoryMb, tracer = null) { _, _ ->
                     compiler.exec(messageCollector, Services.EMPTY, k2PlatformArgs)
                 }
             }
@@ -334,7 +340,7 @@ abstract class CompileServiceImplBase(
 
                 when (targetPlatform) {
                     CompileService.TargetPlatform.JVM -> withIC {
-                        doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
+                        doCompile(sessionId, daemonReporter, estimatedMemoryMb, tracer = null) { _, _ ->
                             execIncrementalCompiler(
                                 k2PlatformArgs as K2JVMCompilerArguments,
                                 gradleIncrementalArgs,
@@ -348,7 +354,7 @@ abstract class CompileServiceImplBase(
                         }
                     }
                     CompileService.TargetPlatform.JS -> withJsIC {
-                        doCompile(sessionId, daemonReporter, tracer = null) { _, _ ->
+                        doCompile(sessionId, daemonReporter, estimatedMemoryMb, tracer = null) { _, _ ->
                             execJsIncrementalCompiler(
                                 k2PlatformArgs as K2JSCompilerArguments,
                                 gradleIncrementalArgs,
@@ -373,18 +379,22 @@ abstract class CompileServiceImplBase(
     protected inline fun doCompile(
         sessionId: Int,
         daemonMessageReporter: DaemonMessageReporter,
+        estimatedMemoryMb: Long,
         tracer: RemoteOperationsTracer?,
-        body: (EventManager, Profiler) -> ExitCode
+        crossinline body: (EventManager, Profiler) -> ExitCode
     ): CompileService.CallResult<Int> = run {
         log.fine("alive!")
         withValidClientOrSessionProxy(sessionId) {
             tracer?.before("compile")
-            val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else DummyProfiler()
+            val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadByClassProfiler() else DummyProfiler()
             val eventManager = EventManagerImpl()
             try {
                 log.fine("trying get exitCode")
-                val exitCode = checkedCompile(daemonMessageReporter, rpcProfiler) {
-                    body(eventManager, rpcProfiler).code
+                val exitCode = compilationScheduler.schedule(estimatedMemoryMb) { queueWaitNanos ->
+                    reportQueueWait(daemonMessageReporter, queueWaitNanos)
+                    checkedCompile(daemonMessageReporter, rpcProfiler) {
+                        body(eventManager, rpcProfiler).code
+                    }
                 }
                 CompileService.CallResult.Good(exitCode)
             } finally {
@@ -394,9 +404,29 @@ abstract class CompileServiceImplBase(
         }
     }
 
+    // JPS passes the sources of a compilation in a module file rather than as free arguments
+    protected fun sourcesOf(arguments: CommonCompilerArguments): List<String> {
+        val buildFile = (arguments as? K2JVMCompilerArguments)?.buildFile ?: return arguments.freeArgs
+        val modules = ModuleXmlParser.parseModuleScript(buildFile, MessageCollector.NONE).modules
+        return modules.flatMap { it.getSourceFiles() } + arguments.freeArgs
+    }
+
     fun Long.ms() = TimeUnit.NANOSECONDS.toMillis(this)
     fun Long.kb() = this / 1024
 
+    protected fun reportQueueWait(daemonMessageReporter: DaemonMessageReporter, queueWaitNanos: Long) {
+        if (!daemonOptions.reportPerf) return
+
+        val queueWait = compilationScheduler.queueWait
+        val runTime = compilationScheduler.runTime
+        ("PERF: Waited for compilation slot: ${queueWaitNanos.ms()} ms; " +
+                "running: ${compilationScheduler.runningCount}, waiting: ${compilationScheduler.waitingCount}; " +
+                "total: ${queueWait.count} compilations waited ${queueWait.time.ms()} ms, ${runTime.count} ran ${runTime.time.ms()} ms").let {
+            daemonMessageReporter.report(ReportSeverity.INFO, it)
+            log.info(it)
+        }
+    }
+
     protected inline fun <R> checkedCompile(
         daemonMessageReporter: DaemonMessageReporter,
         rpcProfiler: Profiler,
@@ -424,7 +454,7 @@ abstract class CompileServiceImplBase(
 
                 // this will only be reported if if appropriate (e.g. ByClass) profiler is used
                 for ((obj, counters) in rpcProfiler.getCounters()) {
-                    "PERF: rpc by $obj: ${counters.count} calls, ${counters.time.ms()} ms, thread ${counters.threadTime.ms()} ms".let {
+                    "PERF: rpc by $obj: ${counters.count} calls, ${counters.time.ms()} ms, thread ${counters.threadTime.ms()} ms, ${counters.bytes.kb()} kb sent".let {
                         daemonMessageReporter.report(ReportSeverity.INFO, it)
                         log.info(it)
                     }
@@ -804,12 +834,7 @@ class CompileServiceImpl(
             CompileService.CallResult.Error("Sorry, only JVM target platform is supported now")
         else {
             val disposable = Disposer.newDisposable()
-            val compilerMessagesStream = PrintStream(
-                BufferedOutputStream(
-                    RemoteOutputStreamClient(compilerMessagesOutputStream, DummyProfiler()),
-                    REMOTE_STREAM_BUFFER_SIZE
-                )
-            )
+            val compilerMessagesStream = PrintStream(RemoteOutputStreamClient(compilerMessagesOutputStream, DummyProfiler()))
             val messageCollector = KeepFirstErrorMessageCollector(compilerMessagesStream)
             val repl = KotlinJvmReplService(
                 disposable, port, compilerId, templateClasspath, templateClassName,
@@ -844,7 +869,12 @@ class CompileServiceImpl(
             )
         }
         if (facade.hasLookupTracker()) {
-            builder.register(LookupTracker::class.java, RemoteLookupTrackerClient(facade, eventManager, rpcProfiler))
+            builder.register(
+                LookupTracker::class.java,
+                RemoteLookupTrackerClient(
+                    facade, eventManager, rpcProfiler, daemonOptions.callbackBatchSize, daemonOptions.callbackBatchLatencyMilliseconds
+                )
+            )
         }
         if (facade.hasCompilationCanceledStatus()) {
             builder.register(CompilationCanceledStatus::class.java, RemoteCompilationCanceledStatusClient(facade, rpcProfiler))
@@ -1138,27 +1168,21 @@ class CompileServiceImpl(
         ifAlive {
             withValidClientOrSessionProxy(sessionId) {
                 operationsTracer?.before("compile")
-                val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadTotalProfiler() else DummyProfiler()
+                val rpcProfiler = if (daemonOptions.reportPerf) WallAndThreadByClassProfiler() else DummyProfiler()
                 val eventManger = EventManagerImpl()
-                val compilerMessagesStream = PrintStream(
-                    BufferedOutputStream(
-                        RemoteOutputStreamClient(compilerMessagesStreamProxy, rpcProfiler),
-                        REMOTE_STREAM_BUFFER_SIZE
-                    )
-                )
-                val serviceOutputStream = PrintStream(
-                    BufferedOutputStream(
-                        RemoteOutputStreamClient(serviceOutputStreamProxy, rpcProfiler),
-                        REMOTE_STREAM_BUFFER_SIZE
-                    )
-                )
+                val compilerMessagesStream = PrintStream(RemoteOutputStreamClient(compilerMessagesStreamProxy, rpcProfiler))
+                val serviceOutputStream = PrintStream(RemoteOutputStreamClient(serviceOutputStreamProxy, rpcProfiler))
                 try {
                     val compileServiceReporter = DaemonMessageReporterPrintStreamAdapter(serviceOutputStream)
                     if (args.none())
                         throw IllegalArgumentException("Error: empty arguments list.")
                     log.info("Starting compilation with args: " + args.joinToString(" "))
-                    val exitCode = checkedCompile(compileServiceReporter, rpcProfiler) {
-                        body(compilerMessagesStream, eventManger, rpcProfiler).code
+                    val sources = args.filter { it.endsWith(".kt") || it.endsWith(".java") }
+                    val exitCode = compilationScheduler.schedule(CompilationScheduler.estimateMemoryMb(sources)) { queueWaitNanos ->
+                        reportQueueWait(compileServiceReporter, queueWaitNanos)
+                        checkedCompile(compileServiceReporter, rpcProfiler) {
+                            body(compilerMessagesStream, eventManger, rpcProfiler).code
+                        }
                     }
                     CompileService.CallResult.Good(exitCode)
                 } finally {
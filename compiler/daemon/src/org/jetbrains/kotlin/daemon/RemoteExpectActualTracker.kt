@@ -12,13 +12,21 @@ import org.jetbrains.kotlin.daemon.common.withMeasure
 import org.jetbrains.kotlin.incremental.components.ExpectActualTracker
 import java.io.File
 
+/**
+ * The same pair of files is usually reported for every expect declaration they contain, so every distinct pair is sent to the client
+ * only once per compilation.
+ */
 class RemoteExpectActualTracker(
     val facade: CompilerCallbackServicesFacade,
     val profiler: Profiler = DummyProfiler()
 ): ExpectActualTracker {
+    private val reported = HashSet<Pair<String, String>>()
+
     override fun report(expectedFile: File, actualFile: File) {
-        profiler.withMeasure(this) {
-            facade.expectActualTracker_report(expectedFile.path, actualFile.path)
+        if (reported.add(expectedFile.path to actualFile.path)) {
+            profiler.withMeasure(this) {
+                facade.expectActualTracker_report(expectedFile.path, actualFile.path)
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -5,7 +5,9 @@
 
 package org.jetbrains.kotlin.daemon
 
+import org.jetbrains.kotlin.daemon.common.CompiledPackagePart
 import org.jetbrains.kotlin.daemon.common.CompilerCallbackServicesFacade
+import org.jetbrains.kotlin.daemon.common.PackageMetadata
 import org.jetbrains.kotlin.daemon.common.Profiler
 import org.jetbrains.kotlin.daemon.common.withMeasure
 import org.jetbrains.kotlin.incremental.js.FunctionWithSourceInfo
@@ -13,8 +15,19 @@ import org.jetbrains.kotlin.incremental.js.IncrementalResultsConsumer
 import org.jetbrains.kotlin.incremental.js.JsInlineFunctionHash
 import java.io.File
 
-class RemoteIncrementalResultsConsumer(val facade: CompilerCallbackServicesFacade, eventManager: EventManager, val rpcProfiler: Profiler) :
-    IncrementalResultsConsumer {
+/**
+ * Sends package parts and package metadata to the client in batches of about [batchBytes] bytes, and when the compilation is finished.
+ */
+class RemoteIncrementalResultsConsumer(
+    val facade: CompilerCallbackServicesFacade,
+    eventManager: EventManager,
+    val rpcProfiler: Profiler,
+    private val batchBytes: Long = DEFAULT_BATCH_BYTES
+) : IncrementalResultsConsumer {
+    private var pendingPackageParts = ArrayList<CompiledPackagePart>()
+    private var pendingPackagesMetadata = ArrayList<PackageMetadata>()
+    private var pendingBytes = 0L
+
     override fun processIrFile(
         sourceFile: File,
         fileData: ByteArray,
@@ -33,15 +46,15 @@ class RemoteIncrementalResultsConsumer(val facade: CompilerCallbackServicesFacad
     }
 
     override fun processHeader(headerMetadata: ByteArray) {
+        rpcProfiler.addBytes(this, headerMetadata.size.toLong())
         rpcProfiler.withMeasure(this) {
             facade.incrementalResultsConsumer_processHeader(headerMetadata)
         }
     }
 
     override fun processPackagePart(sourceFile: File, packagePartMetadata: ByteArray, binaryAst: ByteArray, inlineData: ByteArray) {
-        rpcProfiler.withMeasure(this) {
-            facade.incrementalResultsConsumer_processPackagePart(sourceFile.path, packagePartMetadata, binaryAst, inlineData)
-        }
+        pendingPackageParts.add(CompiledPackagePart(sourceFile.path, packagePartMetadata, binaryAst, inlineData))
+        addPendingBytes((packagePartMetadata.size + binaryAst.size + inlineData.size).toLong())
     }
 
     private class JsInlineFunction(val sourceFilePath: String, val fqName: String, val inlineFunction: FunctionWithSourceInfo)
@@ -55,16 +68,47 @@ class RemoteIncrementalResultsConsumer(val facade: CompilerCallbackServicesFacad
     override fun processInlineFunctions(functions: Collection<JsInlineFunctionHash>) = error("Should not be called in Daemon Server")
 
     override fun processPackageMetadata(packageName: String, metadata: ByteArray) {
-        rpcProfiler.withMeasure(this) {
-            facade.incrementalResultsConsumer_processPackageMetadata(packageName, metadata)
+        pendingPackagesMetadata.add(PackageMetadata(packageName, metadata))
+        addPendingBytes(metadata.size.toLong())
+    }
+
+    private fun addPendingBytes(bytes: Long) {
+        pendingBytes += bytes
+        if (pendingBytes >= batchBytes) {
+            flushPending()
         }
     }
 
+    private fun flushPending() {
+        if (pendingPackageParts.isNotEmpty()) {
+            val packageParts = pendingPackageParts
+            pendingPackageParts = ArrayList()
+            rpcProfiler.withMeasure(this) {
+                facade.incrementalResultsConsumer_processPackageParts(packageParts)
+            }
+        }
+        if (pendingPackagesMetadata.isNotEmpty()) {
+            val packagesMetadata = pendingPackagesMetadata
+            pendingPackagesMetadata = ArrayList()
+            rpcProfiler.withMeasure(this) {
+                facade.incrementalResultsConsumer_processPackagesMetadata(packagesMetadata)
+            }
+        }
+        rpcProfiler.addBytes(this, pendingBytes)
+        pendingBytes = 0
+    }
+
     fun flush() {
+        flushPending()
         rpcProfiler.withMeasure(this) {
             facade.incrementalResultsConsumer_processInlineFunctions(deferInlineFuncs.map {
                 JsInlineFunctionHash(it.sourceFilePath, it.fqName, it.inlineFunction.md5)
             })
         }
     }
+
+    companion object {
+        // Package parts of a few dozen average files
+        const val DEFAULT_BATCH_BYTES = 1024L * 1024L
+    }
 }
@@ -19,27 +19,37 @@ package org.jetbrains.kotlin.daemon
 import com.intellij.util.containers.StringInterner
 import gnu.trove.THashMap
 import gnu.trove.THashSet
-import org.jetbrains.kotlin.daemon.common.CompilerCallbackServicesFacade
-import org.jetbrains.kotlin.daemon.common.DummyProfiler
-import org.jetbrains.kotlin.daemon.common.Profiler
-import org.jetbrains.kotlin.daemon.common.withMeasure
+import org.jetbrains.kotlin.daemon.common.*
 import org.jetbrains.kotlin.incremental.components.LookupInfo
 import org.jetbrains.kotlin.incremental.components.LookupTracker
 import org.jetbrains.kotlin.incremental.components.Position
 import org.jetbrains.kotlin.incremental.components.ScopeKind
+import java.util.concurrent.TimeUnit
 
 
+/**
+ * Buffers lookups and sends them to the client in batches of about [batchSize] lookups, or when the oldest buffered lookup is
+ * older than [batchLatencyMs], and when the compilation is finished.
+ *
+ * Lookups are deduplicated for the whole compilation, so a lookup repeated after its batch is sent isn't sent again.
+ */
 class RemoteLookupTrackerClient(
     val facade: CompilerCallbackServicesFacade,
     eventManager: EventManager,
-    val profiler: Profiler = DummyProfiler()
+    val profiler: Profiler = DummyProfiler(),
+    private val batchSize: Int = COMPILE_DAEMON_DEFAULT_CALLBACK_BATCH_SIZE,
+    private val batchLatencyMs: Long = COMPILE_DAEMON_DEFAULT_CALLBACK_BATCH_LATENCY_MS
 ) : LookupTracker {
     private val isDoNothing = profiler.withMeasure(this) { facade.lookupTracker_isDoNothing() }
 
-    // Map: FileName -> (ScopeFqName -> Set<Name[String] | LookupInfo>)
+    // Map: FileName -> (ScopeFqName -> Set<Name[String] | LookupInfo>), all lookups recorded during the compilation
     private val lookups = THashMap<String, MutableMap<String, MutableSet<Any>>>()
     private val interner = StringInterner()
 
+    // Lookups which are not sent yet
+    private var pending = ArrayList<LookupInfo>()
+    private var firstPendingNanos = 0L
+
     override val requiresPosition: Boolean = profiler.withMeasure(this) { facade.lookupTracker_requiresPosition() }
 
     override fun record(filePath: String, position: Position, scopeFqName: String, scopeKind: ScopeKind, name: String) {
@@ -48,40 +58,41 @@ class RemoteLookupTrackerClient(
         val internedSymbolFqName = interner.intern(scopeFqName)
         val internedName = interner.intern(name)
 
-        val objectToPut: Any =
-            if (requiresPosition)
-                LookupInfo(filePath, position, scopeFqName, scopeKind, name)
-            else
-                internedName
+        val lookupInfo = if (requiresPosition) LookupInfo(filePath, position, scopeFqName, scopeKind, name) else null
+        val objectToPut: Any = lookupInfo ?: internedName
 
-        lookups.getOrPut(filePath, ::THashMap).getOrPut(internedSymbolFqName, ::THashSet).add(objectToPut)
+        if (lookups.getOrPut(filePath, ::THashMap).getOrPut(internedSymbolFqName, ::THashSet).add(objectToPut)) {
+            if (pending.isEmpty()) {
+                firstPendingNanos = System.nanoTime()
+            }
+            pending.add(
+                lookupInfo ?: LookupInfo(filePath, Position.NO_POSITION, internedSymbolFqName, ScopeKind.CLASSIFIER, internedName)
+            )
+            if (pending.size >= batchSize || System.nanoTime() - firstPendingNanos >= TimeUnit.MILLISECONDS.toNanos(batchLatencyMs)) {
+                flush()
+            }
+        }
     }
 
     init {
-        eventManager.onCompilationFinished { flush() }
+        eventManager.onCompilationFinished {
+            flush()
+            lookups.clear()
+        }
     }
 
     private fun flush() {
-        if (isDoNothing || lookups.isEmpty) return
+        if (isDoNothing || pending.isEmpty()) return
+
+        val batch = pending
+        pending = ArrayList()
 
+        // Serializing the lookups once more only to count the bytes is too expensive without a profiler
+        if (profiler !is DummyProfiler) {
+            profiler.addBytes(this, serializedSize(batch))
+        }
         profiler.withMeasure(this) {
-            facade.lookupTracker_record(
-                lookups.flatMap { (filePath, lookupsByFile) ->
-                    lookupsByFile.flatMap { (scopeFqName, lookupsByScopeFqName) ->
-                        lookupsByScopeFqName.map { lookupInfoOrString ->
-                            if (requiresPosition)
-                                lookupInfoOrString as LookupInfo
-                            else
-                                LookupInfo(
-                                    filePath, Position.NO_POSITION, scopeFqName, ScopeKind.CLASSIFIER,
-                                    lookupInfoOrString as String
-                                )
-                        }
-                    }
-                }
-            )
+            facade.lookupTracker_record(batch)
         }
-
-        lookups.clear()
     }
 }
@@ -22,16 +22,59 @@ import org.jetbrains.kotlin.daemon.common.RemoteOutputStream
 import org.jetbrains.kotlin.daemon.common.withMeasure
 import java.io.OutputStream
 
-class RemoteOutputStreamClient(val remote: RemoteOutputStream, val profiler: Profiler = DummyProfiler()): OutputStream() {
+/**
+ * Collects the written bytes and sends them to the client in chunks of [bufferSize] bytes, and on [flush] and [close].
+ *
+ * Writes larger than the buffer are sent right away, after the buffered bytes.
+ */
+class RemoteOutputStreamClient(
+    val remote: RemoteOutputStream,
+    val profiler: Profiler = DummyProfiler(),
+    bufferSize: Int = REMOTE_STREAM_BUFFER_SIZE
+) : OutputStream() {
+    private val buffer = ByteArray(bufferSize)
+    private var count = 0
+
     override fun write(data: ByteArray) {
-        profiler.withMeasure(this) { remote.write(data, 0, data.size) }
+        write(data, 0, data.size)
     }
 
     override fun write(data: ByteArray, offset: Int, length: Int) {
-        profiler.withMeasure(this) { remote.write(data, offset, length) }
+        if (length >= buffer.size) {
+            flushBuffer()
+            send(data, offset, length)
+            return
+        }
+        if (length > buffer.size - count) {
+            flushBuffer()
+        }
+        System.arraycopy(data, offset, buffer, count, length)
+        count += length
     }
 
     override fun write(byte: Int) {
-        profiler.withMeasure(this) { remote.write(byte) }
+        if (count == buffer.size) {
+            flushBuffer()
+        }
+        buffer[count++] = byte.toByte()
+    }
+
+    override fun flush() {
+        flushBuffer()
+    }
+
+    override fun close() {
+        flushBuffer()
+    }
+
+    private fun flushBuffer() {
+        if (count == 0) return
+        send(buffer, 0, count)
+        count = 0
+    }
+
+    private fun send(data: ByteArray, offset: Int, length: Int) {
+        profiler.addBytes(this, length.toLong())
+        profiler.withMeasure(this) { remote.write(data, offset, length) }
     }
 }
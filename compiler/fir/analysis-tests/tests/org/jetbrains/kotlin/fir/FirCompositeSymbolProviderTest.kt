@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.fir.resolve.FirSymbolProvider
+import org.jetbrains.kotlin.fir.resolve.impl.FirCompositeSymbolProvider
+import org.jetbrains.kotlin.fir.scopes.FirScope
+import org.jetbrains.kotlin.fir.symbols.impl.FirCallableSymbol
+import org.jetbrains.kotlin.fir.symbols.impl.FirClassLikeSymbol
+import org.jetbrains.kotlin.fir.symbols.impl.FirRegularClassSymbol
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.name.Name
+import java.util.*
+import java.util.concurrent.Callable
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executors
+
+class FirCompositeSymbolProviderTest : TestCase() {
+    private val foo = ClassId.topLevel(FqName("test.Foo"))
+    private val bar = ClassId.topLevel(FqName("test.Bar"))
+    private val missing = ClassId.topLevel(FqName("test.Missing"))
+
+    fun testCachedLookupsCallProvidersOnce() {
+        val first = CountingProvider(bar)
+        val second = CountingProvider(foo)
+        val composite = FirCompositeSymbolProvider(listOf(first, second), cacheLookups = true)
+
+        val symbol = composite.getClassLikeSymbolByFqName(foo)
+        assertEquals(foo, symbol?.classId)
+        assertNull(composite.getClassLikeSymbolByFqName(missing))
+        repeat(3) {
+            assertSame(symbol, composite.getClassLikeSymbolByFqName(foo))
+            assertNull(composite.getClassLikeSymbolByFqName(missing))
+        }
+        assertEquals(listOf(foo, missing), first.classLookups)
+        assertEquals(listOf(foo, missing), second.classLookups)
+
+        repeat(3) {
+            assertTrue(composite.getTopLevelCallableSymbols(FqName("test"), Name.identifier("foo")).isEmpty())
+            assertEquals(FqName("test"), composite.getPackage(FqName("test")))
+        }
+        assertEquals(1, first.callableLookups)
+        assertEquals(1, first.packageLookups)
+        assertEquals(0, second.packageLookups)
+    }
+
+    fun testClassIsFoundInPackageWithoutPackageAnswer() {
+        // Deserialized providers do not answer package lookups for their classes, so classes are looked up regardless
+        val provider = CountingProvider(foo, knowsPackages = false)
+        val composite = FirCompositeSymbolProvider(listOf(provider), cacheLookups = true)
+
+        assertNull(composite.getPackage(FqName("test")))
+        assertEquals(foo, composite.getClassLikeSymbolByFqName(foo)?.classId)
+    }
+
+    fun testLookupsAreNotCachedByDefault() {
+        val provider = CountingProvider(foo)
+        val composite = FirCompositeSymbolProvider(listOf(provider))
+
+        repeat(3) {
+            assertEquals(foo, composite.getClassLikeSymbolByFqName(foo)?.classId)
+            assertNull(composite.getClassLikeSymbolByFqName(missing))
+            composite.getPackage(FqName("test"))
+        }
+        assertEquals(6, provider.classLookups.size)
+        assertEquals(3, provider.packageLookups)
+    }
+
+    fun testConcurrentLookups() {
+        val first = CountingProvider(bar)
+        val second = CountingProvider(foo)
+        val composite = FirCompositeSymbolProvider(listOf(first, second), cacheLookups = true)
+
+        val threads = 8
+        val start = CyclicBarrier(threads)
+        val executor = Executors.newFixedThreadPool(threads)
+        try {
+            val results = (1..threads).map {
+                executor.submit(Callable {
+                    start.await()
+                    (1..1000).map {
+                        assertNull(composite.getClassLikeSymbolByFqName(missing))
+                        assertEquals(FqName("test"), composite.getPackage(FqName("test")))
+                        composite.getClassLikeSymbolByFqName(foo)
+                    }
+                })
+            }.flatMap { it.get() }
+
+            // Threads which missed the cache at once all get the symbol stored first
+            assertEquals(foo, results.first()?.classId)
+            assertTrue(results.all { it === results.first() })
+            assertTrue(second.classLookups.count { it == foo } in 1..threads)
+            assertTrue(second.classLookups.count { it == missing } in 1..threads)
+            assertTrue(first.packageLookups in 1..threads)
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private class CountingProvider(private val classId: ClassId, private val knowsPackages: Boolean = true) : FirSymbolProvider() {
+        // Lookups may come from several threads
+        val classLookups: MutableList<ClassId> = Collections.synchronizedList(mutableListOf())
+        var callableLookups = 0
+        var packageLookups = 0
+
+        private val symbol = FirRegularClassSymbol(classId)
+
+        override fun getClassLikeSymbolByFqName(classId: ClassId): FirClassLikeSymbol<*>? {
+            classLookups += classId
+            return symbol.takeIf { classId == this.classId }
+        }
+
+        @Synchronized
+        override fun getTopLevelCallableSymbols(packageFqName: FqName, name: Name): List<FirCallableSymbol<*>> {
+            callableLookups++
+            return emptyList()
+        }
+
+        override fun getNestedClassifierScope(classId: ClassId): FirScope? = null
+
+        @Synchronized
+        override fun getPackage(fqName: FqName): FqName? {
+            packageLookups++
+            return fqName.takeIf { knowsPackages && it == classId.packageFqName }
+        }
+    }
+}
@@ -40,6 +40,11 @@ abstract class AbstractDiagnosticCollector(
     protected abstract fun getCollectedDiagnostics(): Iterable<ConeDiagnostic>
     abstract fun runCheck(block: (DiagnosticReporter) -> Unit)
 
+    /**
+     * If set, the time spent in every checker is added to it, so that slow checkers can be found.
+     */
+    var checkerTimings: CheckerTimings? = null
+
     private val components: MutableList<AbstractDiagnosticCollectorComponent> = mutableListOf()
     private var componentsInitialized = false
     private val visitor = Visitor()
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.fir.analysis.collectors
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Total time spent in every checker, see [AbstractDiagnosticCollector.checkerTimings]. Checks may run on several threads.
+ */
+class CheckerTimings {
+    private val nanosByChecker = ConcurrentHashMap<Class<*>, AtomicLong>()
+
+    inline fun measure(checker: Any, block: () -> Unit) {
+        val start = System.nanoTime()
+        try {
+            block()
+        } finally {
+            record(checker, System.nanoTime() - start)
+        }
+    }
+
+    fun record(checker: Any, nanos: Long) {
+        nanosByChecker.computeIfAbsent(checker.javaClass) { AtomicLong() }.addAndGet(nanos)
+    }
+
+    /**
+     * @return names of the checkers mapped to their total time in milliseconds, the slowest first
+     */
+    fun timesInMillis(): Map<String, Long> =
+        nanosByChecker.entries
+            .map { (checkerClass, nanos) -> checkerClass.name to TimeUnit.NANOSECONDS.toMillis(nanos.get()) }
+            .sortedByDescending { (_, millis) -> millis }
+            .toMap()
+}
@@ -14,11 +14,17 @@ object FirDiagnosticsCollector {
         return collector
     }
 
-    // Use in CLI compiler
-    @Suppress("unused")
-    fun createParallel(session: FirSession): AbstractDiagnosticCollector {
-        val collector = ParallelDiagnosticsCollector(session, numberOfThreads = 4)
+    /**
+     * @param checkerTimings if given, the time spent in every checker is added to it
+     */
+    fun createParallel(
+        session: FirSession,
+        numberOfThreads: Int = Runtime.getRuntime().availableProcessors(),
+        checkerTimings: CheckerTimings? = null
+    ): AbstractDiagnosticCollector {
+        val collector = ParallelDiagnosticsCollector(session, numberOfThreads)
         collector.registerAllComponents()
+        collector.checkerTimings = checkerTimings
         return collector
     }
 }
\ No newline at end of file
@@ -9,69 +9,73 @@ import org.jetbrains.kotlin.fir.FirSession
 import org.jetbrains.kotlin.fir.analysis.diagnostics.ConeDiagnostic
 import org.jetbrains.kotlin.fir.analysis.diagnostics.DiagnosticReporter
 import org.jetbrains.kotlin.fir.analysis.diagnostics.SimpleDiagnosticReporter
-import java.util.*
-import java.util.concurrent.Executors
-import java.util.concurrent.Future
-import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.Callable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ForkJoinTask
 
-class ParallelDiagnosticsCollector(session: FirSession, private val numberOfThreads: Int) : AbstractDiagnosticCollector(session) {
+/**
+ * Runs checks on a [ForkJoinPool] shared by all collectors with the same number of threads.
+ *
+ * The file is visited on the calling thread, which hands the checks over in batches of [BATCH_SIZE]: batches are small enough
+ * for idle workers to steal the work of busy ones when files or declarations differ in size a lot, but large enough for the
+ * checks not to be outweighed by scheduling. Every batch reports to its own buffer and the buffers are joined in the order of
+ * the batches, so diagnostics come in the order of the checked elements, like in [SimpleDiagnosticsCollector].
+ */
+class ParallelDiagnosticsCollector(session: FirSession, numberOfThreads: Int) : AbstractDiagnosticCollector(session) {
     init {
         require(numberOfThreads >= 1) {
             "Number of threads should be at least 1"
         }
     }
 
-    private var reporters = initializeReporters()
-    private val collectorLocalIndex = ThreadLocal<Int>()
-    private val collectorIndexCounter = AtomicInteger()
-    private val futures = LinkedList<Future<*>>()
-
-    private val pool = Executors.newFixedThreadPool(numberOfThreads) { runnable ->
-        Thread {
-            collectorLocalIndex.set(collectorIndexCounter.getAndIncrement())
-            runnable.run()
-        }
-    }
+    private val pool = sharedPool(numberOfThreads)
 
-    private fun initializeReporters(): List<SimpleDiagnosticReporter> {
-        return (1..numberOfThreads).map { SimpleDiagnosticReporter() }
-    }
+    private var pendingChecks = ArrayList<(DiagnosticReporter) -> Unit>(BATCH_SIZE)
+    private val batches = ArrayList<ForkJoinTask<List<ConeDiagnostic>>>()
 
     override fun initializeCollector() {
-        reporters = initializeReporters()
-        futures.clear()
+        pendingChecks = ArrayList(BATCH_SIZE)
+        batches.clear()
     }
 
     override fun getCollectedDiagnostics(): Iterable<ConeDiagnostic> {
-        futures.forEach { it.get() }
-        return Iterable {
-            object : Iterator<ConeDiagnostic> {
-                private val globalIterator = reporters.iterator()
-                private var localIterator = globalIterator.next().diagnostics.iterator()
+        submitPendingChecks()
+        val result = ArrayList<ConeDiagnostic>()
+        for (batch in batches) {
+            result += batch.join()
+        }
+        batches.clear()
+        return result
+    }
 
-                private fun update() {
-                    while (!localIterator.hasNext() && globalIterator.hasNext()) {
-                        localIterator = globalIterator.next().diagnostics.iterator()
-                    }
-                }
+    override fun runCheck(block: (DiagnosticReporter) -> Unit) {
+        pendingChecks.add(block)
+        if (pendingChecks.size >= BATCH_SIZE) {
+            submitPendingChecks()
+        }
+    }
 
-                override fun hasNext(): Boolean {
-                    update()
-                    return localIterator.hasNext()
-                }
+    private fun submitPendingChecks() {
+        if (pendingChecks.isEmpty()) return
 
-                override fun next(): ConeDiagnostic {
-                    update()
-                    return localIterator.next()
-                }
+        val checks = pendingChecks
+        pendingChecks = ArrayList(BATCH_SIZE)
+        batches += pool.submit(Callable {
+            val reporter = SimpleDiagnosticReporter()
+            for (check in checks) {
+                check(reporter)
             }
-        }
+            reporter.diagnostics.ifEmpty { emptyList() }
+        })
     }
 
-    override fun runCheck(block: (DiagnosticReporter) -> Unit) {
-        futures += pool.submit {
-            val reporter = reporters[collectorLocalIndex.get()]
-            block(reporter)
-        }
+    companion object {
+        private const val BATCH_SIZE = 64
+
+        // Workers of a ForkJoinPool are daemon threads, so the pools live as long as the compiler
+        private val pools = ConcurrentHashMap<Int, ForkJoinPool>()
+
+        private fun sharedPool(parallelism: Int): ForkJoinPool = pools.computeIfAbsent(parallelism) { ForkJoinPool(it) }
     }
-}
\ No newline at end of file
+}
@@ -16,7 +16,12 @@ class ControlFlowAnalysisDiagnosticComponent(collector: AbstractDiagnosticCollec
         val graph = controlFlowGraphReference.controlFlowGraph ?: return
         runCheck {
             val controlFlowAnalyzer = FirControlFlowAnalyzer(it)
-            controlFlowAnalyzer.analyze(graph, data)
+            val timings = checkerTimings
+            if (timings == null) {
+                controlFlowAnalyzer.analyze(graph, data)
+            } else {
+                timings.measure(controlFlowAnalyzer) { controlFlowAnalyzer.analyze(graph, data) }
+            }
         }
     }
 }
\ No newline at end of file
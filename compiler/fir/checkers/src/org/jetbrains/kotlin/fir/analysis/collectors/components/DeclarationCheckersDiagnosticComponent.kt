@@ -50,8 +50,13 @@ class DeclarationCheckersDiagnosticComponent(collector: AbstractDiagnosticCollec
     }
 
     private fun <D : FirDeclaration> List<FirDeclarationChecker<D>>.check(declaration: D, context: CheckerContext, reporter: DiagnosticReporter) {
+        val timings = checkerTimings
         for (checker in this) {
-            checker.check(declaration, context, reporter)
+            if (timings == null) {
+                checker.check(declaration, context, reporter)
+            } else {
+                timings.measure(checker) { checker.check(declaration, context, reporter) }
+            }
         }
     }
 }
\ No newline at end of file
@@ -78,8 +78,13 @@ class ExpressionCheckersDiagnosticComponent(collector: AbstractDiagnosticCollect
     }
 
     private fun <E : FirExpression> List<FirExpressionChecker<E>>.check(expression: E, context: CheckerContext, reporter: DiagnosticReporter) {
+        val timings = checkerTimings
         for (checker in this) {
-            checker.check(expression, context, reporter)
+            if (timings == null) {
+                checker.check(expression, context, reporter)
+            } else {
+                timings.measure(checker) { checker.check(expression, context, reporter) }
+            }
         }
     }
 }
\ No newline at end of file
@@ -104,7 +104,8 @@ class FirLibrarySession private constructor(
                     FirClonableSymbolProvider(this, kotlinScopeProvider),
                     javaSymbolProvider,
                     FirDependenciesSymbolProviderImpl(this)
-                )
+                ),
+                cacheLookups = true
             ) as FirSymbolProvider
         )
         registerComponent(FirDeclaredMemberScopeProvider::class, FirDeclaredMemberScopeProvider())
@@ -38,6 +38,10 @@ private val DUMP_FIR = System.getProperty("fir.bench.dump", "true").toBooleanLen
 internal val PASSES = System.getProperty("fir.bench.passes")?.toInt() ?: 3
 internal val SEPARATE_PASS_DUMP = System.getProperty("fir.bench.dump.separate_pass", "false").toBooleanLenient()!!
 private val APPEND_ERROR_REPORTS = System.getProperty("fir.bench.report.errors.append", "false").toBooleanLenient()!!
+// With more than one thread, stages which can run in parallel are measured as a whole and their speedup is reported
+private val RESOLVE_THREADS = System.getProperty("fir.bench.threads")?.toInt() ?: 1
+// Runs the checkers after the resolve and reports the time spent in the slowest of them
+private val RUN_CHECKERS = System.getProperty("fir.bench.checkers", "false").toBooleanLenient()!!
 
 class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
 
@@ -55,7 +59,7 @@ class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
             .uniteWith(TopDownAnalyzerFacadeForJVM.AllJavaSourcesInProjectScope(project))
         val librariesScope = ProjectScope.getLibrariesScope(project)
         val session = createSession(environment, scope, librariesScope, moduleData.qualifiedName)
-        val totalTransformer = FirTotalResolveTransformer()
+        val totalTransformer = FirTotalResolveTransformer(RESOLVE_THREADS)
 
         val firProvider = session.firProvider as FirProviderImpl
         val firFiles = if (useLightTree) {
@@ -68,7 +72,10 @@ class FirResolveModularizedTotalKotlinTest : AbstractModularizedTest() {
 
         //println("Raw FIR up, files: ${firFiles.size}")
 
-        bench.processFiles(firFiles, totalTransformer.transformers)
+        bench.processFiles(firFiles, totalTransformer)
+        if (RUN_CHECKERS) {
+            bench.collectDiagnostics(firFiles, RESOLVE_THREADS)
+        }
 
         val disambiguatedName = moduleData.disambiguatedName()
         dumpFir(disambiguatedName, moduleData, firFiles)
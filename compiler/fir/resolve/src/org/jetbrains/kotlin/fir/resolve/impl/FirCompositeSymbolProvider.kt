@@ -6,18 +6,43 @@
 package org.jetbrains.kotlin.fir.resolve.impl
 
 import org.jetbrains.kotlin.fir.FirSession
+import org.jetbrains.kotlin.fir.resolve.AbstractFirSymbolProvider
 import org.jetbrains.kotlin.fir.resolve.FirSymbolProvider
 import org.jetbrains.kotlin.fir.resolve.ScopeSession
 import org.jetbrains.kotlin.fir.scopes.FirScope
+import org.jetbrains.kotlin.fir.symbols.CallableId
 import org.jetbrains.kotlin.fir.symbols.impl.FirCallableSymbol
 import org.jetbrains.kotlin.fir.symbols.impl.FirClassLikeSymbol
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.name.Name
+import org.jetbrains.kotlin.util.PerformanceCounter
 import org.jetbrains.kotlin.utils.addToStdlib.firstNotNullResult
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * With [cacheLookups], results of class, top-level callable and package lookups are remembered, including the absent ones. This is
+ * only correct if the providers never get new declarations, as for libraries. A library session is shared by all sessions which
+ * depend on it, so are its caches. The caches are concurrent, since checkers may run on several threads.
+ */
+class FirCompositeSymbolProvider(
+    val providers: List<FirSymbolProvider>,
+    private val cacheLookups: Boolean = false
+) : AbstractFirSymbolProvider<FirClassLikeSymbol<*>>() {
+    // Absent results are stored as NOT_FOUND, values of a ConcurrentHashMap can't be null
+    private val classLookups = ConcurrentHashMap<ClassId, Any>()
+    private val topLevelCallableLookups = ConcurrentHashMap<CallableId, Any>()
+    private val packageLookups = ConcurrentHashMap<FqName, Any>()
 
-class FirCompositeSymbolProvider(val providers: List<FirSymbolProvider>) : FirSymbolProvider() {
     override fun getTopLevelCallableSymbols(packageFqName: FqName, name: Name): List<FirCallableSymbol<*>> {
+        if (!cacheLookups) return computeTopLevelCallableSymbols(packageFqName, name)
+
+        return topLevelCallableLookups.lookupCacheOrCompute(CallableId(packageFqName, null, name)) {
+            computeTopLevelCallableSymbols(packageFqName, name)
+        } ?: emptyList()
+    }
+
+    private fun computeTopLevelCallableSymbols(packageFqName: FqName, name: Name): List<FirCallableSymbol<*>> {
         return providers.flatMap { it.getTopLevelCallableSymbols(packageFqName, name) }
     }
 
@@ -26,13 +51,44 @@ class FirCompositeSymbolProvider(val providers: List<FirSymbolProvider>) : FirSy
     }
 
     override fun getPackage(fqName: FqName): FqName? {
+        if (!cacheLookups) return computePackage(fqName)
+
+        return packageLookups.lookupCacheOrCompute(fqName) { computePackage(fqName) }
+    }
+
+    private fun computePackage(fqName: FqName): FqName? {
         return providers.firstNotNullResult { it.getPackage(fqName) }
     }
 
     override fun getClassLikeSymbolByFqName(classId: ClassId): FirClassLikeSymbol<*>? {
+        if (!cacheLookups) return computeClassLikeSymbol(classId)
+
+        return classLookups.lookupCacheOrCompute(classId) { computeClassLikeSymbol(classId) }
+    }
+
+    private fun computeClassLikeSymbol(classId: ClassId): FirClassLikeSymbol<*>? {
         return providers.firstNotNullResult { it.getClassLikeSymbolByFqName(classId) }
     }
 
+    /**
+     * The value is computed outside of the map, since computing it may look up other keys. Threads computing the same key at once
+     * get the value stored first, so a lookup always returns the same symbol.
+     */
+    private inline fun <K, V : Any> ConcurrentHashMap<K, Any>.lookupCacheOrCompute(key: K, compute: () -> V?): V? {
+        val cached = get(key)
+        if (cached != null) {
+            lookupCacheHitCounter.increment()
+            return unwrap(cached)
+        }
+
+        lookupCacheMissCounter.increment()
+        val computed = compute() ?: NOT_FOUND
+        return unwrap(putIfAbsent(key, computed) ?: computed)
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun <V : Any> unwrap(value: Any): V? = if (value === NOT_FOUND) null else value as V
+
     override fun getAllCallableNamesInPackage(fqName: FqName): Set<Name> {
         return providers.flatMapTo(mutableSetOf()) { it.getAllCallableNamesInPackage(fqName) }
     }
@@ -49,3 +105,8 @@ class FirCompositeSymbolProvider(val providers: List<FirSymbolProvider>) : FirSy
         return providers.flatMapTo(mutableSetOf()) { it.getNestedClassesNamesInClass(classId) }
     }
 }
+
+private val NOT_FOUND = Any()
+
+private val lookupCacheHitCounter = PerformanceCounter.create("FIR library symbol lookup cache hit")
+private val lookupCacheMissCounter = PerformanceCounter.create("FIR library symbol lookup cache miss")
@@ -20,6 +20,7 @@ import org.jetbrains.kotlin.fir.visitors.FirDefaultVisitorVoid
 import org.jetbrains.kotlin.name.ClassId
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.name.Name
+import java.util.concurrent.ConcurrentHashMap
 
 class FirProviderImpl(val session: FirSession, val kotlinScopeProvider: KotlinScopeProvider) : FirProvider() {
     override fun getFirCallableContainerFile(symbol: FirCallableSymbol<*>): FirFile? {
@@ -80,7 +81,7 @@ class FirProviderImpl(val session: FirSession, val kotlinScopeProvider: KotlinSc
                 state.classifierContainerFileMap[classId] = file
 
                 if (!classId.isNestedClass && !classId.isLocal) {
-                    state.classesInPackage.getOrPut(classId.packageFqName, ::mutableSetOf).add(classId.shortClassName)
+                    state.classesInPackage.getOrPut(classId.packageFqName) { ConcurrentHashMap.newKeySet() }.add(classId.shortClassName)
                 }
 
                 regularClass.acceptChildren(this)
@@ -117,15 +118,16 @@ class FirProviderImpl(val session: FirSession, val kotlinScopeProvider: KotlinSc
         })
     }
 
+    // Resolve phases look declarations up from several threads, see FirTotalResolveTransformer.FILE_LOCAL_PHASES
     private val state = State()
 
     private class State {
-        val fileMap = mutableMapOf<FqName, List<FirFile>>()
-        val classifierMap = mutableMapOf<ClassId, FirClassLikeDeclaration<*>>()
-        val classifierContainerFileMap = mutableMapOf<ClassId, FirFile>()
-        val classesInPackage = mutableMapOf<FqName, MutableSet<Name>>()
-        val callableMap = mutableMapOf<CallableId, List<FirCallableSymbol<*>>>()
-        val callableContainerMap = mutableMapOf<FirCallableSymbol<*>, FirFile>()
+        val fileMap = ConcurrentHashMap<FqName, List<FirFile>>()
+        val classifierMap = ConcurrentHashMap<ClassId, FirClassLikeDeclaration<*>>()
+        val classifierContainerFileMap = ConcurrentHashMap<ClassId, FirFile>()
+        val classesInPackage = ConcurrentHashMap<FqName, MutableSet<Name>>()
+        val callableMap = ConcurrentHashMap<CallableId, List<FirCallableSymbol<*>>>()
+        val callableContainerMap = ConcurrentHashMap<FirCallableSymbol<*>, FirFile>()
 
         fun setFrom(other: State) {
             fileMap.clear()
@@ -9,22 +9,98 @@ import org.jetbrains.kotlin.fir.declarations.FirFile
 import org.jetbrains.kotlin.fir.declarations.FirResolvePhase
 import org.jetbrains.kotlin.fir.resolve.ScopeSession
 import org.jetbrains.kotlin.fir.visitors.FirTransformer
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
 
 // TODO: rework, see rr/FIR/semoro-dev FirStagesTransformerFactory
-class FirTotalResolveTransformer {
+/**
+ * Runs all resolve phases over the files, one phase after another.
+ *
+ * With [threads] > 1, phases from [FILE_LOCAL_PHASES] are run on a pool of threads, while the others are still run file by file
+ * on the calling thread. Every phase starts when the previous one is finished for all files, so a phase sees the same state of
+ * the other files as in the sequential mode, and the result doesn't depend on the number of threads.
+ */
+class FirTotalResolveTransformer(val threads: Int = 1) {
+    init {
+        require(threads >= 1) {
+            "Number of threads should be at least 1"
+        }
+    }
 
     private val scopeSession = ScopeSession()
 
-    val transformers: List<FirTransformer<Nothing?>> =
-        FirResolvePhase.values()
-            .drop(1) // to remove RAW_FIR phase
-            .map { it.createTransformerByPhase(scopeSession) }
+    val transformers: List<FirTransformer<Nothing?>> = PHASES.map { it.createTransformerByPhase(scopeSession) }
 
     fun processFiles(files: List<FirFile>) {
-        for (transformer in transformers) {
+        for (phase in PHASES) {
+            processPhase(phase, files)
+        }
+    }
+
+    fun isRunInParallel(phase: FirResolvePhase): Boolean = threads > 1 && phase in FILE_LOCAL_PHASES
+
+    fun processPhase(
+        phase: FirResolvePhase,
+        files: List<FirFile>,
+        transformFile: (FirFile, FirTransformer<Nothing?>) -> Unit = { file, transformer ->
+            file.transform<FirFile, Nothing?>(transformer, null)
+        }
+    ) {
+        if (!isRunInParallel(phase)) {
+            val transformer = transformers[PHASES.indexOf(phase)]
             for (firFile in files) {
-                firFile.transform<FirFile, Nothing?>(transformer, null)
+                transformFile(firFile, transformer)
             }
+            return
         }
+
+        val executor = Executors.newFixedThreadPool(threads, ResolveThreadFactory())
+        try {
+            val chunkSize = (files.size + threads * CHUNKS_PER_THREAD - 1) / (threads * CHUNKS_PER_THREAD)
+            val futures = files.chunked(maxOf(chunkSize, 1)).map { chunk ->
+                executor.submit {
+                    // Transformers keep the state of the file being transformed, so every task has its own one
+                    val transformer = phase.createTransformerByPhase(scopeSession)
+                    for (firFile in chunk) {
+                        transformFile(firFile, transformer)
+                    }
+                }
+            }
+            for (future in futures) {
+                try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    futures.forEach { it.cancel(false) }
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    private class ResolveThreadFactory : ThreadFactory {
+        private val counter = AtomicInteger()
+
+        override fun newThread(r: Runnable): Thread =
+            Thread(r, "FIR resolve ${counter.incrementAndGet()}").apply { isDaemon = true }
+    }
+
+    companion object {
+        val PHASES: List<FirResolvePhase> = FirResolvePhase.values().drop(1) // to remove RAW_FIR phase
+
+        /**
+         * Phases which only change declarations of the file being transformed and only read the state built by earlier phases:
+         * source declarations in [org.jetbrains.kotlin.fir.resolve.impl.FirProviderImpl]. The provider and the scope session
+         * are safe to use from several threads, but imports, supertypes, types and bodies also look up library classes, and
+         * the symbol providers of libraries build their FIR on demand without any synchronization, so those phases stay
+         * sequential.
+         */
+        val FILE_LOCAL_PHASES: Set<FirResolvePhase> = setOf(FirResolvePhase.STATUS)
+
+        // Files differ in size a lot, more tasks than threads keep all threads busy till the end of a phase
+        private const val CHUNKS_PER_THREAD = 4
     }
 }
@@ -6,10 +6,14 @@
 package org.jetbrains.kotlin.fir.resolve
 
 import org.jetbrains.kotlin.fir.scopes.FirScope
+import java.util.concurrent.ConcurrentHashMap
 
 class ScopeSession {
-    private val scopes = hashMapOf<Any, HashMap<ScopeSessionKey<*, *>, FirScope>>()
+    // Shared by resolve and checker threads. Building a scope asks for other scopes, so scopes are built outside of the maps,
+    // and when two threads build the same scope at once, the one stored first is used by both
+    private val scopes = ConcurrentHashMap<Any, ConcurrentHashMap<ScopeSessionKey<*, *>, FirScope>>()
 
+    @Volatile
     var returnTypeCalculator: Any? = null
 
     @Deprecated(level = DeprecationLevel.ERROR, message = "Only for getOrBuild")
@@ -18,7 +22,7 @@ class ScopeSession {
     inline fun <reified ID : Any, reified FS : FirScope> getOrBuild(id: ID, key: ScopeSessionKey<ID, FS>, build: () -> FS): FS {
         @Suppress("DEPRECATION_ERROR")
         return scopes().getOrPut(id) {
-            hashMapOf()
+            ConcurrentHashMap()
         }.getOrPut(key) {
             build()
         } as FS
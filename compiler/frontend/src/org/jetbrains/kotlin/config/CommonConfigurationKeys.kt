@@ -47,6 +47,9 @@ object CommonConfigurationKeys {
 
     @JvmField
     val KLIB_MPP = CompilerConfigurationKey.create<Boolean>("Klib based MPP")
+
+    @JvmField
+    val PER_VALUE_STORAGE_LOCKING = CompilerConfigurationKey.create<Boolean>("lock each lazy value separately in the front-end storage")
 }
 
 var CompilerConfiguration.languageVersionSettings: LanguageVersionSettings
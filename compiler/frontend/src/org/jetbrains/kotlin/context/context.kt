@@ -83,12 +83,16 @@ class MutableModuleContextImpl(
     projectContext: ProjectContext
 ) : MutableModuleContext, ProjectContext by projectContext
 
-fun GlobalContext(debugName: String): GlobalContextImpl {
+fun GlobalContext(debugName: String, perValueLocking: Boolean = false): GlobalContextImpl {
     val tracker = ExceptionTracker()
-    return GlobalContextImpl(LockBasedStorageManager.createWithExceptionHandling(debugName, tracker), tracker)
+    val storageManager =
+        if (perValueLocking) LockBasedStorageManager.createWithPerValueLocking(debugName, tracker)
+        else LockBasedStorageManager.createWithExceptionHandling(debugName, tracker)
+    return GlobalContextImpl(storageManager, tracker)
 }
 
-fun ProjectContext(project: Project, debugName: String): ProjectContext = ProjectContextImpl(project, GlobalContext(debugName))
+fun ProjectContext(project: Project, debugName: String, perValueLocking: Boolean = false): ProjectContext =
+    ProjectContextImpl(project, GlobalContext(debugName, perValueLocking))
 fun ModuleContext(module: ModuleDescriptor, project: Project, debugName: String): ModuleContext =
     ModuleContextImpl(module, ProjectContext(project, debugName))
 
@@ -96,6 +96,10 @@ abstract class PerformanceCounter protected constructor(val name: String) {
         count++
     }
 
+    fun increment(times: Int) {
+        count += times
+    }
+
     fun <T> time(block: () -> T): T {
         count++
         if (!enabled) return block()
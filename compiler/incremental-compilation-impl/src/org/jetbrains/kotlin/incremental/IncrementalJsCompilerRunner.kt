@@ -57,13 +57,13 @@ fun makeJsIncrementally(
 }
 
 inline fun <R> withJsIC(fn: () -> R): R {
-    val isJsEnabledBackup = IncrementalCompilation.isEnabledForJs()
-    IncrementalCompilation.setIsEnabledForJs(true)
+    val isJsEnabledBackup = IncrementalCompilation.getIsEnabledForJsInThread()
+    IncrementalCompilation.setIsEnabledForJsInThread(true)
 
     try {
         return fn()
     } finally {
-        IncrementalCompilation.setIsEnabledForJs(isJsEnabledBackup)
+        IncrementalCompilation.setIsEnabledForJsInThread(isJsEnabledBackup)
     }
 }
 
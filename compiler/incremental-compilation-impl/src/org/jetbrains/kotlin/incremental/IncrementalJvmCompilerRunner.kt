@@ -89,13 +89,13 @@ object EmptyICReporter : ICReporterBase() {
 }
 
 inline fun <R> withIC(enabled: Boolean = true, fn: () -> R): R {
-    val isEnabledBackup = IncrementalCompilation.isEnabledForJvm()
-    IncrementalCompilation.setIsEnabledForJvm(enabled)
+    val isEnabledBackup = IncrementalCompilation.getIsEnabledForJvmInThread()
+    IncrementalCompilation.setIsEnabledForJvmInThread(enabled)
 
     try {
         return fn()
     } finally {
-        IncrementalCompilation.setIsEnabledForJvm(isEnabledBackup)
+        IncrementalCompilation.setIsEnabledForJvmInThread(isEnabledBackup)
     }
 }
 
@@ -28,13 +28,20 @@ class InputsCache(
     private val reporter: ICReporter
 ) : BasicMapsOwner(workingDir) {
     companion object {
-        private const val SOURCE_SNAPSHOTS = "source-snapshot"
+        private const val SOURCE_SNAPSHOTS = "source-snapshots"
+        private const val LEGACY_SOURCE_SNAPSHOTS = "source-snapshot"
         private const val SOURCE_TO_OUTPUT_FILES = "source-to-output"
     }
 
     internal val sourceSnapshotMap = registerMap(FileSnapshotMap(SOURCE_SNAPSHOTS.storageFile))
     private val sourceToOutputMap = registerMap(SourceToOutputFilesMap(SOURCE_TO_OUTPUT_FILES.storageFile))
 
+    init {
+        // Snapshots used to be stored without timestamps and with MD5 hashes, they are not reused
+        val legacyPrefix = LEGACY_SOURCE_SNAPSHOTS.storageFile.name
+        workingDir.listFiles { file -> file.name == legacyPrefix || file.name.startsWith("$legacyPrefix.") }?.forEach { it.delete() }
+    }
+
     fun removeOutputForSourceFiles(sources: Iterable<File>) {
         for (sourceFile in sources) {
             sourceToOutputMap.remove(sourceFile).forEach {
@@ -17,17 +17,30 @@
 package org.jetbrains.kotlin.incremental.snapshots
 
 import java.io.File
+import java.nio.file.attribute.BasicFileAttributes
 import java.util.*
 
+/**
+ * Snapshots are equal when files have the same path, length and content hash. [lastModified] and [fileKey] only tell whether
+ * the content can be assumed unchanged without hashing it again, see [isUpToDate].
+ */
 class FileSnapshot(
     val file: File,
     val length: Long,
-    val hash: ByteArray
+    val hash: ByteArray,
+    val lastModified: Long = UNKNOWN_LAST_MODIFIED,
+    val fileKey: String? = null
 ) {
     init {
         assert(!file.isDirectory)
     }
 
+    fun isUpToDate(attributes: BasicFileAttributes): Boolean =
+        lastModified != UNKNOWN_LAST_MODIFIED &&
+                lastModified == attributes.lastModifiedTime().toMillis() &&
+                length == attributes.size() &&
+                fileKey == attributes.fileKey()?.toString()
+
     override fun equals(other: Any?): Boolean {
         if (this === other) return true
         if (other == null || other::class.java != this::class.java) return false
@@ -51,4 +64,8 @@ class FileSnapshot(
     override fun toString(): String {
         return "FileSnapshot(file=$file, length=$length, hash=${Arrays.toString(hash)})"
     }
+
+    companion object {
+        const val UNKNOWN_LAST_MODIFIED = -1L
+    }
 }
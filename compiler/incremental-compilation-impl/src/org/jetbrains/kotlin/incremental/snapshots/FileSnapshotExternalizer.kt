@@ -27,6 +27,8 @@ object FileSnapshotExternalizer : DataExternalizer<FileSnapshot> {
         out.writeLong(value.length)
         out.writeInt(value.hash.size)
         out.write(value.hash)
+        out.writeLong(value.lastModified)
+        out.writeUTF(value.fileKey ?: "")
     }
 
     override fun read(input: DataInput): FileSnapshot {
@@ -35,6 +37,8 @@ object FileSnapshotExternalizer : DataExternalizer<FileSnapshot> {
         val hashSize = input.readInt()
         val hash = ByteArray(hashSize)
         input.readFully(hash)
-        return FileSnapshot(file, length, hash)
+        val lastModified = input.readLong()
+        val fileKey = input.readUTF().takeIf { it.isNotEmpty() }
+        return FileSnapshot(file, length, hash, lastModified, fileKey)
     }
 }
\ No newline at end of file
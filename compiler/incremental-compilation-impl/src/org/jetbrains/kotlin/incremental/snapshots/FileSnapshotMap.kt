@@ -17,16 +17,25 @@
 package org.jetbrains.kotlin.incremental.snapshots
 
 import org.jetbrains.kotlin.incremental.ChangedFiles
+import org.jetbrains.kotlin.incremental.ICReporter
 import org.jetbrains.kotlin.incremental.storage.BasicStringMap
 import org.jetbrains.kotlin.incremental.storage.PathStringDescriptor
 import java.io.File
+import java.nio.file.Files
+import java.nio.file.attribute.BasicFileAttributes
 import java.util.*
+import java.util.stream.Collectors
 
 class FileSnapshotMap(storageFile: File) : BasicStringMap<FileSnapshot>(storageFile, PathStringDescriptor, FileSnapshotExternalizer) {
     override fun dumpValue(value: FileSnapshot): String =
         value.toString()
 
-    fun compareAndUpdate(newFiles: Iterable<File>): ChangedFiles.Known {
+    /**
+     * Files whose length, timestamp and file key are the same as in the stored snapshot are assumed to be unchanged, the rest are
+     * hashed in parallel.
+     */
+    fun compareAndUpdate(newFiles: Iterable<File>, reporter: ICReporter? = null): ChangedFiles.Known {
+        val start = System.nanoTime()
         val snapshotProvider = SimpleFileSnapshotProviderImpl()
         val newOrModified = ArrayList<File>()
         val removed = ArrayList<File>()
@@ -39,17 +48,30 @@ class FileSnapshotMap(storageFile: File) : BasicStringMap<FileSnapshot>(storageF
             }
         }
 
+        val filesToHash = ArrayList<File>()
         for (path in newPaths) {
             val file = File(path)
             val oldSnapshot = storage[path]
-            val newSnapshot = snapshotProvider[file]
+            if (oldSnapshot == null || !oldSnapshot.isUpToDate(Files.readAttributes(file.toPath(), BasicFileAttributes::class.java))) {
+                filesToHash.add(file)
+            }
+        }
 
+        val newSnapshots = filesToHash.parallelStream().map { snapshotProvider[it] }.collect(Collectors.toList())
+        for (newSnapshot in newSnapshots) {
+            val path = newSnapshot.file.path
+            val oldSnapshot = storage[path]
             if (oldSnapshot == null || oldSnapshot != newSnapshot) {
-                newOrModified.add(file)
-                storage[path] = newSnapshot
+                newOrModified.add(newSnapshot.file)
             }
+            // Even with the same content, the timestamp may have changed
+            storage[path] = newSnapshot
+        }
+
+        reporter?.reportVerbose {
+            "Snapshots of ${newPaths.size} files taken in ${(System.nanoTime() - start) / 1_000_000} ms, ${filesToHash.size} files hashed"
         }
 
         return ChangedFiles.Known(newOrModified, removed)
     }
-}
\ No newline at end of file
+}
@@ -17,6 +17,8 @@
 package org.jetbrains.kotlin.incremental.snapshots
 
 import java.io.File
+import java.nio.file.Files
+import java.nio.file.attribute.BasicFileAttributes
 
 interface FileSnapshotProvider {
     operator fun get(file: File): FileSnapshot
@@ -24,8 +26,23 @@ interface FileSnapshotProvider {
 
 class SimpleFileSnapshotProviderImpl : FileSnapshotProvider {
     override fun get(file: File): FileSnapshot {
-        val length = file.length()
-        val hash = file.md5
-        return FileSnapshot(file, length, hash)
+        // Attributes are read before the content, so a change made while hashing makes the snapshot outdated rather than wrong
+        val attributes = Files.readAttributes(file.toPath(), BasicFileAttributes::class.java)
+        val hash = file.contentHash
+        return FileSnapshot(file, attributes.size(), hash, trustedLastModified(attributes), attributes.fileKey()?.toString())
+    }
+
+    /**
+     * A file may be changed again within the granularity of its timestamp right after it was hashed, so the timestamp of a file
+     * modified just now doesn't prove that the content is the same next time.
+     */
+    private fun trustedLastModified(attributes: BasicFileAttributes): Long {
+        val lastModified = attributes.lastModifiedTime().toMillis()
+        return if (System.currentTimeMillis() - lastModified < RACY_MODIFICATION_INTERVAL_MS) FileSnapshot.UNKNOWN_LAST_MODIFIED
+        else lastModified
+    }
+
+    companion object {
+        private const val RACY_MODIFICATION_INTERVAL_MS = 2000
     }
 }
\ No newline at end of file
@@ -17,20 +17,137 @@
 package org.jetbrains.kotlin.incremental.snapshots
 
 import java.io.File
-import java.security.MessageDigest
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.StandardOpenOption
 
-internal val File.md5: ByteArray
+private const val READ_BUFFER_SIZE = 64 * 1024
+
+// Files are hashed in parallel, so each thread reads through a buffer of its own. A direct buffer is read into without a copy
+private val readBuffer = ThreadLocal.withInitial { ByteBuffer.allocateDirect(READ_BUFFER_SIZE) }
+
+/**
+ * Hash of the content for detecting changes, not suitable for cryptographic purposes.
+ */
+internal val File.contentHash: ByteArray
     get() {
-        val messageDigest = MessageDigest.getInstance("MD5")
-        val buffer = ByteArray(4048)
-        inputStream().use { input ->
-            while (true) {
-                val len = input.read(buffer)
-                if (len < 0) {
-                    break
-                }
-                messageDigest.update(buffer, 0, len)
+        val hash = XxHash64()
+        val buffer = readBuffer.get()
+        FileChannel.open(toPath(), StandardOpenOption.READ).use { channel ->
+            buffer.clear()
+            while (channel.read(buffer) >= 0) {
+                buffer.flip()
+                hash.update(buffer)
+                buffer.clear()
+            }
+        }
+        return hash.digest().toByteArray()
+    }
+
+private fun Long.toByteArray(): ByteArray = ByteBuffer.allocate(8).putLong(this).array()
+
+private const val PRIME64_1 = -0x61c8864e7a143579L // 0x9E3779B185EBCA87
+private const val PRIME64_2 = -0x3d4d51c2d82b14b1L // 0xC2B2AE3D27D4EB4F
+private const val PRIME64_3 = 0x165667B19E3779F9L
+private const val PRIME64_4 = -0x7a1435883d4d519dL // 0x85EBCA77C2B2AE63
+private const val PRIME64_5 = 0x27D4EB2F165667C5L
+
+/**
+ * XXH64 with zero seed of the bytes between the position and the limit of [buffer], see https://github.com/Cyan4973/xxHash.
+ */
+internal fun xxHash64(buffer: ByteBuffer): Long = XxHash64().apply { update(buffer) }.digest()
+
+/**
+ * XXH64 with zero seed of the bytes passed to [update] in parts.
+ */
+internal class XxHash64 {
+    private var v1 = PRIME64_1 + PRIME64_2
+    private var v2 = PRIME64_2
+    private var v3 = 0L
+    private var v4 = -PRIME64_1
+    private var length = 0L
+
+    // Bytes which don't make a whole stripe of 32 bytes yet
+    private val pending = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN)
+
+    /**
+     * Adds the bytes between the position and the limit of [buffer], which are left unchanged.
+     */
+    fun update(buffer: ByteBuffer) {
+        val input = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN)
+        length += input.remaining()
+
+        if (pending.position() > 0) {
+            while (pending.hasRemaining() && input.hasRemaining()) {
+                pending.put(input.get())
             }
+            if (pending.hasRemaining()) return
+            processStripe(pending, 0)
+            pending.clear()
         }
-        return messageDigest.digest()
+
+        var position = input.position()
+        val end = input.limit()
+        while (position <= end - 32) {
+            processStripe(input, position)
+            position += 32
+        }
+        input.position(position)
+        pending.put(input)
     }
+
+    fun digest(): Long {
+        var hash: Long
+        if (length >= 32) {
+            hash = java.lang.Long.rotateLeft(v1, 1) + java.lang.Long.rotateLeft(v2, 7) +
+                    java.lang.Long.rotateLeft(v3, 12) + java.lang.Long.rotateLeft(v4, 18)
+            hash = mergeRound(hash, v1)
+            hash = mergeRound(hash, v2)
+            hash = mergeRound(hash, v3)
+            hash = mergeRound(hash, v4)
+        } else {
+            hash = PRIME64_5
+        }
+
+        hash += length
+
+        var position = 0
+        val end = pending.position()
+        while (position + 8 <= end) {
+            hash = hash xor round(0, pending.getLong(position))
+            hash = java.lang.Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4
+            position += 8
+        }
+        if (position + 4 <= end) {
+            hash = hash xor ((pending.getInt(position).toLong() and 0xFFFFFFFFL) * PRIME64_1)
+            hash = java.lang.Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3
+            position += 4
+        }
+        while (position < end) {
+            hash = hash xor ((pending.get(position).toLong() and 0xFFL) * PRIME64_5)
+            hash = java.lang.Long.rotateLeft(hash, 11) * PRIME64_1
+            position++
+        }
+
+        hash = hash xor (hash ushr 33)
+        hash *= PRIME64_2
+        hash = hash xor (hash ushr 29)
+        hash *= PRIME64_3
+        hash = hash xor (hash ushr 32)
+        return hash
+    }
+
+    private fun processStripe(input: ByteBuffer, position: Int) {
+        v1 = round(v1, input.getLong(position))
+        v2 = round(v2, input.getLong(position + 8))
+        v3 = round(v3, input.getLong(position + 16))
+        v4 = round(v4, input.getLong(position + 24))
+    }
+}
+
+private fun round(accumulator: Long, input: Long): Long =
+    java.lang.Long.rotateLeft(accumulator + input * PRIME64_2, 31) * PRIME64_1
+
+private fun mergeRound(accumulator: Long, value: Long): Long =
+    (accumulator xor round(0, value)) * PRIME64_1 + PRIME64_4
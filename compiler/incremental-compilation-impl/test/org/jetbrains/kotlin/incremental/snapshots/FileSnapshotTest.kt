@@ -6,9 +6,13 @@
 package org.jetbrains.kotlin.incremental.snapshots
 
 import org.jetbrains.kotlin.TestWithWorkingDir
+import org.junit.Assert.assertArrayEquals
 import org.junit.Assert.assertNotEquals
 import org.junit.Test
 import java.io.*
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.attribute.BasicFileAttributes
 
 class FileSnapshotTest : TestWithWorkingDir() {
     private val fileSnapshotProvider: FileSnapshotProvider
@@ -72,6 +76,60 @@ class FileSnapshotTest : TestWithWorkingDir() {
         assertNotEquals(oldSnapshot, newSnapshot)
     }
 
+    @Test
+    fun testUpToDateWithSameTimestamp() {
+        val file = File(workingDir, "1.txt").apply {
+            writeText("file")
+            setLastModified(System.currentTimeMillis() - 60_000)
+        }
+        val snapshot = fileSnapshotProvider[file]
+        assertTrue(snapshot.isUpToDate(file.attributes()))
+
+        file.setLastModified(file.lastModified() - 60_000)
+        assertFalse(snapshot.isUpToDate(file.attributes()))
+    }
+
+    @Test
+    fun testNotUpToDateWhenJustModified() {
+        val file = File(workingDir, "1.txt").apply { writeText("file") }
+        val snapshot = fileSnapshotProvider[file]
+        assertFalse(snapshot.isUpToDate(file.attributes()))
+    }
+
+    @Test
+    fun testContentHash() {
+        assertEquals(java.lang.Long.parseUnsignedLong("ef46db3751d8e999", 16), xxHash64(ByteBuffer.wrap(ByteArray(0))))
+        assertEquals(0x44bc2cf5ad770999L, xxHash64(ByteBuffer.wrap("abc".toByteArray())))
+        assertEquals(
+            java.lang.Long.parseUnsignedLong("fbcea83c8a378bf1", 16),
+            xxHash64(ByteBuffer.wrap("Nobody inspects the spammish repetition".toByteArray()))
+        )
+
+        // Larger than the read buffer and not a whole number of stripes
+        val bytes = ByteArray(200_003) { (it * 31).toByte() }
+        val file = File(workingDir, "1.bin").apply { writeBytes(bytes) }
+        assertArrayEquals(ByteBuffer.allocate(8).putLong(xxHash64(ByteBuffer.wrap(bytes))).array(), file.contentHash)
+
+        // The file is not held open or mapped after hashing
+        assertTrue(file.delete())
+    }
+
+    @Test
+    fun testContentHashInParts() {
+        val bytes = ByteArray(1000) { (it * 31).toByte() }
+        val expected = xxHash64(ByteBuffer.wrap(bytes))
+        for (partSize in listOf(1, 7, 31, 32, 33, 100, 999)) {
+            val hash = XxHash64()
+            for (offset in bytes.indices step partSize) {
+                hash.update(ByteBuffer.wrap(bytes, offset, minOf(partSize, bytes.size - offset)))
+            }
+            assertEquals("Parts of $partSize bytes", expected, hash.digest())
+        }
+    }
+
+    private fun File.attributes(): BasicFileAttributes =
+        Files.readAttributes(toPath(), BasicFileAttributes::class.java)
+
     private fun saveAndReadBack(snapshot: FileSnapshot): FileSnapshot {
         val byteOut = ByteArrayOutputStream()
         DataOutputStream(byteOut).use { FileSnapshotExternalizer.save(it, snapshot) }
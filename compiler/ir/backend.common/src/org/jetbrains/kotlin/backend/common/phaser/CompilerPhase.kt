@@ -121,8 +121,9 @@ abstract class AbstractNamedPhaseWrapper<in Context : CommonBackendContext, Inpu
     }
 
     private fun runBody(phaseConfig: PhaseConfig, phaserState: PhaserState<Input>, context: Context, input: Input): Output {
-        return if (phaseConfig.needProfiling) {
-            runAndProfile(phaseConfig, phaserState, context, input)
+        val profiler = phaseConfig.profiler
+        return if (profiler != null) {
+            runAndProfile(profiler, phaseConfig, phaserState, context, input)
         } else {
             phaserState.downlevel(nlevels) {
                 lower.invoke(phaseConfig, phaserState, context, input)
@@ -144,16 +145,27 @@ abstract class AbstractNamedPhaseWrapper<in Context : CommonBackendContext, Inpu
         }
     }
 
-    private fun runAndProfile(phaseConfig: PhaseConfig, phaserState: PhaserState<Input>, context: Context, source: Input): Output {
+    private fun runAndProfile(
+        profiler: PhaseProfiler,
+        phaseConfig: PhaseConfig,
+        phaserState: PhaserState<Input>,
+        context: Context,
+        source: Input
+    ): Output {
         var result: Output? = null
         val msec = measureTimeMillis {
-            result = phaserState.downlevel(nlevels) {
-                lower.invoke(phaseConfig, phaserState, context, source)
+            result = profiler.measure(this) {
+                phaserState.downlevel(nlevels) {
+                    lower.invoke(phaseConfig, phaserState, context, source)
+                }
             }
         }
-        // TODO: use a proper logger
-        println("${"\t".repeat(phaserState.depth)}$description: $msec msec")
-        return result!!
+        if (phaseConfig.needProfiling) {
+            // TODO: use a proper logger
+            println("${"\t".repeat(phaserState.depth)}$description: $msec msec")
+        }
+        @Suppress("UNCHECKED_CAST")
+        return result as Output
     }
 
     private fun checkAndRun(set: Set<AnyNamedPhase>, block: () -> Unit) {
@@ -26,7 +26,8 @@ class PhaseConfig(
     val namesOfElementsExcludedFromDumping: Set<String> = emptySet(),
     val needProfiling: Boolean = false,
     val checkConditions: Boolean = false,
-    val checkStickyConditions: Boolean = false
+    val checkStickyConditions: Boolean = false,
+    val profiler: PhaseProfiler? = if (needProfiling) PhaseProfiler() else null
 ) {
     private val enabledMut = enabled
 
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.backend.common.phaser
+
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.util.*
+
+/**
+ * Collects wall time, CPU time and allocated memory of named phases.
+ *
+ * Measurements are inclusive: the numbers of a phase contain the numbers of its subphases. Invocations of the same phase at the same
+ * position in the phase tree (e.g. a per-file lowering run for every file) are summed up into one record.
+ *
+ * Phases are expected to be invoked on one thread at a time. CPU time and allocated memory are measured for the current thread only,
+ * and are reported as -1 if the JVM doesn't support measuring them.
+ */
+class PhaseProfiler {
+    class Record internal constructor(val name: String, val description: String, val depth: Int, val parent: Record?) {
+        internal val children = LinkedHashMap<String, Record>()
+
+        var invocations = 0
+            private set
+        var wallTimeNanos = 0L
+            private set
+        var cpuTimeNanos = 0L
+            private set
+        var allocatedBytes = 0L
+            private set
+
+        val path: String
+            get() = if (parent == null || parent.parent == null) name else "${parent.path}/$name"
+
+        val selfWallTimeNanos: Long
+            get() = wallTimeNanos - children.values.sumByLong { it.wallTimeNanos }
+
+        internal fun add(wallTime: Long, cpuTime: Long, allocated: Long) {
+            invocations++
+            wallTimeNanos += wallTime
+            cpuTimeNanos = if (cpuTime < 0 || cpuTimeNanos < 0) -1 else cpuTimeNanos + cpuTime
+            allocatedBytes = if (allocated < 0 || allocatedBytes < 0) -1 else allocatedBytes + allocated
+        }
+    }
+
+    private val root = Record("", "", -1, null)
+    private var current = root
+
+    private val threadBean = ManagementFactory.getThreadMXBean()
+    private val allocationBean = (threadBean as? com.sun.management.ThreadMXBean)?.takeIf {
+        try {
+            if (it.isThreadAllocatedMemorySupported && !it.isThreadAllocatedMemoryEnabled) {
+                it.isThreadAllocatedMemoryEnabled = true
+            }
+            it.isThreadAllocatedMemoryEnabled
+        } catch (e: UnsupportedOperationException) {
+            false
+        }
+    }
+    private val cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported && threadBean.isThreadCpuTimeEnabled
+
+    /** All records in the order phases were first invoked, parents before their subphases. */
+    val records: List<Record>
+        get() = mutableListOf<Record>().also { collect(root, it) }
+
+    fun <R> measure(phase: AnyNamedPhase, block: () -> R): R {
+        val parent = current
+        val record = parent.children.getOrPut(phase.name) { Record(phase.name, phase.description, parent.depth + 1, parent) }
+
+        val startWall = System.nanoTime()
+        val startCpu = cpuTime()
+        val startAllocated = allocatedBytes()
+        current = record
+        try {
+            return block()
+        } finally {
+            current = parent
+            val cpu = cpuTime()
+            val allocated = allocatedBytes()
+            record.add(
+                System.nanoTime() - startWall,
+                if (cpu < 0 || startCpu < 0) -1 else cpu - startCpu,
+                if (allocated < 0 || startAllocated < 0) -1 else allocated - startAllocated
+            )
+        }
+    }
+
+    private fun cpuTime(): Long =
+        if (cpuTimeSupported) threadBean.currentThreadCpuTime else -1
+
+    private fun allocatedBytes(): Long =
+        allocationBean?.getThreadAllocatedBytes(Thread.currentThread().id) ?: -1
+
+    private fun collect(record: Record, result: MutableList<Record>) {
+        for (child in record.children.values) {
+            result.add(child)
+            collect(child, result)
+        }
+    }
+
+    /**
+     * Writes the collected measurements as CSV if the name of [file] ends with `.csv`, and as JSON otherwise.
+     */
+    fun writeReport(file: File) {
+        file.absoluteFile.parentFile?.mkdirs()
+        file.writeText(if (file.extension.equals("csv", ignoreCase = true)) renderCsv() else renderJson())
+    }
+
+    fun renderCsv(): String = buildString {
+        appendln("phase,description,depth,invocations,wall_ms,self_wall_ms,cpu_ms,allocated_bytes")
+        for (record in records) {
+            append(csvValue(record.path)).append(',')
+            append(csvValue(record.description)).append(',')
+            append(record.depth).append(',')
+            append(record.invocations).append(',')
+            append(millis(record.wallTimeNanos)).append(',')
+            append(millis(record.selfWallTimeNanos)).append(',')
+            append(millis(record.cpuTimeNanos)).append(',')
+            append(record.allocatedBytes)
+            appendln()
+        }
+    }
+
+    fun renderJson(): String = buildString {
+        appendln("{")
+        appendln("  \"phases\": [")
+        val all = records
+        all.forEachIndexed { index, record ->
+            append("    {")
+            append("\"phase\": ").append(jsonString(record.path)).append(", ")
+            append("\"description\": ").append(jsonString(record.description)).append(", ")
+            append("\"depth\": ").append(record.depth).append(", ")
+            append("\"invocations\": ").append(record.invocations).append(", ")
+            append("\"wallMs\": ").append(millis(record.wallTimeNanos)).append(", ")
+            append("\"selfWallMs\": ").append(millis(record.selfWallTimeNanos)).append(", ")
+            append("\"cpuMs\": ").append(millis(record.cpuTimeNanos)).append(", ")
+            append("\"allocatedBytes\": ").append(record.allocatedBytes)
+            append("}")
+            appendln(if (index < all.lastIndex) "," else "")
+        }
+        appendln("  ]")
+        appendln("}")
+    }
+
+    private fun millis(nanos: Long): String =
+        if (nanos < 0) "-1" else String.format(Locale.US, "%.3f", nanos / 1_000_000.0)
+
+    private fun csvValue(value: String): String =
+        if (value.any { it == ',' || it == '"' || it == '\n' }) "\"${value.replace("\"", "\"\"")}\"" else value
+
+    private fun jsonString(value: String): String = buildString {
+        append('"')
+        for (c in value) {
+            when {
+                c == '"' -> append("\\\"")
+                c == '\\' -> append("\\\\")
+                c == '\n' -> append("\\n")
+                c < ' ' -> append(String.format("\\u%04x", c.toInt()))
+                else -> append(c)
+            }
+        }
+        append('"')
+    }
+}
+
+private inline fun <T> Iterable<T>.sumByLong(selector: (T) -> Long): Long {
+    var sum = 0L
+    for (element in this) sum += selector(element)
+    return sum
+}
@@ -24,6 +24,7 @@ import org.jetbrains.kotlin.ir.util.patchDeclarationParents
 import org.jetbrains.kotlin.library.KotlinLibrary
 import org.jetbrains.kotlin.library.resolver.KotlinLibraryResolveResult
 import org.jetbrains.kotlin.name.FqName
+import java.io.Writer
 
 class CompilerResult(
     val jsCode: String?,
@@ -43,7 +44,9 @@ fun compile(
     exportedDeclarations: Set<FqName> = emptySet(),
     generateFullJs: Boolean = true,
     generateDceJs: Boolean = false,
-    dceDriven: Boolean = false
+    dceDriven: Boolean = false,
+    fullJsOutput: Writer? = null,
+    dceJsOutput: Writer? = null
 ): CompilerResult {
     stageController = object : StageController {}
 
@@ -100,11 +103,11 @@ fun compile(
         }
 
         val transformer = IrModuleToJsTransformer(context, mainFunction, mainArguments)
-        return transformer.generateModule(moduleFragment, fullJs = true, dceJs = false)
+        return transformer.generateModule(moduleFragment, fullJs = true, dceJs = false, fullJsOutput = fullJsOutput)
     } else {
         jsPhases.invokeToplevel(phaseConfig, context, moduleFragment)
         val transformer = IrModuleToJsTransformer(context, mainFunction, mainArguments)
-        return transformer.generateModule(moduleFragment, generateFullJs, generateDceJs)
+        return transformer.generateModule(moduleFragment, generateFullJs, generateDceJs, fullJsOutput, dceJsOutput)
     }
 }
 
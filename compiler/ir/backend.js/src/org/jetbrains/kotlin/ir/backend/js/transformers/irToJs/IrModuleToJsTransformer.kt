@@ -20,9 +20,12 @@ import org.jetbrains.kotlin.ir.declarations.IrModuleFragment
 import org.jetbrains.kotlin.ir.declarations.IrSimpleFunction
 import org.jetbrains.kotlin.ir.declarations.path
 import org.jetbrains.kotlin.ir.symbols.IrClassSymbol
+import org.jetbrains.kotlin.js.backend.JsToStringGenerationVisitor
 import org.jetbrains.kotlin.js.backend.ast.*
 import org.jetbrains.kotlin.js.config.JSConfigurationKeys
+import org.jetbrains.kotlin.js.util.TextOutputImpl
 import org.jetbrains.kotlin.utils.DFS
+import java.io.Writer
 
 class IrModuleToJsTransformer(
     private val backendContext: JsIrBackendContext,
@@ -35,7 +38,16 @@ class IrModuleToJsTransformer(
     private val moduleKind = backendContext.configuration[JSConfigurationKeys.MODULE_KIND]!!
     private val generateRegionComments = backendContext.configuration.getBoolean(JSConfigurationKeys.GENERATE_REGION_COMMENTS)
 
-    fun generateModule(module: IrModuleFragment, fullJs: Boolean = true, dceJs: Boolean = false): CompilerResult {
+    /**
+     * The code for which an output is given is written to it as it is generated, and isn't kept in the result.
+     */
+    fun generateModule(
+        module: IrModuleFragment,
+        fullJs: Boolean = true,
+        dceJs: Boolean = false,
+        fullJsOutput: Writer? = null,
+        dceJsOutput: Writer? = null
+    ): CompilerResult {
         val additionalPackages = with(backendContext) {
             externalPackageFragment.values + listOf(
                 bodilessBuiltInsPackageFragment,
@@ -50,7 +62,7 @@ class IrModuleToJsTransformer(
 
         namer.merge(module.files, additionalPackages)
 
-        val jsCode = if (fullJs) generateWrappedModuleBody(module, exportedModule, namer) else null
+        val jsCode = if (fullJs) generateWrappedModuleBody(module, exportedModule, namer).toCode(fullJsOutput) else null
 
         val dceJsCode = if (dceJs) {
             eliminateDeadDeclarations(module, backendContext, mainFunction)
@@ -58,13 +70,22 @@ class IrModuleToJsTransformer(
             // TODO: is this mode relevant for scripting? If yes, refactor so that the external name tables are used here when needed.
             val namer = NameTables(emptyList())
             namer.merge(module.files, additionalPackages)
-            generateWrappedModuleBody(module, exportedModule, namer)
+            generateWrappedModuleBody(module, exportedModule, namer).toCode(dceJsOutput)
         } else null
 
         return CompilerResult(jsCode, dceJsCode, dts)
     }
 
-    private fun generateWrappedModuleBody(module: IrModuleFragment, exportedModule: ExportedModule, namer: NameTables): String {
+    private fun JsProgram.toCode(output: Writer?): String? {
+        if (output == null) return toString()
+
+        val textOutput = TextOutputImpl(output)
+        JsToStringGenerationVisitor(textOutput).accept(this)
+        textOutput.flush()
+        return null
+    }
+
+    private fun generateWrappedModuleBody(module: IrModuleFragment, exportedModule: ExportedModule, namer: NameTables): JsProgram {
         val program = JsProgram()
 
         val nameGenerator = IrNamerImpl(
@@ -120,7 +141,7 @@ class IrModuleToJsTransformer(
             )
         }
 
-        return program.toString()
+        return program
     }
 
     private fun generateModuleBody(module: IrModuleFragment, context: JsGenerationContext): List<JsStatement> {
@@ -26,10 +26,13 @@ import org.jetbrains.kotlin.ir.symbols.impl.*
 import org.jetbrains.kotlin.ir.types.IrType
 import org.jetbrains.kotlin.ir.types.impl.IrErrorTypeImpl
 import org.jetbrains.kotlin.ir.util.*
+import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.protobuf.ExtensionRegistryLite.newInstance
 import org.jetbrains.kotlin.resolve.descriptorUtil.module
 import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
 import org.jetbrains.kotlin.types.Variance
+import org.jetbrains.kotlin.util.PerformanceCounter
+import java.nio.ByteBuffer
 import org.jetbrains.kotlin.backend.common.serialization.proto.IrDeclaration as ProtoDeclaration
 import org.jetbrains.kotlin.backend.common.serialization.proto.IrFile as ProtoFile
 import org.jetbrains.kotlin.backend.common.serialization.proto.IrType as ProtoType
@@ -71,7 +74,7 @@ abstract class KotlinIrLinker(
             }
 
             override fun addIdSignature(key: IdSignature) {
-                val fileDeserializer = module.moduleReversedFileIndex[key] ?: error("No file found for key $key")
+                val fileDeserializer = module.findFileDeserializer(key) ?: error("No file found for key $key")
                 fileDeserializer.fileLocalDeserializationState.addIdSignature(key)
 
                 enqueueFile(fileDeserializer)
@@ -130,11 +133,26 @@ abstract class KotlinIrLinker(
 
         private val moduleDeserializationState = DeserializationState.ModuleDeserializationState(this)
         val moduleReversedFileIndex = mutableMapOf<IdSignature, IrDeserializerForFile>()
+
+        // Signatures of top-level declarations of a file are deserialized only when a declaration from the file's package is looked up.
+        // Unless the whole module is needed, this keeps the linker from deserializing signatures of every declaration of every library.
+        private val filesToIndexByPackage = mutableMapOf<FqName, MutableList<IrDeserializerForFile>>()
+
         private val moduleDependencies by lazy {
             moduleDescriptor.allDependencyModules.filter { it != moduleDescriptor }.mapNotNull { resolveModuleDeserializer(it) }
         }
 
-        protected open fun containsIdSignature(idSig: IdSignature): Boolean = idSig in moduleReversedFileIndex
+        protected open fun containsIdSignature(idSig: IdSignature): Boolean = findFileDeserializer(idSig) != null
+
+        fun findFileDeserializer(idSig: IdSignature): IrDeserializerForFile? {
+            indexPackage(idSig.packageFqName())
+            return moduleReversedFileIndex[idSig]
+        }
+
+        private fun indexPackage(fqName: FqName) {
+            // Files of a package are indexed in their order in the library, so that the first file wins for duplicated signatures
+            filesToIndexByPackage.remove(fqName)?.forEach { it.indexTopLevelSignatures() }
+        }
 
         // This is a heavy initializer
         val module = deserializeIrModuleHeader()
@@ -143,6 +161,7 @@ abstract class KotlinIrLinker(
             private var annotations: List<ProtoConstructorCall>?,
             private val actuals: List<ProtoActual>,
             private val fileIndex: Int,
+            private val topLevelDeclarationIds: List<Int>,
             onlyHeaders: Boolean
         ) : IrFileDeserializer(logger, builtIns, symbolTable) {
 
@@ -155,13 +174,33 @@ abstract class KotlinIrLinker(
             private val irTypeCache = mutableMapOf<Int, IrType>()
 
             var reversedSignatureIndex = emptyMap<IdSignature, Int>()
+                private set
+
+            private var topLevelSignaturesIndexed = false
 
             val fileLocalDeserializationState = DeserializationState.SimpleDeserializationState {
                 moduleDeserializationState.deserializedSymbols[it]?.isBound != true
             }
 
             fun deserializeDeclaration(idSig: IdSignature): IrDeclaration {
-                return deserializeDeclaration(loadTopLevelDeclarationProto(idSig), file)
+                return topLevelDeclarationCounter.time {
+                    deserializeDeclaration(loadTopLevelDeclarationProto(idSig), file)
+                }
+            }
+
+            fun indexTopLevelSignatures() {
+                if (topLevelSignaturesIndexed) return
+                topLevelSignaturesIndexed = true
+
+                val fileSignatureIndex = topLevelDeclarationIds.map { id ->
+                    topLevelSignatureCounter.time { deserializeIdSignature(id) } to id
+                }
+
+                fileSignatureIndex.forEach {
+                    moduleReversedFileIndex.getOrPut(it.first) { this }
+                }
+
+                reversedSignatureIndex = fileSignatureIndex.toMap()
             }
 
             fun deserializeExpectActualMapping() {
@@ -182,37 +221,39 @@ abstract class KotlinIrLinker(
             }
 
             private fun resolveSignatureIndex(idSig: IdSignature): Int {
+                indexPackage(file.fqName)
+                indexTopLevelSignatures()
                 return reversedSignatureIndex[idSig] ?: error("Not found Idx for $idSig")
             }
 
             private fun loadTopLevelDeclarationProto(idSig: IdSignature): ProtoDeclaration {
                 val idSigIndex = resolveSignatureIndex(idSig)
-                val stream = reader(moduleDescriptor, fileIndex, idSigIndex).codedInputStream
+                val stream = readerBuffer(moduleDescriptor, fileIndex, idSigIndex).codedInputStream
                 return ProtoDeclaration.parseFrom(stream, newInstance())
             }
 
             private fun loadTypeProto(index: Int): ProtoType {
-                val stream = readType(moduleDescriptor, fileIndex, index).codedInputStream
+                val stream = readTypeBuffer(moduleDescriptor, fileIndex, index).codedInputStream
                 return ProtoType.parseFrom(stream, newInstance())
             }
 
             private fun loadSignatureProto(index: Int): ProtoIdSignature {
-                val stream = readSignature(moduleDescriptor, fileIndex, index).codedInputStream
+                val stream = readSignatureBuffer(moduleDescriptor, fileIndex, index).codedInputStream
                 return ProtoIdSignature.parseFrom(stream, newInstance())
             }
 
             private fun loadStatementBodyProto(index: Int): ProtoStatement {
-                val stream = readBody(moduleDescriptor, fileIndex, index).codedInputStream
+                val stream = readBodyBuffer(moduleDescriptor, fileIndex, index).codedInputStream
                 return ProtoStatement.parseFrom(stream, newInstance())
             }
 
             private fun loadExpressionBodyProto(index: Int): ProtoExpression {
-                val stream = readBody(moduleDescriptor, fileIndex, index).codedInputStream
+                val stream = readBodyBuffer(moduleDescriptor, fileIndex, index).codedInputStream
                 return ProtoExpression.parseFrom(stream, newInstance())
             }
 
             private fun loadStringProto(index: Int): String {
-                return String(readString(moduleDescriptor, fileIndex, index))
+                return readStringBuffer(moduleDescriptor, fileIndex, index).withBytes { bytes, offset, size -> String(bytes, offset, size) }
             }
             // TODO: this function allows passing descriptor for all kinds of symbols.
             //  It is incorrect.
@@ -391,8 +432,10 @@ abstract class KotlinIrLinker(
 
             override fun deserializeExpressionBody(index: Int): IrExpression {
                 return if (deserializeBodies) {
-                    val bodyData = loadExpressionBodyProto(index)
-                    deserializeExpression(bodyData)
+                    bodyCounter.time {
+                        val bodyData = loadExpressionBodyProto(index)
+                        deserializeExpression(bodyData)
+                    }
                 } else {
                     val errorType = IrErrorTypeImpl(null, emptyList(), Variance.INVARIANT)
                     IrErrorExpressionImpl(-1, -1, errorType, "Expression body is not deserialized yet")
@@ -401,8 +444,10 @@ abstract class KotlinIrLinker(
 
             override fun deserializeStatementBody(index: Int): IrElement {
                 if (deserializeBodies) {
-                    val bodyData = loadStatementBodyProto(index)
-                    return deserializeStatement(bodyData)
+                    return bodyCounter.time {
+                        val bodyData = loadStatementBodyProto(index)
+                        deserializeStatement(bodyData)
+                    }
                 } else {
                     val errorType = IrErrorTypeImpl(null, emptyList(), Variance.INVARIANT)
                     return IrBlockBodyImpl(-1, -1, listOf(IrErrorExpressionImpl(-1, -1, errorType, "Statement body is not deserialized yet")))
@@ -435,7 +480,9 @@ abstract class KotlinIrLinker(
             val fileEntry = NaiveSourceBasedFileEntryImpl(fileName, fileProto.fileEntry.lineStartOffsetsList.toIntArray())
 
             val fileDeserializer =
-                IrDeserializerForFile(fileProto.annotationList, fileProto.actualsList, fileIndex, !strategy.needBodies).apply {
+                IrDeserializerForFile(
+                    fileProto.annotationList, fileProto.actualsList, fileIndex, fileProto.declarationIdList, !strategy.needBodies
+                ).apply {
 
                     // Explicitly exported declarations (e.g. top-level initializers) must be deserialized before all other declarations.
                     // Thus we schedule their deserialization in deserializer's constructor.
@@ -457,21 +504,19 @@ abstract class KotlinIrLinker(
             fileDeserializer.file = file
             fileToDeserializerMap[file] = fileDeserializer
 
-            val fileSignatureIndex = fileProto.declarationIdList.map { fileDeserializer.deserializeIdSignature(it) to it }
-
-            fileSignatureIndex.forEach {
-                moduleReversedFileIndex.getOrPut(it.first) { fileDeserializer }
-            }
-
-            fileDeserializer.reversedSignatureIndex = fileSignatureIndex.toMap()
+            availableTopLevelDeclarationCounter.increment(fileProto.declarationIdCount)
 
             if (strategy.theWholeWorld) {
-                for (id in fileSignatureIndex) {
-                    moduleDeserializationState.addIdSignature(id.first)
+                fileDeserializer.indexTopLevelSignatures()
+                for (id in fileDeserializer.reversedSignatureIndex.keys) {
+                    moduleDeserializationState.addIdSignature(id)
                 }
                 moduleDeserializationState.enqueueFile(fileDeserializer)
-            } else if (strategy.explicitlyExported) {
-                moduleDeserializationState.enqueueFile(fileDeserializer)
+            } else {
+                filesToIndexByPackage.getOrPut(fqName) { mutableListOf() }.add(fileDeserializer)
+                if (strategy.explicitlyExported) {
+                    moduleDeserializationState.enqueueFile(fileDeserializer)
+                }
             }
 
             return file
@@ -483,7 +528,7 @@ abstract class KotlinIrLinker(
             val files = ArrayList<IrFile>(fileCount)
 
             for (i in 0 until fileCount) {
-                files.add(deserializeIrFile(ProtoFile.parseFrom(readFile(moduleDescriptor, i), newInstance()), i))
+                files.add(deserializeIrFile(ProtoFile.parseFrom(readFileBuffer(moduleDescriptor, i).codedInputStream, newInstance()), i))
             }
 
             return IrModuleFragmentImpl(moduleDescriptor, builtIns, files)
@@ -518,9 +563,26 @@ abstract class KotlinIrLinker(
         loadKnownBuiltinSymbols()
     }
 
-    private val ByteArray.codedInputStream: org.jetbrains.kotlin.protobuf.CodedInputStream
+    // Protobuf parses only arrays, so entries of memory-mapped files are copied into this array, reused for all entries.
+    // Parsed messages copy what they keep, so the array may be overwritten as soon as an entry is parsed.
+    private var entryBytes = ByteArray(INITIAL_ENTRY_BYTES_SIZE)
+
+    private inline fun <T> ByteBuffer.withBytes(block: (bytes: ByteArray, offset: Int, size: Int) -> T): T {
+        val size = remaining()
+        if (hasArray()) return block(array(), arrayOffset() + position(), size)
+
+        if (entryBytes.size < size) {
+            entryBytes = ByteArray(maxOf(size, entryBytes.size * 2))
+        }
+        duplicate().get(entryBytes, 0, size)
+        return block(entryBytes, 0, size)
+    }
+
+    private val ByteBuffer.codedInputStream: org.jetbrains.kotlin.protobuf.CodedInputStream
         get() {
-            val codedInputStream = org.jetbrains.kotlin.protobuf.CodedInputStream.newInstance(this)
+            val codedInputStream = withBytes { bytes, offset, size ->
+                org.jetbrains.kotlin.protobuf.CodedInputStream.newInstance(bytes, offset, size)
+            }
             codedInputStream.setRecursionLimit(65535) // The default 64 is blatantly not enough for IR.
             return codedInputStream
         }
@@ -533,6 +595,25 @@ abstract class KotlinIrLinker(
     protected abstract fun readFile(moduleDescriptor: ModuleDescriptor, fileIndex: Int): ByteArray
     protected abstract fun readFileCount(moduleDescriptor: ModuleDescriptor): Int
 
+    // The entries as buffers, which may be slices of memory-mapped library files, so that they are not copied into new arrays
+    protected open fun readerBuffer(moduleDescriptor: ModuleDescriptor, fileIndex: Int, idSigIndex: Int): ByteBuffer =
+        ByteBuffer.wrap(reader(moduleDescriptor, fileIndex, idSigIndex))
+
+    protected open fun readTypeBuffer(moduleDescriptor: ModuleDescriptor, fileIndex: Int, typeIndex: Int): ByteBuffer =
+        ByteBuffer.wrap(readType(moduleDescriptor, fileIndex, typeIndex))
+
+    protected open fun readSignatureBuffer(moduleDescriptor: ModuleDescriptor, fileIndex: Int, signatureIndex: Int): ByteBuffer =
+        ByteBuffer.wrap(readSignature(moduleDescriptor, fileIndex, signatureIndex))
+
+    protected open fun readStringBuffer(moduleDescriptor: ModuleDescriptor, fileIndex: Int, stringIndex: Int): ByteBuffer =
+        ByteBuffer.wrap(readString(moduleDescriptor, fileIndex, stringIndex))
+
+    protected open fun readBodyBuffer(moduleDescriptor: ModuleDescriptor, fileIndex: Int, bodyIndex: Int): ByteBuffer =
+        ByteBuffer.wrap(readBody(moduleDescriptor, fileIndex, bodyIndex))
+
+    protected open fun readFileBuffer(moduleDescriptor: ModuleDescriptor, fileIndex: Int): ByteBuffer =
+        ByteBuffer.wrap(readFile(moduleDescriptor, fileIndex))
+
     protected open fun handleNoModuleDeserializerFound(idSignature: IdSignature): DeserializationState<*> {
         error("Deserializer for declaration $idSignature is not found")
     }
@@ -784,6 +865,13 @@ abstract class KotlinIrLinker(
     }
 }
 
+private val availableTopLevelDeclarationCounter = PerformanceCounter.create("IR linker: read top-level declaration ids")
+private val topLevelSignatureCounter = PerformanceCounter.create("IR linker: deserialize top-level declaration signature")
+private val topLevelDeclarationCounter = PerformanceCounter.create("IR linker: deserialize top-level declaration", reenterable = true)
+private val bodyCounter = PerformanceCounter.create("IR linker: deserialize body", reenterable = true)
+
+private const val INITIAL_ENTRY_BYTES_SIZE = 4096
+
 enum class DeserializationStrategy(val needBodies: Boolean, val explicitlyExported: Boolean, val theWholeWorld: Boolean) {
     ONLY_REFERENCED(true, false, false),
     ALL(true, true, true),
@@ -43,6 +43,24 @@ class JvmIrLinker(logger: LoggingContext, builtIns: IrBuiltIns, symbolTable: Sym
     override fun readFileCount(moduleDescriptor: ModuleDescriptor) =
         moduleDescriptor.kotlinLibrary.fileCount()
 
+    override fun readerBuffer(moduleDescriptor: ModuleDescriptor, fileIndex: Int, idSigIndex: Int) =
+        moduleDescriptor.kotlinLibrary.irDeclarationBuffer(idSigIndex, fileIndex)
+
+    override fun readTypeBuffer(moduleDescriptor: ModuleDescriptor, fileIndex: Int, typeIndex: Int) =
+        moduleDescriptor.kotlinLibrary.typeBuffer(typeIndex, fileIndex)
+
+    override fun readSignatureBuffer(moduleDescriptor: ModuleDescriptor, fileIndex: Int, signatureIndex: Int) =
+        moduleDescriptor.kotlinLibrary.signatureBuffer(signatureIndex, fileIndex)
+
+    override fun readStringBuffer(moduleDescriptor: ModuleDescriptor, fileIndex: Int, stringIndex: Int) =
+        moduleDescriptor.kotlinLibrary.stringBuffer(stringIndex, fileIndex)
+
+    override fun readBodyBuffer(moduleDescriptor: ModuleDescriptor, fileIndex: Int, bodyIndex: Int) =
+        moduleDescriptor.kotlinLibrary.bodyBuffer(bodyIndex, fileIndex)
+
+    override fun readFileBuffer(moduleDescriptor: ModuleDescriptor, fileIndex: Int) =
+        moduleDescriptor.kotlinLibrary.fileBuffer(fileIndex)
+
     override fun resolveModuleDeserializer(moduleDescriptor: ModuleDescriptor): IrModuleDeserializer? {
         return deserializersForModules[moduleDescriptor]
     }
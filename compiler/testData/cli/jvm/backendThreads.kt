@@ -0,0 +1,20 @@
+inline class Id(val value: Int)
+
+inline fun <T> measure(block: () -> T): T = block()
+
+fun sum(ids: List<Id>): Int {
+    var result = 0
+    for (id in ids) {
+        val boxed: Any = id
+        result += measure { (boxed as Id).value }
+    }
+    return result
+}
+
+class Box<T>(val value: T) {
+    fun <R> map(f: (T) -> R): Box<R> = Box(f(value))
+}
+
+fun main() {
+    println(sum(listOf(Id(1), Id(2))) + Box(40).map { it + 2 }.value)
+}
@@ -0,0 +1,104 @@
+// IGNORE_BACKEND_FIR: JVM_IR
+// TARGET_BACKEND: JVM
+
+// WITH_REFLECT
+
+import kotlin.reflect.KClass
+import kotlin.reflect.KFunction
+import kotlin.reflect.KParameter
+import kotlin.reflect.full.primaryConstructor
+import kotlin.test.assertEquals
+
+class Primary(val name: String, val nickname: String?, val tags: List<String?> = emptyList(), vararg val ids: Int)
+
+class Secondary private constructor(val x: Int) {
+    constructor(s: String?) : this(s?.length ?: 0)
+    internal constructor(x: Long, y: Long = 0L) : this((x + y).toInt())
+}
+
+class NoPrimary {
+    constructor()
+    constructor(x: Int)
+}
+
+open class Base(val x: Int?)
+
+class Derived : Base(null)
+
+data class Data(val a: Int, val b: String? = null)
+
+enum class Enum(val value: String?) {
+    A("a"), B(null)
+}
+
+annotation class Annotation(val x: Int, val s: String = "")
+
+class Outer {
+    inner class Inner(val x: Int)
+}
+
+inline class Inline(val x: String)
+
+object Object
+
+interface Interface
+
+// What kotlin-reflect tells about the constructors of a class, answered from the metadata for most classes
+private fun KClass<*>.constructorsInfo(): List<Any?> =
+    constructors.map { constructor ->
+        val parameters = constructor.parameters.filter { it.kind == KParameter.Kind.VALUE }
+        listOf(constructor == primaryConstructor, parameters.map { listOf(it.name, it.isOptional, it.isVararg, it.type.isMarkedNullable) })
+    }
+
+private fun Any.get(name: String): Any? = javaClass.getMethod(name).invoke(this)
+
+// The same taken from the descriptors of the constructors, i.e. as kotlin-reflect computed them before it read the metadata
+private fun KClass<*>.constructorsInfoFromDescriptors(): List<Any?> =
+    constructors.map { constructor ->
+        val descriptor = constructor.get("getDescriptor")!!
+        val parameters = descriptor.get("getValueParameters") as List<*>
+        listOf(descriptor.get("isPrimary"), parameters.map {
+            listOf(
+                it!!.get("getName").toString(), it.get("declaresDefaultValue"), it.get("getVarargElementType") != null,
+                it.get("getType").toString().endsWith("?")
+            )
+        })
+    }
+
+fun box(): String {
+    val classes = listOf(
+        Primary::class, Secondary::class, NoPrimary::class, Base::class, Derived::class, Data::class, Enum::class,
+        Annotation::class, Outer.Inner::class, Inline::class, Object::class, Interface::class
+    )
+    for (klass in classes) {
+        assertEquals(klass.constructorsInfoFromDescriptors(), klass.constructorsInfo(), "Constructors of $klass")
+    }
+
+    assertEquals(
+        listOf(
+            listOf(
+                true, listOf(
+                    listOf("name", false, false, false),
+                    listOf("nickname", false, false, true),
+                    listOf("tags", true, false, false),
+                    listOf("ids", false, true, false)
+                )
+            )
+        ),
+        Primary::class.constructorsInfo()
+    )
+    assertEquals(listOf(false, false, true), Secondary::class.constructors.map { it == Secondary::class.primaryConstructor })
+    assertEquals(null, NoPrimary::class.primaryConstructor)
+    assertEquals(emptyList<Any?>(), Object::class.constructorsInfo())
+    assertEquals(emptyList<Any?>(), Interface::class.constructorsInfo())
+
+    // Constructors read from the metadata are equal to the ones of constructor references, and can be called
+    assertEquals<KFunction<*>?>(::Primary, Primary::class.primaryConstructor)
+    val constructor = Data::class.primaryConstructor!!
+    val (a, b) = constructor.parameters
+    assertEquals(Data(1, "b"), constructor.callBy(mapOf(a to 1, b to "b")))
+    assertEquals(Data(2), constructor.callBy(mapOf(a to 2)))
+    assertEquals("value", Enum::class.constructors.single().parameters.single().name)
+
+    return "OK"
+}
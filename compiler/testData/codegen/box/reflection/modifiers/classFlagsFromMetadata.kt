@@ -0,0 +1,99 @@
+// !LANGUAGE: +FunctionalInterfaceConversion
+// IGNORE_BACKEND_FIR: JVM_IR
+// TARGET_BACKEND: JVM
+
+// WITH_REFLECT
+// FILE: J.java
+
+public class J {
+    public static class Nested {}
+    public class Inner {}
+    public abstract static class Abstract {}
+    public interface Interface {}
+    public enum Enum {}
+}
+
+// FILE: K.kt
+
+import kotlin.reflect.KClass
+import kotlin.test.assertEquals
+
+sealed class Sealed {
+    data class DataSubclass(val x: Int) : Sealed()
+    object ObjectSubclass : Sealed()
+    open class OpenSubclass : Sealed()
+}
+
+inline class Inline(val x: String)
+
+fun interface FunInterface {
+    fun invoke(): String
+}
+
+interface Interface
+
+abstract class Abstract {
+    inner class Inner
+
+    companion object
+}
+
+internal class Internal {
+    private class Private
+    protected object Protected
+}
+
+enum class Enum { ENTRY }
+
+annotation class Annotation
+
+// Modifiers of a class which kotlin-reflect answers from the flags in the metadata
+private fun KClass<*>.modifiers(): List<Any?> {
+    val modality = when {
+        isSealed -> "SEALED"
+        isAbstract -> "ABSTRACT"
+        isOpen -> "OPEN"
+        isFinal -> "FINAL"
+        else -> null
+    }
+    return listOf(visibility?.name?.toLowerCase(), modality, isData, isInner, isCompanion)
+}
+
+// The same modifiers of a class taken from its descriptor, i.e. as kotlin-reflect computed them before it read the flags
+private fun KClass<*>.descriptorModifiers(): List<Any?> {
+    val descriptor = javaClass.getMethod("getDescriptor").invoke(this)
+    fun get(name: String): Any? = descriptor.javaClass.getMethod(name).invoke(descriptor)
+    return listOf(get("getVisibility").toString(), get("getModality").toString(), get("isData"), get("isInner"), get("isCompanionObject"))
+}
+
+fun box(): String {
+    val classes = listOf(
+        Sealed::class, Sealed.DataSubclass::class, Sealed.ObjectSubclass::class, Sealed.OpenSubclass::class,
+        Inline::class, FunInterface::class, Interface::class, Abstract::class, Abstract.Inner::class, Abstract.Companion::class,
+        Internal::class, Class.forName("Internal\$Private").kotlin, Class.forName("Internal\$Protected").kotlin,
+        Enum::class, Annotation::class
+    )
+    for (klass in classes) {
+        assertEquals(klass.descriptorModifiers(), klass.modifiers(), "Modifiers of $klass")
+    }
+
+    assertEquals(listOf("public", "SEALED", false, false, false), Sealed::class.modifiers())
+    assertEquals(listOf("public", "FINAL", true, false, false), Sealed.DataSubclass::class.modifiers())
+    assertEquals(listOf("public", "FINAL", false, false, false), Inline::class.modifiers())
+    assertEquals(listOf("public", "ABSTRACT", false, false, false), FunInterface::class.modifiers())
+    assertEquals(listOf("public", "FINAL", false, true, false), Abstract.Inner::class.modifiers())
+    assertEquals(listOf("public", "FINAL", false, false, true), Abstract.Companion::class.modifiers())
+    assertEquals(listOf("internal", "FINAL", false, false, false), Internal::class.modifiers())
+    assertEquals(listOf("private", "FINAL", false, false, false), Class.forName("Internal\$Private").kotlin.modifiers())
+    assertEquals(listOf("protected", "FINAL", false, false, false), Class.forName("Internal\$Protected").kotlin.modifiers())
+
+    // Java classes have no Kotlin metadata, so their modifiers still come from the descriptor
+    assertEquals(listOf("public", "OPEN", false, false, false), J::class.modifiers())
+    assertEquals(listOf("public", "OPEN", false, false, false), J.Nested::class.modifiers())
+    assertEquals(listOf("public", "OPEN", false, true, false), J.Inner::class.modifiers())
+    assertEquals(listOf("public", "ABSTRACT", false, false, false), J.Abstract::class.modifiers())
+    assertEquals(listOf("public", "ABSTRACT", false, false, false), J.Interface::class.modifiers())
+    assertEquals(listOf("public", "FINAL", false, false, false), J.Enum::class.modifiers())
+
+    return "OK"
+}
@@ -8,6 +8,7 @@ package org.jetbrains.kotlin.fir
 import junit.framework.TestCase
 import org.jetbrains.kotlin.fir.analysis.collectors.AbstractDiagnosticCollector
 import org.jetbrains.kotlin.fir.analysis.collectors.FirDiagnosticsCollector
+import org.jetbrains.kotlin.fir.analysis.diagnostics.ConeDiagnostic
 import org.jetbrains.kotlin.fir.declarations.FirFile
 import org.jetbrains.kotlin.fir.references.FirControlFlowGraphReference
 import org.jetbrains.kotlin.fir.resolve.dfa.FirControlFlowGraphReferenceImpl
@@ -79,13 +80,22 @@ abstract class AbstractFirDiagnosticsTest : AbstractFirBaseDiagnosticsTest() {
 
     protected fun checkDiagnostics(file: File, testFiles: List<TestFile>, firFiles: List<FirFile>) {
         val collectors = mutableMapOf<FirSession, AbstractDiagnosticCollector>()
+        val parallelCollectors = mutableMapOf<FirSession, AbstractDiagnosticCollector>()
         val actualText = StringBuilder()
         for (testFile in testFiles) {
             val firFile = firFiles.firstOrNull { it.psi == testFile.ktFile }
             if (firFile != null) {
                 val session = firFile.session
                 val collector = collectors.computeIfAbsent(session) { createCollector(session) }
-                val coneDiagnostics = collector.collectDiagnostics(firFile)
+                val coneDiagnostics = collector.collectDiagnostics(firFile).toList()
+                val parallelCollector = parallelCollectors.computeIfAbsent(session) {
+                    FirDiagnosticsCollector.createParallel(session, numberOfThreads = 4)
+                }
+                TestCase.assertEquals(
+                    "Diagnostics of the parallel collector in ${testFile.name}",
+                    coneDiagnostics.map { it.render() },
+                    parallelCollector.collectDiagnostics(firFile).map { it.render() }
+                )
                 testFile.getActualText(coneDiagnostics, actualText)
             } else {
                 actualText.append(testFile.expectedText)
@@ -98,6 +108,9 @@ abstract class AbstractFirDiagnosticsTest : AbstractFirBaseDiagnosticsTest() {
         return FirDiagnosticsCollector.create(session)
     }
 
+    private fun ConeDiagnostic.render(): String =
+        "${diagnostic.factory.name} at ${diagnostic.textRanges.joinToString()}"
+
     private fun checkCfg(testDataFile: File, firFiles: List<FirFile>) {
         val builder = StringBuilder()
 
@@ -6,8 +6,12 @@ package org.jetbrains.kotlin.fir
 
 import com.intellij.openapi.fileEditor.FileDocumentManager
 import com.intellij.psi.PsiElement
+import org.jetbrains.kotlin.fir.analysis.collectors.CheckerTimings
+import org.jetbrains.kotlin.fir.analysis.collectors.FirDiagnosticsCollector
+import org.jetbrains.kotlin.fir.analysis.collectors.ParallelDiagnosticsCollector
 import org.jetbrains.kotlin.fir.builder.RawFirBuilder
 import org.jetbrains.kotlin.fir.declarations.FirFile
+import org.jetbrains.kotlin.fir.declarations.FirResolvePhase
 import org.jetbrains.kotlin.fir.diagnostics.FirStubDiagnostic
 import org.jetbrains.kotlin.fir.expressions.FirFunctionCall
 import org.jetbrains.kotlin.fir.expressions.FirQualifiedAccessExpression
@@ -15,6 +19,7 @@ import org.jetbrains.kotlin.fir.lightTree.LightTree2Fir
 import org.jetbrains.kotlin.fir.references.FirErrorNamedReference
 import org.jetbrains.kotlin.fir.resolve.firProvider
 import org.jetbrains.kotlin.fir.resolve.impl.FirProviderImpl
+import org.jetbrains.kotlin.fir.resolve.transformers.FirTotalResolveTransformer
 import org.jetbrains.kotlin.fir.types.*
 import org.jetbrains.kotlin.fir.visitors.FirDefaultVisitorVoid
 import org.jetbrains.kotlin.fir.visitors.FirTransformer
@@ -48,7 +53,9 @@ class FirResolveBench(val withProgress: Boolean) {
         val errorQualifiedAccessTypes: Int,
         val fileCount: Int,
         val errorTypesReports: Map<String, ErrorTypeReport>,
-        val timePerTransformer: Map<String, Measure>
+        val timePerTransformer: Map<String, Measure>,
+        val speedupPerParallelTransformer: Map<String, Double> = emptyMap(),
+        val timePerChecker: Map<String, Long> = emptyMap()
     ) {
         val totalTypes: Int = unresolvedTypes + resolvedTypes
         val goodTypes: Int = resolvedTypes - errorTypes - implicitTypes
@@ -78,6 +85,8 @@ class FirResolveBench(val withProgress: Boolean) {
     )
 
     val timePerTransformer = mutableMapOf<KClass<*>, Measure>()
+    private val sequentialTimePerParallelTransformer = mutableMapOf<KClass<*>, Long>()
+    private val checkerTimings = CheckerTimings()
     var resolvedTypes = 0
     var errorTypes = 0
     var unresolvedTypes = 0
@@ -133,10 +142,10 @@ class FirResolveBench(val withProgress: Boolean) {
         }
     }
 
-    private fun recordTime(stageClass: KClass<*>, diff: VMCounters, time: Long) {
+    private fun recordTime(stageClass: KClass<*>, diff: VMCounters, time: Long, files: Int = 1) {
         timePerTransformer.computeIfAbsent(stageClass) { Measure() }.apply {
             this.time += time
-            this.files += 1
+            this.files += files
             this.user += diff.userTime
             this.cpu += diff.cpuTime
             this.gcCollections += diff.gcInfo.values.sumBy { it.collections.toInt() }
@@ -175,18 +184,109 @@ class FirResolveBench(val withProgress: Boolean) {
         }
     }
 
+    // Time per file is measured on the worker threads, the speedup is the sum of these times divided by the time of the stage
+    private fun runParallelStage(totalTransformer: FirTotalResolveTransformer, phase: FirResolvePhase, firFiles: List<FirFile>) {
+        val filesMeasure = Measure()
+        var transformerClass: KClass<*>? = null
+        val time = measureNanoTime {
+            totalTransformer.processPhase(phase, firFiles) { firFile, transformer ->
+                val before = vmStateSnapshot()
+                var fileTime = 0L
+                val failure = try {
+                    fileTime = measureNanoTime { transformer.transformFile(firFile, null) }
+                    null
+                } catch (e: Throwable) {
+                    e
+                }
+                val diff = vmStateSnapshot() - before
+                synchronized(filesMeasure) {
+                    transformerClass = transformer::class
+                    if (failure != null) {
+                        val path = (firFile.psi as? KtFile)?.virtualFilePath ?: firFile.packageFqName.asString() + "/" + firFile.name
+                        println("Fail in file: $path")
+                        fails += FailureInfo(transformer::class, failure, path)
+                    } else {
+                        filesMeasure.time += fileTime
+                        filesMeasure.files += 1
+                        filesMeasure.user += diff.userTime
+                        filesMeasure.cpu += diff.cpuTime
+                    }
+                }
+            }
+        }
+        val stageClass = transformerClass ?: return
+
+        timePerTransformer.computeIfAbsent(stageClass) { Measure() }.apply {
+            this.time += time
+            this.files += filesMeasure.files
+            this.user += filesMeasure.user
+            this.cpu += filesMeasure.cpu
+        }
+        sequentialTimePerParallelTransformer[stageClass] = (sequentialTimePerParallelTransformer[stageClass] ?: 0L) + filesMeasure.time
+    }
+
+    /**
+     * Runs the checkers on the resolved files with [ParallelDiagnosticsCollector], the time spent in every checker is reported too.
+     */
+    fun collectDiagnostics(firFiles: List<FirFile>, numberOfThreads: Int) {
+        var checkedFiles = 0
+        val before = vmStateSnapshot()
+        val time = measureNanoTime {
+            for ((session, files) in firFiles.groupBy { it.session }) {
+                val collector = FirDiagnosticsCollector.createParallel(session, numberOfThreads, checkerTimings)
+                for (firFile in files) {
+                    try {
+                        collector.collectDiagnostics(firFile)
+                        checkedFiles++
+                    } catch (e: Throwable) {
+                        val path = (firFile.psi as? KtFile)?.virtualFilePath ?: firFile.packageFqName.asString() + "/" + firFile.name
+                        println("Fail in file: $path")
+                        fails += FailureInfo(ParallelDiagnosticsCollector::class, e, path)
+                    }
+                }
+            }
+        }
+        recordTime(ParallelDiagnosticsCollector::class, vmStateSnapshot() - before, time, checkedFiles)
+    }
+
     fun processFiles(
         firFiles: List<FirFile>,
         transformers: List<FirTransformer<Nothing?>>
     ) {
-        fileCount += firFiles.size
-        try {
+        processFiles(firFiles) {
             for ((stage, transformer) in transformers.withIndex()) {
                 //println("Starting stage #$stage. $transformer")
                 val firFileSequence = if (withProgress) firFiles.progress("   ~ ") else firFiles.asSequence()
                 runStage(transformer, firFileSequence)
                 checkFirProvidersConsistency(firFiles)
             }
+        }
+    }
+
+    /**
+     * Runs the stages like [FirTotalResolveTransformer.processFiles], so the stages which it runs in parallel are measured as a whole.
+     */
+    fun processFiles(
+        firFiles: List<FirFile>,
+        totalTransformer: FirTotalResolveTransformer
+    ) {
+        processFiles(firFiles) {
+            for ((stage, phase) in FirTotalResolveTransformer.PHASES.withIndex()) {
+                if (totalTransformer.isRunInParallel(phase)) {
+                    runParallelStage(totalTransformer, phase, firFiles)
+                } else {
+                    val firFileSequence = if (withProgress) firFiles.progress("   ~ ") else firFiles.asSequence()
+                    runStage(totalTransformer.transformers[stage], firFileSequence)
+                }
+                checkFirProvidersConsistency(firFiles)
+            }
+        }
+    }
+
+    private inline fun processFiles(firFiles: List<FirFile>, runStages: () -> Unit) {
+        fileCount += firFiles.size
+        try {
+            runStages()
 
             if (fails.none()) {
                 //println("SUCCESS!")
@@ -310,7 +410,11 @@ class FirResolveBench(val withProgress: Boolean) {
         errorQualifiedAccessTypes,
         fileCount,
         errorTypesReports,
-        timePerTransformer.mapKeys { (klass, _) -> klass.simpleName!!.toString() }
+        timePerTransformer.mapKeys { (klass, _) -> klass.simpleName!!.toString() },
+        sequentialTimePerParallelTransformer.entries.associate { (klass, sequentialTime) ->
+            klass.simpleName!!.toString() to sequentialTime.toDouble() / timePerTransformer.getValue(klass).time
+        },
+        checkerTimings.timesInMillis()
     )
 }
 
@@ -369,6 +473,8 @@ fun FirResolveBench.TotalStatistics.reportErrors(stream: PrintStream) {
     }
 }
 
+private const val SLOWEST_CHECKERS_REPORTED = 20
+
 fun FirResolveBench.TotalStatistics.report(stream: PrintStream, header: String) {
     with(stream) {
         infix fun Int.percentOf(other: Int): String {
@@ -400,6 +506,26 @@ fun FirResolveBench.TotalStatistics.report(stream: PrintStream, header: String)
                 printMeasureAsTable(totalMeasure, this@report, "Total time")
             }
         }
+
+        for ((transformer, speedup) in speedupPerParallelTransformer) {
+            println("Parallel speedup of $transformer: ${String.format("%.2f", speedup)}x")
+        }
+
+        if (timePerChecker.isNotEmpty()) {
+            printTable(stream) {
+                row {
+                    cell("Checker", LEFT)
+                    cells("Time")
+                }
+                separator()
+                for ((checker, millis) in timePerChecker.entries.take(SLOWEST_CHECKERS_REPORTED)) {
+                    row {
+                        cell(checker, LEFT)
+                        timeCell(millis, inputUnit = TableTimeUnit.MS, fractionDigits = 0)
+                    }
+                }
+            }
+        }
     }
 }
 
@@ -90,6 +90,16 @@ public class CliTestGenerated extends AbstractCliTest {
             runTest("compiler/testData/cli/jvm/argumentPassedMultipleTimes.args");
         }
 
+        @TestMetadata("backendThreads.args")
+        public void testBackendThreads() throws Exception {
+            runTest("compiler/testData/cli/jvm/backendThreads.args");
+        }
+
+        @TestMetadata("backendThreadsInvalid.args")
+        public void testBackendThreadsInvalid() throws Exception {
+            runTest("compiler/testData/cli/jvm/backendThreadsInvalid.args");
+        }
+
         @TestMetadata("classAndFileClassClash.args")
         public void testClassAndFileClassClash() throws Exception {
             runTest("compiler/testData/cli/jvm/classAndFileClassClash.args");
@@ -595,11 +605,21 @@ public class CliTestGenerated extends AbstractCliTest {
             runTest("compiler/testData/cli/jvm/nonexistingArgfile.args");
         }
 
+        @TestMetadata("perValueStorageLocking.args")
+        public void testPerValueStorageLocking() throws Exception {
+            runTest("compiler/testData/cli/jvm/perValueStorageLocking.args");
+        }
+
         @TestMetadata("pluginSimple.args")
         public void testPluginSimple() throws Exception {
             runTest("compiler/testData/cli/jvm/pluginSimple.args");
         }
 
+        @TestMetadata("profilePhasesReport.args")
+        public void testProfilePhasesReport() throws Exception {
+            runTest("compiler/testData/cli/jvm/profilePhasesReport.args");
+        }
+
         @TestMetadata("progressiveModeOff.args")
         public void testProgressiveModeOff() throws Exception {
             runTest("compiler/testData/cli/jvm/progressiveModeOff.args");
@@ -39,6 +39,50 @@ class CustomCliTest : TestCaseWithTmpdir() {
         compileAndCheckMainClass(listOf(main1Kt, main2Kt), expectedMainClass = null)
     }
 
+    fun testProfilePhasesReportCsv() {
+        val lines = compileWithPhasesReport("phases.csv").lines().filter(String::isNotEmpty)
+
+        Assert.assertEquals("phase,description,depth,invocations,wall_ms,self_wall_ms,cpu_ms,allocated_bytes", lines.first())
+        val rows = lines.drop(1).associateBy { it.substringBefore(',') }
+        for (phase in listOf("IrLowering", "IrLowering/FileClass")) {
+            val row = rows[phase] ?: error("No row for $phase in:\n${lines.joinToString("\n")}")
+            val columns = row.split(',')
+            Assert.assertEquals(row, 8, columns.size)
+            Assert.assertEquals(row, phase.count { it == '/' }, columns[2].toInt())
+            Assert.assertTrue(row, columns[3].toInt() >= 1)
+            Assert.assertTrue(row, columns[4].toDouble() >= 0.0)
+        }
+        // Measurements are inclusive
+        fun wallMs(phase: String) = rows.getValue(phase).split(',')[4].toDouble()
+        Assert.assertTrue(wallMs("IrLowering") >= wallMs("IrLowering/FileClass"))
+    }
+
+    fun testProfilePhasesReportJson() {
+        val report = compileWithPhasesReport("phases.json")
+
+        Assert.assertEquals(listOf("{", "  \"phases\": ["), report.lines().take(2))
+        val loweringRow = Regex(
+            "\"phase\": \"IrLowering\", \"description\": \"IR lowering\", \"depth\": 0, \"invocations\": 1, \"wallMs\": [0-9.]+, "
+        )
+        Assert.assertTrue(report, loweringRow.containsMatchIn(report))
+        Assert.assertTrue(report, report.contains("\"phase\": \"IrLowering/FileClass\""))
+    }
+
+    private fun compileWithPhasesReport(reportName: String): String {
+        val mainKt = tmpdir.resolve("main.kt").apply {
+            writeText(EMPTY_MAIN_FUN)
+        }
+        val report = tmpdir.resolve(reportName)
+        CompilerTestUtil.executeCompilerAssertSuccessful(
+            K2JVMCompiler(),
+            listOf(
+                "-Xuse-ir", "-Xprofile-phases-report=${report.absolutePath}",
+                "-d", tmpdir.resolve("out").absolutePath, mainKt.absolutePath
+            )
+        )
+        return report.readText()
+    }
+
     private fun compileAndCheckMainClass(sourceFiles: List<File>, expectedMainClass: String?) {
         val jarFile = tmpdir.resolve("output.jar")
         val args = listOf("-include-runtime", "-d", jarFile.absolutePath) + sourceFiles.map { it.absolutePath }
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.cli.jvm
+
+import com.intellij.openapi.vfs.StandardFileSystems
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
+import org.jetbrains.kotlin.cli.jvm.index.JavaRoot
+import org.jetbrains.kotlin.cli.jvm.index.JvmDependenciesIndex
+import org.jetbrains.kotlin.cli.jvm.index.JvmDependenciesIndexImpl
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.test.ConfigurationKind
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.KotlinTestWithEnvironment
+import java.io.File
+import java.util.concurrent.Callable
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.Executors
+
+class JvmDependenciesIndexImplTest : KotlinTestWithEnvironment() {
+    private lateinit var tmpdir: File
+
+    override fun createEnvironment(): KotlinCoreEnvironment {
+        tmpdir = KotlinTestUtils.tmpDirForTest(this)
+        return createEnvironmentWithMockJdk(ConfigurationKind.JDK_ONLY)
+    }
+
+    fun testPackagePrefix() {
+        val root = root("src", JavaRoot.RootType.SOURCE, "A.java", "sub/B.java", prefix = "com.example")
+        val index = JvmDependenciesIndexImpl(listOf(root))
+
+        // Packages of the prefix all correspond to the root itself
+        for (packageFqName in listOf("com", "com.example")) {
+            assertEquals(listOf("src"), index.directoriesOf(packageFqName))
+        }
+        assertEquals(listOf("src/sub"), index.directoriesOf("com.example.sub"))
+        assertEquals(emptyList<String>(), index.directoriesOf("sub"))
+
+        assertEquals("src/A.java", index.findClass("com.example", "A"))
+        assertEquals("src/sub/B.java", index.findClass("com.example.sub", "B"))
+        assertNull(index.findClass("sub", "B"))
+    }
+
+    fun testDirectoryHiddenByClass() {
+        val binary = root(
+            "bin", JavaRoot.RootType.BINARY,
+            "foo.class", "foo/readme.txt", "bar.class", "bar/Baz.class", "baz.java", "baz/readme.txt", "dotted.name/A.class"
+        )
+        val source = root("src", JavaRoot.RootType.SOURCE, "foo.java", "foo/readme.txt", "bar.java", "bar/Baz.java")
+        val index = JvmDependenciesIndexImpl(listOf(binary, source))
+
+        // A directory without classes next to a class of the same name is not a package
+        assertEquals(emptyList<String>(), index.directoriesOf("foo"))
+        assertEquals(listOf("bin/bar", "src/bar"), index.directoriesOf("bar"))
+        // Only files of the kind of the root hide directories
+        assertEquals(listOf("bin/baz"), index.directoriesOf("baz"))
+        assertEquals(emptyList<String>(), index.directoriesOf("dotted.name"))
+
+        assertEquals("bin/foo.class", index.findClass("", "foo"))
+        assertEquals("bin/bar/Baz.class", index.findClass("bar", "Baz"))
+    }
+
+    fun testRootTypes() {
+        val source = root("src", JavaRoot.RootType.SOURCE, "p/Both.java", "p/OnlySource.java")
+        val binary = root("bin", JavaRoot.RootType.BINARY, "p/Both.class", "p/OnlyBinary.class")
+        val index = JvmDependenciesIndexImpl(listOf(source, binary))
+
+        assertEquals(listOf("src/p", "bin/p"), index.directoriesOf("p"))
+        assertEquals(listOf("bin/p"), index.directoriesOf("p", JavaRoot.OnlyBinary))
+        assertEquals(listOf("src/p"), index.directoriesOf("p", setOf(JavaRoot.RootType.SOURCE)))
+
+        assertEquals("src/p/Both.java", index.findClass("p", "Both"))
+        assertEquals("bin/p/Both.class", index.findClass("p", "Both", JavaRoot.OnlyBinary))
+
+        // The same class is looked up with other root types after a miss, which is remembered for the root types searched before
+        assertNull(index.findClass("p", "OnlySource", JavaRoot.OnlyBinary))
+        assertEquals("src/p/OnlySource.java", index.findClass("p", "OnlySource"))
+        assertNull(index.findClass("p", "OnlySource", JavaRoot.OnlyBinary))
+        assertEquals("bin/p/OnlyBinary.class", index.findClass("p", "OnlyBinary", JavaRoot.OnlyBinary))
+        assertNull(index.findClass("p", "OnlyBinary", setOf(JavaRoot.RootType.SOURCE)))
+    }
+
+    fun testSameResultsForAnyNumberOfRoots() {
+        // Packages of many roots are collected on several threads
+        for (rootCount in listOf(3, 40)) {
+            val roots = (0 until rootCount).map { i ->
+                val type = if (i % 2 == 0) JavaRoot.RootType.BINARY else JavaRoot.RootType.SOURCE
+                val extension = if (type == JavaRoot.RootType.BINARY) "class" else "java"
+                root(
+                    "$rootCount/$i", type,
+                    "common/C$i.$extension", "common/deep/D$i.$extension", "own$i/O.$extension", "common/hidden$i.$extension",
+                    "common/hidden$i/readme.txt",
+                    prefix = if (i % 5 == 0) "prefix" else null
+                )
+            }
+            val index = JvmDependenciesIndexImpl(roots)
+            val singleRootIndices = roots.map { JvmDependenciesIndexImpl(listOf(it)) }
+
+            val packages = listOf("", "common", "common.deep", "own0", "own${rootCount - 1}", "prefix", "prefix.common", "common.hidden0")
+            for (packageFqName in packages) {
+                for (rootTypes in listOf(JavaRoot.SourceAndBinary, JavaRoot.OnlyBinary)) {
+                    assertEquals(
+                        "Package '$packageFqName' with $rootCount roots",
+                        singleRootIndices.flatMap { it.directoriesOf(packageFqName, rootTypes) },
+                        index.directoriesOf(packageFqName, rootTypes)
+                    )
+                }
+            }
+            assertEquals(rootCount, index.directoriesOf("common").size + index.directoriesOf("prefix.common").size)
+        }
+    }
+
+    fun testConcurrentLookups() {
+        val roots = (0 until 20).map { i ->
+            val type = if (i % 2 == 0) JavaRoot.RootType.BINARY else JavaRoot.RootType.SOURCE
+            val extension = if (type == JavaRoot.RootType.BINARY) "class" else "java"
+            root("$i", type, "p/C$i.$extension", "p/q/D$i.$extension", "p/Shared.$extension")
+        }
+        val classes = (0 until 20).flatMap { i -> listOf("p" to "C$i", "p.q" to "D$i") } + listOf("p" to "Shared", "p" to "Missing")
+        val rootTypes = listOf(JavaRoot.SourceAndBinary, JavaRoot.OnlyBinary)
+
+        fun JvmDependenciesIndex.lookUp(types: Set<JavaRoot.RootType>): List<Any?> =
+            classes.map { (packageFqName, name) -> findClass(packageFqName, name, types) } +
+                    listOf("p", "p.q").map { directoriesOf(it, types) }
+
+        val expected = JvmDependenciesIndexImpl(roots).let { index -> rootTypes.associateWith { index.lookUp(it) } }
+
+        // The packages are collected on the first lookup, which happens on all threads at once
+        val index = JvmDependenciesIndexImpl(roots)
+        val threads = 8
+        val start = CyclicBarrier(threads)
+        val executor = Executors.newFixedThreadPool(threads)
+        try {
+            val futures = (0 until threads).map { thread ->
+                executor.submit(Callable {
+                    start.await()
+                    // Threads look the same classes up with different root types, so that they see the last searches of each other
+                    (0 until 100).map { iteration ->
+                        val types = rootTypes[(thread + iteration) % rootTypes.size]
+                        Pair(expected.getValue(types), index.lookUp(types))
+                    }
+                })
+            }
+            for ((expectedResult, result) in futures.flatMap { it.get() }) {
+                assertEquals(expectedResult, result)
+            }
+        } finally {
+            executor.shutdownNow()
+        }
+    }
+
+    private fun root(path: String, type: JavaRoot.RootType, vararg files: String, prefix: String? = null): JavaRoot {
+        val directory = File(tmpdir, path)
+        for (file in files) {
+            File(directory, file).apply { parentFile.mkdirs() }.writeText("")
+        }
+        val virtualFile = StandardFileSystems.local().findFileByPath(directory.path)!!
+        return JavaRoot(virtualFile, type, prefix?.let(::FqName))
+    }
+
+    private fun String.relativePath(): String =
+        File(this).relativeTo(tmpdir).invariantSeparatorsPath
+
+    private fun JvmDependenciesIndex.directoriesOf(
+        packageFqName: String,
+        rootTypes: Set<JavaRoot.RootType> = JavaRoot.SourceAndBinary
+    ): List<String> {
+        val result = mutableListOf<String>()
+        traverseDirectoriesInPackage(FqName(packageFqName), rootTypes) { directory, _ ->
+            result += directory.path.relativePath()
+            true
+        }
+        return result
+    }
+
+    private fun JvmDependenciesIndex.findClass(
+        packageFqName: String,
+        name: String,
+        rootTypes: Set<JavaRoot.RootType> = JavaRoot.SourceAndBinary
+    ): String? {
+        val classId = ClassId(FqName(packageFqName), FqName(name), false)
+        return findClass(classId, rootTypes) { directory, rootType ->
+            val extension = if (rootType == JavaRoot.RootType.BINARY) "class" else "java"
+            directory.findChild("$name.$extension")?.path?.relativePath()
+        }
+    }
+}
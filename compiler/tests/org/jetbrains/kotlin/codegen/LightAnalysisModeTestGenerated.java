@@ -23172,6 +23172,11 @@ public class LightAnalysisModeTestGenerated extends AbstractLightAnalysisModeTes
                 runTest("compiler/testData/codegen/box/reflection/constructors/constructorName.kt");
             }
 
+            @TestMetadata("constructorsFromMetadata.kt")
+            public void testConstructorsFromMetadata() throws Exception {
+                runTest("compiler/testData/codegen/box/reflection/constructors/constructorsFromMetadata.kt");
+            }
+
             @TestMetadata("enumEntry.kt")
             public void testEnumEntry() throws Exception {
                 runTest("compiler/testData/codegen/box/reflection/constructors/enumEntry.kt");
@@ -24091,6 +24096,11 @@ public class LightAnalysisModeTestGenerated extends AbstractLightAnalysisModeTes
                 runTest("compiler/testData/codegen/box/reflection/modifiers/callableVisibility.kt");
             }
 
+            @TestMetadata("classFlagsFromMetadata.kt")
+            public void testClassFlagsFromMetadata() throws Exception {
+                runTest("compiler/testData/codegen/box/reflection/modifiers/classFlagsFromMetadata.kt");
+            }
+
             @TestMetadata("classModality.kt")
             public void testClassModality() throws Exception {
                 runTest("compiler/testData/codegen/box/reflection/modifiers/classModality.kt");
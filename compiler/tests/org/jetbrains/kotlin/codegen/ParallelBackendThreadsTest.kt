@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
+import org.jetbrains.kotlin.test.CompilerTestUtil
+import org.jetbrains.kotlin.test.KotlinTestUtils
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+
+class ParallelBackendThreadsTest : TestCaseWithTmpdir() {
+    fun testSameClassesForAnyNumberOfThreads() {
+        checkSameClasses(emptyList())
+    }
+
+    fun testSameClassesForAnyNumberOfThreadsIr() {
+        checkSameClasses(listOf("-Xuse-ir"))
+    }
+
+    private fun checkSameClasses(extraArguments: List<String>) {
+        val sources = CORPUS.flatMap { directory ->
+            File(KotlinTestUtils.getTestDataPathBase(), "codegen/box/$directory").listFiles()!!.filter { it.isBoxTestForBothBackends() }
+        }.sortedBy { it.path }
+        assertTrue(sources.isNotEmpty())
+
+        for (source in sources) {
+            val sequential = compile(source, 1, extraArguments)
+            for (threads in listOf(2, 4)) {
+                val parallel = compile(source, threads, extraArguments)
+                assertEquals("Classes of $source", sequential.keys, parallel.keys)
+                for ((path, bytes) in sequential) {
+                    assertTrue("$path of $source differs with $threads threads", bytes.contentEquals(parallel.getValue(path)))
+                }
+            }
+        }
+    }
+
+    private fun compile(source: File, threads: Int, extraArguments: List<String>): Map<String, ByteArray> {
+        val output = File(tmpdir, "out$threads")
+        output.deleteRecursively()
+        CompilerTestUtil.executeCompilerAssertSuccessful(
+            K2JVMCompiler(), listOf(source.path, "-d", output.path, "-Xbackend-threads=$threads") + extraArguments
+        )
+        return output.walk().filter { it.isFile }.associate { it.relativeTo(output).path to it.readBytes() }
+    }
+
+    // Single-file tests, which compile with the default settings of both backends
+    private fun File.isBoxTestForBothBackends(): Boolean {
+        if (extension != "kt") return false
+        val text = readText()
+        return EXCLUDING_DIRECTIVES.none { it in text }
+    }
+
+    companion object {
+        // Directories of box tests whose methods go through most of the bytecode optimizations
+        private val CORPUS = listOf("boxingOptimization", "nullCheckOptimization", "deadCodeElimination", "checkcastOptimization")
+
+        private val EXCLUDING_DIRECTIVES = listOf(
+            "// FILE:", "// IGNORE_BACKEND", "// TARGET_BACKEND", "// DONT_TARGET_EXACT_BACKEND", "// !LANGUAGE", "// !API_VERSION",
+            "// LANGUAGE_VERSION", "// WITH_REFLECT", "// FULL_JDK", "// JVM_TARGET", "// KOTLIN_CONFIGURATION_FLAGS", "// !JVM_DEFAULT_MODE",
+            "// WITH_COROUTINES", "// COMMON_COROUTINES_TEST"
+        )
+    }
+}
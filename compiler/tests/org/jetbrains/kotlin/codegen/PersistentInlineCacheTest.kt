@@ -0,0 +1,132 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.codegen
+
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler
+import org.jetbrains.kotlin.codegen.inline.InlineCache
+import org.jetbrains.kotlin.codegen.inline.PersistentInlineCacheStorage
+import org.jetbrains.kotlin.codegen.inline.SMAPAndMethodNode
+import org.jetbrains.kotlin.codegen.inline.SharedInlineCache
+import org.jetbrains.kotlin.name.ClassId
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.test.CompilerTestUtil
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import org.jetbrains.org.objectweb.asm.Type
+import org.jetbrains.org.objectweb.asm.commons.Method
+import org.jetbrains.org.objectweb.asm.util.Textifier
+import org.jetbrains.org.objectweb.asm.util.TraceMethodVisitor
+import java.io.File
+import java.util.concurrent.Executor
+
+class PersistentInlineCacheTest : TestCaseWithTmpdir() {
+    private val classId = ClassId.topLevel(FqName("test.InlineKt"))
+    private val classType = Type.getObjectType("test/InlineKt")
+    private val method = Method("foo", "()Ljava/lang/String;")
+
+    private val cacheDirectory: File get() = File(tmpdir, "inline-cache")
+
+    override fun tearDown() {
+        SharedInlineCache.clear()
+        super.tearDown()
+    }
+
+    fun testRoundTripThroughDiskCache() {
+        val classBytes = compile("\"OK\"")
+        val parsed = readMethodNode(classBytes)
+
+        // A new process starts with an empty shared cache, so the body can only come from the directory
+        SharedInlineCache.clear()
+        val cacheFiles = cacheDirectory.walk().filter { it.isFile }.toList()
+        assertEquals(cacheFiles.toString(), 1, cacheFiles.size)
+
+        val stored = readMethodNode(classBytes)
+        assertEquals(parsed.text(), stored.text())
+        assertEquals(parsed.classSMAP.sourceInfo, stored.classSMAP.sourceInfo)
+    }
+
+    fun testChangedClassIsNotReadFromDiskCache() {
+        val oldBody = readMethodNode(compile("\"OLD\"")).text()
+        assertTrue(oldBody, "OLD" in oldBody)
+
+        SharedInlineCache.clear()
+        val newBody = readMethodNode(compile("\"NEW\"")).text()
+        assertTrue(newBody, "NEW" in newBody)
+        assertFalse(newBody, "OLD" in newBody)
+    }
+
+    fun testLeastRecentlyUsedEntriesAreEvicted() {
+        val storage = PersistentInlineCacheStorage(
+            cacheDirectory, maxSize = 3000, maintenanceExecutor = Executor { it.run() }, clock = clock()
+        )
+        val classBytes = compile("\"OK\"")
+        val keys = keys(20)
+
+        for (key in keys) {
+            storage.store(key, classBytes)
+            // Keep the first entry in use, so that it outlives the others
+            assertNotNull(storage.load(keys.first()))
+        }
+
+        assertTrue("Cache takes ${cacheSize()} bytes", cacheSize() <= 3000)
+        assertNotNull(storage.load(keys.first()))
+        assertNotNull(storage.load(keys.last()))
+        assertNull(storage.load(keys[1]))
+    }
+
+    fun testDirectoryIsScannedOffTheStoringThread() {
+        val classBytes = compile("\"OK\"")
+        val keys = keys(20)
+        val unbounded = PersistentInlineCacheStorage(cacheDirectory, maintenanceExecutor = Executor { it.run() }, clock = clock())
+        for (key in keys.dropLast(1)) {
+            unbounded.store(key, classBytes)
+        }
+        val fullSize = cacheSize()
+
+        val maintenance = ArrayList<Runnable>()
+        val storage = PersistentInlineCacheStorage(cacheDirectory, maxSize = fullSize / 2, maintenanceExecutor = Executor { maintenance.add(it) })
+        storage.store(keys.last(), classBytes)
+        assertTrue(cacheSize() > fullSize)
+        assertEquals(1, maintenance.size)
+
+        // Later stores don't schedule another scan while one is pending
+        storage.store(keys.last().copy(methodName = "bar"), classBytes)
+        assertEquals(1, maintenance.size)
+
+        maintenance.single().run()
+        assertTrue("Cache takes ${cacheSize()} of $fullSize bytes", cacheSize() <= fullSize / 2)
+    }
+
+    private fun keys(count: Int): List<SharedInlineCache.Key> =
+        (1..count).map { SharedInlineCache.Key("hash$it", classType.internalName, method.name, method.descriptor) }
+
+    // Uses are a second apart, so that their order is kept by file systems which store modification times in seconds
+    private fun clock(): () -> Long {
+        var time = 1_000_000_000_000L
+        return { time += 1000; time }
+    }
+
+    private fun cacheSize(): Long = cacheDirectory.walk().filter { it.isFile }.map { it.length() }.sum()
+
+    private fun compile(result: String): ByteArray {
+        val source = File(tmpdir, "inline.kt")
+        source.writeText("package test\n\ninline fun foo(): String = $result\n")
+        val output = File(tmpdir, "out")
+        output.deleteRecursively()
+        CompilerTestUtil.executeCompilerAssertSuccessful(K2JVMCompiler(), listOf(source.path, "-d", output.path))
+        return File(output, "test/InlineKt.class").readBytes()
+    }
+
+    // Each compilation has its own InlineCache, only the shared cache and the directory outlive it
+    private fun readMethodNode(classBytes: ByteArray): SMAPAndMethodNode =
+        InlineCache(cacheDirectory).getOrCreateMethodNode(classId, classType, classBytes, method) {}
+            ?: error("No method $method in $classType")
+
+    private fun SMAPAndMethodNode.text(): String {
+        val textifier = Textifier()
+        node.accept(TraceMethodVisitor(textifier))
+        return textifier.text.joinToString("")
+    }
+}
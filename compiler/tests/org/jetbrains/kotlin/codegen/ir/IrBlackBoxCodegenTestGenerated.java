@@ -22834,6 +22834,11 @@ public class IrBlackBoxCodegenTestGenerated extends AbstractIrBlackBoxCodegenTes
                 runTest("compiler/testData/codegen/box/reflection/constructors/constructorName.kt");
             }
 
+            @TestMetadata("constructorsFromMetadata.kt")
+            public void testConstructorsFromMetadata() throws Exception {
+                runTest("compiler/testData/codegen/box/reflection/constructors/constructorsFromMetadata.kt");
+            }
+
             @TestMetadata("enumEntry.kt")
             public void testEnumEntry() throws Exception {
                 runTest("compiler/testData/codegen/box/reflection/constructors/enumEntry.kt");
@@ -23753,6 +23758,11 @@ public class IrBlackBoxCodegenTestGenerated extends AbstractIrBlackBoxCodegenTes
                 runTest("compiler/testData/codegen/box/reflection/modifiers/callableVisibility.kt");
             }
 
+            @TestMetadata("classFlagsFromMetadata.kt")
+            public void testClassFlagsFromMetadata() throws Exception {
+                runTest("compiler/testData/codegen/box/reflection/modifiers/classFlagsFromMetadata.kt");
+            }
+
             @TestMetadata("classModality.kt")
             public void testClassModality() throws Exception {
                 runTest("compiler/testData/codegen/box/reflection/modifiers/classModality.kt");
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import junit.framework.TestCase
+import java.util.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
+
+class CompilationSchedulerTest : TestCase() {
+    private val started: MutableList<String> = Collections.synchronizedList(mutableListOf())
+
+    fun testNumberOfCompilationsIsLimited() {
+        val scheduler = CompilationScheduler(maxParallelCompilations = 2, memoryBudgetMb = 1000)
+        val a = scheduler.start("a", 10)
+        val b = scheduler.start("b", 10)
+        val c = scheduler.start("c", 10)
+        scheduler.awaitState(running = 2, waiting = 1)
+        assertEquals(setOf("a", "b"), started.toSet())
+
+        a.finish()
+        scheduler.awaitState(running = 2, waiting = 0)
+        assertEquals("c", started.last())
+
+        b.finish()
+        c.finish()
+        scheduler.awaitState(running = 0, waiting = 0)
+    }
+
+    fun testMemoryOfRunningCompilationsIsLimited() {
+        val scheduler = CompilationScheduler(maxParallelCompilations = 10, memoryBudgetMb = 100)
+        val a = scheduler.start("a", 60)
+        val b = scheduler.start("b", 50)
+        scheduler.awaitState(running = 1, waiting = 1)
+        assertEquals(listOf("a"), started)
+
+        a.finish()
+        scheduler.awaitState(running = 1, waiting = 0)
+        assertEquals(listOf("a", "b"), started)
+
+        // The memory of finished compilations is given back
+        val c = scheduler.start("c", 50)
+        scheduler.awaitState(running = 2, waiting = 0)
+        b.finish()
+        c.finish()
+        scheduler.awaitState(running = 0, waiting = 0)
+    }
+
+    fun testCompilationsStartInRequestOrder() {
+        val scheduler = CompilationScheduler(maxParallelCompilations = 10, memoryBudgetMb = 100)
+        val a = scheduler.start("a", 60)
+        val b = scheduler.start("b", 50)
+        scheduler.awaitState(running = 1, waiting = 1)
+
+        // Fits into the memory left by "a", but waits for "b" requested before it
+        val c = scheduler.start("c", 30)
+        scheduler.awaitState(running = 1, waiting = 2)
+        assertEquals(listOf("a"), started)
+
+        // Both fit once "a" is done
+        a.finish()
+        scheduler.awaitState(running = 2, waiting = 0)
+        assertEquals(listOf("b", "c"), started.drop(1).sorted())
+
+        b.finish()
+        c.finish()
+    }
+
+    fun testCompilationLargerThanBudgetRunsAlone() {
+        val scheduler = CompilationScheduler(maxParallelCompilations = 10, memoryBudgetMb = 100)
+        val a = scheduler.start("a", 10)
+        val large = scheduler.start("large", 500)
+        scheduler.awaitState(running = 1, waiting = 1)
+
+        a.finish()
+        scheduler.awaitState(running = 1, waiting = 0)
+        assertEquals(listOf("a", "large"), started)
+
+        val b = scheduler.start("b", 1)
+        scheduler.awaitState(running = 1, waiting = 1)
+        large.finish()
+        scheduler.awaitState(running = 1, waiting = 0)
+        assertEquals(listOf("a", "large", "b"), started)
+        b.finish()
+    }
+
+    fun testFailedCompilationGivesItsSlotBack() {
+        val scheduler = CompilationScheduler(maxParallelCompilations = 1, memoryBudgetMb = 100)
+        try {
+            scheduler.schedule(100) { throw IllegalStateException("compilation failed") }
+            fail("The failure should be rethrown")
+        } catch (e: IllegalStateException) {
+            assertEquals("compilation failed", e.message)
+        }
+        assertEquals(0, scheduler.runningCount)
+
+        // Would wait forever if the slot or the memory had not been given back
+        assertEquals("OK", scheduler.schedule(100) { "OK" })
+        assertEquals(0, scheduler.runningCount)
+    }
+
+    fun testMemoryEstimateGrowsWithSources() {
+        val none = CompilationScheduler.estimateMemoryMb(emptyList())
+        val one = CompilationScheduler.estimateMemoryMb(listOf("a.kt"))
+        val ten = CompilationScheduler.estimateMemoryMb((1..10).map { "$it.kt" })
+        assertTrue(none > 0)
+        assertTrue(one > none)
+        assertEquals(10 * (one - none), ten - none)
+    }
+
+    private inner class RunningCompilation(name: String, memoryMb: Long, scheduler: CompilationScheduler) {
+        private val finished = CountDownLatch(1)
+
+        private val thread = thread(name = "compilation $name") {
+            scheduler.schedule(memoryMb) {
+                started += name
+                finished.await()
+            }
+        }
+
+        fun finish() {
+            finished.countDown()
+            thread.join(TIMEOUT_MS)
+            assertFalse("Compilation has not finished", thread.isAlive)
+        }
+    }
+
+    private fun CompilationScheduler.start(name: String, memoryMb: Long): RunningCompilation {
+        // Compilations are queued in the order they are started
+        val requested = runningCount + waitingCount
+        val compilation = RunningCompilation(name, memoryMb, this)
+        awaitCondition { runningCount + waitingCount > requested }
+        return compilation
+    }
+
+    // The state is also awaited when it's expected to stay as it is, so that a compilation started wrongly is noticed after a while
+    private fun CompilationScheduler.awaitState(running: Int, waiting: Int) {
+        awaitCondition { runningCount == running && waitingCount == waiting }
+        Thread.sleep(50)
+        assertEquals(running, runningCount)
+        assertEquals(waiting, waitingCount)
+    }
+
+    private fun awaitCondition(condition: () -> Boolean) {
+        val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS)
+        while (!condition()) {
+            assertTrue("Timed out", System.nanoTime() < deadline)
+            Thread.sleep(1)
+        }
+    }
+
+    private companion object {
+        const val TIMEOUT_MS = 10_000L
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.daemon.common.CompiledPackagePart
+import org.jetbrains.kotlin.daemon.common.CompilerCallbackServicesFacade
+import org.jetbrains.kotlin.daemon.common.DummyProfiler
+import org.jetbrains.kotlin.daemon.common.PackageMetadata
+import java.io.File
+import java.lang.reflect.Proxy
+
+class RemoteIncrementalResultsConsumerTest : TestCase() {
+    private val calls = arrayListOf<String>()
+
+    private val facade = Proxy.newProxyInstance(
+        javaClass.classLoader, arrayOf(CompilerCallbackServicesFacade::class.java)
+    ) { _, method, args ->
+        @Suppress("UNCHECKED_CAST")
+        when (method.name) {
+            "incrementalResultsConsumer_processPackageParts" ->
+                calls.add("parts " + (args[0] as Collection<CompiledPackagePart>).joinToString { it.filePath })
+            "incrementalResultsConsumer_processPackagesMetadata" ->
+                calls.add("metadata " + (args[0] as Collection<PackageMetadata>).joinToString { it.packageName })
+            "incrementalResultsConsumer_processInlineFunctions" -> calls.add("inline functions")
+            else -> error("Unexpected call of ${method.name}")
+        }
+        null
+    } as CompilerCallbackServicesFacade
+
+    fun testResultsAreSentAtTheEnd() {
+        val eventManager = EventManagerImpl()
+        val consumer = RemoteIncrementalResultsConsumer(facade, eventManager, DummyProfiler())
+
+        consumer.processPackagePart(File("a.kt"), ByteArray(10), ByteArray(10), ByteArray(0))
+        consumer.processPackagePart(File("b.kt"), ByteArray(10), ByteArray(10), ByteArray(0))
+        consumer.processPackageMetadata("foo", ByteArray(10))
+        assertEquals(0, calls.size)
+
+        eventManager.fireCompilationFinished()
+        assertEquals(listOf("parts a.kt, b.kt", "metadata foo", "inline functions"), calls)
+    }
+
+    fun testResultsAreSentInBatches() {
+        val eventManager = EventManagerImpl()
+        val consumer = RemoteIncrementalResultsConsumer(facade, eventManager, DummyProfiler(), batchBytes = 25)
+
+        consumer.processPackagePart(File("a.kt"), ByteArray(10), ByteArray(0), ByteArray(0))
+        consumer.processPackageMetadata("foo", ByteArray(10))
+        assertEquals(0, calls.size)
+
+        consumer.processPackagePart(File("b.kt"), ByteArray(10), ByteArray(0), ByteArray(0))
+        assertEquals(listOf("parts a.kt, b.kt", "metadata foo"), calls)
+
+        consumer.processPackagePart(File("c.kt"), ByteArray(10), ByteArray(0), ByteArray(0))
+        eventManager.fireCompilationFinished()
+        assertEquals(listOf("parts a.kt, b.kt", "metadata foo", "parts c.kt", "inline functions"), calls)
+    }
+}
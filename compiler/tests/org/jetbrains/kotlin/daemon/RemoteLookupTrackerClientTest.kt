@@ -0,0 +1,96 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.daemon.common.COMPILE_DAEMON_DEFAULT_CALLBACK_BATCH_SIZE
+import org.jetbrains.kotlin.daemon.common.CompilerCallbackServicesFacade
+import org.jetbrains.kotlin.daemon.common.WallAndThreadByClassProfiler
+import org.jetbrains.kotlin.incremental.components.LookupInfo
+import org.jetbrains.kotlin.incremental.components.Position
+import org.jetbrains.kotlin.incremental.components.ScopeKind
+import java.lang.reflect.Proxy
+
+class RemoteLookupTrackerClientTest : TestCase() {
+    private val batches = arrayListOf<List<LookupInfo>>()
+
+    private val facade = Proxy.newProxyInstance(
+        javaClass.classLoader, arrayOf(CompilerCallbackServicesFacade::class.java)
+    ) { _, method, args ->
+        @Suppress("UNCHECKED_CAST")
+        when (method.name) {
+            "lookupTracker_isDoNothing", "lookupTracker_requiresPosition" -> false
+            "lookupTracker_record" -> batches.add((args[0] as Collection<LookupInfo>).toList())
+            else -> error("Unexpected call of ${method.name}")
+        }
+    } as CompilerCallbackServicesFacade
+
+    fun testFewLookupsAreSentInOneCallAtTheEnd() {
+        val eventManager = EventManagerImpl()
+        val tracker = RemoteLookupTrackerClient(facade, eventManager, batchLatencyMs = Long.MAX_VALUE)
+
+        repeat(3) {
+            for (i in 1..100) {
+                tracker.record("a.kt", Position.NO_POSITION, "foo", ScopeKind.PACKAGE, "bar$i")
+            }
+        }
+        assertEquals(0, batches.size)
+
+        eventManager.fireCompilationFinished()
+        assertEquals(1, batches.size)
+        assertEquals((1..100).map { "bar$it" }.toSet(), batches.single().map { it.name }.toSet())
+        assertEquals(100, batches.single().size)
+    }
+
+    fun testManyLookupsAreSentInBatchesByDefault() {
+        val eventManager = EventManagerImpl()
+        val tracker = RemoteLookupTrackerClient(facade, eventManager, batchLatencyMs = Long.MAX_VALUE)
+
+        val count = COMPILE_DAEMON_DEFAULT_CALLBACK_BATCH_SIZE * 2 + 5
+        for (i in 1..count) {
+            tracker.record("a.kt", Position.NO_POSITION, "foo", ScopeKind.PACKAGE, "bar$i")
+        }
+        assertEquals(2, batches.size)
+
+        eventManager.fireCompilationFinished()
+        assertEquals(listOf(COMPILE_DAEMON_DEFAULT_CALLBACK_BATCH_SIZE, COMPILE_DAEMON_DEFAULT_CALLBACK_BATCH_SIZE, 5), batches.map { it.size })
+    }
+
+    fun testOldLookupsAreSentWithoutWaitingForFullBatch() {
+        val eventManager = EventManagerImpl()
+        val tracker = RemoteLookupTrackerClient(facade, eventManager, batchLatencyMs = 0)
+
+        for (i in 1..3) {
+            tracker.record("a.kt", Position.NO_POSITION, "foo", ScopeKind.PACKAGE, "bar$i")
+        }
+        assertEquals(listOf(1, 1, 1), batches.map { it.size })
+
+        eventManager.fireCompilationFinished()
+        assertEquals(3, batches.size)
+    }
+
+    fun testLookupsAreNotSentAgainInLaterBatches() {
+        val eventManager = EventManagerImpl()
+        val profiler = WallAndThreadByClassProfiler()
+        val tracker = RemoteLookupTrackerClient(facade, eventManager, profiler, batchSize = 10, batchLatencyMs = Long.MAX_VALUE)
+
+        repeat(3) {
+            for (i in 1..25) {
+                tracker.record("a.kt", Position.NO_POSITION, "foo", ScopeKind.PACKAGE, "bar$i")
+            }
+        }
+        assertEquals(2, batches.size)
+
+        eventManager.fireCompilationFinished()
+        assertEquals(listOf(10, 10, 5), batches.map { it.size })
+        assertEquals(25, batches.flatten().map { it.name }.toSet().size)
+
+        val counters = profiler.getCounters()[RemoteLookupTrackerClient::class.java.name]!!
+        // Two calls to get the tracker settings and one for each batch
+        assertEquals(5, counters.count)
+        assertTrue(counters.bytes > 0)
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.daemon
+
+import junit.framework.TestCase
+import org.jetbrains.kotlin.daemon.common.RemoteOutputStream
+import java.io.PrintStream
+
+class RemoteOutputStreamClientTest : TestCase() {
+    private val writes = arrayListOf<String>()
+
+    private val remote = object : RemoteOutputStream {
+        override fun close() {
+            error("Unexpected close")
+        }
+
+        override fun write(data: ByteArray, offset: Int, length: Int) {
+            writes.add(String(data, offset, length))
+        }
+
+        override fun write(dataByte: Int) {
+            writes.add(dataByte.toChar().toString())
+        }
+    }
+
+    fun testSmallWritesAreSentTogether() {
+        val stream = PrintStream(RemoteOutputStreamClient(remote, bufferSize = 16))
+        stream.print("abc")
+        stream.print("def")
+        stream.write('g'.toInt())
+        assertEquals(0, writes.size)
+
+        stream.flush()
+        assertEquals(listOf("abcdefg"), writes)
+    }
+
+    fun testFullBufferIsSent() {
+        val client = RemoteOutputStreamClient(remote, bufferSize = 4)
+        for (c in "abcdefghij") {
+            client.write(c.toInt())
+        }
+        assertEquals(listOf("abcd", "efgh"), writes)
+
+        client.write("xyz".toByteArray())
+        assertEquals(listOf("abcd", "efgh", "ij"), writes)
+
+        client.flush()
+        assertEquals(listOf("abcd", "efgh", "ij", "xyz"), writes)
+    }
+
+    fun testLargeWriteIsSentAfterBufferedBytes() {
+        val client = RemoteOutputStreamClient(remote, bufferSize = 4)
+        client.write("ab".toByteArray())
+        client.write("0123456789".toByteArray(), 1, 8)
+        assertEquals(listOf("ab", "12345678"), writes)
+
+        client.close()
+        assertEquals(listOf("ab", "12345678"), writes)
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import kotlin.jvm.functions.Function0;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class PerValueLockingStorageManagerTest extends StorageManagerTest {
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private ExecutorService executor;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+        super.tearDown();
+    }
+
+    @Override
+    protected StorageManager createStorageManager() {
+        return LockBasedStorageManager.createWithPerValueLocking(
+                "PerValueLockingStorageManagerTest", LockBasedStorageManager.ExceptionHandlingStrategy.THROW
+        );
+    }
+
+    public void testIndependentValuesAreComputedConcurrently() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Function0<String> awaitOther = () -> {
+            try {
+                barrier.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            catch (Exception e) {
+                throw new IllegalStateException("Values were not computed concurrently", e);
+            }
+            return "ok";
+        };
+
+        NotNullLazyValue<String> first = m.createLazyValue(awaitOther);
+        NotNullLazyValue<String> second = m.createLazyValue(awaitOther);
+
+        Future<String> future = executor.submit(first::invoke);
+        assertEquals("ok", second.invoke());
+        assertEquals("ok", future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    public void testFunctionComputesOnceAcrossThreads() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        MemoizedFunctionToNotNull<String, String> f = m.createMemoizedFunction(s -> {
+            counter.incrementAndGet();
+            try {
+                Thread.sleep(10);
+            }
+            catch (InterruptedException ignored) {
+            }
+            return s + "!";
+        });
+
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> f.invoke("key")));
+        }
+        for (Future<String> future : futures) {
+            assertEquals("key!", future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        assertEquals(1, counter.get());
+    }
+
+    public void testComputeBlockWaitsForValueOfAnotherThread() throws Exception {
+        CountDownLatch valueStarted = new CountDownLatch(1);
+        CountDownLatch computeStarted = new CountDownLatch(1);
+
+        // The value is computed in another thread and needs a compute block, while this thread waits for it in a compute block
+        NotNullLazyValue<String> value = m.createLazyValue(() -> {
+            valueStarted.countDown();
+            await(computeStarted);
+            return m.compute(() -> "value");
+        });
+
+        Future<String> future = executor.submit(value::invoke);
+        await(valueStarted);
+        String result = m.compute(() -> {
+            computeStarted.countDown();
+            return value.invoke();
+        });
+
+        assertEquals("value", result);
+        assertEquals("value", future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    public void testCrossThreadCycleIsReportedAsRecursion() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        class C {
+            final NotNullLazyValue<String> a = m.createRecursionTolerantLazyValue(() -> {
+                await(barrier);
+                return "a(" + getB().invoke() + ")";
+            }, "rec");
+
+            final NotNullLazyValue<String> b = m.createRecursionTolerantLazyValue(() -> {
+                await(barrier);
+                return "b(" + a.invoke() + ")";
+            }, "rec");
+
+            NotNullLazyValue<String> getB() {
+                return b;
+            }
+        }
+
+        C c = new C();
+        Future<String> future = executor.submit(c.b::invoke);
+        String a = c.a.invoke();
+        String b = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        // At least one of the threads breaks the cycle and sees the other value as being computed
+        assertTrue(
+                a + ", " + b,
+                a.equals("a(b(rec))") && b.equals("b(rec)") ||
+                a.equals("a(rec)") && b.equals("b(a(rec))") ||
+                a.equals("a(rec)") && b.equals("b(rec)")
+        );
+        assertEquals(a, c.a.invoke());
+        assertEquals(b, c.b.invoke());
+    }
+
+    public void testCrossThreadCycleInFunctionIsReportedAsRecursion() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        AtomicReference<MemoizedFunctionToNotNull<String, String>> f = new AtomicReference<>();
+        f.set(m.createMemoizedFunction(s -> {
+            await(barrier);
+            return s + "(" + f.get().invoke(s.equals("x") ? "y" : "x") + ")";
+        }));
+
+        Future<String> future = executor.submit(() -> f.get().invoke("y"));
+        Throwable fromX = null;
+        Throwable fromY = null;
+        try {
+            f.get().invoke("x");
+        }
+        catch (AssertionError e) {
+            fromX = e;
+        }
+        try {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        catch (ExecutionException e) {
+            fromY = e.getCause();
+        }
+
+        // Both keys fail: one with the recursion, the other one with the failure of the key it needs
+        assertNotNull(fromX);
+        assertNotNull(fromY);
+        assertTrue(String.valueOf(fromX.getMessage()) + ", " + fromY.getMessage(),
+                   String.valueOf(fromX.getMessage()).contains("Recursion detected") ||
+                   String.valueOf(fromY.getMessage()).contains("Recursion detected"));
+    }
+
+    public void testComputeBlocksAreMutuallyExclusiveWhileWaitingForValue() throws Exception {
+        CountDownLatch valueStarted = new CountDownLatch(1);
+        CountDownLatch releaseValue = new CountDownLatch(1);
+        AtomicInteger insideCompute = new AtomicInteger();
+
+        NotNullLazyValue<String> value = m.createLazyValue(() -> {
+            valueStarted.countDown();
+            await(releaseValue);
+            return "value";
+        });
+
+        Future<String> valueFuture = executor.submit(value::invoke);
+        await(valueStarted);
+
+        CountDownLatch firstBlockEntered = new CountDownLatch(1);
+        Future<String> first = executor.submit(() -> m.compute(() -> {
+            insideCompute.incrementAndGet();
+            firstBlockEntered.countDown();
+            // The value doesn't need a compute block, so waiting for it keeps the compute lock
+            String result = value.invoke();
+            insideCompute.decrementAndGet();
+            return result;
+        }));
+        await(firstBlockEntered);
+
+        Future<Integer> second = executor.submit(() -> m.compute(insideCompute::get));
+        Thread.sleep(200);
+        assertFalse(second.isDone());
+
+        releaseValue.countDown();
+        assertEquals("value", first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(0), second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals("value", valueFuture.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Timed out");
+            }
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -29,12 +29,16 @@ import java.util.List;
 
 public class StorageManagerTest extends TestCase {
 
-    private StorageManager m;
+    protected StorageManager m;
 
     @Override
     public void setUp() throws Exception {
         super.setUp();
-        m = new LockBasedStorageManager("StorageManagerTest");
+        m = createStorageManager();
+    }
+
+    protected StorageManager createStorageManager() {
+        return new LockBasedStorageManager("StorageManagerTest");
     }
 
     public static <T> void doTestComputesOnce(Function0<T> v, T expected, Counter counter) throws Exception {
@@ -3,6 +3,7 @@ package org.jetbrains.kotlin.library
 import org.jetbrains.kotlin.konan.file.File
 import org.jetbrains.kotlin.konan.properties.Properties
 import org.jetbrains.kotlin.konan.properties.propertyList
+import java.nio.ByteBuffer
 
 const val KLIB_PROPERTY_ABI_VERSION = "abi_version"
 const val KLIB_PROPERTY_COMPILER_VERSION = "compiler_version"
@@ -47,6 +48,14 @@ interface IrLibrary {
     fun body(index: Int, fileIndex: Int): ByteArray
     fun file(index: Int): ByteArray
     fun fileCount(): Int
+
+    // The buffers below may be read-only slices of memory-mapped library files, a slice keeps the whole mapping alive while referenced.
+    fun irDeclarationBuffer(index: Int, fileIndex: Int): ByteBuffer = ByteBuffer.wrap(irDeclaration(index, fileIndex))
+    fun typeBuffer(index: Int, fileIndex: Int): ByteBuffer = ByteBuffer.wrap(type(index, fileIndex))
+    fun signatureBuffer(index: Int, fileIndex: Int): ByteBuffer = ByteBuffer.wrap(signature(index, fileIndex))
+    fun stringBuffer(index: Int, fileIndex: Int): ByteBuffer = ByteBuffer.wrap(string(index, fileIndex))
+    fun bodyBuffer(index: Int, fileIndex: Int): ByteBuffer = ByteBuffer.wrap(body(index, fileIndex))
+    fun fileBuffer(index: Int): ByteBuffer = ByteBuffer.wrap(file(index))
 }
 
 val BaseKotlinLibrary.uniqueName: String
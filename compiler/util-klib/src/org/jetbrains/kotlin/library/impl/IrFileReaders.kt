@@ -8,168 +8,154 @@ package org.jetbrains.kotlin.library.impl
 import org.jetbrains.kotlin.konan.file.File
 import java.nio.ByteBuffer
 import java.nio.channels.FileChannel
+import java.util.concurrent.ConcurrentHashMap
 
-class IrArrayReader(file: File) {
-    private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
-    private val indexToOffset: IntArray
-
-    fun entryCount() = indexToOffset.size - 1
+/**
+ * Maps files into memory once, so that all readers of a library share one mapping per file.
+ *
+ * The returned buffers are shared: readers must not change their position or limit, but use absolute reads or [ByteBuffer.duplicate].
+ */
+class MappedFileCache {
+    private val buffers = ConcurrentHashMap<String, ByteBuffer>()
 
-    init {
-        val count = buffer.int
-        indexToOffset = IntArray(count + 1)
-        indexToOffset[0] = 4 * (count + 1)
-        for (i in 0 until count) {
-            val size = buffer.int
-            indexToOffset[i + 1] = indexToOffset[i] + size
+    fun map(file: File): ByteBuffer =
+        buffers[file.absolutePath] ?: file.map(FileChannel.MapMode.READ_ONLY).let { mapped ->
+            buffers.putIfAbsent(file.absolutePath, mapped) ?: mapped
         }
-    }
+}
+
+class IrArrayReader(private val buffer: ByteBuffer) {
+    constructor(file: File) : this(file.map(FileChannel.MapMode.READ_ONLY))
 
-    fun tableItemBytes(id: Int): ByteArray {
+    private val indexToOffset: IntArray = buffer.readOffsets(0)
+
+    fun entryCount() = indexToOffset.size - 1
+
+    fun tableItemBuffer(id: Int): ByteBuffer {
         val offset = indexToOffset[id]
         val size = indexToOffset[id + 1] - offset
-        val result = ByteArray(size)
-        buffer.position(offset)
-        buffer.get(result, 0, size)
-        return result
+        return buffer.sliceAt(offset, size)
     }
-}
 
-class IrMultiArrayReader(file: File) {
-    private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
-    private val indexToOffset: IntArray
-    private val indexIndexToOffset = mutableMapOf<Int, IntArray>()
-
-    private fun readOffsets(position: Int): IntArray {
-        buffer.position(position)
-        val count = buffer.int
-        val result = IntArray(count + 1)
-        result[0] = 4 * (count + 1)
-        for (i in 0 until count) {
-            val size = buffer.int
-            result[i + 1] = result[i] + size
-        }
+    fun tableItemBytes(id: Int): ByteArray = tableItemBuffer(id).toByteArray()
+}
 
-        return result
-    }
+class IrMultiArrayReader(private val buffer: ByteBuffer) {
+    constructor(file: File) : this(file.map(FileChannel.MapMode.READ_ONLY))
 
-    init {
-        indexToOffset = readOffsets(0)
-    }
+    private val indexToOffset: IntArray = buffer.readOffsets(0)
+    private val indexIndexToOffset = arrayOfNulls<IntArray>(indexToOffset.size - 1)
 
-    fun tableItemBytes(id: Int): ByteArray {
+    fun tableItemBuffer(id: Int): ByteBuffer {
         val offset = indexToOffset[id]
         val size = indexToOffset[id + 1] - offset
-        val result = ByteArray(size)
-        buffer.position(offset)
-        buffer.get(result, 0, size)
-        return result
+        return buffer.sliceAt(offset, size)
     }
 
-    fun tableItemBytes(row: Int, column: Int): ByteArray {
-        val rowOffset = indexToOffset[row]
+    fun tableItemBytes(id: Int): ByteArray = tableItemBuffer(id).toByteArray()
 
-        val collumnOffsets = indexIndexToOffset.getOrPut(row) {
-            readOffsets(rowOffset)
-        }
+    fun tableItemBuffer(row: Int, column: Int): ByteBuffer {
+        val rowOffset = indexToOffset[row]
 
-        val dataOffset = collumnOffsets[column]
-        val dataSize = collumnOffsets[column + 1] - dataOffset
-        val result = ByteArray(dataSize)
+        val columnOffsets = indexIndexToOffset[row] ?: buffer.readOffsets(rowOffset).also { indexIndexToOffset[row] = it }
 
-        buffer.position(rowOffset + dataOffset)
-        buffer.get(result, 0, dataSize)
+        val dataOffset = columnOffsets[column]
+        val dataSize = columnOffsets[column + 1] - dataOffset
 
-        return result
+        return buffer.sliceAt(rowOffset + dataOffset, dataSize)
     }
+
+    fun tableItemBytes(row: Int, column: Int): ByteArray = tableItemBuffer(row, column).toByteArray()
 }
 
-abstract class IrMultiTableReader<K>(file: File, private val keyReader: ByteBuffer.() -> K) {
-    private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
-    private val indexToOffset: IntArray
-    private val indexToIndexMap = mutableMapOf<Int, Map<K, Pair<Int, Int>>>()
-
-    private fun readOffsets(position: Int): IntArray {
-        buffer.position(position)
-        val count = buffer.int
-        val result = IntArray(count + 1)
-        result[0] = 4 * (count + 1)
-        for (i in 0 until count) {
-            val size = buffer.int
-            result[i + 1] = result[i] + size
-        }
+abstract class IrMultiTableReader<K>(private val buffer: ByteBuffer, private val keyReader: ByteBuffer.() -> K) {
+    constructor(file: File, keyReader: ByteBuffer.() -> K) : this(file.map(FileChannel.MapMode.READ_ONLY), keyReader)
 
-        return result
-    }
+    private val indexToOffset: IntArray = buffer.readOffsets(0)
+    private val indexToIndexMap = arrayOfNulls<Map<K, Long>>(indexToOffset.size - 1)
 
-    init {
-        indexToOffset = readOffsets(0)
-    }
+    fun tableItemBuffer(row: Int, id: K): ByteBuffer {
+        val rowOffset = indexToOffset[row]
+
+        val indexToMap = indexToIndexMap[row] ?: buffer.readIndexMap(rowOffset, keyReader).also { indexToIndexMap[row] = it }
 
-    private fun readIndexMap(position: Int): Map<K, Pair<Int, Int>> {
-        buffer.position(position)
-        val result = mutableMapOf<K, Pair<Int, Int>>()
+        val coordinates = indexToMap[id] ?: error("No coordinates found for $id")
+        return buffer.sliceAt(rowOffset + coordinates.offset, coordinates.size)
+    }
 
-        val count = buffer.int
+    fun tableItemBytes(row: Int, id: K): ByteArray = tableItemBuffer(row, id).toByteArray()
+}
 
-        for (i in 0 until count) {
-            val key = keyReader(buffer)
-            val offset = buffer.int
-            val size = buffer.int
+abstract class IrTableReader<K>(private val buffer: ByteBuffer, keyReader: ByteBuffer.() -> K) {
+    constructor(file: File, keyReader: ByteBuffer.() -> K) : this(file.map(FileChannel.MapMode.READ_ONLY), keyReader)
 
-            result[key] = offset to size
-        }
+    private val indexToOffset: Map<K, Long> = buffer.readIndexMap(0, keyReader)
 
-        return result
+    fun tableItemBuffer(id: K): ByteBuffer {
+        val coordinates = indexToOffset[id] ?: error("No coordinates found for $id")
+        return buffer.sliceAt(coordinates.offset, coordinates.size)
     }
 
-    fun tableItemBytes(row: Int, id: K): ByteArray {
+    fun tableItemBytes(id: K): ByteArray = tableItemBuffer(id).toByteArray()
+}
 
-        val rowOffset = indexToOffset[row]
+class IndexIrTableReader(buffer: ByteBuffer) : IrTableReader<Long>(buffer, { long }) {
+    constructor(file: File) : this(file.map(FileChannel.MapMode.READ_ONLY))
+}
 
-        val indexToMap = indexToIndexMap.getOrPut(row) {
-            readIndexMap(rowOffset)
-        }
+data class DeclarationId(val id: Int)
 
-        val coordinates = indexToMap[id] ?: error("No coordinates found for $id")
-        val offset = coordinates.first
-        val size = coordinates.second
-        val result = ByteArray(size)
-        buffer.position(rowOffset + offset)
-        buffer.get(result, 0, size)
-        return result
-    }
+class DeclarationIrTableReader(buffer: ByteBuffer) : IrTableReader<DeclarationId>(buffer, { DeclarationId(int) }) {
+    constructor(file: File) : this(file.map(FileChannel.MapMode.READ_ONLY))
 }
 
-abstract class IrTableReader<K>(file: File, keyReader: ByteBuffer.() -> K) {
-    private val buffer = file.map(FileChannel.MapMode.READ_ONLY)
-    private val indexToOffset = mutableMapOf<K, Pair<Int, Int>>()
+class DeclarationIrMultiTableReader(buffer: ByteBuffer) : IrMultiTableReader<DeclarationId>(buffer, { DeclarationId(int) }) {
+    constructor(file: File) : this(file.map(FileChannel.MapMode.READ_ONLY))
+}
 
-    init {
-        val count = buffer.int
-        for (i in 0 until count) {
-            val key = keyReader(buffer)
-            val offset = buffer.int
-            val size = buffer.int
+internal fun ByteBuffer.toByteArray(): ByteArray {
+    val result = ByteArray(remaining())
+    duplicate().get(result)
+    return result
+}
 
-            indexToOffset[key] = offset to size
-        }
+private fun ByteBuffer.readOffsets(position: Int): IntArray {
+    val count = getInt(position)
+    val result = IntArray(count + 1)
+    result[0] = 4 * (count + 1)
+    for (i in 0 until count) {
+        val size = getInt(position + 4 * (i + 1))
+        result[i + 1] = result[i] + size
     }
 
-    fun tableItemBytes(id: K): ByteArray {
-        val coordinates = indexToOffset[id] ?: error("No coordinates found for $id")
-        val offset = coordinates.first
-        val size = coordinates.second
-        val result = ByteArray(size)
-        buffer.position(offset)
-        buffer.get(result, 0, size)
-        return result
-    }
+    return result
 }
 
-class IndexIrTableReader(file: File) : IrTableReader<Long>(file, { long })
+// Coordinates of an entry are packed into a single long to avoid allocating a pair and two boxed integers per entry
+private fun <K> ByteBuffer.readIndexMap(position: Int, keyReader: ByteBuffer.() -> K): Map<K, Long> {
+    val index = duplicate()
+    index.position(position)
 
-data class DeclarationId(val id: Int)
+    val count = index.int
+    val result = HashMap<K, Long>(count * 4 / 3 + 1)
+
+    for (i in 0 until count) {
+        val key = keyReader(index)
+        val offset = index.int
+        val size = index.int
 
-class DeclarationIrTableReader(file: File) : IrTableReader<DeclarationId>(file, { DeclarationId(int) })
-class DeclarationIrMultiTableReader(file: File) : IrMultiTableReader<DeclarationId>(file, { DeclarationId(int) })
\ No newline at end of file
+        result[key] = (offset.toLong() shl 32) or (size.toLong() and 0xFFFFFFFFL)
+    }
+
+    return result
+}
+
+private val Long.offset: Int get() = (this ushr 32).toInt()
+private val Long.size: Int get() = toInt()
+
+private fun ByteBuffer.sliceAt(offset: Int, size: Int): ByteBuffer {
+    val result = duplicate()
+    result.position(offset)
+    result.limit(offset + size)
+    return result.slice()
+}
@@ -20,6 +20,7 @@ import org.jetbrains.kotlin.konan.file.File
 import org.jetbrains.kotlin.library.*
 import org.jetbrains.kotlin.konan.properties.Properties
 import org.jetbrains.kotlin.konan.properties.loadProperties
+import java.nio.ByteBuffer
 
 open class BaseKotlinLibraryImpl(
     val access: BaseLibraryAccess<KotlinLibraryLayout>,
@@ -87,65 +88,88 @@ open class MetadataLibraryImpl(
 abstract class IrLibraryImpl(
     val access: IrLibraryAccess<IrKotlinLibraryLayout>
 ) : IrLibrary {
+    protected val mappedFiles = MappedFileCache()
+
     override val dataFlowGraph by lazy {
         access.inPlace { it: IrKotlinLibraryLayout ->
             it.dataFlowGraphFile.let { if (it.exists) it.readBytes() else null }
         }
     }
+
+    override fun irDeclaration(index: Int, fileIndex: Int) = irDeclarationBuffer(index, fileIndex).toByteArray()
+
+    override fun type(index: Int, fileIndex: Int) = typeBuffer(index, fileIndex).toByteArray()
+
+    override fun signature(index: Int, fileIndex: Int) = signatureBuffer(index, fileIndex).toByteArray()
+
+    override fun string(index: Int, fileIndex: Int) = stringBuffer(index, fileIndex).toByteArray()
+
+    override fun body(index: Int, fileIndex: Int) = bodyBuffer(index, fileIndex).toByteArray()
+
+    override fun file(index: Int) = fileBuffer(index).toByteArray()
+
+    abstract override fun irDeclarationBuffer(index: Int, fileIndex: Int): ByteBuffer
+
+    abstract override fun typeBuffer(index: Int, fileIndex: Int): ByteBuffer
+
+    abstract override fun signatureBuffer(index: Int, fileIndex: Int): ByteBuffer
+
+    abstract override fun stringBuffer(index: Int, fileIndex: Int): ByteBuffer
+
+    abstract override fun bodyBuffer(index: Int, fileIndex: Int): ByteBuffer
+
+    abstract override fun fileBuffer(index: Int): ByteBuffer
 }
 
 class IrMonoliticLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) : IrLibraryImpl(_access) {
     override fun fileCount(): Int = files.entryCount()
 
-    override fun irDeclaration(index: Int, fileIndex: Int) = loadIrDeclaration(index, fileIndex)
-
-    override fun type(index: Int, fileIndex: Int) = types.tableItemBytes(fileIndex, index)
+    override fun irDeclarationBuffer(index: Int, fileIndex: Int) = combinedDeclarations.tableItemBuffer(fileIndex, DeclarationId(index))
 
-    override fun signature(index: Int, fileIndex: Int) = signatures.tableItemBytes(fileIndex, index)
+    override fun typeBuffer(index: Int, fileIndex: Int) = types.tableItemBuffer(fileIndex, index)
 
-    override fun string(index: Int, fileIndex: Int) = strings.tableItemBytes(fileIndex, index)
+    override fun signatureBuffer(index: Int, fileIndex: Int) = signatures.tableItemBuffer(fileIndex, index)
 
-    override fun body(index: Int, fileIndex: Int) = bodies.tableItemBytes(fileIndex, index)
+    override fun stringBuffer(index: Int, fileIndex: Int) = strings.tableItemBuffer(fileIndex, index)
 
-    override fun file(index: Int) = files.tableItemBytes(index)
+    override fun bodyBuffer(index: Int, fileIndex: Int) = bodies.tableItemBuffer(fileIndex, index)
 
-    private fun loadIrDeclaration(index: Int, fileIndex: Int) =
-        combinedDeclarations.tableItemBytes(fileIndex, DeclarationId(index))
+    override fun fileBuffer(index: Int) = files.tableItemBuffer(index)
 
     private val combinedDeclarations: DeclarationIrMultiTableReader by lazy {
-        DeclarationIrMultiTableReader(access.realFiles {
+        DeclarationIrMultiTableReader(mappedFiles.map(access.realFiles {
             it.irDeclarations
-        })
+        }))
     }
 
     private val types: IrMultiArrayReader by lazy {
-        IrMultiArrayReader(access.realFiles {
+        IrMultiArrayReader(mappedFiles.map(access.realFiles {
             it.irTypes
-        })
+        }))
     }
 
     private val signatures: IrMultiArrayReader by lazy {
-        IrMultiArrayReader(access.realFiles {
+        IrMultiArrayReader(mappedFiles.map(access.realFiles {
             it.irSignatures
-        })
+        }))
     }
 
     private val strings: IrMultiArrayReader by lazy {
-        IrMultiArrayReader(access.realFiles {
+        IrMultiArrayReader(mappedFiles.map(access.realFiles {
             it.irStrings
-        })
+        }))
     }
 
     private val bodies: IrMultiArrayReader by lazy {
-        IrMultiArrayReader(access.realFiles {
+        IrMultiArrayReader(mappedFiles.map(access.realFiles {
             it.irBodies
-        })
+        }))
     }
 
     private val files: IrArrayReader by lazy {
-        IrArrayReader(access.realFiles {
+        IrArrayReader(mappedFiles.map(access.realFiles {
             it.irFiles
-        })
+        }))
     }
 }
 
@@ -158,57 +182,57 @@ class IrPerFileLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) : Ir
     }
 
     private val fileToDeclarationMap = mutableMapOf<Int, DeclarationIrTableReader>()
-    override fun irDeclaration(index: Int, fileIndex: Int): ByteArray {
+    override fun irDeclarationBuffer(index: Int, fileIndex: Int): ByteBuffer {
         val dataReader = fileToDeclarationMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
-            DeclarationIrTableReader(access.realFiles {
+            DeclarationIrTableReader(mappedFiles.map(access.realFiles {
                 it.irDeclarations(fileDirectory)
-            })
+            }))
         }
-        return dataReader.tableItemBytes(DeclarationId(index))
+        return dataReader.tableItemBuffer(DeclarationId(index))
     }
 
     private val fileToTypeMap = mutableMapOf<Int, IrArrayReader>()
-    override fun type(index: Int, fileIndex: Int): ByteArray {
+    override fun typeBuffer(index: Int, fileIndex: Int): ByteBuffer {
         val dataReader = fileToTypeMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
-            IrArrayReader(access.realFiles {
+            IrArrayReader(mappedFiles.map(access.realFiles {
                 it.irTypes(fileDirectory)
-            })
+            }))
         }
-        return dataReader.tableItemBytes(index)
+        return dataReader.tableItemBuffer(index)
     }
 
-    override fun signature(index: Int, fileIndex: Int): ByteArray {
+    override fun signatureBuffer(index: Int, fileIndex: Int): ByteBuffer {
         val dataReader = fileToTypeMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
-            IrArrayReader(access.realFiles {
+            IrArrayReader(mappedFiles.map(access.realFiles {
                 it.irSignatures(fileDirectory)
-            })
+            }))
         }
-        return dataReader.tableItemBytes(index)
+        return dataReader.tableItemBuffer(index)
     }
 
     private val fileToStringMap = mutableMapOf<Int, IrArrayReader>()
-    override fun string(index: Int, fileIndex: Int): ByteArray {
+    override fun stringBuffer(index: Int, fileIndex: Int): ByteBuffer {
         val dataReader = fileToStringMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
-            IrArrayReader(access.realFiles {
+            IrArrayReader(mappedFiles.map(access.realFiles {
                 it.irStrings(fileDirectory)
-            })
+            }))
         }
-        return dataReader.tableItemBytes(index)
+        return dataReader.tableItemBuffer(index)
     }
 
     private val fileToBodyMap = mutableMapOf<Int, IrArrayReader>()
-    override fun body(index: Int, fileIndex: Int): ByteArray {
+    override fun bodyBuffer(index: Int, fileIndex: Int): ByteBuffer {
         val dataReader = fileToBodyMap.getOrPut(fileIndex) {
             val fileDirectory = directories[fileIndex]
-            IrArrayReader(access.realFiles {
+            IrArrayReader(mappedFiles.map(access.realFiles {
                 it.irBodies(fileDirectory)
-            })
+            }))
         }
-        return dataReader.tableItemBytes(index)
+        return dataReader.tableItemBuffer(index)
     }
 
     override fun file(index: Int): ByteArray {
@@ -217,6 +241,8 @@ class IrPerFileLibraryImpl(_access: IrLibraryAccess<IrKotlinLibraryLayout>) : Ir
         }
     }
 
+    override fun fileBuffer(index: Int): ByteBuffer = ByteBuffer.wrap(file(index))
+
     override fun fileCount(): Int {
         return directories.size
     }
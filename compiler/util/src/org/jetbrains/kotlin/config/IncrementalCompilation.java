@@ -16,6 +16,7 @@
 
 package org.jetbrains.kotlin.config;
 
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.util.List;
@@ -24,12 +25,55 @@ public class IncrementalCompilation {
     public static final String INCREMENTAL_COMPILATION_JVM_PROPERTY = "kotlin.incremental.compilation";
     public static final String INCREMENTAL_COMPILATION_JS_PROPERTY = "kotlin.incremental.compilation.js";
 
+    // Overrides of the system properties for compilations running in parallel in one process, e.g. in the daemon.
+    // Set around a compilation on the thread running it, which resets them when done, see withIC. They are not inherited, so that
+    // threads started during a compilation and pooled for later ones, like the common ForkJoinPool, don't keep the setting.
+    // Only the thread running the compilation reads them
+    private static final ThreadLocal<Boolean> isEnabledForJvmInThread = new ThreadLocal<Boolean>();
+    private static final ThreadLocal<Boolean> isEnabledForJsInThread = new ThreadLocal<Boolean>();
+
     public static boolean isEnabledForJvm() {
-        return "true".equals(System.getProperty(INCREMENTAL_COMPILATION_JVM_PROPERTY));
+        Boolean value = isEnabledForJvmInThread.get();
+        return value != null ? value : "true".equals(System.getProperty(INCREMENTAL_COMPILATION_JVM_PROPERTY));
     }
 
     public static boolean isEnabledForJs() {
-        return "true".equals(System.getProperty(INCREMENTAL_COMPILATION_JS_PROPERTY));
+        Boolean value = isEnabledForJsInThread.get();
+        return value != null ? value : "true".equals(System.getProperty(INCREMENTAL_COMPILATION_JS_PROPERTY));
+    }
+
+    @Nullable
+    public static Boolean getIsEnabledForJvmInThread() {
+        return isEnabledForJvmInThread.get();
+    }
+
+    /**
+     * @param value {@code null} to use the value of the system property
+     */
+    public static void setIsEnabledForJvmInThread(@Nullable Boolean value) {
+        if (value == null) {
+            isEnabledForJvmInThread.remove();
+        }
+        else {
+            isEnabledForJvmInThread.set(value);
+        }
+    }
+
+    @Nullable
+    public static Boolean getIsEnabledForJsInThread() {
+        return isEnabledForJsInThread.get();
+    }
+
+    /**
+     * @param value {@code null} to use the value of the system property
+     */
+    public static void setIsEnabledForJsInThread(@Nullable Boolean value) {
+        if (value == null) {
+            isEnabledForJsInThread.remove();
+        }
+        else {
+            isEnabledForJsInThread.set(value);
+        }
     }
 
     @TestOnly
@@ -25,10 +25,13 @@
     ** toString();
 }
 
-# For tests on HashPMap, see compiler/testData/codegen/box/hashPMap
--keepclassmembers class kotlin.reflect.jvm.internal.pcollections.HashPMap {
+# For tests on HashPMap, see compiler/testData/codegen/box/hashPMap. The class is not used by kotlin-reflect itself anymore
+-keep class kotlin.reflect.jvm.internal.pcollections.HashPMap {
+    public static kotlin.reflect.jvm.internal.pcollections.HashPMap empty();
     public int size();
     public boolean containsKey(java.lang.Object);
+    public java.lang.Object get(java.lang.Object);
+    public kotlin.reflect.jvm.internal.pcollections.HashPMap plus(java.lang.Object, java.lang.Object);
     public kotlin.reflect.jvm.internal.pcollections.HashPMap minus(java.lang.Object);
 }
 
@@ -19,7 +19,6 @@
 
 package kotlin.reflect.full
 
-import org.jetbrains.kotlin.descriptors.ConstructorDescriptor
 import org.jetbrains.kotlin.types.TypeSubstitutor
 import org.jetbrains.kotlin.types.Variance
 import org.jetbrains.kotlin.utils.DFS
@@ -38,7 +37,7 @@ import kotlin.reflect.jvm.internal.KotlinReflectionInternalError
 @SinceKotlin("1.1")
 val <T : Any> KClass<T>.primaryConstructor: KFunction<T>?
     get() = (this as KClassImpl<T>).constructors.firstOrNull {
-        ((it as KFunctionImpl).descriptor as ConstructorDescriptor).isPrimary
+        (it as KFunctionImpl).isPrimaryConstructor
     }
 
 
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package kotlin.reflect.jvm.internal
+
+import org.jetbrains.kotlin.load.java.JvmAnnotationNames
+import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
+import org.jetbrains.kotlin.metadata.ProtoBuf
+import org.jetbrains.kotlin.metadata.deserialization.Flags
+import org.jetbrains.kotlin.metadata.deserialization.NameResolver
+import org.jetbrains.kotlin.metadata.deserialization.TypeTable
+import org.jetbrains.kotlin.metadata.deserialization.type
+import org.jetbrains.kotlin.metadata.jvm.deserialization.JvmMetadataVersion
+import org.jetbrains.kotlin.metadata.jvm.deserialization.JvmProtoBufUtil
+import org.jetbrains.kotlin.protobuf.InvalidProtocolBufferException
+
+/**
+ * Kotlin metadata of a class, read from its [Metadata] annotation without descriptors.
+ *
+ * Creating the descriptor of the first class of a class loader deserializes the whole module, so the modifiers of a class and its
+ * constructors with their parameters are answered from here. Members and full types are still built from descriptors.
+ */
+internal class ClassMetadata private constructor(private val proto: ProtoBuf.Class, private val nameResolver: NameResolver) {
+    private val typeTable = TypeTable(proto.typeTable)
+
+    val flags: Int get() = proto.flags
+
+    /**
+     * Constructors of the class in the order of [org.jetbrains.kotlin.descriptors.ClassDescriptor.getConstructors], or null if they
+     * need descriptors.
+     */
+    fun readConstructors(): List<ConstructorMetadata>? {
+        when (Flags.CLASS_KIND.get(proto.flags)) {
+            ProtoBuf.Class.Kind.INTERFACE, ProtoBuf.Class.Kind.OBJECT, ProtoBuf.Class.Kind.COMPANION_OBJECT -> return emptyList()
+            ProtoBuf.Class.Kind.CLASS, ProtoBuf.Class.Kind.ENUM_CLASS, ProtoBuf.Class.Kind.ANNOTATION_CLASS -> {
+            }
+            else -> return null
+        }
+        // Constructors of inner classes have an instance parameter, and the ones of inline classes are called as static functions
+        if (Flags.IS_INNER.get(proto.flags) || Flags.IS_INLINE_CLASS.get(proto.flags)) return null
+
+        // Descriptors list the secondary constructors before the primary one
+        val constructors = proto.constructorList.sortedBy { !Flags.IS_SECONDARY.get(it.flags) }
+        return constructors.map { constructor ->
+            val signature = JvmProtoBufUtil.getJvmConstructorSignature(constructor, nameResolver, typeTable) ?: return null
+            ConstructorMetadata(
+                signature.asString(),
+                !Flags.IS_SECONDARY.get(constructor.flags),
+                constructor.valueParameterList.map(::readValueParameter)
+            )
+        }
+    }
+
+    private fun readValueParameter(proto: ProtoBuf.ValueParameter): ValueParameterMetadata {
+        val type = proto.type(typeTable)
+        val name = nameResolver.getString(proto.name)
+        return ValueParameterMetadata(
+            // Special names, such as the ones of parameters without names, start with '<', see Name.guessByFirstCharacter
+            name.takeUnless { it.startsWith('<') },
+            Flags.DECLARES_DEFAULT_VALUE.get(proto.flags),
+            proto.hasVarargElementType() || proto.hasVarargElementTypeId(),
+            // Nullability of a flexible type depends on its bounds, leave it to descriptors
+            type.nullable.takeUnless { type.hasFlexibleUpperBound() || type.hasFlexibleUpperBoundId() }
+        )
+    }
+
+    companion object {
+        /**
+         * @return metadata of [jClass], or null if it's not a Kotlin class whose metadata this library can read.
+         */
+        fun read(jClass: Class<*>): ClassMetadata? {
+            val metadata = jClass.getAnnotation(Metadata::class.java) ?: return null
+            if (metadata.kind != KotlinClassHeader.Kind.CLASS.id || metadata.data1.isEmpty()) return null
+
+            val isStrictSemantics = (metadata.extraInt and JvmAnnotationNames.METADATA_STRICT_VERSION_SEMANTICS_FLAG) != 0
+            if (!JvmMetadataVersion(metadata.metadataVersion, isStrictSemantics).isCompatible()) return null
+
+            return try {
+                val (nameResolver, proto) = JvmProtoBufUtil.readClassDataFrom(metadata.data1, metadata.data2)
+                ClassMetadata(proto, nameResolver)
+            } catch (e: InvalidProtocolBufferException) {
+                // Let the descriptor-based path report the error
+                null
+            }
+        }
+    }
+}
+
+internal class ConstructorMetadata(val signature: String, val isPrimary: Boolean, val valueParameters: List<ValueParameterMetadata>)
+
+/**
+ * @property isMarkedNullable nullability of the parameter type, or null if it needs the descriptor
+ */
+internal class ValueParameterMetadata(
+    val name: String?,
+    val declaresDefaultValue: Boolean,
+    val isVararg: Boolean,
+    val isMarkedNullable: Boolean?
+)
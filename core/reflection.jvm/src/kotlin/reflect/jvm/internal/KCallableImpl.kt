@@ -35,7 +35,16 @@ internal abstract class KCallableImpl<out R> : KCallable<R> {
 
     override val annotations: List<Annotation> get() = _annotations()
 
+    // Value parameters which are known without the descriptor, if the callable has no receivers, see ClassMetadata
+    internal open val valueParametersFromMetadata: List<ValueParameterMetadata>? get() = null
+
     private val _parameters = ReflectProperties.lazySoft {
+        valueParametersFromMetadata?.let { valueParameters ->
+            return@lazySoft valueParameters.mapIndexed { i, metadata ->
+                KParameterImpl(this, i, KParameter.Kind.VALUE, metadata) { descriptor.valueParameters[i] }
+            }
+        }
+
         val descriptor = descriptor
         val result = ArrayList<KParameter>()
         var index = 0
@@ -110,16 +119,34 @@ internal abstract class KCallableImpl<out R> : KCallable<R> {
         return if (isAnnotationConstructor) callAnnotationConstructor(args) else callDefaultMethod(args, null)
     }
 
+    // Whether each parameter is optional, and the value passed to the default method for an absent optional argument.
+    // Computing them is much more expensive than the call itself, so they're not recomputed on each call of `callBy`
+    private class DefaultArguments(val isOptional: BooleanArray, val values: Array<Any?>)
+
+    private val _defaultArguments = ReflectProperties.lazySoft {
+        val parameters = parameters
+        val isOptional = BooleanArray(parameters.size)
+        val values = arrayOfNulls<Any?>(parameters.size)
+        for ((i, parameter) in parameters.withIndex()) {
+            if (parameter.isOptional) {
+                isOptional[i] = true
+                values[i] = defaultPrimitiveValue(parameter.type.javaType)
+            }
+        }
+        DefaultArguments(isOptional, values)
+    }
+
     // See ArgumentGenerator#generate
     internal fun callDefaultMethod(args: Map<KParameter, Any?>, continuationArgument: Continuation<*>?): R {
         val parameters = parameters
-        val arguments = ArrayList<Any?>(parameters.size)
+        val defaultArguments = _defaultArguments()
+        val arguments = ArrayList<Any?>(parameters.size + 3)
         var mask = 0
         val masks = ArrayList<Int>(1)
         var index = 0
         var anyOptional = false
 
-        for (parameter in parameters) {
+        for ((i, parameter) in parameters.withIndex()) {
             if (index != 0 && index % Integer.SIZE == 0) {
                 masks.add(mask)
                 mask = 0
@@ -129,8 +156,8 @@ internal abstract class KCallableImpl<out R> : KCallable<R> {
                 args.containsKey(parameter) -> {
                     arguments.add(args[parameter])
                 }
-                parameter.isOptional -> {
-                    arguments.add(defaultPrimitiveValue(parameter.type.javaType))
+                defaultArguments.isOptional[i] -> {
+                    arguments.add(defaultArguments.values[i])
                     mask = mask or (1 shl (index % Integer.SIZE))
                     anyOptional = true
                 }
@@ -149,7 +176,10 @@ internal abstract class KCallableImpl<out R> : KCallable<R> {
         }
 
         if (!anyOptional) {
-            return call(*arguments.toTypedArray())
+            @Suppress("UNCHECKED_CAST")
+            return reflectionCall {
+                caller.call(arguments.toTypedArray()) as R
+            }
         }
 
         masks.add(mask)
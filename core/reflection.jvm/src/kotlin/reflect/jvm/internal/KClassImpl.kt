@@ -22,6 +22,8 @@ import org.jetbrains.kotlin.descriptors.*
 import org.jetbrains.kotlin.incremental.components.NoLookupLocation
 import org.jetbrains.kotlin.load.java.JvmAbi
 import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader
+import org.jetbrains.kotlin.metadata.ProtoBuf
+import org.jetbrains.kotlin.metadata.deserialization.Flags
 import org.jetbrains.kotlin.metadata.deserialization.getExtensionOrNull
 import org.jetbrains.kotlin.metadata.jvm.JvmProtoBuf
 import org.jetbrains.kotlin.name.ClassId
@@ -30,6 +32,7 @@ import org.jetbrains.kotlin.resolve.DescriptorUtils
 import org.jetbrains.kotlin.resolve.descriptorUtil.builtIns
 import org.jetbrains.kotlin.resolve.scopes.MemberScope
 import org.jetbrains.kotlin.serialization.deserialization.MemberDeserializer
+import org.jetbrains.kotlin.serialization.deserialization.ProtoEnumFlags
 import org.jetbrains.kotlin.serialization.deserialization.descriptors.DeserializedClassDescriptor
 import org.jetbrains.kotlin.utils.compact
 import kotlin.jvm.internal.TypeIntrinsics
@@ -53,6 +56,12 @@ internal class KClassImpl<T : Any>(override val jClass: Class<T>) : KDeclaration
             descriptor ?: reportUnresolvedClass()
         }
 
+        // Kotlin metadata of the class, or null if there's none this library can read without descriptors. The modifiers of the class
+        // (visibility, modality, isData, isInner, isCompanion) and its constructors with their parameters are answered from it
+        val metadata: ClassMetadata? by ReflectProperties.lazySoft { ClassMetadata.read(jClass) }
+
+        val flags: Int? get() = metadata?.flags
+
         val annotations: List<Annotation> by ReflectProperties.lazySoft { descriptor.computeAnnotations() }
 
         val simpleName: String? by ReflectProperties.lazySoft {
@@ -88,6 +97,10 @@ internal class KClassImpl<T : Any>(override val jClass: Class<T>) : KDeclaration
 
         @Suppress("UNCHECKED_CAST")
         val constructors: Collection<KFunction<T>> by ReflectProperties.lazySoft {
+            metadata?.readConstructors()?.let { constructors ->
+                return@lazySoft constructors.map { KFunctionImpl(this@KClassImpl, it) as KFunction<T> }
+            }
+
             constructorDescriptors.map { descriptor ->
                 KFunctionImpl(this@KClassImpl, descriptor) as KFunction<T>
             }
@@ -256,28 +269,34 @@ internal class KClassImpl<T : Any>(override val jClass: Class<T>) : KDeclaration
     override val sealedSubclasses: List<KClass<out T>> get() = data().sealedSubclasses
 
     override val visibility: KVisibility?
-        get() = descriptor.visibility.toKVisibility()
+        get() {
+            val flags = data().flags ?: return descriptor.visibility.toKVisibility()
+            return ProtoEnumFlags.visibility(Flags.VISIBILITY.get(flags)).toKVisibility()
+        }
+
+    private val modality: Modality
+        get() = data().flags?.let { ProtoEnumFlags.modality(Flags.MODALITY.get(it)) } ?: descriptor.modality
 
     override val isFinal: Boolean
-        get() = descriptor.modality == Modality.FINAL
+        get() = modality == Modality.FINAL
 
     override val isOpen: Boolean
-        get() = descriptor.modality == Modality.OPEN
+        get() = modality == Modality.OPEN
 
     override val isAbstract: Boolean
-        get() = descriptor.modality == Modality.ABSTRACT
+        get() = modality == Modality.ABSTRACT
 
     override val isSealed: Boolean
-        get() = descriptor.modality == Modality.SEALED
+        get() = modality == Modality.SEALED
 
     override val isData: Boolean
-        get() = descriptor.isData
+        get() = data().flags?.let { Flags.IS_DATA.get(it) } ?: descriptor.isData
 
     override val isInner: Boolean
-        get() = descriptor.isInner
+        get() = data().flags?.let { Flags.IS_INNER.get(it) } ?: descriptor.isInner
 
     override val isCompanion: Boolean
-        get() = descriptor.isCompanionObject
+        get() = data().flags?.let { Flags.CLASS_KIND.get(it) == ProtoBuf.Class.Kind.COMPANION_OBJECT } ?: descriptor.isCompanionObject
 
     override fun equals(other: Any?): Boolean =
         other is KClassImpl<*> && javaObjectType == other.javaObjectType
@@ -17,6 +17,7 @@
 package kotlin.reflect.jvm.internal
 
 import org.jetbrains.kotlin.descriptors.ClassDescriptor
+import org.jetbrains.kotlin.descriptors.ConstructorDescriptor
 import org.jetbrains.kotlin.descriptors.FunctionDescriptor
 import org.jetbrains.kotlin.resolve.jvm.shouldHideConstructorDueToInlineClassTypeValueParameters
 import java.lang.reflect.Constructor
@@ -38,11 +39,17 @@ internal class KFunctionImpl private constructor(
     name: String,
     private val signature: String,
     descriptorInitialValue: FunctionDescriptor?,
-    private val rawBoundReceiver: Any? = CallableReference.NO_RECEIVER
+    private val rawBoundReceiver: Any? = CallableReference.NO_RECEIVER,
+    private val constructorMetadata: ConstructorMetadata? = null
 ) : KCallableImpl<Any?>(), KFunction<Any?>, FunctionBase<Any?>, FunctionWithAllInvokes {
     constructor(container: KDeclarationContainerImpl, name: String, signature: String, boundReceiver: Any?)
             : this(container, name, signature, null, boundReceiver)
 
+    // A constructor read from the metadata of its class, whose descriptor is created only when needed
+    constructor(container: KClassImpl<*>, metadata: ConstructorMetadata) : this(
+        container, "<init>", metadata.signature, null, CallableReference.NO_RECEIVER, metadata
+    )
+
     constructor(container: KDeclarationContainerImpl, descriptor: FunctionDescriptor) : this(
         container,
         descriptor.name.asString(),
@@ -56,7 +63,14 @@ internal class KFunctionImpl private constructor(
         container.findFunctionDescriptor(name, signature)
     }
 
-    override val name: String get() = descriptor.name.asString()
+    override val name: String
+        get() = if (constructorMetadata != null) "<init>" else descriptor.name.asString()
+
+    override val valueParametersFromMetadata: List<ValueParameterMetadata>?
+        get() = constructorMetadata?.valueParameters
+
+    internal val isPrimaryConstructor: Boolean
+        get() = constructorMetadata?.isPrimary ?: (descriptor as? ConstructorDescriptor)?.isPrimary == true
 
     override val caller: Caller<*> by ReflectProperties.lazy caller@{
         val jvmSignature = RuntimeTypeMapper.mapSignature(descriptor)
@@ -25,14 +25,20 @@ internal class KParameterImpl(
     val callable: KCallableImpl<*>,
     override val index: Int,
     override val kind: KParameter.Kind,
+    private val metadata: ValueParameterMetadata?,
     computeDescriptor: () -> ParameterDescriptor
 ) : KParameter {
+    constructor(callable: KCallableImpl<*>, index: Int, kind: KParameter.Kind, computeDescriptor: () -> ParameterDescriptor)
+            : this(callable, index, kind, null, computeDescriptor)
+
     private val descriptor: ParameterDescriptor by ReflectProperties.lazySoft(computeDescriptor)
 
     override val annotations: List<Annotation> by ReflectProperties.lazySoft { descriptor.computeAnnotations() }
 
     override val name: String?
         get() {
+            if (metadata != null) return metadata.name
+
             val valueParameter = descriptor as? ValueParameterDescriptor ?: return null
             if (valueParameter.containingDeclaration.hasSynthesizedParameterNames()) return null
             val name = valueParameter.name
@@ -40,7 +46,7 @@ internal class KParameterImpl(
         }
 
     override val type: KType
-        get() = KTypeImpl(descriptor.type) {
+        get() = KTypeImpl({ descriptor.type }, metadata?.isMarkedNullable) {
             val descriptor = descriptor
 
             if (descriptor is ReceiverParameterDescriptor &&
@@ -58,16 +64,17 @@ internal class KParameterImpl(
         }
 
     override val isOptional: Boolean
-        get() = (descriptor as? ValueParameterDescriptor)?.declaresOrInheritsDefaultValue() ?: false
+        get() = metadata?.declaresDefaultValue ?: (descriptor as? ValueParameterDescriptor)?.declaresOrInheritsDefaultValue() ?: false
 
     override val isVararg: Boolean
-        get() = descriptor.let { it is ValueParameterDescriptor && it.varargElementType != null }
+        get() = metadata?.isVararg ?: descriptor.let { it is ValueParameterDescriptor && it.varargElementType != null }
 
+    // Parameters of the same callable are told apart by their index, which doesn't need the descriptor
     override fun equals(other: Any?) =
-        other is KParameterImpl && callable == other.callable && descriptor == other.descriptor
+        other is KParameterImpl && callable == other.callable && index == other.index
 
     override fun hashCode() =
-        (callable.hashCode() * 31) + descriptor.hashCode()
+        (callable.hashCode() * 31) + index.hashCode()
 
     override fun toString() =
         ReflectionObjectRenderer.renderParameter(this)
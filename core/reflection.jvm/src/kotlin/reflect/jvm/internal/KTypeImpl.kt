@@ -36,9 +36,15 @@ import org.jetbrains.kotlin.descriptors.runtime.structure.primitiveByWrapper
 import kotlin.reflect.jvm.jvmErasure
 
 internal class KTypeImpl(
-    val type: KotlinType,
+    computeType: () -> KotlinType,
+    // Nullability of the type if it's known without the type itself, see ClassMetadata
+    private val knownMarkedNullable: Boolean?,
     computeJavaType: () -> Type
 ) : KType {
+    constructor(type: KotlinType, computeJavaType: () -> Type) : this({ type }, null, computeJavaType)
+
+    val type: KotlinType by ReflectProperties.lazySoft(computeType)
+
     internal val javaType: Type by ReflectProperties.lazySoft(computeJavaType)
 
     override val classifier: KClassifier? by ReflectProperties.lazySoft { convert(type) }
@@ -110,7 +116,7 @@ internal class KTypeImpl(
     }
 
     override val isMarkedNullable: Boolean
-        get() = type.isMarkedNullable
+        get() = knownMarkedNullable ?: type.isMarkedNullable
 
     override val annotations: List<Annotation>
         get() = type.computeAnnotations()
@@ -38,7 +38,7 @@ internal sealed class CallerImpl<out M : Member>(
     ) {
         override fun call(args: Array<*>): Any? {
             checkArguments(args)
-            return member.newInstance(*args)
+            return ReflectiveCalls.newInstance(member, args)
         }
     }
 
@@ -51,7 +51,7 @@ internal sealed class CallerImpl<out M : Member>(
         ) {
         override fun call(args: Array<*>): Any? {
             checkArguments(args)
-            return member.newInstance(boundReceiver, *args)
+            return ReflectiveCalls.newInstance(member, args.prepend(boundReceiver))
         }
     }
 
@@ -63,7 +63,7 @@ internal sealed class CallerImpl<out M : Member>(
     ) {
         override fun call(args: Array<*>): Any? {
             checkArguments(args)
-            return member.newInstance(*args, null)
+            return ReflectiveCalls.newInstance(member, args.append(null))
         }
     }
 
@@ -94,7 +94,7 @@ internal sealed class CallerImpl<out M : Member>(
         private val isVoidMethod = returnType == Void.TYPE
 
         protected fun callMethod(instance: Any?, args: Array<*>): Any? {
-            val result = member.invoke(instance, *args)
+            val result = ReflectiveCalls.invoke(member, instance, args)
 
             // If this is a Unit function, the method returns void, Method#invoke returns null, while we should return Unit
             return if (isVoidMethod) Unit else result
@@ -110,7 +110,7 @@ internal sealed class CallerImpl<out M : Member>(
         class Instance(method: ReflectMethod) : Method(method) {
             override fun call(args: Array<*>): Any? {
                 checkArguments(args)
-                return callMethod(args[0], args.dropFirst())
+                return callMethod(args[0], args.dropFirstArgument())
             }
         }
 
@@ -118,7 +118,7 @@ internal sealed class CallerImpl<out M : Member>(
             override fun call(args: Array<*>): Any? {
                 checkArguments(args)
                 checkObjectInstance(args.firstOrNull())
-                return callMethod(null, args.dropFirst())
+                return callMethod(null, args.dropFirstArgument())
             }
         }
 
@@ -127,7 +127,7 @@ internal sealed class CallerImpl<out M : Member>(
         ) {
             override fun call(args: Array<*>): Any? {
                 checkArguments(args)
-                return callMethod(null, arrayOf(boundReceiver, *args))
+                return callMethod(null, args.prepend(boundReceiver))
             }
         }
 
@@ -234,10 +234,30 @@ internal sealed class CallerImpl<out M : Member>(
     }
 
     companion object {
+        private val EMPTY_ARGUMENTS = arrayOf<Any?>()
+
         @Suppress("UNCHECKED_CAST")
         inline fun <reified T> Array<out T>.dropFirst(): Array<T> =
             if (size <= 1) emptyArray() else copyOfRange(1, size) as Array<T>
 
+        // Most calls are calls of getters and setters, don't allocate an empty array for each of them
+        fun Array<*>.dropFirstArgument(): Array<*> =
+            if (size <= 1) EMPTY_ARGUMENTS else copyOfRange(1, size)
+
+        fun Array<*>.prepend(element: Any?): Array<*> {
+            val result = arrayOfNulls<Any?>(size + 1)
+            result[0] = element
+            System.arraycopy(this, 0, result, 1, size)
+            return result
+        }
+
+        fun Array<*>.append(element: Any?): Array<*> {
+            val result = arrayOfNulls<Any?>(size + 1)
+            System.arraycopy(this, 0, result, 0, size)
+            result[size] = element
+            return result
+        }
+
         @Suppress("UNCHECKED_CAST")
         inline fun <reified T> Array<out T>.dropLast(): Array<T> =
             if (size <= 1) emptyArray() else copyOfRange(0, size - 1) as Array<T>
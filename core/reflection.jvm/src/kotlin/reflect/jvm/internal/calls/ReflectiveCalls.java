@@ -0,0 +1,32 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package kotlin.reflect.jvm.internal.calls;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Passes an array of arguments to a Java reflection call as is. A spread argument in Kotlin (`method.invoke(instance, *args)`) copies
+ * the array on each call, which is noticeable for members called many times, e.g. property getters used by serialization libraries.
+ */
+/* package */ final class ReflectiveCalls {
+    private ReflectiveCalls() {
+    }
+
+    static Object invoke(@NotNull Method method, @Nullable Object instance, Object[] args)
+            throws IllegalAccessException, InvocationTargetException {
+        return method.invoke(instance, args);
+    }
+
+    static Object newInstance(@NotNull Constructor<?> constructor, Object[] args)
+            throws IllegalAccessException, InvocationTargetException, InstantiationException {
+        return constructor.newInstance(args);
+    }
+}
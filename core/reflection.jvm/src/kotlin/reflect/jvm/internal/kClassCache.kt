@@ -16,54 +16,109 @@
 
 package kotlin.reflect.jvm.internal
 
+import java.lang.ref.ReferenceQueue
 import java.lang.ref.WeakReference
-import kotlin.reflect.jvm.internal.pcollections.HashPMap
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
 
-// TODO: collect nulls periodically
-// Key of the map is Class.getName(), each value is either a WeakReference<KClassImpl<*>> or an Array<WeakReference<KClassImpl<*>>>.
+// Key of the map is Class.getName(), each value is either a KClassReference or an Array<KClassReference>.
 // Arrays are needed because the same class can be loaded by different class loaders, which results in different Class instances.
-// This variable is not volatile intentionally: we don't care if there's a data race on it and some KClass instances will be lost.
-// We do care however about general performance on read access to it, thus no synchronization is done here whatsoever
-private var K_CLASS_CACHE = HashPMap.empty<String, Any>()
+// Reads are lock-free. Values are never modified in place, writers replace them with compare-and-set, so no entry is ever lost.
+private val K_CLASS_CACHE: ConcurrentMap<String, Any> = ConcurrentHashMap()
+
+// References to KClass instances collected by the GC, their entries are removed on the next write to the cache
+private val COLLECTED_K_CLASSES = ReferenceQueue<KClassImpl<*>>()
+
+private class KClassReference(kClass: KClassImpl<*>, val name: String) : WeakReference<KClassImpl<*>>(kClass, COLLECTED_K_CLASSES)
 
 // This function is invoked on each reflection access to Java classes, properties, etc. Performance is critical here.
 internal fun <T : Any> getOrCreateKotlinClass(jClass: Class<T>): KClassImpl<T> {
     val name = jClass.name
-    val cached = K_CLASS_CACHE[name]
-    if (cached is WeakReference<*>) {
+    find(K_CLASS_CACHE[name], jClass)?.let { return it }
+
+    removeCollectedReferences()
+
+    val newKClass = KClassImpl(jClass)
+    val newReference = KClassReference(newKClass, name)
+    while (true) {
+        val cached = K_CLASS_CACHE[name]
+        if (cached == null) {
+            if (K_CLASS_CACHE.putIfAbsent(name, newReference) == null) return newKClass
+            continue
+        }
+
+        // Another thread could have created the class while we were creating ours
+        find(cached, jClass)?.let { return it }
+
+        // This is the unlikely case: the class with the same name is loaded by several class loaders
+        if (K_CLASS_CACHE.replace(name, cached, plus(cached, newReference))) return newKClass
+    }
+}
+
+private fun <T : Any> find(cached: Any?, jClass: Class<T>): KClassImpl<T>? {
+    if (cached is KClassReference) {
         @Suppress("UNCHECKED_CAST")
         val kClass = cached.get() as KClassImpl<T>?
         if (kClass?.jClass == jClass) {
             return kClass
         }
     } else if (cached != null) {
-        // If the cached value is not a weak reference, it's an array of weak references
-        @Suppress("UNCHECKED_CAST")
-        (cached as Array<WeakReference<KClassImpl<T>>>)
-        for (ref in cached) {
-            val kClass = ref.get()
+        // If the cached value is not a reference, it's an array of references
+        for (ref in cached as Array<*>) {
+            @Suppress("UNCHECKED_CAST")
+            val kClass = (ref as KClassReference).get() as KClassImpl<T>?
             if (kClass?.jClass == jClass) {
                 return kClass
             }
         }
+    }
+    return null
+}
 
-        // This is the most unlikely case: we found a cached array of references of length at least 2 (can't be 1 because
-        // the single element would be cached instead), and none of those classes is the one we're looking for
-        val size = cached.size
-        val newArray = arrayOfNulls<WeakReference<KClassImpl<*>>>(size + 1)
-        // Don't use Arrays.copyOf because it works reflectively
-        System.arraycopy(cached, 0, newArray, 0, size)
-        val newKClass = KClassImpl(jClass)
-        newArray[size] = WeakReference(newKClass)
-        K_CLASS_CACHE = K_CLASS_CACHE.plus(name, newArray)
-        return newKClass
+// Returns the references from [cached] which are not collected yet, plus [reference]
+private fun plus(cached: Any, reference: KClassReference): Any {
+    val old = if (cached is KClassReference) arrayOf(cached) else cached as Array<*>
+    val result = arrayOfNulls<KClassReference>(old.size + 1)
+    var size = 0
+    for (ref in old) {
+        if ((ref as KClassReference).get() != null) {
+            result[size++] = ref
+        }
     }
+    if (size == 0) return reference
+    result[size++] = reference
+    if (size == result.size) return result
 
-    val newKClass = KClassImpl(jClass)
-    K_CLASS_CACHE = K_CLASS_CACHE.plus(name, WeakReference(newKClass))
-    return newKClass
+    // Don't use Arrays.copyOf because it works reflectively
+    val trimmed = arrayOfNulls<KClassReference>(size)
+    System.arraycopy(result, 0, trimmed, 0, size)
+    return trimmed
+}
+
+private fun removeCollectedReferences() {
+    while (true) {
+        val collected = COLLECTED_K_CLASSES.poll() as KClassReference? ?: return
+        remove(collected)
+    }
+}
+
+private fun remove(reference: KClassReference) {
+    val name = reference.name
+    while (true) {
+        val cached = K_CLASS_CACHE[name] ?: return
+        val updated: Any? = when {
+            cached === reference -> null
+            cached is Array<*> && reference in cached -> {
+                val rest = cached.filter { it !== reference }
+                if (rest.size == 1) rest[0] else rest.toTypedArray()
+            }
+            else -> return
+        }
+
+        if (if (updated == null) K_CLASS_CACHE.remove(name, cached) else K_CLASS_CACHE.replace(name, cached, updated)) return
+    }
 }
 
 internal fun clearKClassCache() {
-    K_CLASS_CACHE = HashPMap.empty()
+    K_CLASS_CACHE.clear()
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A table of reentrant locks, one per key being computed, and the lock of {@link StorageManager#compute} blocks.
+ *
+ * A lock exists only while some thread computes or waits for its key, so lazy values and memoized functions don't pay for a lock
+ * object once their value is known.
+ *
+ * Waiting threads are tracked in a wait-for graph, so that two threads waiting for each other are noticed:
+ * <ul>
+ *     <li>When thread A computes `x` which needs `y`, while thread B computes `y` which needs `x`, a single lock would have made it
+ *     a recursive call in one thread. So the waiting thread which finds the cycle stops waiting and proceeds without the lock,
+ *     and {@link LockBasedStorageManager} treats the call as a recursive one without touching the state owned by the other thread.</li>
+ *     <li>When thread A in a compute block waits for a value computed by thread B, which needs a compute block, a single lock would
+ *     have computed the value in A, with its compute block nested in the one of A. So A lets B take the compute lock, and takes it
+ *     again once it has the value. Otherwise compute blocks are mutually exclusive.</li>
+ * </ul>
+ */
+/*package*/ class ComputationLocks {
+    private static final long DEADLOCK_CHECK_INTERVAL_MS = 50;
+
+    private final ConcurrentMap<Object, ComputationLock> locks = new ConcurrentHashMap<Object, ComputationLock>();
+    private final ConcurrentMap<Thread, ComputationLock> waitingFor = new ConcurrentHashMap<Thread, ComputationLock>();
+    private final ComputationLock computeLock = new ComputationLock();
+
+    /**
+     * The lock of compute blocks. It must be taken with {@link #lockCompute}, so that waits for it are seen in cycles.
+     */
+    @NotNull
+    public ReentrantLock getComputeLock() {
+        return computeLock;
+    }
+
+    public void lockCompute() {
+        if (computeLock.tryLock()) return;
+
+        // A compute block never gives up, cycles through it are broken by the thread which holds it and waits for a value
+        waitInGraph(computeLock, false);
+    }
+
+    @NotNull
+    public Acquisition acquire(@NotNull Object key) {
+        ComputationLock lock = retain(key);
+        boolean locked = lock.tryLock() || waitInGraph(lock, true);
+        return new Acquisition(key, lock, locked);
+    }
+
+    public void release(@NotNull Acquisition acquisition) {
+        ComputationLock lock = acquisition.lock;
+        if (acquisition.locked) {
+            lock.unlock();
+        }
+        if (lock.release()) {
+            locks.remove(acquisition.key, lock);
+        }
+    }
+
+    @NotNull
+    private ComputationLock retain(@NotNull Object key) {
+        while (true) {
+            ComputationLock lock = locks.get(key);
+            if (lock == null) {
+                ComputationLock newLock = new ComputationLock();
+                lock = locks.putIfAbsent(key, newLock);
+                if (lock == null) lock = newLock;
+            }
+
+            if (lock.retain()) return lock;
+
+            // The lock has just been retired by its last user, help removing it and try again
+            locks.remove(key, lock);
+        }
+    }
+
+    /**
+     * @param mayBreakCycle if {@code false}, the thread never proceeds without the lock
+     * @return {@code false} if the thread has given up waiting to break a cycle of waiting threads
+     */
+    private boolean waitInGraph(@NotNull ComputationLock lock, boolean mayBreakCycle) {
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        waitingFor.put(current, lock);
+        try {
+            while (true) {
+                if (mayBreakCycle) {
+                    switch (findCycle(current, lock)) {
+                        case NONE:
+                            break;
+                        case THROUGH_VALUES:
+                            return false;
+                        case THROUGH_COMPUTE_LOCK:
+                            if (computeLock.isHeldByCurrentThread()) {
+                                lockLettingComputeBlocksRun(lock);
+                                return true;
+                            }
+                            // The thread holding the compute lock breaks the cycle
+                            break;
+                    }
+                }
+
+                try {
+                    if (lock.tryLock(DEADLOCK_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)) return true;
+                }
+                catch (InterruptedException e) {
+                    // Acquiring a storage lock has never been interruptible, restore the flag when done
+                    interrupted = true;
+                }
+            }
+        }
+        finally {
+            waitingFor.remove(current);
+            if (interrupted) {
+                current.interrupt();
+            }
+        }
+    }
+
+    private void lockLettingComputeBlocksRun(@NotNull ComputationLock lock) {
+        int computeLockHolds = computeLock.getHoldCount();
+        for (int i = 0; i < computeLockHolds; i++) {
+            computeLock.unlock();
+        }
+        try {
+            lock.lock();
+        }
+        finally {
+            // Until the compute lock is taken again, the thread waits for it with the value lock held, which is a node of the graph
+            waitingFor.put(Thread.currentThread(), computeLock);
+            for (int i = 0; i < computeLockHolds; i++) {
+                computeLock.lock();
+            }
+        }
+    }
+
+    private enum Cycle {
+        NONE, THROUGH_VALUES, THROUGH_COMPUTE_LOCK
+    }
+
+    @NotNull
+    private Cycle findCycle(@NotNull Thread current, @NotNull ComputationLock lock) {
+        boolean throughComputeLock = false;
+        ComputationLock next = lock;
+        // Any cycle not containing the current thread is no longer than the number of waiting threads
+        for (int i = 0, size = waitingFor.size(); i <= size; i++) {
+            if (next == computeLock) throughComputeLock = true;
+
+            Thread owner = next.getOwnerThread();
+            if (owner == null) return Cycle.NONE;
+            if (owner == current) return throughComputeLock ? Cycle.THROUGH_COMPUTE_LOCK : Cycle.THROUGH_VALUES;
+
+            next = waitingFor.get(owner);
+            if (next == null) return Cycle.NONE;
+        }
+        return Cycle.NONE;
+    }
+
+    public static class Acquisition {
+        private final Object key;
+        private final ComputationLock lock;
+        private final boolean locked;
+
+        private Acquisition(@NotNull Object key, @NotNull ComputationLock lock, boolean locked) {
+            this.key = key;
+            this.lock = lock;
+            this.locked = locked;
+        }
+
+        /**
+         * @return {@code false} if the thread has given up waiting for the lock to break a cycle with other threads
+         */
+        public boolean isLocked() {
+            return locked;
+        }
+    }
+
+    private static class ComputationLock extends ReentrantLock {
+        // Number of threads holding or waiting for this lock, -1 when the lock is retired and must not be used anymore
+        private final AtomicInteger users = new AtomicInteger();
+
+        public boolean retain() {
+            while (true) {
+                int current = users.get();
+                if (current < 0) return false;
+                if (users.compareAndSet(current, current + 1)) return true;
+            }
+        }
+
+        /**
+         * @return {@code true} if this was the last user and the lock is now retired
+         */
+        public boolean release() {
+            return users.decrementAndGet() == 0 && users.compareAndSet(0, -1);
+        }
+
+        public Thread getOwnerThread() {
+            return getOwner();
+        }
+    }
+}
@@ -68,7 +68,29 @@ public class LockBasedStorageManager implements StorageManager {
         return new LockBasedStorageManager(debugText, exceptionHandlingStrategy, new ReentrantLock());
     }
 
+    /**
+     * Creates a storage manager which locks each lazy value and each key of a memoized function separately, instead of using one lock
+     * for all of them. Values are still computed at most once, and a recursive call is detected as usual, also when it spans
+     * several threads: a thread which needs a value computed by another thread waits for it, unless the other thread (transitively)
+     * waits for the first one, in which case the call is treated as recursive. Independent values may be computed in several threads
+     * at once.
+     *
+     * {@link #compute} blocks are still mutually exclusive, except that a compute block waiting for a value whose computation in another
+     * thread needs a compute block lets it run, as a single lock would have computed the value inside the waiting block.
+     */
+    @NotNull
+    public static LockBasedStorageManager createWithPerValueLocking(
+            @NotNull String debugText,
+            @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy
+    ) {
+        ComputationLocks computationLocks = new ComputationLocks();
+        return new LockBasedStorageManager(debugText, exceptionHandlingStrategy, computationLocks.getComputeLock(), computationLocks);
+    }
+
     protected final Lock lock;
+    // If not null, each computation is guarded by its own lock from this table, and `lock` only guards compute blocks
+    @Nullable
+    private final ComputationLocks computationLocks;
     private final ExceptionHandlingStrategy exceptionHandlingStrategy;
     private final String debugText;
 
@@ -76,8 +98,18 @@ public class LockBasedStorageManager implements StorageManager {
             @NotNull String debugText,
             @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy,
             @NotNull Lock lock
+    ) {
+        this(debugText, exceptionHandlingStrategy, lock, null);
+    }
+
+    private LockBasedStorageManager(
+            @NotNull String debugText,
+            @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy,
+            @NotNull Lock lock,
+            @Nullable ComputationLocks computationLocks
     ) {
         this.lock = lock;
+        this.computationLocks = computationLocks;
         this.exceptionHandlingStrategy = exceptionHandlingStrategy;
         this.debugText = debugText;
     }
@@ -94,7 +126,7 @@ public class LockBasedStorageManager implements StorageManager {
     public LockBasedStorageManager replaceExceptionHandling(
             @NotNull String debugText, @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy
     ) {
-        return new LockBasedStorageManager(debugText, exceptionHandlingStrategy, lock);
+        return new LockBasedStorageManager(debugText, exceptionHandlingStrategy, lock, computationLocks);
     }
 
     @NotNull
@@ -239,7 +271,12 @@ public class LockBasedStorageManager implements StorageManager {
 
     @Override
     public <T> T compute(@NotNull Function0<? extends T> computable) {
-        lock.lock();
+        if (computationLocks != null) {
+            computationLocks.lockCompute();
+        }
+        else {
+            lock.lock();
+        }
         try {
             return computable.invoke();
         }
@@ -251,6 +288,33 @@ public class LockBasedStorageManager implements StorageManager {
         }
     }
 
+    /**
+     * @return an object to be passed to {@link #unlockComputation}, or {@code null} if the global lock was taken
+     */
+    @Nullable
+    private ComputationLocks.Acquisition lockComputation(@NotNull Object key) {
+        if (computationLocks != null) {
+            return computationLocks.acquire(key);
+        }
+        lock.lock();
+        return null;
+    }
+
+    @Nullable
+    private ComputationLocks.Acquisition lockComputation(@NotNull Object cache, @Nullable Object input) {
+        return lockComputation(computationLocks != null ? new ComputationKey(cache, input) : cache);
+    }
+
+    private void unlockComputation(@Nullable ComputationLocks.Acquisition acquisition) {
+        if (acquisition != null) {
+            //noinspection ConstantConditions
+            computationLocks.release(acquisition);
+        }
+        else {
+            lock.unlock();
+        }
+    }
+
     @NotNull
     private static <K> ConcurrentMap<K, Object> createConcurrentHashMap() {
         // memory optimization: fewer segments and entries stored
@@ -330,11 +394,23 @@ public class LockBasedStorageManager implements StorageManager {
             Object _value = value;
             if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
 
-            storageManager.lock.lock();
+            ComputationLocks.Acquisition acquisition = storageManager.lockComputation(this);
             try {
                 _value = value;
                 if (!(_value instanceof NotValue)) return WrappedValues.unescapeThrowable(_value);
 
+                if (acquisition != null && !acquisition.isLocked()) {
+                    // Another thread computing this value waits for the current one: it's a recursive call spanning two threads.
+                    // The state is owned by the other thread, so it must not be changed here
+                    RecursionDetectedResult<T> result = recursionDetected(/*firstTime = */ true);
+                    if (!result.isFallThrough()) {
+                        return result.getValue();
+                    }
+                    throw sanitizeStackTrace(
+                            new IllegalStateException("Recursive call in a lazy value spanning several threads under " + storageManager)
+                    );
+                }
+
                 if (_value == NotValue.COMPUTING) {
                     value = NotValue.RECURSION_WAS_DETECTED;
                     RecursionDetectedResult<T> result = recursionDetected(/*firstTime = */ true);
@@ -376,7 +452,7 @@ public class LockBasedStorageManager implements StorageManager {
                 }
             }
             finally {
-                storageManager.lock.unlock();
+                storageManager.unlockComputation(acquisition);
             }
         }
 
@@ -498,10 +574,11 @@ public class LockBasedStorageManager implements StorageManager {
             Object value = cache.get(input);
             if (value != null && value != NotValue.COMPUTING) return WrappedValues.unescapeExceptionOrNull(value);
 
-            storageManager.lock.lock();
+            ComputationLocks.Acquisition acquisition = storageManager.lockComputation(cache, input);
             try {
                 value = cache.get(input);
-                if (value == NotValue.COMPUTING) {
+                if (value == NotValue.COMPUTING || value == null && acquisition != null && !acquisition.isLocked()) {
+                    // Without the lock, the input is computed by another thread which waits for the current one
                     throw recursionDetected(input);
                 }
                 if (value != null) return WrappedValues.unescapeExceptionOrNull(value);
@@ -542,7 +619,7 @@ public class LockBasedStorageManager implements StorageManager {
                 }
             }
             finally {
-                storageManager.lock.unlock();
+                storageManager.unlockComputation(acquisition);
             }
         }
 
@@ -662,6 +739,31 @@ public class LockBasedStorageManager implements StorageManager {
         }
     }
 
+    // Identifies a key of a particular memoized function in ComputationLocks
+    private static class ComputationKey {
+        private final Object cache;
+        private final Object input;
+
+        public ComputationKey(@NotNull Object cache, Object input) {
+            this.cache = cache;
+            this.input = input;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ComputationKey)) return false;
+
+            ComputationKey that = (ComputationKey) o;
+            return cache == that.cache && (input == null ? that.input == null : input.equals(that.input));
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(cache) + (input == null ? 0 : input.hashCode());
+        }
+    }
+
     // equals and hashCode use only key
     private static class KeyWithComputation<K, V> {
         private final K key;
@@ -4,6 +4,12 @@
 
 package org.jetbrains.kotlin.js.util;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.Arrays;
 
 public class TextOutputImpl implements TextOutput {
@@ -13,6 +19,9 @@ public class TextOutputImpl implements TextOutput {
     private char[][] indents = new char[][] {new char[0]};
     private boolean justNewlined;
     private final StringBuilder out;
+    @Nullable
+    private final Writer writer;
+    private static final int FLUSH_THRESHOLD = 8192;
     private int position = 0;
     private int line = 0;
     private int column = 0;
@@ -26,12 +35,46 @@ public class TextOutputImpl implements TextOutput {
     }
 
     public TextOutputImpl(boolean compact) {
+        this(compact, null);
+    }
+
+    /**
+     * Passes the text to {@code writer} as it is printed rather than keeping all of it in memory. {@link #flush()} must be called
+     * after the last print.
+     */
+    public TextOutputImpl(@NotNull Writer writer) {
+        this(false, writer);
+    }
+
+    private TextOutputImpl(boolean compact, @Nullable Writer writer) {
         this.compact = compact;
-        out = new StringBuilder();
+        this.writer = writer;
+        out = writer != null ? new StringBuilder(2 * FLUSH_THRESHOLD) : new StringBuilder();
+    }
+
+    public void flush() {
+        if (writer == null) return;
+        try {
+            writer.append(out);
+            writer.flush();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out.setLength(0);
+    }
+
+    private void flushIfNeeded() {
+        if (writer != null && out.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
     }
 
     @Override
     public String toString() {
+        if (writer != null) {
+            throw new IllegalStateException("The text is written to a stream");
+        }
         return out.toString();
     }
 
@@ -76,6 +119,7 @@ public class TextOutputImpl implements TextOutput {
         line++;
         column = 0;
         justNewlined = true;
+        flushIfNeeded();
     }
 
     @Override
@@ -104,6 +148,7 @@ public class TextOutputImpl implements TextOutput {
     private void movePosition(int l) {
         position += l;
         column += l;
+        flushIfNeeded();
     }
 
     @Override
@@ -137,11 +182,13 @@ public class TextOutputImpl implements TextOutput {
         position += charSequence.length();
         column += charSequence.length();
         out.append(charSequence);
+        flushIfNeeded();
     }
 
     private void printAndCount(char[] chars) {
         position += chars.length;
         column += chars.length;
         out.append(chars);
+        flushIfNeeded();
     }
 }
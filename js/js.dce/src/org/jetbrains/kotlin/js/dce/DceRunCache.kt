@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.dce
+
+import org.jetbrains.kotlin.config.KotlinCompilerVersion
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.security.MessageDigest
+
+/**
+ * Remembers the analysis of every module by the previous run of [DeadCodeElimination.run] in [file]: the hashes of its input, of
+ * its output and of the names it was analyzed with, and the global names it is attached to and reaches. A module whose input,
+ * output and entries are the same is not analyzed again, see [DeadCodeElimination.run].
+ *
+ * The cache is best effort: a file which can't be read or written is treated as an empty cache.
+ */
+class DceRunCache(private val file: File) {
+    internal class Entry(val inputHash: String, val outputHash: String, val entriesHash: String, val reachability: ModuleReachability)
+
+    // By output path
+    private val entries = mutableMapOf<String, Entry>()
+
+    init {
+        load()
+    }
+
+    /**
+     * @return the entry of [inputFile] if neither its input nor its output have changed since the previous run.
+     */
+    internal fun reusableEntry(inputFile: InputFile, inputHash: String): Entry? {
+        val entry = entries[inputFile.outputPath] ?: return null
+        return entry.takeIf { it.inputHash == inputHash && existingOutputHash(inputFile) == it.outputHash }
+    }
+
+    /**
+     * @return `true` if the output of [inputFile] was written by the previous run with the same content.
+     */
+    internal fun isOutputUnchanged(inputFile: InputFile, outputHash: String): Boolean {
+        val entry = entries[inputFile.outputPath] ?: return false
+        return entry.outputHash == outputHash && existingOutputHash(inputFile) == outputHash
+    }
+
+    internal fun update(newEntries: Map<InputFile, Entry>) {
+        entries.clear()
+        for ((inputFile, entry) in newEntries) {
+            entries[inputFile.outputPath] = entry
+        }
+        save()
+    }
+
+    private fun existingOutputHash(inputFile: InputFile): String? {
+        val code = File(inputFile.outputPath).takeIf { it.isFile } ?: return null
+        val sourceMap = File(inputFile.outputPath + ".map")
+        if (inputFile.sourceMapResource != null && !sourceMap.isFile) return null
+
+        return try {
+            contentHash(code.readText(), if (inputFile.sourceMapResource != null) sourceMap.readText() else null)
+        } catch (e: IOException) {
+            null
+        }
+    }
+
+    private fun load() {
+        val lines = try {
+            if (file.isFile) file.readLines() else return
+        } catch (e: IOException) {
+            return
+        }
+        if (lines.isEmpty() || lines[0] != header()) return
+
+        var index = 1
+        while (index < lines.size) {
+            // module <input hash> <output hash> <entries hash> <attached> <reached> <declared> <output path>, then the paths
+            val parts = lines[index++].split(' ', limit = 8)
+            val counts = parts.subList(4, minOf(parts.size, 7)).mapNotNull { it.toIntOrNull()?.takeIf { count -> count >= 0 } }
+            if (parts.size != 8 || parts[0] != MODULE_PREFIX || counts.size != 3 || index + counts.sum() > lines.size) {
+                entries.clear()
+                return
+            }
+
+            val (attached, reached, declared) = counts.map { count ->
+                lines.subList(index, index + count).toSet().also { index += count }
+            }
+            entries[parts[7]] = Entry(parts[1], parts[2], parts[3], ModuleReachability(AttachedNames(attached), reached, declared))
+        }
+    }
+
+    private fun save() {
+        try {
+            file.absoluteFile.parentFile?.mkdirs()
+            file.bufferedWriter().use { writer ->
+                writer.appendln(header())
+                for ((outputPath, entry) in entries) {
+                    val reachability = entry.reachability
+                    val paths = listOf(reachability.attached.names, reachability.reached, reachability.declared)
+                    writer.appendln(
+                        "$MODULE_PREFIX ${entry.inputHash} ${entry.outputHash} ${entry.entriesHash} " +
+                                "${paths.joinToString(" ") { it.size.toString() }} $outputPath"
+                    )
+                    for (path in paths.flatten()) {
+                        writer.appendln(path)
+                    }
+                }
+            }
+        } catch (e: IOException) {
+            file.delete()
+        }
+    }
+
+    companion object {
+        private const val VERSION = 2
+        private const val MODULE_PREFIX = "module"
+
+        // The output of the same inputs may change with the compiler
+        private fun header() = "kotlin-dce-cache $VERSION ${KotlinCompilerVersion.VERSION}"
+
+        /**
+         * Hash of a sequence of strings and nulls. Every part is written with its length, so that nulls, empty strings and the
+         * boundaries of the parts are told apart.
+         */
+        fun contentHash(vararg parts: String?): String {
+            val digest = MessageDigest.getInstance("MD5")
+            for (part in parts) {
+                if (part == null) {
+                    digest.update(0.toByte())
+                } else {
+                    val bytes = part.toByteArray()
+                    digest.update(1.toByte())
+                    digest.update(ByteBuffer.allocate(4).putInt(bytes.size).array())
+                    digest.update(bytes)
+                }
+            }
+            return digest.digest().joinToString("") { String.format("%02x", it) }
+        }
+    }
+}
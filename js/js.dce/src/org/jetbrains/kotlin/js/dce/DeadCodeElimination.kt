@@ -20,13 +20,20 @@ import com.google.gwt.dev.js.rhino.CodePosition
 import com.google.gwt.dev.js.rhino.ErrorReporter
 import org.jetbrains.kotlin.js.backend.JsToStringGenerationVisitor
 import org.jetbrains.kotlin.js.backend.ast.JsBlock
+import org.jetbrains.kotlin.js.backend.ast.JsExpression
 import org.jetbrains.kotlin.js.backend.ast.JsGlobalBlock
+import org.jetbrains.kotlin.js.backend.ast.JsName
+import org.jetbrains.kotlin.js.backend.ast.JsNameRef
 import org.jetbrains.kotlin.js.backend.ast.JsNode
 import org.jetbrains.kotlin.js.backend.ast.JsProgram
+import org.jetbrains.kotlin.js.backend.ast.JsScope
+import org.jetbrains.kotlin.js.backend.ast.JsStatement
+import org.jetbrains.kotlin.js.backend.ast.RecursiveJsVisitor
 import org.jetbrains.kotlin.js.dce.Context.Node
 import org.jetbrains.kotlin.js.facade.SourceMapBuilderConsumer
 import org.jetbrains.kotlin.js.inline.util.collectDefinedNames
 import org.jetbrains.kotlin.js.inline.util.fixForwardNameReferences
+import org.jetbrains.kotlin.js.inline.util.replaceNames
 import org.jetbrains.kotlin.js.parser.parse
 import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapError
 import org.jetbrains.kotlin.js.parser.sourcemaps.SourceMapLocationRemapper
@@ -37,6 +44,10 @@ import org.jetbrains.kotlin.js.sourceMap.SourceMap3Builder
 import org.jetbrains.kotlin.js.util.TextOutputImpl
 import java.io.File
 import java.io.InputStreamReader
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
 
 class DeadCodeElimination(private val logConsumer: (DCELogLevel, String) -> Unit) {
     val moduleMapping = mutableMapOf<JsBlock, String>()
@@ -46,6 +57,39 @@ class DeadCodeElimination(private val logConsumer: (DCELogLevel, String) -> Unit
         private set
 
     fun apply(root: JsNode) {
+        val (context, analysisResult, usageFinder) = analyze(root)
+
+        for (reachableName in reachableNames) {
+            usageFinder.reach(context.globalScope.member(reachableName.split(".")))
+        }
+        reachableNodes = usageFinder.reachableNodes
+
+        Eliminator(analysisResult).accept(root)
+    }
+
+    /**
+     * Analyzes [root], the code of a single module, without eliminating anything. The global names reachable from the outside of
+     * the module are given by [entries] for the names the module is attached to.
+     */
+    internal fun analyzeModule(root: JsNode, entries: (AttachedNames) -> ModuleEntries): ModuleAnalysis {
+        val (context, analysisResult, usageFinder) = analyze(root)
+        val globalScope = context.globalScope.original
+
+        val attached = AttachedNames.of(globalScope, analysisResult)
+        val moduleEntries = entries(attached)
+        for (path in moduleEntries.reached) {
+            usageFinder.reach(globalScope.member(decodePath(path)))
+        }
+        for (path in moduleEntries.declared) {
+            usageFinder.reachDeclaration(globalScope.member(decodePath(path)))
+        }
+        reachableNodes = usageFinder.reachableNodes
+
+        val reachability = ModuleReachability.of(globalScope, attached, reachableNodes)
+        return ModuleAnalysis(analysisResult, reachableNodes, moduleEntries, reachability)
+    }
+
+    private fun analyze(root: JsNode): Triple<Context, AnalysisResult, ReachabilityTracker> {
         val context = Context()
 
         val topLevelVars = collectDefinedNames(root)
@@ -61,85 +105,327 @@ class DeadCodeElimination(private val logConsumer: (DCELogLevel, String) -> Unit
         val usageFinder = ReachabilityTracker(context, analyzer.analysisResult, logConsumer)
         root.accept(usageFinder)
 
-        for (reachableName in reachableNames) {
-            val path = reachableName.split(".")
-            val node = path.fold(context.globalScope) { node, part -> node.member(part) }
-            usageFinder.reach(node)
-        }
-        reachableNodes = usageFinder.reachableNodes
-
-        Eliminator(analyzer.analysisResult).accept(root)
+        return Triple(context, analyzer.analysisResult, usageFinder)
     }
 
+    private fun Node.member(path: List<String>): Node = path.fold(this) { node, part -> node.member(part) }
+
     companion object {
+        /**
+         * Input files are parsed and the results are written in [threads] parallel threads. The output and the order of reported
+         * messages don't depend on the number of threads.
+         *
+         * Without [cache], the whole program is analyzed at once, on a single thread. With [cache], modules are analyzed one by one
+         * in parallel threads, see [runWithCache].
+         */
         fun run(
                 inputFiles: Collection<InputFile>,
                 rootReachableNames: Set<String>,
-                logConsumer: (DCELogLevel, String) -> Unit
+                logConsumer: (DCELogLevel, String) -> Unit,
+                threads: Int = 1,
+                cache: DceRunCache? = null
         ): DeadCodeEliminationResult {
+            val contents = measure("reading", logConsumer) {
+                inputFiles.mapInParallel(threads) { readFile(it) }
+            }
+
+            if (cache != null) {
+                return runWithCache(inputFiles.toList(), contents, rootReachableNames, logConsumer, threads, cache)
+            }
+
             val program = JsProgram()
             val dce = DeadCodeElimination(logConsumer)
 
-            var hasErrors = false
-            val blocks = inputFiles.map { file ->
+            val parsedFiles = measure("parsing", logConsumer) {
+                inputFiles.zip(contents).mapInParallel(threads) { (file, content) -> parseFile(file, content) }
+            }
+            for (parsedFile in parsedFiles) {
+                parsedFile.messages.forEach { (level, message) -> logConsumer(level, message) }
+            }
+
+            if (parsedFiles.any { it.statements == null }) return DeadCodeEliminationResult(emptySet(), DeadCodeEliminationStatus.FAILED)
+
+            val blocks = inputFiles.zip(parsedFiles).map { (file, parsedFile) ->
                 val block = JsGlobalBlock()
-                val code = file.resource.reader().let { InputStreamReader(it, "UTF-8") }.use { it.readText() }
-                val statements = parse(code, Reporter(file.resource.name, logConsumer), program.scope, file.resource.name) ?: run {
-                    hasErrors = true
-                    return@map block
+                block.statements += parsedFile.statements!!
+                mergeTopLevelNames(block, parsedFile.scope, program.scope)
+                file.moduleName?.let { dce.moduleMapping[block] = it }
+                block
+            }
+
+            program.globalBlock.statements += blocks
+
+            measure("analysis", logConsumer) {
+                // References to names declared later or in other files are bound here
+                program.globalBlock.fixForwardNameReferences()
+
+                dce.reachableNames += rootReachableNames
+                dce.apply(program.globalBlock)
+            }
+
+            measure("output", logConsumer) {
+                inputFiles.zip(blocks).mapInParallel(threads) { (file, block) -> writeFile(file, block, null) }
+            }
+
+            return DeadCodeEliminationResult(dce.reachableNodes, DeadCodeEliminationStatus.OK)
+        }
+
+        /**
+         * Modules are analyzed one by one: a module is analyzed with the global names reachable from the roots and the other modules,
+         * which gives the global names reachable from the module in turn. Modules whose entries have changed are analyzed again,
+         * until the entries of all modules are the ones they were analyzed with, which gives the same result as the analysis of the
+         * whole program.
+         *
+         * The analysis of a module is kept in the [cache] and reused while its input, its output and its entries stay the same, so
+         * only the changed modules and the modules whose entries change because of them are parsed and analyzed again. The
+         * output of the others is not touched, and the result has [DeadCodeEliminationStatus.UP_TO_DATE] status when no module
+         * has been analyzed, and only has reachable nodes of the analyzed modules otherwise.
+         *
+         * Reused results are trusted, so a declaration which modules keep reachable only for each other may be kept after the
+         * last use is removed, until the modules are analyzed without the results of the previous run.
+         */
+        private fun runWithCache(
+                inputFiles: List<InputFile>,
+                contents: List<InputContent>,
+                rootReachableNames: Set<String>,
+                logConsumer: (DCELogLevel, String) -> Unit,
+                threads: Int,
+                cache: DceRunCache
+        ): DeadCodeEliminationResult {
+            val modules = inputFiles.zip(contents) { file, content -> CachedModule(file, content, cache.reusableEntry(file, content.hash)) }
+            val roots = rootReachableNames.map { encodePath(it.split(".")) }
+
+            val parsed = measure("analysis", logConsumer) {
+                analyzeModules(modules, roots, logConsumer, threads)
+            }
+            if (!parsed) return DeadCodeEliminationResult(emptySet(), DeadCodeEliminationStatus.FAILED)
+
+            val analyzedModules = modules.filter { it.analysis != null }
+            if (analyzedModules.isEmpty()) {
+                logConsumer(DCELogLevel.INFO, "DCE is up to date")
+                return DeadCodeEliminationResult(emptySet(), DeadCodeEliminationStatus.UP_TO_DATE)
+            }
+
+            val outputHashes = measure("output", logConsumer) {
+                analyzedModules.mapInParallel(threads) { module ->
+                    val block = module.block!!
+                    Eliminator(module.analysis!!.result).accept(block)
+                    writeFile(module.file, block, cache)
                 }
-                val sourceMapParse = file.sourceMapResource
-                        ?.let { SourceMapParser.parse(InputStreamReader(it.reader(), "UTF-8").readText()) }
-                when (sourceMapParse) {
-                    is SourceMapError -> {
-                        logConsumer(
-                                DCELogLevel.WARN,
-                                "Error parsing source map file ${file.sourceMapResource}: ${sourceMapParse.message}")
+            }
+            val newEntries = analyzedModules.zip(outputHashes) { module, outputHash ->
+                val analysis = module.analysis!!
+                module.file to DceRunCache.Entry(module.content.hash, outputHash, analysis.entries.hash, analysis.reachability)
+            }
+            cache.update(modules.mapNotNull { module -> module.cached?.let { module.file to it } }.toMap() + newEntries)
+
+            val reachableNodes = analyzedModules.flatMapTo(mutableSetOf()) { it.analysis!!.reachableNodes }
+            return DeadCodeEliminationResult(reachableNodes, DeadCodeEliminationStatus.OK)
+        }
+
+        /**
+         * Modules without a result are analyzed first, then the ones whose entries have changed. When modules start with the results
+         * of the previous run, they may keep changing each other, so after too many passes the analysis starts over without them.
+         * Then every pass only adds reachable names, and the analysis ends.
+         *
+         * @return `false` if some file can't be parsed
+         */
+        private fun analyzeModules(
+                modules: List<CachedModule>,
+                roots: List<String>,
+                logConsumer: (DCELogLevel, String) -> Unit,
+                threads: Int
+        ): Boolean {
+            var reusesPreviousRun = modules.any { it.cached != null }
+            var passes = 0
+            while (true) {
+                val reachableNames = ReachableNames(roots, modules.map { it.reachability })
+                val outdated = modules.indices.filter { modules[it].reachability == null }.ifEmpty {
+                    modules.indices.filter { index ->
+                        val module = modules[index]
+                        reachableNames.entriesOf(index, module.reachability!!.attached).hash != module.entriesHash
                     }
-                    is SourceMapSuccess -> {
-                        val sourceMap = sourceMapParse.value
-                        val remapper = SourceMapLocationRemapper(sourceMap)
-                        statements.forEach { remapper.remap(it) }
+                }
+                if (outdated.isEmpty()) return true
+
+                if (reusesPreviousRun && ++passes > modules.size + 1) {
+                    logConsumer(DCELogLevel.INFO, "DCE analyzes all modules again without the results of the previous run")
+                    for (module in modules) {
+                        module.cached = null
+                        module.analysis = null
+                    }
+                    reusesPreviousRun = false
+                    continue
+                }
+
+                logConsumer(DCELogLevel.INFO, "DCE analyzes modules: ${outdated.joinToString { modules[it].name }}")
+                val results = outdated.mapInParallel(threads) { index ->
+                    val messages = mutableListOf<Pair<DCELogLevel, String>>()
+                    val messageConsumer = { level: DCELogLevel, message: String -> messages += level to message }
+                    val module = modules[index]
+                    val analysis = module.parse(messageConsumer)?.let { block ->
+                        val dce = DeadCodeElimination(messageConsumer)
+                        module.file.moduleName?.let { dce.moduleMapping[block] = it }
+                        dce.analyzeModule(block) { attached -> reachableNames.entriesOf(index, attached) }
                     }
+                    messages to analysis
                 }
+
+                for ((index, result) in outdated.zip(results)) {
+                    val (messages, analysis) = result
+                    messages.forEach { (level, message) -> logConsumer(level, message) }
+                    modules[index].analysis = analysis ?: return false
+                }
+            }
+        }
+
+        private class CachedModule(val file: InputFile, val content: InputContent, var cached: DceRunCache.Entry?) {
+            var block: JsGlobalBlock? = null
+            var analysis: ModuleAnalysis? = null
+
+            val name: String get() = file.moduleName ?: file.resource.name
+
+            val reachability: ModuleReachability? get() = analysis?.reachability ?: cached?.reachability
+
+            val entriesHash: String? get() = analysis?.entries?.hash ?: cached?.entriesHash
+
+            fun parse(messageConsumer: (DCELogLevel, String) -> Unit): JsGlobalBlock? {
+                block?.let { return it }
+
+                val parsedFile = parseFile(file, content)
+                parsedFile.messages.forEach { (level, message) -> messageConsumer(level, message) }
+                val statements = parsedFile.statements ?: return null
+
+                val block = JsGlobalBlock()
                 block.statements += statements
-                file.moduleName?.let { dce.moduleMapping[block] = it }
-                block
+                // References to names declared later are bound here, names of other modules stay global
+                block.fixForwardNameReferences()
+                this.block = block
+                return block
             }
+        }
 
-            if (hasErrors) return DeadCodeEliminationResult(emptySet(), DeadCodeEliminationStatus.FAILED)
+        private class InputContent(val code: String, val sourceMap: String?) {
+            val hash = DceRunCache.contentHash(code, sourceMap)
+        }
 
-            program.globalBlock.statements += blocks
-            program.globalBlock.fixForwardNameReferences()
+        private class ParsedFile(val statements: List<JsStatement>?, val scope: JsScope, val messages: List<Pair<DCELogLevel, String>>)
+
+        private fun readFile(file: InputFile): InputContent {
+            val code = file.resource.reader().let { InputStreamReader(it, "UTF-8") }.use { it.readText() }
+            val sourceMap = file.sourceMapResource?.let { resource -> InputStreamReader(resource.reader(), "UTF-8").use { it.readText() } }
+            return InputContent(code, sourceMap)
+        }
 
-            dce.reachableNames += rootReachableNames
-            dce.apply(program.globalBlock)
+        private fun parseFile(file: InputFile, content: InputContent): ParsedFile {
+            val messages = mutableListOf<Pair<DCELogLevel, String>>()
+            val messageConsumer = { level: DCELogLevel, message: String -> messages += level to message }
 
-            for ((file, block) in inputFiles.zip(blocks)) {
-                val sourceMapFile = File(file.outputPath + ".map")
-                val textOutput = TextOutputImpl()
-                val sourceMapBuilder = SourceMap3Builder(File(file.outputPath), textOutput, "")
+            val scope = JsProgram().scope
+            val statements = parse(content.code, Reporter(file.resource.name, messageConsumer), scope, file.resource.name)
+                    ?: return ParsedFile(null, scope, messages)
 
-                val inputFile = File(file.resource.name)
-                val sourceBaseDir = if (inputFile.exists()) inputFile.parentFile else File(".")
+            val sourceMapParse = content.sourceMap?.let { SourceMapParser.parse(it) }
+            when (sourceMapParse) {
+                is SourceMapError -> {
+                    messageConsumer(
+                            DCELogLevel.WARN,
+                            "Error parsing source map file ${file.sourceMapResource}: ${sourceMapParse.message}")
+                }
+                is SourceMapSuccess -> {
+                    val sourceMap = sourceMapParse.value
+                    val remapper = SourceMapLocationRemapper(sourceMap)
+                    statements.forEach { remapper.remap(it) }
+                }
+            }
 
-                val sourcePathResolver = SourceFilePathResolver(emptyList(), File(file.outputPath).parentFile)
-                val consumer = SourceMapBuilderConsumer(sourceBaseDir, sourceMapBuilder, sourcePathResolver, true, true)
-                block.accept(JsToStringGenerationVisitor(textOutput, consumer))
-                val sourceMapContent = sourceMapBuilder.build()
-                sourceMapBuilder.addLink()
+            return ParsedFile(statements, scope, messages)
+        }
 
-                with(File(file.outputPath)) {
-                    parentFile.mkdirs()
-                    writeText(textOutput.toString())
+        /**
+         * Files are parsed in scopes of their own, so the same top-level name declared or used in several files is a different
+         * [JsName] in each of them. Replaces the top-level names of a file with the names of [programScope], as if all files were
+         * parsed in one scope.
+         */
+        private fun mergeTopLevelNames(block: JsGlobalBlock, fileScope: JsScope, programScope: JsScope) {
+            val replacements = mutableMapOf<JsName, JsExpression>()
+            fun merge(name: JsName?) {
+                if (name != null && fileScope.findName(name.ident) === name && name !in replacements) {
+                    replacements[name] = programScope.declareName(name.ident).makeRef()
                 }
+            }
 
-                if (file.sourceMapResource != null) {
-                    sourceMapFile.writeText(sourceMapContent)
+            collectDefinedNames(block).forEach { merge(it) }
+            block.accept(object : RecursiveJsVisitor() {
+                override fun visitNameRef(nameRef: JsNameRef) {
+                    super.visitNameRef(nameRef)
+                    if (nameRef.qualifier == null) merge(nameRef.name)
                 }
+            })
+
+            replaceNames(block, replacements)
+        }
+
+        /**
+         * @return hash of the output
+         */
+        private fun writeFile(file: InputFile, block: JsGlobalBlock, cache: DceRunCache?): String {
+            val sourceMapFile = File(file.outputPath + ".map")
+            val textOutput = TextOutputImpl()
+            val sourceMapBuilder = SourceMap3Builder(File(file.outputPath), textOutput, "")
+
+            val inputFile = File(file.resource.name)
+            val sourceBaseDir = if (inputFile.exists()) inputFile.parentFile else File(".")
+
+            val sourcePathResolver = SourceFilePathResolver(emptyList(), File(file.outputPath).parentFile)
+            val consumer = SourceMapBuilderConsumer(sourceBaseDir, sourceMapBuilder, sourcePathResolver, true, true)
+            block.accept(JsToStringGenerationVisitor(textOutput, consumer))
+            val sourceMapContent = sourceMapBuilder.build()
+            sourceMapBuilder.addLink()
+
+            val code = textOutput.toString()
+            val outputHash = DceRunCache.contentHash(code, if (file.sourceMapResource != null) sourceMapContent else null)
+            if (cache != null && cache.isOutputUnchanged(file, outputHash)) return outputHash
+
+            with(File(file.outputPath)) {
+                parentFile.mkdirs()
+                writeText(code)
             }
 
-            return DeadCodeEliminationResult(dce.reachableNodes, DeadCodeEliminationStatus.OK)
+            if (file.sourceMapResource != null) {
+                sourceMapFile.writeText(sourceMapContent)
+            }
+
+            return outputHash
+        }
+
+        private inline fun <T> measure(phase: String, logConsumer: (DCELogLevel, String) -> Unit, action: () -> T): T {
+            val start = System.nanoTime()
+            val result = action()
+            logConsumer(DCELogLevel.INFO, "DCE phase '$phase' took ${(System.nanoTime() - start) / 1_000_000} ms")
+            return result
+        }
+
+        private fun <T, R> Collection<T>.mapInParallel(threads: Int, transform: (T) -> R): List<R> {
+            if (threads <= 1 || size <= 1) return map(transform)
+
+            val counter = AtomicInteger()
+            val executor = Executors.newFixedThreadPool(minOf(threads, size)) { runnable ->
+                Thread(runnable, "Kotlin JS DCE worker ${counter.incrementAndGet()}").apply { isDaemon = true }
+            }
+            try {
+                val futures = map { element -> executor.submit(Callable { transform(element) }) }
+                return futures.map { future ->
+                    try {
+                        future.get()
+                    } catch (e: ExecutionException) {
+                        futures.forEach { it.cancel(false) }
+                        throw e.cause ?: e
+                    }
+                }
+            } finally {
+                executor.shutdownNow()
+            }
         }
 
         private class Reporter(private val fileName: String, private val logConsumer: (DCELogLevel, String) -> Unit) : ErrorReporter {
@@ -18,5 +18,6 @@ package org.jetbrains.kotlin.js.dce
 
 enum class DeadCodeEliminationStatus {
     OK,
-    FAILED
+    FAILED,
+    UP_TO_DATE
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.dce
+
+import org.jetbrains.kotlin.js.dce.Context.Node
+import java.net.URLDecoder
+import java.net.URLEncoder
+import java.util.ArrayDeque
+
+/*
+ * Analysis of a single module, see DeadCodeElimination.run with a cache.
+ *
+ * Modules see each other only through global names, like `kotlin.kotlin.collections.ArrayList`: a module reaches names
+ * declared in other modules, and reaching a name makes the code of every module attached to it reachable. So a module is
+ * analyzed with the global names reachable from the other modules, and gives the global names reachable from it in turn.
+ *
+ * Global names are kept as paths from the global scope, whose parts are URL-encoded and joined with dots.
+ */
+
+internal fun encodePath(path: List<String>): String = path.joinToString(".") { URLEncoder.encode(it, "UTF-8").replace(".", "%2E") }
+
+internal fun decodePath(path: String): List<String> = path.split('.').map { URLDecoder.decode(it, "UTF-8") }
+
+private fun ancestorsOf(path: String): Sequence<String> =
+    path.indices.asSequence().filter { path[it] == '.' }.map { path.substring(0, it) }
+
+private fun Node.globalPath(globalScope: Node): String? =
+    if (root() == globalScope) pathFromRoot().takeIf { it.isNotEmpty() }?.let(::encodePath) else null
+
+/**
+ * Global names which a module declares or attaches code to.
+ *
+ * Reaching any other name doesn't change anything in the module, as it has neither code under the name nor code above it.
+ */
+internal class AttachedNames(val names: Set<String>) {
+    private val ancestors: Set<String> = names.flatMapTo(mutableSetOf()) { ancestorsOf(it) }
+
+    fun affect(path: String): Boolean = path in names || path in ancestors || ancestorsOf(path).any { it in names }
+
+    companion object {
+        fun of(globalScope: Node, analysisResult: AnalysisResult): AttachedNames {
+            val names = analysisResult.nodeMap.values.mapNotNullTo(mutableSetOf()) { it.original.globalPath(globalScope) }
+
+            val visited = mutableSetOf(globalScope)
+            val queue = ArrayDeque(listOf(globalScope))
+            while (queue.isNotEmpty()) {
+                val node = queue.removeFirst()
+                if (node.expressions.isNotEmpty() || node.functions.isNotEmpty() || node.dependencies.isNotEmpty() || node.hasSideEffects) {
+                    node.globalPath(globalScope)?.let { names += it }
+                }
+                node.members.values.map { it.original }.filterTo(queue) { visited.add(it) }
+            }
+
+            return AttachedNames(names)
+        }
+    }
+}
+
+/**
+ * The result of the analysis of a module.
+ *
+ * @property reached global names reachable from the module
+ * @property declared global names whose declarations, but not the values, are reachable from the module
+ */
+internal class ModuleReachability(val attached: AttachedNames, val reached: Set<String>, val declared: Set<String>) {
+    companion object {
+        fun of(globalScope: Node, attached: AttachedNames, reachableNodes: Set<Node>): ModuleReachability {
+            val reached = mutableSetOf<String>()
+            val declared = mutableSetOf<String>()
+            for (node in reachableNodes) {
+                val path = node.original.globalPath(globalScope) ?: continue
+                when {
+                    node.reachable -> reached += path
+                    node.declarationReachable -> declared += path
+                }
+            }
+            return ModuleReachability(attached, reached, declared)
+        }
+    }
+}
+
+/**
+ * Global names reachable from the outside of a module which affect its analysis, sorted.
+ */
+internal class ModuleEntries(val reached: List<String>, val declared: List<String>) {
+    // The null separates the lists
+    val hash: String = DceRunCache.contentHash(*reached.toTypedArray(), null, *declared.toTypedArray())
+}
+
+internal class ModuleAnalysis(
+    val result: AnalysisResult,
+    val reachableNodes: Set<Node>,
+    val entries: ModuleEntries,
+    val reachability: ModuleReachability
+)
+
+/**
+ * Global names reachable from [roots] and from the modules with the known [reachabilities].
+ */
+internal class ReachableNames(private val roots: Collection<String>, private val reachabilities: List<ModuleReachability?>) {
+    // Number of modules each name is reachable from
+    private val reachedCounts = mutableMapOf<String, Int>()
+    private val declaredCounts = mutableMapOf<String, Int>()
+
+    init {
+        for (reachability in reachabilities) {
+            reachability?.reached?.forEach { reachedCounts.merge(it, 1, Int::plus) }
+            reachability?.declared?.forEach { declaredCounts.merge(it, 1, Int::plus) }
+        }
+    }
+
+    /**
+     * Names reachable from the roots and from all modules except the one with [moduleIndex], which are affecting the module.
+     */
+    fun entriesOf(moduleIndex: Int, attached: AttachedNames): ModuleEntries {
+        val own = reachabilities[moduleIndex]
+
+        val reached = sortedSetOf<String>()
+        roots.filterTo(reached) { attached.affect(it) }
+        for ((path, count) in reachedCounts) {
+            val ownCount = if (own != null && path in own.reached) 1 else 0
+            if (count > ownCount && attached.affect(path)) reached += path
+        }
+
+        val declared = sortedSetOf<String>()
+        for ((path, count) in declaredCounts) {
+            val ownCount = if (own != null && path in own.declared) 1 else 0
+            if (count > ownCount && path !in reached && attached.affect(path)) declared += path
+        }
+
+        return ModuleEntries(reached.toList(), declared.toList())
+    }
+}
@@ -184,7 +184,7 @@ class ReachabilityTracker(
         }
     }
 
-    private fun reachDeclaration(node: Node) {
+    fun reachDeclaration(node: Node) {
         if (node.hasSideEffects && !node.reachable) {
             reportAndNest("reach: because of side effect", null) {
                 reach(node)
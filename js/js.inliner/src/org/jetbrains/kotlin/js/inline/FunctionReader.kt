@@ -77,10 +77,13 @@ class FunctionReader(
         specialFunctionsProvider: () -> Map<String, SpecialFunction>,
         offsetToSourceMappingProvider: () -> OffsetToSourceMapping,
         sourceMapProvider: () -> SourceMap?,
+        contentHashProvider: () -> String,
         val outputDir: File?
     ) {
         val specialFunctions: Map<String, SpecialFunction> by lazy(specialFunctionsProvider)
 
+        val contentHash: String by lazy(contentHashProvider)
+
         val offsetToSourceMapping by lazy(offsetToSourceMappingProvider)
 
         val sourceMap: SourceMap? by lazy(sourceMapProvider)
@@ -97,6 +100,8 @@ class FunctionReader(
 
         JsLibraryUtils.traverseJsLibraries(config.libraries.map(::File)) { (content, path, sourceMapContent, file) ->
             var current = 0
+            // One file may define several modules
+            val contentHash by lazy { SharedFunctionAstCache.contentHash(content) }
 
             while (true) {
                 var index = content.indexOf(DEFINE_MODULE_FIND_PATTERN, current)
@@ -143,6 +148,7 @@ class FunctionReader(
                     specialFunctionsProvider = specialFunctionsProvider,
                     offsetToSourceMappingProvider = { OffsetToSourceMapping(content) },
                     sourceMapProvider = sourceMapProvider,
+                    contentHashProvider = { contentHash },
                     outputDir = file?.parentFile
                 )
 
@@ -261,10 +267,8 @@ class FunctionReader(
             offset += wrapFunctionMatcher!!.end()
         }
 
-        val position = info.offsetToSourceMapping[offset]
         val jsScope = JsRootScope(JsProgram())
-        val functionExpr = parseFunction(source, info.filePath, position, offset, ThrowExceptionOnErrorReporter, jsScope) ?: return null
-        functionExpr.fixForwardNameReferences()
+        val functionExpr = readFunctionAst(info, offset, jsScope) ?: return null
         val (function, wrapper) = if (isWrapped) {
             InlineMetadata.decomposeWrapper(functionExpr) ?: return null
         } else {
@@ -308,6 +312,14 @@ class FunctionReader(
         return FunctionWithWrapper(function, wrapper)
     }
 
+    private fun readFunctionAst(info: ModuleInfo, offset: Int, scope: JsScope): JsFunction? =
+        SharedFunctionAstCache.getOrParse(SharedFunctionAstCache.Key(info.filePath, info.contentHash, offset), scope) {
+            val position = info.offsetToSourceMapping[offset]
+            parseFunction(info.fileContent, info.filePath, position, offset, ThrowExceptionOnErrorReporter, scope)?.also {
+                it.fixForwardNameReferences()
+            }
+        }
+
     private fun markSpecialFunctions(function: JsFunction, allDefinedNames: Set<JsName>, info: ModuleInfo, scope: JsScope) {
         for (externalName in (collectReferencedNames(function) - allDefinedNames)) {
             info.specialFunctions[externalName.ident]?.let {
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.inline
+
+import org.jetbrains.kotlin.js.backend.ast.*
+import org.jetbrains.kotlin.js.inline.util.collectDefinedNamesInAllScopes
+import org.jetbrains.kotlin.serialization.js.ast.JsAstDeserializer
+import org.jetbrains.kotlin.serialization.js.ast.JsAstProtoBuf
+import org.jetbrains.kotlin.serialization.js.ast.JsAstSerializer
+import org.jetbrains.kotlin.util.PerformanceCounter
+import java.security.MessageDigest
+
+/**
+ * Functions parsed from JS libraries by [FunctionReader], shared by all compilations in this process, e.g. in the daemon.
+ *
+ * Functions are stored in the binary AST format of incremental compilation rather than as trees, so each read gives a new tree
+ * with its own names, which the inliner is free to change. Entries are keyed by the path and the content hash of the library file and
+ * the offset of the function in it, so a changed library never yields a stale function, and locations of a function, which refer to
+ * the library file when it has no source map, always refer to the file it is read from.
+ * The cache is bounded by the total size of the serialized functions, the least recently used entries are dropped first.
+ */
+object SharedFunctionAstCache {
+    private const val MAX_SIZE_BYTES = 32 * 1024 * 1024
+
+    data class Key(val filePath: String, val fileHash: String, val offset: Int)
+
+    private val functions = LinkedHashMap<Key, ByteArray>(256, 0.75f, true)
+    private var size = 0
+
+    @Synchronized
+    operator fun get(key: Key): ByteArray? = functions[key]
+
+    @Synchronized
+    operator fun set(key: Key, bytes: ByteArray) {
+        functions.put(key, bytes)?.let { size -= it.size }
+        size += bytes.size
+
+        val iterator = functions.values.iterator()
+        while (size > MAX_SIZE_BYTES && iterator.hasNext()) {
+            size -= iterator.next().size
+            iterator.remove()
+        }
+    }
+
+    /**
+     * Returns a new copy of the cached function, or the function returned by [parse], which is then cached.
+     */
+    fun getOrParse(key: Key, scope: JsScope, parse: () -> JsFunction?): JsFunction? {
+        get(key)?.let { bytes ->
+            jsFunctionCacheHitCounter.increment()
+            return deserialize(bytes, scope)
+        }
+
+        val function = jsFunctionParseCounter.time(parse) ?: return null
+        set(key, serialize(function))
+        return function
+    }
+
+    @Synchronized
+    fun clear() {
+        functions.clear()
+        size = 0
+    }
+
+    fun contentHash(text: String): String =
+        MessageDigest.getInstance("MD5").digest(text.toByteArray()).joinToString("") { String.format("%02x", it) }
+
+    fun serialize(function: JsFunction): ByteArray {
+        val fragment = JsProgramFragment(JsRootScope(JsProgram()), "")
+        fragment.declarationBlock.statements += JsExpressionStatement(function)
+        return JsAstSerializer(null) { it.path }.serialize(fragment).toByteArray()
+    }
+
+    /**
+     * Deserializes a function stored by [serialize]. Names which the function references but doesn't define are declared in [scope],
+     * as [org.jetbrains.kotlin.js.parser.parseFunction] does, so the result is bound the same way as a function parsed in [scope].
+     */
+    fun deserialize(bytes: ByteArray, scope: JsScope): JsFunction {
+        val fragment = JsAstDeserializer(JsProgram(), emptyList()).deserialize(JsAstProtoBuf.Chunk.parseFrom(bytes))
+        val function = (fragment.declarationBlock.statements.single() as JsExpressionStatement).expression as JsFunction
+
+        val definedNames = collectDefinedNamesInAllScopes(function)
+        function.accept(object : RecursiveJsVisitor() {
+            override fun visitNameRef(nameRef: JsNameRef) {
+                super.visitNameRef(nameRef)
+                val name = nameRef.name
+                if (nameRef.qualifier == null && name != null && name !in definedNames) {
+                    nameRef.name = scope.declareName(name.ident)
+                }
+            }
+        })
+        return function
+    }
+}
+
+internal val jsFunctionParseCounter = PerformanceCounter.create("JS inline function parsed from a library")
+internal val jsFunctionCacheHitCounter = PerformanceCounter.create("JS inline function from the shared AST cache")
@@ -26,9 +26,11 @@ abstract class AbstractDceTest : TestCase() {
     fun doTest(filePath: String) {
         val file = File(filePath)
         val fileContents = file.readText()
-        val inputFile = InputFile(InputResource.file(filePath), null,
-                                  File(pathToOutputDir, file.relativeTo(File(pathToTestDir)).path).path, "main")
-        val dceResult = DeadCodeElimination.run(setOf(inputFile), extractDeclarations(REQUEST_REACHABLE_PATTERN, fileContents)) { _, _ -> }
+        val outputPath = File(pathToOutputDir, file.relativeTo(File(pathToTestDir)).path).path
+        val inputFiles = splitFiles(filePath, fileContents, outputPath)
+        val dceResult = DeadCodeElimination.run(
+                inputFiles, extractDeclarations(REQUEST_REACHABLE_PATTERN, fileContents), { _, _ -> }, threads = inputFiles.size
+        )
         val reachableNodeStrings = dceResult.reachableNodes.map { it.toString().removePrefix("<unknown>.") }.toSet()
 
         for (assertedDeclaration in extractDeclarations(ASSERT_REACHABLE_PATTERN, fileContents)) {
@@ -37,6 +39,29 @@ abstract class AbstractDceTest : TestCase() {
         for (assertedDeclaration in extractDeclarations(ASSERT_UNREACHABLE_PATTERN, fileContents)) {
             TestCase.assertTrue("Declaration $assertedDeclaration reached", assertedDeclaration !in reachableNodeStrings)
         }
+
+        val output = inputFiles.joinToString("\n") { File(it.outputPath).readText() }
+        for (assertedCode in extractDeclarations(ASSERT_OUTPUT_CONTAINS_PATTERN, fileContents)) {
+            TestCase.assertTrue("Code '$assertedCode' is not in the output:\n$output", assertedCode in output)
+        }
+    }
+
+    // Several input files are given in one test file, each of them after a "// FILE: <name>" line
+    private fun splitFiles(filePath: String, fileContents: String, outputPath: String): List<InputFile> {
+        val fileMarkers = FILE_PATTERN.findAll(fileContents).toList()
+        if (fileMarkers.isEmpty()) {
+            return listOf(InputFile(InputResource.file(filePath), null, outputPath, "main"))
+        }
+
+        val inputDir = File(outputPath + ".input")
+        return fileMarkers.mapIndexed { index, marker ->
+            val end = fileMarkers.getOrNull(index + 1)?.range?.first ?: fileContents.length
+            val name = marker.groupValues[1]
+            val inputFile = File(inputDir, name)
+            inputFile.parentFile.mkdirs()
+            inputFile.writeText(fileContents.substring(marker.range.last + 1, end))
+            InputFile(InputResource.file(inputFile.path), null, File(outputPath, name).path, "main")
+        }
     }
 
     private fun extractDeclarations(regex: Regex, fileContents: String): Set<String> =
@@ -46,6 +71,8 @@ abstract class AbstractDceTest : TestCase() {
         private val ASSERT_REACHABLE_PATTERN = Regex("^ *// *ASSERT_REACHABLE: (.+) *$", RegexOption.MULTILINE)
         private val ASSERT_UNREACHABLE_PATTERN = Regex("^ *// *ASSERT_UNREACHABLE: (.+) *$", RegexOption.MULTILINE)
         private val REQUEST_REACHABLE_PATTERN = Regex("^ *// *REQUEST_REACHABLE: (.+) *$", RegexOption.MULTILINE)
+        private val ASSERT_OUTPUT_CONTAINS_PATTERN = Regex("^ *// *ASSERT_OUTPUT_CONTAINS: (.+) *$", RegexOption.MULTILINE)
+        private val FILE_PATTERN = Regex("^ *// *FILE: (.+) *$", RegexOption.MULTILINE)
 
         private val pathToTestDir = "js/js.translator/testData/dce"
         private val pathToOutputDir = "js/js.translator/testData/out/dce"
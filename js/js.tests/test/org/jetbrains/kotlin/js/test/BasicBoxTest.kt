@@ -12,6 +12,8 @@ import com.intellij.openapi.vfs.StandardFileSystems
 import com.intellij.openapi.vfs.VirtualFileManager
 import com.intellij.psi.PsiManager
 import junit.framework.TestCase
+import org.jetbrains.kotlin.backend.common.output.OutputFileCollection
+import org.jetbrains.kotlin.backend.common.output.StreamingOutputFile
 import org.jetbrains.kotlin.checkers.CompilerTestLanguageVersionSettings
 import org.jetbrains.kotlin.checkers.parseLanguageVersionSettings
 import org.jetbrains.kotlin.cli.common.messages.AnalyzerWithCompilerReport
@@ -549,6 +551,7 @@ abstract class BasicBoxTest(
         val outputFiles = translationResult.getOutputFiles(outputFile, outputPrefixFile, outputPostfixFile)
         val outputDir = outputFile.parentFile ?: error("Parent file for output file should not be null, outputFilePath: " + outputFile.path)
         outputFiles.writeAllTo(outputDir)
+        checkStreamedOutput(outputFiles, outputDir)
 
         if (config.moduleKind != ModuleKind.PLAIN) {
             val content = FileUtil.loadFile(outputFile, true)
@@ -572,6 +575,19 @@ abstract class BasicBoxTest(
         checkSourceMap(outputFile, translationResult.program, remap)
     }
 
+    // The files written as they are generated must be the same as the ones generated in memory
+    private fun checkStreamedOutput(outputFiles: OutputFileCollection, outputDir: File) {
+        for (file in outputFiles.asList()) {
+            if (file !is StreamingOutputFile) continue
+            val streamed = File(outputDir, file.relativePath).readBytes()
+            val inMemory = file.asByteArray()
+            if (!streamed.contentEquals(inMemory)) {
+                TestCase.assertEquals("Streamed ${file.relativePath}", String(inMemory), String(streamed))
+                TestCase.fail("Streamed ${file.relativePath} differs from the output generated in memory")
+            }
+        }
+    }
+
     protected fun wrapWithModuleEmulationMarkers(
         content: String,
         moduleKind: ModuleKind,
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.test
+
+import org.jetbrains.kotlin.js.dce.*
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+
+class DceRunCacheTest : TestCaseWithTmpdir() {
+    private val cacheFile: File get() = File(tmpdir, "cache/dce-cache.txt")
+
+    private val library = """
+        (function(_) {
+            function used() {
+                return "used";
+            }
+            function unused() {
+                return "unused";
+            }
+            _.used = used;
+            _.unused = unused;
+        })(module.exports);
+    """.trimIndent()
+
+    private val main = """
+        (function(_, lib) {
+            function main() {
+                return lib.used();
+            }
+            _.main = main;
+        })(module.exports, require("lib"));
+    """.trimIndent()
+
+    private val other = """
+        (function(_) {
+            function other() {
+                return "other";
+            }
+            _.other = other;
+        })(module.exports);
+    """.trimIndent()
+
+    private val messages = mutableListOf<String>()
+
+    fun testUnchangedInputsSkipTheRun() {
+        val inputs = inputFiles(library, main)
+        assertEquals(DeadCodeEliminationStatus.OK, run(inputs).status)
+        val outputs = outputsOf(inputs)
+        markOld(inputs)
+
+        val result = run(inputs)
+        assertEquals(DeadCodeEliminationStatus.UP_TO_DATE, result.status)
+        assertTrue(result.reachableNodes.isEmpty())
+        assertEquals(outputs, outputsOf(inputs))
+        assertTrue(inputs.all { isOld(it) })
+    }
+
+    fun testChangedInputRunsAgainAndRewritesOnlyChangedOutputs() {
+        val inputs = inputFiles(library, main)
+        run(inputs)
+        markOld(inputs)
+
+        // main now uses both functions of the library, so the outputs of both files change
+        File(inputs[1].resource.name).writeText(main.replace("lib.used()", "lib.used() + lib.unused()"))
+        val result = run(inputs)
+
+        assertEquals(DeadCodeEliminationStatus.OK, result.status)
+        assertTrue(result.reachableNodes.isNotEmpty())
+        val libraryOutput = File(inputs[0].outputPath).readText()
+        assertTrue(libraryOutput, "unused" in libraryOutput)
+        assertFalse(isOld(inputs[0]))
+        assertFalse(isOld(inputs[1]))
+
+        // The same inputs again: only the outputs which come out different are rewritten
+        markOld(inputs)
+        File(inputs[0].outputPath).writeText("changed outside of DCE")
+        assertEquals(DeadCodeEliminationStatus.OK, run(inputs).status)
+        assertEquals(libraryOutput, File(inputs[0].outputPath).readText())
+        assertTrue(isOld(inputs[1]))
+    }
+
+    fun testChangedRootsRunAgain() {
+        val inputs = inputFiles(library, main)
+        run(inputs)
+
+        assertEquals(DeadCodeEliminationStatus.OK, run(inputs, roots = setOf("main.main", "lib.unused")).status)
+        val libraryOutput = File(inputs[0].outputPath).readText()
+        assertTrue(libraryOutput, "unused" in libraryOutput)
+    }
+
+    fun testOnlyAffectedModulesAreAnalyzedAgain() {
+        val roots = setOf("main.main", "other.other")
+        val inputs = inputFiles(library, main, other)
+        run(inputs, roots)
+        assertEquals(listOf("lib, main, other", "lib"), analyzedModules())
+        markOld(inputs)
+
+        // Nothing else depends on the module
+        File(inputs[2].resource.name).writeText(other.replace("\"other\"", "\"changed\""))
+        assertEquals(DeadCodeEliminationStatus.OK, run(inputs, roots).status)
+        assertEquals(listOf("other"), analyzedModules())
+        assertFalse(isOld(inputs[2]))
+
+        // The module reaches the same names of the library
+        File(inputs[1].resource.name).writeText(main.replace("lib.used()", "lib.used() + 1"))
+        assertEquals(DeadCodeEliminationStatus.OK, run(inputs, roots).status)
+        assertEquals(listOf("main"), analyzedModules())
+        assertTrue(isOld(inputs[0]))
+    }
+
+    fun testRemovedUseIsEliminatedFromUnchangedModule() {
+        val inputs = inputFiles(library, main)
+        run(inputs)
+        assertTrue("function used" in File(inputs[0].outputPath).readText())
+
+        File(inputs[1].resource.name).writeText(main.replace("lib.used()", "\"none\""))
+        assertEquals(DeadCodeEliminationStatus.OK, run(inputs).status)
+        assertEquals(listOf("main", "lib"), analyzedModules())
+        assertFalse("function used" in File(inputs[0].outputPath).readText())
+    }
+
+    fun testSameOutputsAsWithoutCache() {
+        val inputs = inputFiles(library, main)
+        val edits = listOf("lib.used()", "lib.used() + lib.unused()", "\"none\"", "lib.unused()", "lib.used()")
+        for (edit in edits) {
+            File(inputs[1].resource.name).writeText(main.replace("lib.used()", edit))
+            run(inputs)
+
+            val reference = inputs.map { InputFile(it.resource, null, File(tmpdir, "reference/${it.moduleName}.js").path, it.moduleName) }
+            DeadCodeElimination.run(reference, setOf("main.main"), { _, _ -> })
+            assertEquals("Outputs after '$edit'", outputsOf(reference), outputsOf(inputs))
+        }
+    }
+
+    fun testHashTellsMissingPartFromEmptyOne() {
+        assertFalse(DceRunCache.contentHash("code", null) == DceRunCache.contentHash("code", ""))
+        assertFalse(DceRunCache.contentHash("ab", "c") == DceRunCache.contentHash("a", "bc"))
+        assertEquals(DceRunCache.contentHash("code", null), DceRunCache.contentHash("code", null))
+    }
+
+    private fun run(inputs: List<InputFile>, roots: Set<String> = setOf("main.main")): DeadCodeEliminationResult {
+        messages.clear()
+        return DeadCodeElimination.run(inputs, roots, { _, message -> messages += message }, cache = DceRunCache(cacheFile))
+    }
+
+    // Modules analyzed by every pass of the last run
+    private fun analyzedModules(): List<String> =
+        messages.filter { it.startsWith(ANALYZED_MODULES_PREFIX) }.map { it.removePrefix(ANALYZED_MODULES_PREFIX) }
+
+    private fun inputFiles(vararg contents: String): List<InputFile> =
+        contents.zip(listOf("lib", "main", "other")).map { (content, name) ->
+            val file = File(tmpdir, "input/$name.js")
+            file.parentFile.mkdirs()
+            file.writeText(content)
+            InputFile(InputResource.file(file.path), null, File(tmpdir, "output/$name.js").path, name)
+        }
+
+    private fun outputsOf(inputs: List<InputFile>): List<String> = inputs.map { File(it.outputPath).readText() }
+
+    private fun markOld(inputs: List<InputFile>) {
+        for (input in inputs) {
+            Files.setLastModifiedTime(File(input.outputPath).toPath(), OLD_TIME)
+        }
+    }
+
+    private fun isOld(input: InputFile): Boolean = Files.getLastModifiedTime(File(input.outputPath).toPath()) == OLD_TIME
+
+    companion object {
+        private val OLD_TIME = FileTime.fromMillis(1_000_000_000_000)
+        private const val ANALYZED_MODULES_PREFIX = "DCE analyzes modules: "
+    }
+}
@@ -54,6 +54,11 @@ public class DceTestGenerated extends AbstractDceTest {
         runTest("js/js.translator/testData/dce/localVarAndFunction.js");
     }
 
+    @TestMetadata("sameTopLevelVarInSeveralFiles.js")
+    public void testSameTopLevelVarInSeveralFiles() throws Exception {
+        runTest("js/js.translator/testData/dce/sameTopLevelVarInSeveralFiles.js");
+    }
+
     @TestMetadata("typeOf.js")
     public void testTypeOf() throws Exception {
         runTest("js/js.translator/testData/dce/typeOf.js");
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.js.test.ast
+
+import com.google.gwt.dev.js.ThrowExceptionOnErrorReporter
+import com.google.gwt.dev.js.rhino.CodePosition
+import org.jetbrains.kotlin.js.backend.ast.*
+import org.jetbrains.kotlin.js.inline.SharedFunctionAstCache
+import org.jetbrains.kotlin.js.inline.util.collectDefinedNamesInAllScopes
+import org.jetbrains.kotlin.js.inline.util.collectReferencedNames
+import org.jetbrains.kotlin.js.inline.util.fixForwardNameReferences
+import org.jetbrains.kotlin.js.parser.parseFunction
+import org.junit.Assert.*
+import org.junit.Test
+import java.util.*
+
+class SharedFunctionAstCacheTest {
+    private val code = """
+        function (a, b) {
+            var x = a + foo(b);
+            loop: for (var i = 0; i < x; i++) {
+                if (bar(i)) break loop;
+            }
+            try {
+                x = foo(x);
+            } catch (e) {
+                x = e;
+            }
+            function local(y) {
+                return x + y + Kotlin.baz(foo);
+            }
+            return local(b) + use(local);
+        }
+    """
+
+    @Test
+    fun cachedFunctionIsBoundAsParsed() {
+        val parsed = parse(JsRootScope(JsProgram()))
+
+        val scope = JsRootScope(JsProgram())
+        val cached = SharedFunctionAstCache.deserialize(SharedFunctionAstCache.serialize(parsed), scope)
+
+        assertEquals(parsed.toString(), cached.toString())
+        assertEquals(nameBindings(parsed), nameBindings(cached))
+
+        val freeNames = collectReferencedNames(cached) - collectDefinedNamesInAllScopes(cached)
+        assertEquals(setOf("foo", "bar", "use", "Kotlin"), freeNames.map { it.ident }.toSet())
+        for (name in freeNames) {
+            assertSame(name.ident, scope.findName(name.ident), name)
+        }
+    }
+
+    @Test
+    fun cachedFunctionsAreIndependent() {
+        val bytes = SharedFunctionAstCache.serialize(parse(JsRootScope(JsProgram())))
+
+        val first = SharedFunctionAstCache.deserialize(bytes, JsRootScope(JsProgram()))
+        val second = SharedFunctionAstCache.deserialize(bytes, JsRootScope(JsProgram()))
+
+        val firstNames = Collections.newSetFromMap(IdentityHashMap<JsName, Boolean>()).apply { addAll(collectReferencedNames(first)) }
+        assertTrue(collectReferencedNames(second).none { it in firstNames })
+    }
+
+    @Test
+    fun identicalLibrariesAtDifferentPathsKeepTheirLocations() {
+        val hash = SharedFunctionAstCache.contentHash(code)
+        fun read(path: String): JsFunction {
+            val key = SharedFunctionAstCache.Key(path, hash, 0)
+            return SharedFunctionAstCache.getOrParse(key, JsRootScope(JsProgram())) { parse(JsRootScope(JsProgram()), path) }!!
+        }
+
+        try {
+            SharedFunctionAstCache.clear()
+            assertEquals(setOf("first/lib.js"), locationFiles(read("first/lib.js")))
+            assertEquals(setOf("second/lib.js"), locationFiles(read("second/lib.js")))
+
+            // Both are read from the cache now
+            var parsed = false
+            val key = SharedFunctionAstCache.Key("first/lib.js", hash, 0)
+            val cached = SharedFunctionAstCache.getOrParse(key, JsRootScope(JsProgram())) { parsed = true; null }!!
+            assertFalse(parsed)
+            assertEquals(setOf("first/lib.js"), locationFiles(cached))
+            assertEquals(setOf("second/lib.js"), locationFiles(read("second/lib.js")))
+        }
+        finally {
+            SharedFunctionAstCache.clear()
+        }
+    }
+
+    private fun parse(scope: JsScope, path: String = "test.js"): JsFunction =
+        parseFunction(code, path, CodePosition(0, 0), 0, ThrowExceptionOnErrorReporter, scope)!!.also {
+            it.fixForwardNameReferences()
+        }
+
+    private fun locationFiles(function: JsFunction): Set<String> {
+        val files = mutableSetOf<String>()
+        function.accept(object : RecursiveJsVisitor() {
+            override fun visitElement(node: JsNode) {
+                (node.source as? JsLocationWithSource)?.let { files += it.file }
+                super.visitElement(node)
+            }
+        })
+        return files
+    }
+
+    // Every occurrence of a name as its identifier and the index of its first occurrence, which identifies the same JsName
+    private fun nameBindings(function: JsFunction): List<Pair<String, Int>> {
+        val indices = IdentityHashMap<JsName, Int>()
+        val result = mutableListOf<Pair<String, Int>>()
+        fun add(name: JsName?) {
+            if (name != null) {
+                result += name.ident to indices.getOrPut(name) { result.size }
+            }
+        }
+
+        function.accept(object : RecursiveJsVisitor() {
+            override fun visitFunction(x: JsFunction) {
+                add(x.name)
+                x.parameters.forEach { add(it.name) }
+                super.visitFunction(x)
+            }
+
+            override fun visit(x: JsVars.JsVar) {
+                add(x.name)
+                super.visit(x)
+            }
+
+            override fun visitLabel(x: JsLabel) {
+                add(x.name)
+                super.visitLabel(x)
+            }
+
+            override fun visitCatch(x: JsCatch) {
+                add(x.parameter.name)
+                super.visitCatch(x)
+            }
+
+            override fun visitNameRef(nameRef: JsNameRef) {
+                add(nameRef.name)
+                super.visitNameRef(nameRef)
+            }
+        })
+        return result
+    }
+}
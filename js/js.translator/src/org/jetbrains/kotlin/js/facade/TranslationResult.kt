@@ -43,6 +43,7 @@ import org.jetbrains.kotlin.serialization.js.KotlinJavascriptSerializationUtil
 import org.jetbrains.kotlin.utils.JsMetadataVersion
 import org.jetbrains.kotlin.utils.KotlinJavascriptMetadataUtils
 import java.io.File
+import java.io.OutputStream
 import java.util.*
 
 abstract class TranslationResult protected constructor(val diagnostics: Diagnostics) {
@@ -124,46 +125,129 @@ abstract class TranslationResult protected constructor(val diagnostics: Diagnost
         }
 
         override fun getOutputFiles(outputFile: File, outputPrefixFile: File?, outputPostfixFile: File?): OutputFileCollection {
-            val output = TextOutputImpl()
+            val generator = CodeGenerator(outputFile, outputPrefixFile?.readText() ?: "", outputPostfixFile?.readText() ?: "")
 
-            val sourceMapBuilder = SourceMap3Builder(outputFile, output, config.sourceMapPrefix)
-            val sourceMapBuilderConsumer =
-                if (config.configuration.getBoolean(JSConfigurationKeys.SOURCE_MAP)) {
-                    val sourceMapContentEmbedding = config.sourceMapContentEmbedding
-                    val pathResolver = SourceFilePathResolver.create(config)
-                    SourceMapBuilderConsumer(
-                        File("."),
-                        sourceMapBuilder,
-                        pathResolver,
-                        sourceMapContentEmbedding == SourceMapSourceEmbedding.ALWAYS,
-                        sourceMapContentEmbedding != SourceMapSourceEmbedding.NEVER
-                    )
-                } else {
-                    null
+            val outputFiles = arrayListOf<OutputFile>(generator.JsOutputFile())
+
+            outputFiles += metadataFiles(outputFile)
+
+            if (generator.sourceMapEnabled) {
+                outputFiles.add(generator.SourceMapOutputFile())
+            }
+
+            return SimpleOutputFileCollection(outputFiles)
+        }
+
+        /**
+         * Generates the code and the source map of the program.
+         *
+         * When the JS file is written to a stream, the text is written as it is generated, and the mappings of all lines but the current
+         * one are kept in a temporary file until the source map is written, so the memory doesn't grow with the size of the output.
+         * The source map file must then be written too, as `writeAll` does, or the temporary file is left until the JS file is written
+         * again. Otherwise the output is generated in memory, which gives the same text.
+         */
+        private inner class CodeGenerator(private val outputFile: File, private val prefix: String, private val postfix: String) {
+            val sourceMapEnabled = config.configuration.getBoolean(JSConfigurationKeys.SOURCE_MAP)
+
+            private var streamedSourceMap: SourceMap3Builder? = null
+
+            private val inMemory: Pair<String, String?> by lazy {
+                val output = TextOutputImpl()
+                val sourceMapBuilder = SourceMap3Builder(outputFile, output, config.sourceMapPrefix)
+                val sourceMapBuilderConsumer = createSourceMapBuilderConsumer(sourceMapBuilder)
+
+                getCode(output, sourceMapBuilderConsumer)
+                if (sourceMapBuilderConsumer != null) {
+                    sourceMapBuilder.addLink()
+                    sourceMapBuilder.skipLinesAtBeginning(StringUtil.getLineBreakCount(prefix))
                 }
 
-            getCode(output, sourceMapBuilderConsumer)
-            if (sourceMapBuilderConsumer != null) {
-                sourceMapBuilder.addLink()
+                Pair(prefix + output.toString() + postfix, if (sourceMapBuilderConsumer != null) sourceMapBuilder.build() else null)
             }
-            val code = output.toString()
 
-            val prefix = outputPrefixFile?.readText() ?: ""
-            val postfix = outputPostfixFile?.readText() ?: ""
+            private val sourceMapText: String by lazy {
+                streamedSourceMap?.let { builder ->
+                    streamedSourceMap = null
+                    builder.build()
+                } ?: inMemory.second!!
+            }
 
-            val jsFile = SimpleOutputFile(sourceFiles, outputFile.name, prefix + code + postfix)
-            val outputFiles = arrayListOf<OutputFile>(jsFile)
+            private fun createSourceMapBuilderConsumer(sourceMapBuilder: SourceMap3Builder): SourceMapBuilderConsumer? {
+                if (!sourceMapEnabled) return null
 
-            outputFiles += metadataFiles(outputFile)
+                val sourceMapContentEmbedding = config.sourceMapContentEmbedding
+                val pathResolver = SourceFilePathResolver.create(config)
+                return SourceMapBuilderConsumer(
+                    File("."),
+                    sourceMapBuilder,
+                    pathResolver,
+                    sourceMapContentEmbedding == SourceMapSourceEmbedding.ALWAYS,
+                    sourceMapContentEmbedding != SourceMapSourceEmbedding.NEVER
+                )
+            }
+
+            private fun writeCode(output: OutputStream) {
+                val writer = output.writer()
+                writer.write(prefix)
 
-            if (sourceMapBuilderConsumer != null) {
-                sourceMapBuilder.skipLinesAtBeginning(StringUtil.getLineBreakCount(prefix))
-                val sourceMapFile = SimpleOutputFile(sourceFiles, sourceMapBuilder.outFile.name, sourceMapBuilder.build())
-                outputFiles.add(sourceMapFile)
-                sourceMapBuilder.addLink()
+                // The mappings of an earlier write are not needed anymore
+                streamedSourceMap?.close()
+                streamedSourceMap = null
+
+                val textOutput = TextOutputImpl(writer)
+                val sourceMapBuilder =
+                    if (sourceMapEnabled) SourceMap3Builder.streaming(outputFile, textOutput, config.sourceMapPrefix) else null
+                try {
+                    val sourceMapBuilderConsumer = sourceMapBuilder?.let { createSourceMapBuilderConsumer(it) }
+
+                    sourceMapBuilder?.skipLinesAtBeginning(StringUtil.getLineBreakCount(prefix))
+                    getCode(textOutput, sourceMapBuilderConsumer)
+                    sourceMapBuilder?.addLink()
+                    textOutput.flush()
+
+                    writer.write(postfix)
+                    writer.flush()
+                } catch (e: Throwable) {
+                    sourceMapBuilder?.close()
+                    throw e
+                }
+
+                streamedSourceMap = sourceMapBuilder
             }
 
-            return SimpleOutputFileCollection(outputFiles)
+            private fun writeSourceMap(output: OutputStream) {
+                val builder = streamedSourceMap
+                val writer = output.writer()
+                if (builder != null) {
+                    streamedSourceMap = null
+                    builder.build(writer)
+                } else {
+                    writer.write(sourceMapText)
+                }
+                writer.flush()
+            }
+
+            inner class JsOutputFile : StreamingOutputFile {
+                override val relativePath: String get() = outputFile.name
+                override val sourceFiles: List<File> get() = this@Success.sourceFiles
+
+                override fun writeTo(output: OutputStream) = writeCode(output)
+                override fun asByteArray(): ByteArray = asText().toByteArray()
+                override fun asText(): String = inMemory.first
+
+                override fun toString() = "$relativePath (compiled from $sourceFiles)"
+            }
+
+            inner class SourceMapOutputFile : StreamingOutputFile {
+                override val relativePath: String get() = outputFile.name + ".map"
+                override val sourceFiles: List<File> get() = this@Success.sourceFiles
+
+                override fun writeTo(output: OutputStream) = writeSourceMap(output)
+                override fun asByteArray(): ByteArray = asText().toByteArray()
+                override fun asText(): String = sourceMapText
+
+                override fun toString() = "$relativePath (compiled from $sourceFiles)"
+            }
         }
 
         private fun getCode(output: TextOutput, sourceLocationConsumer: SourceLocationConsumer?) {
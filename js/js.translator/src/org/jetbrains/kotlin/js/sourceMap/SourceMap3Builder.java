@@ -24,18 +24,26 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.js.parser.sourcemaps.*;
 import org.jetbrains.kotlin.js.util.TextOutput;
 
-import java.io.File;
-import java.io.Reader;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
 
-public class SourceMap3Builder implements SourceMapBuilder {
+public class SourceMap3Builder implements SourceMapBuilder, Closeable {
+    // All mappings, or in the streaming mode only the mappings of the current line
     private final StringBuilder out = new StringBuilder(8192);
     private final File generatedFile;
     private final TextOutput textOutput;
     private final String pathPrefix;
 
+    // In the streaming mode, mappings of the finished lines are written to this file until the source map is built
+    @Nullable
+    private final File mappingsFile;
+    @Nullable
+    private Writer mappingsWriter;
+    private boolean anyLineWritten;
+
     private final TObjectIntHashMap<SourceKey> sources = new TObjectIntHashMap<SourceKey>() {
         @Override
         public int get(SourceKey key) {
@@ -58,9 +66,35 @@ public class SourceMap3Builder implements SourceMapBuilder {
     private boolean currentMappingIsEmpty = true;
 
     public SourceMap3Builder(File generatedFile, TextOutput textOutput, String pathPrefix) {
+        this(generatedFile, textOutput, pathPrefix, null);
+    }
+
+    private SourceMap3Builder(File generatedFile, TextOutput textOutput, String pathPrefix, @Nullable File mappingsFile) {
         this.generatedFile = generatedFile;
         this.textOutput = textOutput;
         this.pathPrefix = pathPrefix;
+        this.mappingsFile = mappingsFile;
+    }
+
+    /**
+     * Creates a builder which keeps only the mappings of the current line in memory, and the rest in a temporary file until
+     * the source map is written with {@link #build(Writer)}. Lines to skip must be set before the first line is finished.
+     *
+     * The temporary file is deleted when the source map is built. If it is never built, the builder must be closed.
+     */
+    @NotNull
+    public static SourceMap3Builder streaming(File generatedFile, TextOutput textOutput, String pathPrefix) throws IOException {
+        File mappingsFile = File.createTempFile("kotlin-js-mappings", ".tmp");
+        SourceMap3Builder builder = new SourceMap3Builder(generatedFile, textOutput, pathPrefix, mappingsFile);
+        try {
+            builder.mappingsWriter =
+                    new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mappingsFile), StandardCharsets.US_ASCII));
+        }
+        catch (IOException | RuntimeException e) {
+            builder.close();
+            throw e;
+        }
+        return builder;
     }
 
     @Override
@@ -70,15 +104,69 @@ public class SourceMap3Builder implements SourceMapBuilder {
 
     @Override
     public String build() {
-        @SuppressWarnings("unchecked")
-        JsonObject json = new JsonObject();
-        json.getProperties().put("version", new JsonNumber(3));
-        json.getProperties().put("file", new JsonString(generatedFile.getName()));
-        appendSources(json);
-        appendSourcesContent(json);
-        json.getProperties().put("names", new JsonArray());
-        json.getProperties().put("mappings", new JsonString(out.toString()));
-        return json.toString();
+        StringWriter writer = new StringWriter();
+        try {
+            build(writer);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the source map to {@code writer}. In the streaming mode, this can be done only once, and closes the builder.
+     */
+    public void build(@NotNull Writer writer) throws IOException {
+        if (mappingsFile != null && mappingsWriter == null) {
+            throw new IllegalStateException("Source map is already written or closed");
+        }
+
+        try {
+            @SuppressWarnings("unchecked")
+            JsonObject json = new JsonObject();
+            json.getProperties().put("version", new JsonNumber(3));
+            json.getProperties().put("file", new JsonString(generatedFile.getName()));
+            appendSources(json);
+            appendSourcesContent(json);
+            json.getProperties().put("names", new JsonArray());
+
+            // Mappings are the last property, write them directly after the others instead of copying them into a JSON string
+            String header = json.toString();
+            writer.write(header, 0, header.length() - 1);
+            writer.write(",\"mappings\":\"");
+            if (mappingsFile != null) {
+                mappingsWriter.close();
+                mappingsWriter = null;
+                try (Reader mappings = new InputStreamReader(new FileInputStream(mappingsFile), StandardCharsets.US_ASCII)) {
+                    TextStreamsKt.copyTo(mappings, writer, 8192);
+                }
+            }
+            writer.append(out);
+            writer.write("\"}");
+        }
+        finally {
+            close();
+        }
+    }
+
+    /**
+     * Deletes the temporary file of the mappings in the streaming mode. Does nothing otherwise.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mappingsFile == null) return;
+
+        try {
+            if (mappingsWriter != null) {
+                mappingsWriter.close();
+            }
+        }
+        finally {
+            mappingsWriter = null;
+            //noinspection ResultOfMethodCallIgnored
+            mappingsFile.delete();
+        }
     }
 
     private void appendSources(JsonObject json) {
@@ -102,10 +190,25 @@ public class SourceMap3Builder implements SourceMapBuilder {
     public void newLine() {
         out.append(';');
         previousGeneratedColumn = -1;
+
+        if (mappingsWriter != null) {
+            // Mappings are never changed after their line is finished
+            try {
+                mappingsWriter.append(out);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            out.setLength(0);
+            anyLineWritten = true;
+        }
     }
 
     @Override
     public void skipLinesAtBeginning(int count) {
+        if (anyLineWritten) {
+            throw new IllegalStateException("Lines to skip must be set before the first line is finished in the streaming mode");
+        }
         out.insert(0, StringUtil.repeatSymbol(';', count));
     }
 
@@ -0,0 +1,22 @@
+// FILE: a.js
+var shared = {};
+shared.foo = function() {
+    return "foo";
+};
+shared.bar = function() {
+    return "bar";
+};
+
+// FILE: b.js
+var shared = shared || {};
+(function(_) {
+    function foo() {
+        return shared.foo();
+    }
+    _.foo = foo;
+})(module.exports);
+
+// REQUEST_REACHABLE: main.foo
+// ASSERT_REACHABLE: shared.foo
+// ASSERT_UNREACHABLE: shared.bar
+// ASSERT_OUTPUT_CONTAINS: var shared = {}
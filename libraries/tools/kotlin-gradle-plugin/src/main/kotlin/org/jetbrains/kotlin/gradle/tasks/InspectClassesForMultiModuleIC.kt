@@ -15,6 +15,7 @@ import org.jetbrains.kotlin.gradle.dsl.KotlinSingleJavaTargetExtension
 import org.jetbrains.kotlin.gradle.dsl.kotlinExtension
 import org.jetbrains.kotlin.gradle.utils.archivePathCompatible
 import org.jetbrains.kotlin.gradle.utils.newProperty
+import org.jetbrains.kotlin.incremental.ClassListFile
 import java.io.File
 
 internal open class InspectClassesForMultiModuleIC : DefaultTask() {
@@ -46,9 +47,7 @@ internal open class InspectClassesForMultiModuleIC : DefaultTask() {
 
     @TaskAction
     fun run() {
-        classesListFile.parentFile.mkdirs()
-        val text = classFiles.map { it.absolutePath }.sorted().joinToString(File.pathSeparator)
-        classesListFile.writeText(text)
+        ClassListFile.write(classesListFile, classFiles)
     }
 
     private fun sanitizeFileName(candidate: String): String =
@@ -5,13 +5,27 @@
 
 package org.jetbrains.kotlin.kapt3.base.incremental
 
+import org.jetbrains.kotlin.kapt3.base.util.KaptLogger
+import org.jetbrains.kotlin.kapt3.base.util.info
+import org.jetbrains.kotlin.kapt3.base.util.measureTimeMillisWithResult
 import java.io.*
+import kotlin.system.measureTimeMillis
 
-// TODO(gavra): switch away from Java serialization
-class JavaClassCacheManager(val file: File) : Closeable {
+// TODO(gavra): switch away from Java serialization for the apt cache
+class JavaClassCacheManager(val file: File, private val logger: KaptLogger? = null) : Closeable {
 
-    private val javaCacheFile = file.resolve("java-cache.bin")
-    internal val javaCache = maybeGetJavaCacheFromFile()
+    private val javaCacheStorage = JavaClassCacheStorage(file.resolve("java-cache.bin"))
+    internal val javaCache: JavaClassCache
+
+    /** If the java cache is missing or unreadable, the dependencies of the sources are unknown. */
+    private val isJavaCacheLost: Boolean
+
+    init {
+        val (time, loadedCache) = measureTimeMillisWithResult { javaCacheStorage.load() }
+        javaCache = loadedCache ?: JavaClassCache()
+        isJavaCacheLost = loadedCache == null
+        logger?.info { "Loading java class cache took ${time}[ms]." }
+    }
 
     private val aptCacheFile = file.resolve("apt-cache.bin")
     private val aptCache = maybeGetAptCacheFromFile()
@@ -29,7 +43,7 @@ class JavaClassCacheManager(val file: File) : Closeable {
      * annotation processing.
      */
     fun invalidateAndGetDirtyFiles(changedSources: Collection<File>, dirtyClasspathJvmNames: Collection<String>): SourcesToReprocess {
-        if (!aptCache.isIncremental) {
+        if (!aptCache.isIncremental || isJavaCacheLost) {
             return SourcesToReprocess.FullRebuild
         }
 
@@ -80,30 +94,11 @@ class JavaClassCacheManager(val file: File) : Closeable {
         }
     }
 
-    private fun maybeGetJavaCacheFromFile(): JavaClassCache {
-        return if (javaCacheFile.exists()) {
-            try {
-                ObjectInputStream(BufferedInputStream(javaCacheFile.inputStream())).use {
-                    it.readObject() as JavaClassCache
-                }
-            } catch (e: Throwable) {
-                JavaClassCache()
-            }
-        } else {
-            JavaClassCache()
-        }
-    }
-
     override fun close() {
         if (closed) return
 
-        with(javaCacheFile) {
-            delete()
-            parentFile.mkdirs()
-            ObjectOutputStream(BufferedOutputStream(outputStream())).use {
-                it.writeObject(javaCache)
-            }
-        }
+        val time = measureTimeMillis { javaCacheStorage.save(javaCache) }
+        logger?.info { "Saving java class cache took ${time}[ms]." }
 
         with(aptCacheFile) {
             delete()
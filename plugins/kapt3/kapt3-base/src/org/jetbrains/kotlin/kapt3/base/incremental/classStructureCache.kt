@@ -6,45 +6,77 @@
 package org.jetbrains.kotlin.kapt3.base.incremental
 
 import java.io.File
-import java.io.ObjectInputStream
-import java.io.ObjectOutputStream
-import java.io.Serializable
 import java.lang.IllegalArgumentException
 import java.net.URI
 import java.util.regex.Pattern
 
-class JavaClassCache() : Serializable {
+class JavaClassCache() {
     private var sourceCache = mutableMapOf<URI, SourceFileStructure>()
 
     /** Record these separately because we only need to know where each generated type is coming from. */
     private var generatedTypes = mutableMapOf<File, MutableList<String>>()
 
     /** Map from types to files they are mentioned in. */
-    @Transient
     private var dependencyCache = mutableMapOf<String, MutableSet<URI>>()
-    @Transient
     private var nonTransitiveCache = mutableMapOf<String, MutableSet<URI>>()
 
+    /** Entries changed since the cache was loaded, only these are written by [JavaClassCacheStorage.save]. */
+    internal val changedSources = mutableSetOf<URI>()
+    internal val changedGeneratedFiles = mutableSetOf<File>()
+    internal var isInvalidatedAll = false
+        private set
+
+    internal val sourceStructures: Collection<SourceFileStructure> get() = sourceCache.values
+    internal val generatedFiles: Set<File> get() = generatedTypes.keys
+
     fun addSourceStructure(sourceStructure: SourceFileStructure) {
         sourceCache[sourceStructure.sourceFile] = sourceStructure
+        changedSources.add(sourceStructure.sourceFile)
     }
 
     fun addGeneratedType(type: String, generatedFile: File) {
         val typesInFile = generatedTypes[generatedFile] ?: ArrayList(1)
         typesInFile.add(type)
         generatedTypes[generatedFile] = typesInFile
+        changedGeneratedFiles.add(generatedFile)
     }
 
     fun invalidateGeneratedTypes(files: List<File>): Set<String> {
-        return files.mapNotNull { generatedTypes.remove(it) }.flatten().toSet()
+        return files.mapNotNull { file ->
+            generatedTypes.remove(file)?.also { changedGeneratedFiles.add(file) }
+        }.flatten().toSet()
+    }
+
+    internal fun getSourceStructure(sourceFile: URI): SourceFileStructure? = sourceCache[sourceFile]
+
+    internal fun getGeneratedTypes(generatedFile: File): List<String>? = generatedTypes[generatedFile]
+
+    internal fun clearChanges() {
+        changedSources.clear()
+        changedGeneratedFiles.clear()
+        isInvalidatedAll = false
+    }
+
+    /** Restores an entry read by [JavaClassCacheStorage], [structure] is `null` if the entry was removed. */
+    internal fun loadSourceStructure(sourceFile: URI, structure: SourceFileStructure?) {
+        if (structure != null) {
+            sourceCache[sourceFile] = structure
+        } else {
+            sourceCache.remove(sourceFile)
+        }
     }
 
-    private fun readObject(input: ObjectInputStream) {
-        @Suppress("UNCHECKED_CAST")
-        sourceCache = input.readObject() as MutableMap<URI, SourceFileStructure>
-        @Suppress("UNCHECKED_CAST")
-        generatedTypes = input.readObject() as MutableMap<File, MutableList<String>>
+    /** Restores an entry read by [JavaClassCacheStorage], [types] is empty if the entry was removed. */
+    internal fun loadGeneratedTypes(generatedFile: File, types: List<String>) {
+        if (types.isNotEmpty()) {
+            generatedTypes[generatedFile] = types.toMutableList()
+        } else {
+            generatedTypes.remove(generatedFile)
+        }
+    }
 
+    /** Must be called once all entries are loaded. */
+    internal fun buildDependencyCaches() {
         dependencyCache = HashMap(sourceCache.size * 4)
         for (sourceInfo in sourceCache.values) {
             for (mentionedType in sourceInfo.getMentionedTypes()) {
@@ -69,10 +101,8 @@ class JavaClassCache() : Serializable {
         }
     }
 
-    private fun writeObject(output: ObjectOutputStream) {
-        output.writeObject(sourceCache)
-        output.writeObject(generatedTypes)
-    }
+    private fun removeSourceStructure(sourceFile: URI): SourceFileStructure? =
+        sourceCache.remove(sourceFile)?.also { changedSources.add(sourceFile) }
 
     fun isAlreadyProcessed(sourceFile: URI): Boolean {
         if (!sourceFile.isAbsolute) {
@@ -121,7 +151,7 @@ class JavaClassCache() : Serializable {
             for (dirtyFile in currentDirtyFiles) {
                 allDirtyFiles.add(dirtyFile)
 
-                val structure = sourceCache.remove(dirtyFile) ?: continue
+                val structure = removeSourceStructure(dirtyFile) ?: continue
                 val dirtyTypes = structure.getDeclaredTypes()
                 allDirtyTypes.addAll(dirtyTypes)
 
@@ -170,7 +200,7 @@ class JavaClassCache() : Serializable {
         }
 
         toReprocess.forEach {
-            sourceCache.remove(it)
+            removeSourceStructure(it)
         }
 
         return toReprocess.map { File(it) }.toSet()
@@ -179,6 +209,7 @@ class JavaClassCache() : Serializable {
     internal fun invalidateAll() {
         sourceCache.clear()
         generatedTypes.clear()
+        isInvalidatedAll = true
     }
 }
 
@@ -187,7 +218,7 @@ private val IGNORE_TYPES = { name: String -> name == "java.lang.Object" }
 
 class SourceFileStructure(
     val sourceFile: URI
-) : Serializable {
+) {
 
     private val declaredTypes: MutableSet<String> = mutableSetOf()
 
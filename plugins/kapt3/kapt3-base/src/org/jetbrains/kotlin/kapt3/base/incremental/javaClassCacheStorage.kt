@@ -0,0 +1,197 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.kapt3.base.incremental
+
+import java.io.*
+import java.net.URI
+import java.nio.ByteBuffer
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+/**
+ * Stores [JavaClassCache] in a binary file, so that a build which changes a few sources doesn't rewrite the structure of all of them.
+ *
+ * The file is a header followed by segments. A segment is a table of strings and a list of records referring to the strings by index:
+ * the structure of a source file, a removed source file, or the types generated to a file. Records of later segments replace the
+ * records of earlier ones for the same file, so [save] only appends a segment with the entries changed since [load]. Once replaced
+ * records outnumber the live ones, the file is rewritten with a single segment.
+ *
+ * The file is read to memory as a whole rather than mapped, because it is appended to or replaced in the same process, which isn't
+ * possible for a mapped file on Windows.
+ */
+internal class JavaClassCacheStorage(private val file: File) {
+    // Records in the file, including the replaced ones
+    private var recordsInFile = 0
+
+    // Segments can only be appended to a file which was read or written by this storage
+    private var isFileValid = false
+
+    /**
+     * @return the cache stored in [file], or `null` if there is no file or it can't be read, e.g. it was written by an older version
+     */
+    fun load(): JavaClassCache? {
+        if (!file.isFile) return null
+
+        val cache = JavaClassCache()
+        try {
+            val buffer = ByteBuffer.wrap(file.readBytes())
+            if (buffer.remaining() < HEADER_SIZE || buffer.int != MAGIC || buffer.int != VERSION) return null
+
+            var records = 0
+            while (buffer.hasRemaining()) {
+                val segmentSize = buffer.int
+                if (segmentSize < 0 || segmentSize > buffer.remaining()) return null
+
+                val segmentEnd = buffer.position() + segmentSize
+                records += readSegment(buffer, cache)
+                if (buffer.position() != segmentEnd) return null
+            }
+            recordsInFile = records
+            isFileValid = true
+        } catch (e: Exception) {
+            // cache corrupt
+            return null
+        }
+        cache.buildDependencyCaches()
+        cache.clearChanges()
+        return cache
+    }
+
+    fun save(cache: JavaClassCache) {
+        val liveRecords = cache.sourceStructures.size + cache.generatedFiles.size
+        val changedRecords = cache.changedSources.size + cache.changedGeneratedFiles.size
+
+        if (cache.isInvalidatedAll || !isFileValid || recordsInFile + changedRecords > liveRecords * 2 + MIN_RECORDS_TO_COMPACT) {
+            rewrite(cache)
+        } else if (changedRecords > 0) {
+            FileOutputStream(file, true).buffered().use { output ->
+                writeSegment(output, cache, cache.changedSources, cache.changedGeneratedFiles)
+            }
+            recordsInFile += changedRecords
+        }
+        cache.clearChanges()
+    }
+
+    private fun rewrite(cache: JavaClassCache) {
+        file.parentFile.mkdirs()
+        val temporary = File.createTempFile(file.name, ".tmp", file.parentFile)
+        try {
+            DataOutputStream(temporary.outputStream().buffered()).use { output ->
+                output.writeInt(MAGIC)
+                output.writeInt(VERSION)
+                writeSegment(output, cache, cache.sourceStructures.map { it.sourceFile }, cache.generatedFiles)
+            }
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING)
+        } finally {
+            temporary.delete()
+        }
+        recordsInFile = cache.sourceStructures.size + cache.generatedFiles.size
+        isFileValid = true
+    }
+
+    private fun writeSegment(output: OutputStream, cache: JavaClassCache, sources: Collection<URI>, generatedFiles: Collection<File>) {
+        val strings = LinkedHashMap<String, Int>()
+        fun id(string: String) = strings.getOrPut(string) { strings.size }
+
+        val recordsBytes = ByteArrayOutputStream()
+        DataOutputStream(recordsBytes).use { records ->
+            fun writeIds(values: Collection<String>) {
+                records.writeInt(values.size)
+                values.forEach { records.writeInt(id(it)) }
+            }
+
+            records.writeInt(sources.size + generatedFiles.size)
+            for (sourceFile in sources) {
+                val structure = cache.getSourceStructure(sourceFile)
+                if (structure == null) {
+                    records.writeByte(REMOVED_SOURCE_RECORD)
+                    records.writeInt(id(sourceFile.toString()))
+                    continue
+                }
+                records.writeByte(SOURCE_RECORD)
+                records.writeInt(id(sourceFile.toString()))
+                writeIds(structure.getDeclaredTypes())
+                writeIds(structure.getMentionedTypes())
+                writeIds(structure.getPrivateTypes())
+                writeIds(structure.getMentionedAnnotations())
+                records.writeInt(structure.getMentionedConstants().size)
+                for ((containingClass, names) in structure.getMentionedConstants()) {
+                    records.writeInt(id(containingClass))
+                    writeIds(names)
+                }
+            }
+            for (generatedFile in generatedFiles) {
+                records.writeByte(GENERATED_TYPES_RECORD)
+                records.writeInt(id(generatedFile.path))
+                writeIds(cache.getGeneratedTypes(generatedFile).orEmpty())
+            }
+        }
+
+        val segment = ByteArrayOutputStream(recordsBytes.size() + strings.size * 32)
+        DataOutputStream(segment).use { segmentOutput ->
+            segmentOutput.writeInt(strings.size)
+            for (string in strings.keys) {
+                val bytes = string.toByteArray(Charsets.UTF_8)
+                segmentOutput.writeInt(bytes.size)
+                segmentOutput.write(bytes)
+            }
+            recordsBytes.writeTo(segmentOutput)
+        }
+
+        val dataOutput = DataOutputStream(output)
+        dataOutput.writeInt(segment.size())
+        segment.writeTo(dataOutput)
+        dataOutput.flush()
+    }
+
+    /**
+     * @return number of records in the segment
+     */
+    private fun readSegment(buffer: ByteBuffer, cache: JavaClassCache): Int {
+        val strings = Array(buffer.int) {
+            val bytes = ByteArray(buffer.int)
+            buffer.get(bytes)
+            String(bytes, Charsets.UTF_8)
+        }
+
+        fun readIds(): List<String> = List(buffer.int) { strings[buffer.int] }
+
+        val records = buffer.int
+        repeat(records) {
+            when (val kind = buffer.get().toInt()) {
+                SOURCE_RECORD -> {
+                    val structure = SourceFileStructure(URI(strings[buffer.int]))
+                    readIds().forEach(structure::addDeclaredType)
+                    readIds().forEach(structure::addMentionedType)
+                    readIds().forEach(structure::addPrivateType)
+                    readIds().forEach(structure::addMentionedAnnotations)
+                    repeat(buffer.int) {
+                        val containingClass = strings[buffer.int]
+                        readIds().forEach { structure.addMentionedConstant(containingClass, it) }
+                    }
+                    cache.loadSourceStructure(structure.sourceFile, structure)
+                }
+                REMOVED_SOURCE_RECORD -> cache.loadSourceStructure(URI(strings[buffer.int]), null)
+                GENERATED_TYPES_RECORD -> cache.loadGeneratedTypes(File(strings[buffer.int]), readIds())
+                else -> throw IOException("Unknown record $kind in $file")
+            }
+        }
+        return records
+    }
+
+    private companion object {
+        const val MAGIC = 0x4B4A4343 // "KJCC"
+        const val VERSION = 1
+        const val HEADER_SIZE = 8
+
+        const val SOURCE_RECORD = 1
+        const val REMOVED_SOURCE_RECORD = 2
+        const val GENERATED_TYPES_RECORD = 3
+
+        // Small caches are not worth rewriting
+        const val MIN_RECORDS_TO_COMPACT = 100
+    }
+}
@@ -38,6 +38,48 @@ class JavaClassCacheManagerTest {
         assertTrue(cacheDir.resolve("apt-cache.bin").exists())
     }
 
+    @Test
+    fun testChangesAreAppended() {
+        SourceFileStructure(File("Unchanged.java").toURI()).also {
+            it.addDeclaredType("test.Unchanged")
+            it.addMentionedType("test.Changed")
+            cache.javaCache.addSourceStructure(it)
+        }
+        SourceFileStructure(File("Changed.java").toURI()).also {
+            it.addDeclaredType("test.Changed")
+            cache.javaCache.addSourceStructure(it)
+        }
+        prepareForIncremental()
+        val initialSize = cacheDir.resolve("java-cache.bin").length()
+
+        SourceFileStructure(File("Changed.java").toURI()).also {
+            it.addDeclaredType("test.Changed")
+            it.addDeclaredType("test.Added")
+            cache.javaCache.addSourceStructure(it)
+        }
+        prepareForIncremental()
+
+        assertTrue(cacheDir.resolve("java-cache.bin").length() > initialSize)
+        assertEquals(setOf("test.Unchanged"), cache.javaCache.getStructure(File("Unchanged.java"))!!.getDeclaredTypes())
+        assertEquals(setOf("test.Changed", "test.Added"), cache.javaCache.getStructure(File("Changed.java"))!!.getDeclaredTypes())
+
+        val dirtyFiles = cache.invalidateAndGetDirtyFiles(listOf(File("Changed.java")), emptyList()) as SourcesToReprocess.Incremental
+        assertEquals(listOf(File("Changed.java").absoluteFile, File("Unchanged.java").absoluteFile), dirtyFiles.toReprocess)
+    }
+
+    @Test
+    fun testUnreadableCacheRequiresFullRebuild() {
+        SourceFileStructure(File("Src.java").toURI()).also {
+            it.addDeclaredType("test.Src")
+            cache.javaCache.addSourceStructure(it)
+        }
+        cache.close()
+        cacheDir.resolve("java-cache.bin").writeBytes(byteArrayOf(1, 2, 3))
+        cache = JavaClassCacheManager(cacheDir)
+
+        assertTrue(cache.invalidateAndGetDirtyFiles(listOf(File("Src.java")), emptyList()) is SourcesToReprocess.FullRebuild)
+    }
+
     @Test
     fun testMentionedTypes() {
         SourceFileStructure(File("Mentioned.java").toURI()).also {
@@ -20,8 +20,6 @@ import com.intellij.openapi.project.Project
 import com.sun.tools.javac.code.Flags
 import com.sun.tools.javac.tree.JCTree
 import com.sun.tools.javac.tree.Pretty
-import com.sun.tools.javac.tree.TreeMaker
-import com.sun.tools.javac.util.Context
 import org.jetbrains.kotlin.analyzer.AnalysisResult
 import org.jetbrains.kotlin.backend.common.output.OutputFile
 import org.jetbrains.kotlin.base.kapt3.AptMode.APT_ONLY
@@ -57,6 +55,7 @@ import org.jetbrains.kotlin.kapt3.diagnostic.KaptError
 import org.jetbrains.kotlin.kapt3.stubs.ClassFileToSourceStubConverter
 import org.jetbrains.kotlin.kapt3.stubs.ClassFileToSourceStubConverter.KaptStub
 import org.jetbrains.kotlin.kapt3.util.MessageCollectorBackedKaptLogger
+import org.jetbrains.kotlin.kapt3.util.writeIfChanged
 import org.jetbrains.kotlin.modules.TargetId
 import org.jetbrains.kotlin.psi.KtFile
 import org.jetbrains.kotlin.resolve.BindingContext
@@ -67,6 +66,10 @@ import java.io.File
 import java.io.StringWriter
 import java.io.Writer
 import java.net.URLClassLoader
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
 import javax.annotation.processing.Processor
 
 class ClasspathBasedKapt3Extension(
@@ -300,21 +303,65 @@ abstract class AbstractKapt3Extension(
     }
 
     protected open fun saveStubs(kaptContext: KaptContext, stubs: List<KaptStub>) {
-        for (kaptStub in stubs) {
-            val stub = kaptStub.file
-            val className = (stub.defs.first { it is JCTree.JCClassDecl } as JCTree.JCClassDecl).simpleName.toString()
+        val threads = minOf(Runtime.getRuntime().availableProcessors(), stubs.size)
 
-            val packageName = stub.getPackageNameJava9Aware()?.toString() ?: ""
-            val packageDir = if (packageName.isEmpty()) options.stubsOutputDir else File(options.stubsOutputDir, packageName.replace('.', '/'))
-            packageDir.mkdirs()
+        val (savingTime, changedStubs) = measureTimeMillis {
+            if (threads <= 1) {
+                stubs.count { saveStub(kaptContext, it) }
+            } else {
+                saveStubsInParallel(kaptContext, stubs, threads)
+            }
+        }
 
-            val sourceFile = File(packageDir, "$className.java")
-            sourceFile.writeText(stub.prettyPrint(kaptContext.context))
+        logger.info { "Saving stubs took $savingTime ms, ${stubs.size - changedStubs} of ${stubs.size} stubs are unchanged" }
+    }
 
-            kaptStub.writeMetadataIfNeeded(forSource = sourceFile)
+    /**
+     * Stubs are already converted, so printing them only reads the trees and the name table of [kaptContext], and can be done
+     * in parallel.
+     */
+    private fun saveStubsInParallel(kaptContext: KaptContext, stubs: List<KaptStub>, threads: Int): Int {
+        val counter = AtomicInteger()
+        val executor = Executors.newFixedThreadPool(threads) { r ->
+            Thread(r, "kapt stub writer ${counter.incrementAndGet()}").apply { isDaemon = true }
+        }
+        try {
+            val futures = stubs.map { stub -> executor.submit(Callable { saveStub(kaptContext, stub) }) }
+            return futures.count { future ->
+                try {
+                    future.get()
+                } catch (e: ExecutionException) {
+                    futures.forEach { it.cancel(false) }
+                    throw e.cause ?: e
+                }
+            }
+        } finally {
+            executor.shutdown()
         }
     }
 
+    /**
+     * Stubs with the same content as on the previous run are not written, so that their timestamps stay the same
+     * and incremental annotation processing doesn't consider them changed.
+     *
+     * @return `true` if the stub was written
+     */
+    private fun saveStub(kaptContext: KaptContext, kaptStub: KaptStub): Boolean {
+        val stub = kaptStub.file
+        val className = (stub.defs.first { it is JCTree.JCClassDecl } as JCTree.JCClassDecl).simpleName.toString()
+
+        val packageName = stub.getPackageNameJava9Aware()?.toString() ?: ""
+        val packageDir = if (packageName.isEmpty()) options.stubsOutputDir else File(options.stubsOutputDir, packageName.replace('.', '/'))
+        packageDir.mkdirs()
+
+        val sourceFile = File(packageDir, "$className.java")
+        val isChanged = writeIfChanged(sourceFile, stub.prettyPrint().toByteArray())
+
+        kaptStub.writeMetadataIfNeeded(forSource = sourceFile)
+
+        return isChanged
+    }
+
     protected open fun saveIncrementalData(
         kaptContext: KaptContextForStubGeneration,
         messageCollector: MessageCollector,
@@ -346,11 +393,11 @@ abstract class AbstractKapt3Extension(
     protected abstract fun loadProcessors(): LoadedProcessors
 }
 
-internal fun JCTree.prettyPrint(context: Context): String {
-    return StringWriter().apply { PrettyWithWorkarounds(context, this, false).printStat(this@prettyPrint) }.toString()
+internal fun JCTree.prettyPrint(): String {
+    return StringWriter().apply { PrettyWithWorkarounds(this, false).printStat(this@prettyPrint) }.toString()
 }
 
-private class PrettyWithWorkarounds(private val context: Context, val out: Writer, sourceOutput: Boolean) : Pretty(out, sourceOutput) {
+private class PrettyWithWorkarounds(val out: Writer, sourceOutput: Boolean) : Pretty(out, sourceOutput) {
     companion object {
         private const val ENUM = Flags.ENUM.toLong()
     }
@@ -361,8 +408,9 @@ private class PrettyWithWorkarounds(private val context: Context, val out: Write
 
     override fun visitVarDef(tree: JCTree.JCVariableDecl) {
         if ((tree.mods.flags and ENUM) != 0L) {
-            // Pretty does not print annotations for enum values for some reason
-            printExpr(TreeMaker.instance(context).Modifiers(0, tree.mods.annotations))
+            // Pretty does not print annotations for enum values for some reason.
+            // Stubs are printed in parallel, so the annotations are printed directly instead of through the shared TreeMaker.
+            printAnnotations(tree.mods.annotations)
 
             if (isJava11OrLater()) {
                 // Print enums fully, there is an issue when using Pretty in JDK 11.
@@ -166,7 +166,7 @@ class ClassFileToSourceStubConverter(val kaptContext: KaptContextForStubGenerati
                 forSource.nameWithoutExtension + KaptStubLineInformation.KAPT_METADATA_EXTENSION
             )
 
-            metadataFile.writeBytes(kaptMetadata)
+            writeIfChanged(metadataFile, kaptMetadata)
         }
     }
 
@@ -0,0 +1,20 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.kapt3.util
+
+import java.io.File
+
+/**
+ * @return `true` if [file] didn't exist or had different content
+ */
+internal fun writeIfChanged(file: File, content: ByteArray): Boolean {
+    if (file.isFile && file.length() == content.size.toLong() && file.readBytes().contentEquals(content)) {
+        return false
+    }
+
+    file.writeBytes(content)
+    return true
+}
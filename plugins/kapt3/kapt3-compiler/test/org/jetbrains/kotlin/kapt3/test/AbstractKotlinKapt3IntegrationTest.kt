@@ -184,7 +184,7 @@ abstract class AbstractKotlinKapt3IntegrationTest : CodegenTestCase() {
             }
 
             this.savedStubs = stubs
-                .map { it.file.prettyPrint(kaptContext.context) }
+                .map { it.file.prettyPrint() }
                 .sorted()
                 .joinToString(AbstractKotlinKapt3Test.FILE_SEPARATOR)
 
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010-2020 JetBrains s.r.o. and Kotlin Programming Language contributors.
+ * Use of this source code is governed by the Apache 2.0 license that can be found in the license/LICENSE.txt file.
+ */
+
+package org.jetbrains.kotlin.kapt3.test
+
+import org.jetbrains.kotlin.kapt3.util.writeIfChanged
+import org.jetbrains.kotlin.test.TestCaseWithTmpdir
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.attribute.FileTime
+
+class WriteIfChangedTest : TestCaseWithTmpdir() {
+    private val file: File get() = File(tmpdir, "Stub.java")
+
+    fun testNewFileIsWritten() {
+        assertTrue(writeIfChanged(file, "class Stub {}".toByteArray()))
+        assertEquals("class Stub {}", file.readText())
+    }
+
+    fun testUnchangedFileIsNotTouched() {
+        file.writeText("class Stub {}")
+        Files.setLastModifiedTime(file.toPath(), OLD_TIME)
+
+        assertFalse(writeIfChanged(file, "class Stub {}".toByteArray()))
+        assertEquals("class Stub {}", file.readText())
+        assertEquals(OLD_TIME, Files.getLastModifiedTime(file.toPath()))
+    }
+
+    fun testChangedFileIsRewritten() {
+        file.writeText("class Stub {}")
+        Files.setLastModifiedTime(file.toPath(), OLD_TIME)
+
+        // The same length, so that only the content tells the files apart
+        assertTrue(writeIfChanged(file, "class Stu2 {}".toByteArray()))
+        assertEquals("class Stu2 {}", file.readText())
+        assertFalse(OLD_TIME == Files.getLastModifiedTime(file.toPath()))
+
+        assertTrue(writeIfChanged(file, "class Stub { int x; }".toByteArray()))
+        assertEquals("class Stub { int x; }", file.readText())
+    }
+
+    companion object {
+        private val OLD_TIME = FileTime.fromMillis(1_000_000_000_000)
+    }
+}